@@ -27,6 +27,7 @@ import com.coremedia.blueprint.cae.handlers.PaginationHandler;
 import com.coremedia.blueprint.cae.handlers.RobotsHandler;
 import com.coremedia.blueprint.cae.handlers.StaticUrlHandler;
 import com.coremedia.blueprint.cae.handlers.ThemeHandler;
+import com.coremedia.blueprint.cae.handlers.TransformedBlobDiskCache;
 import com.coremedia.blueprint.cae.handlers.TransformedBlobHandler;
 import com.coremedia.blueprint.cae.util.DefaultSecureHashCodeGeneratorStrategy;
 import com.coremedia.blueprint.cae.util.DefaultToMd5MigrationSecureHashCodeGeneratorStrategy;
@@ -63,6 +64,7 @@ import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -72,6 +74,7 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.core.annotation.Order;
 import org.springframework.web.servlet.handler.BeanNameUrlHandlerMapping;
 
+import java.io.File;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
@@ -99,6 +102,7 @@ import java.util.Map;
         ThemeServiceConfiguration.class,
         TransformImageServiceConfiguration.class,
 })
+@EnableConfigurationProperties(CaeBlobDeliveryConfigurationProperties.class)
 public class BlueprintHandlersCaeBaseLibConfiguration {
 
   /**
@@ -324,7 +328,8 @@ public class BlueprintHandlersCaeBaseLibConfiguration {
                                                        ContentLinkBuilder contentLinkBuilder,
                                                        ValidationService<ContentBean> validationService,
                                                        ObjectProvider<SecureHashCodeGeneratorStrategy> secureHashCodeGeneratorStrategy,
-                                                       TransformImageService transformImageService) {
+                                                       TransformImageService transformImageService,
+                                                       ObjectProvider<TransformedBlobDiskCache> transformedBlobDiskCache) {
     TransformedBlobHandler transformedBlobHandler = new TransformedBlobHandler();
 
     configureHandlerBase(transformedBlobHandler,
@@ -337,10 +342,27 @@ public class BlueprintHandlersCaeBaseLibConfiguration {
     //The secureHashCodeGeneratorStrategy is provided by auto configuration. @ConditionOnBean does not work here.
     secureHashCodeGeneratorStrategy.ifAvailable(transformedBlobHandler::setSecureHashCodeGeneratorStrategy);
     transformedBlobHandler.setTransformImageService(transformImageService);
+    transformedBlobDiskCache.ifAvailable(transformedBlobHandler::setTransformedBlobDiskCache);
 
     return transformedBlobHandler;
   }
 
+  /**
+   * Caches transformed images on the local disk, see {@link CaeBlobDeliveryConfigurationProperties}.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "cae.blob-delivery.transformed-cache-enabled", havingValue = "true")
+  public TransformedBlobDiskCache transformedBlobDiskCache(CaeBlobDeliveryConfigurationProperties properties) {
+    TransformedBlobDiskCache transformedBlobDiskCache = new TransformedBlobDiskCache();
+
+    transformedBlobDiskCache.setDirectory(new File(properties.getTransformedCacheDirectory()));
+    transformedBlobDiskCache.setCapacity(properties.getTransformedCacheCapacity());
+    transformedBlobDiskCache.setMemoryMaxSize(properties.getTransformedCacheMemoryMaxSize());
+    transformedBlobDiskCache.setMemoryCapacity(properties.getTransformedCacheMemoryCapacity());
+
+    return transformedBlobDiskCache;
+  }
+
   /**
    * Handles standard images/blobs referenced by a cap object.
    */
@@ -626,13 +648,15 @@ public class BlueprintHandlersCaeBaseLibConfiguration {
   public NavigationSegmentsUriHelper navigationSegmentsUriHelper(Cache cache,
                                                                  ContentBeanFactory contentBeanFactory,
                                                                  SitesService sitesService,
-                                                                 UrlPathFormattingHelper urlPathFormattingHelper) {
+                                                                 UrlPathFormattingHelper urlPathFormattingHelper,
+                                                                 DeliveryConfigurationProperties deliveryConfigurationProperties) {
     NavigationSegmentsUriHelper uriHelper = new NavigationSegmentsUriHelper();
 
     uriHelper.setCache(cache);
     uriHelper.setContentBeanFactory(contentBeanFactory);
     uriHelper.setSitesService(sitesService);
     uriHelper.setUrlPathFormattingHelper(urlPathFormattingHelper);
+    uriHelper.setPreviewMode(deliveryConfigurationProperties.isPreviewMode());
 
     return uriHelper;
   }
@@ -2,6 +2,7 @@ package com.coremedia.blueprint.cae.config;
 
 import com.coremedia.blueprint.cae.richtext.filter.AppendClassToElementFilter;
 import com.coremedia.blueprint.cae.richtext.filter.CMDownloadLinkValidationFilter;
+import com.coremedia.blueprint.cae.richtext.filter.ClassMappingFilter;
 import com.coremedia.blueprint.cae.richtext.filter.ConfigurableRichtextToHtmlFilterFactory;
 import com.coremedia.blueprint.cae.richtext.filter.FilterFactory;
 import com.coremedia.blueprint.cae.richtext.filter.ImageFilter;
@@ -49,9 +50,7 @@ public class BlueprintRichtextFiltersConfiguration {
                                                                                   FilterFactory imgCompletionFilter,
                                                                                   FilterFactory linkEmbedFilter,
                                                                                   FilterFactory imageFilter,
-                                                                                  FilterFactory reservedClassToElementFilter,
-                                                                                  FilterFactory appendClassToElementFilter,
-                                                                                  FilterFactory unsurroundFilter) {
+                                                                                  FilterFactory classMappingFilter) {
     ConfigurableRichtextToHtmlFilterFactory factory = new ConfigurableRichtextToHtmlFilterFactory();
     factory.setIdProvider(idProvider);
     factory.setLinkFormatter(linkFormatter);
@@ -63,9 +62,7 @@ public class BlueprintRichtextFiltersConfiguration {
             imageFilter
     ));
     factory.setXmlFilters(List.of(
-            reservedClassToElementFilter,
-            appendClassToElementFilter,
-            unsurroundFilter
+            classMappingFilter
     ));
     return factory;
   }
@@ -202,4 +199,15 @@ public class BlueprintRichtextFiltersConfiguration {
   UnsurroundFilter unsurroundFilter() {
     return new UnsurroundFilter();
   }
+
+  /**
+   * Applies the {@link #reservedClassToElementFilter()}, the
+   * {@link #appendClassToElementFilter()} and the {@link #unsurroundFilter()}
+   * in one pass.
+   */
+  @Bean
+  ClassMappingFilter classMappingFilter(ReservedClassToElementFilter reservedClassToElementFilter,
+                                        AppendClassToElementFilter appendClassToElementFilter) {
+    return new ClassMappingFilter(reservedClassToElementFilter, appendClassToElementFilter, true);
+  }
 }
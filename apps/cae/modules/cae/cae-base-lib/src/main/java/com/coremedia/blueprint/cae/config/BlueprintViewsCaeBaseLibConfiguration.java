@@ -12,14 +12,18 @@ import com.coremedia.blueprint.cae.view.BlueprintHttpErrorView;
 import com.coremedia.blueprint.cae.view.FeedView;
 import com.coremedia.blueprint.cae.view.HttpHeadView;
 import com.coremedia.blueprint.cae.view.MergeableResourcesView;
+import com.coremedia.blueprint.cae.view.ParallelPlacementRenderer;
 import com.coremedia.blueprint.cae.view.PlainView;
 import com.coremedia.blueprint.cae.view.RobotsView;
 import com.coremedia.blueprint.cae.view.ScriptView;
+import com.coremedia.blueprint.cae.view.SpoolingBlobView;
 import com.coremedia.blueprint.cae.view.resolver.BlueprintViewLookupTraversal;
 import com.coremedia.blueprint.cae.view.resolver.BlueprintViewRepositoryNameProvider;
 import com.coremedia.blueprint.cae.view.resolver.ThemeTemplateViewRepositoryProvider;
 import com.coremedia.blueprint.cae.view.viewtype.ViewTypeRenderNodeDecorator;
 import com.coremedia.blueprint.cae.view.viewtype.ViewTypeRenderNodeDecoratorProvider;
+import com.coremedia.blueprint.cae.web.taglib.BlueprintFreemarkerFacade;
+import com.coremedia.blueprint.cae.web.taglib.ResponsiveImageLinksCache;
 import com.coremedia.blueprint.coderesources.ThemeService;
 import com.coremedia.blueprint.coderesources.ThemeServiceConfiguration;
 import com.coremedia.blueprint.common.services.context.ContextHelper;
@@ -53,13 +57,17 @@ import com.coremedia.springframework.xml.ResourceAwareXmlBeanDefinitionReader;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.ImportResource;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -93,6 +101,10 @@ import java.util.Map;
         MultiSiteConfiguration.class,
         ThemeServiceConfiguration.class,
 })
+@EnableConfigurationProperties({
+        CaeBlobDeliveryConfigurationProperties.class,
+        CaePlacementRenderingConfigurationProperties.class,
+})
 public class BlueprintViewsCaeBaseLibConfiguration {
 
   /**
@@ -214,6 +226,83 @@ public class BlueprintViewsCaeBaseLibConfiguration {
     return new XmlMarkupView();
   }
 
+  /**
+   * Delivers large blobs from a local spool directory, see {@link CaeBlobDeliveryConfigurationProperties}.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "cae.blob-delivery.spool-enabled", havingValue = "true")
+  public SpoolingBlobView spoolingBlobView(MultiRangeBlobView blobView,
+                                           CaeBlobDeliveryConfigurationProperties properties) {
+    SpoolingBlobView spoolingBlobView = new SpoolingBlobView();
+
+    spoolingBlobView.setDelegate(blobView);
+    spoolingBlobView.setSpoolDirectory(new File(properties.getSpoolDirectory()));
+    spoolingBlobView.setMinSize(properties.getSpoolMinSize());
+    spoolingBlobView.setCapacity(properties.getSpoolCapacity());
+    spoolingBlobView.setChunkSize(properties.getChunkSize());
+    spoolingBlobView.setSendfile(properties.isSendfile());
+    spoolingBlobView.setSendfileGracePeriod(properties.getSendfileGracePeriod());
+
+    return spoolingBlobView;
+  }
+
+  /**
+   * Renders the placements of page grid rows in parallel, see {@link CaePlacementRenderingConfigurationProperties}.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "cae.placement-rendering.parallel", havingValue = "true")
+  public ParallelPlacementRenderer parallelPlacementRenderer(ThreadPoolTaskExecutor placementRenderingExecutor,
+                                                             @Qualifier("placementRenderingTaskDecorators") List<TaskDecorator> placementRenderingTaskDecorators,
+                                                             CaePlacementRenderingConfigurationProperties properties) {
+    ParallelPlacementRenderer renderer = new ParallelPlacementRenderer();
+
+    renderer.setExecutor(placementRenderingExecutor);
+    renderer.setTaskDecorators(placementRenderingTaskDecorators);
+    renderer.setTimeoutMillis(properties.getTimeout().toMillis());
+    renderer.setMinPlacements(properties.getMinPlacements());
+
+    return renderer;
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "cae.placement-rendering.parallel", havingValue = "true")
+  public ThreadPoolTaskExecutor placementRenderingExecutor(CaePlacementRenderingConfigurationProperties properties) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    executor.setCorePoolSize(properties.getThreads());
+    executor.setMaxPoolSize(properties.getThreads());
+    executor.setQueueCapacity(properties.getQueueCapacity());
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.setDaemon(true);
+    executor.setThreadNamePrefix("placement-rendering-");
+
+    return executor;
+  }
+
+  /**
+   * Caches the responsive image links of pictures for the {@link BlueprintFreemarkerFacade}.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "cae.responsive-image-links.cache-enabled", havingValue = "true")
+  public ResponsiveImageLinksCache responsiveImageLinksCache(Cache cache,
+                                                             DeliveryConfigurationProperties deliveryConfigurationProperties) {
+    ResponsiveImageLinksCache responsiveImageLinksCache = new ResponsiveImageLinksCache();
+
+    responsiveImageLinksCache.setCache(cache);
+    responsiveImageLinksCache.setDeliveryConfigurationProperties(deliveryConfigurationProperties);
+
+    return responsiveImageLinksCache;
+  }
+
+  /**
+   * Decorators which propagate thread bound state to the threads rendering placements in parallel.
+   * Exposed as a bean in order to allow plugins and extensions to add to the list via customizers.
+   */
+  @Bean
+  public List<TaskDecorator> placementRenderingTaskDecorators() {
+    return new ArrayList<>();
+  }
+
   /**
    * Contains programmed views injected into all view repositories.
    */
@@ -224,6 +313,7 @@ public class BlueprintViewsCaeBaseLibConfiguration {
   public Map<String, View> blueprintProgrammedViews(XmlMarkupView richtextMarkupView,
                                                     XmlMarkupView htmlMarkupView,
                                                     MultiRangeBlobView blobView,
+                                                    ObjectProvider<SpoolingBlobView> spoolingBlobView,
                                                     ViewHookEventView viewHookEventView,
                                                     ErrorView errorView,
                                                     ScriptView scriptView,
@@ -239,7 +329,8 @@ public class BlueprintViewsCaeBaseLibConfiguration {
 
     viewMap.put("com.coremedia.xml.Markup", richtextMarkupView);
     viewMap.put("com.coremedia.xml.Markup#html", htmlMarkupView);
-    viewMap.put("com.coremedia.cap.common.Blob", blobView);
+    SpoolingBlobView spoolingBlobViewIfEnabled = spoolingBlobView.getIfAvailable();
+    viewMap.put("com.coremedia.cap.common.Blob", spoolingBlobViewIfEnabled != null ? spoolingBlobViewIfEnabled : blobView);
     viewMap.put("com.coremedia.objectserver.view.events.ViewHookEvent", viewHookEventView);
     viewMap.put("java.lang.Throwable", errorView);
     viewMap.put("com.coremedia.xml.Markup#script", scriptView);
@@ -0,0 +1,182 @@
+package com.coremedia.blueprint.cae.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.io.File;
+
+/**
+ * Configuration of the delivery of blobs from a local spool directory and of
+ * the local disk cache of transformed images.
+ *
+ * @see com.coremedia.blueprint.cae.view.SpoolingBlobView
+ * @see com.coremedia.blueprint.cae.handlers.TransformedBlobDiskCache
+ */
+@ConfigurationProperties(prefix = "cae.blob-delivery")
+public class CaeBlobDeliveryConfigurationProperties {
+
+  /**
+   * Whether large blobs are spooled to the local disk and delivered from there.
+   * If disabled, blobs are streamed from the content server on every request.
+   */
+  private boolean spoolEnabled = false;
+
+  /**
+   * The directory for spooled blobs. Its content is deleted on startup.
+   * Defaults to cae-blob-spool in the temp directory of the JVM.
+   */
+  private String spoolDirectory = new File(System.getProperty("java.io.tmpdir"), "cae-blob-spool").getPath();
+
+  /**
+   * Blobs smaller than this number of bytes are not spooled.
+   */
+  private long spoolMinSize = 1024L * 1024;
+
+  /**
+   * The maximum number of bytes in the spool directory. Least recently used blobs are
+   * removed if the capacity is exceeded.
+   */
+  private long spoolCapacity = 10L * 1024 * 1024 * 1024;
+
+  /**
+   * The number of bytes transferred at once from a spooled file to the response.
+   */
+  private int chunkSize = 256 * 1024;
+
+  /**
+   * Whether spooled files are handed to the servlet container for sendfile delivery,
+   * if the container supports it.
+   */
+  private boolean sendfile = true;
+
+  /**
+   * Milliseconds an evicted spooled file is kept after it has been handed to sendfile,
+   * since the servlet container opens it only after the request has been processed.
+   */
+  private long sendfileGracePeriod = 60_000;
+
+  /**
+   * Whether transformed images are cached on the local disk in addition to the CAE cache, so that they
+   * need not be transformed again after a restart or after eviction from the CAE cache.
+   */
+  private boolean transformedCacheEnabled = false;
+
+  /**
+   * The directory for cached transformed images. Its content is kept on restart.
+   * Defaults to cae-transformed-blobs in the temp directory of the JVM.
+   */
+  private String transformedCacheDirectory = new File(System.getProperty("java.io.tmpdir"), "cae-transformed-blobs").getPath();
+
+  /**
+   * The maximum number of bytes of cached transformed images. Least recently used images are
+   * removed if the capacity is exceeded.
+   */
+  private long transformedCacheCapacity = 2L * 1024 * 1024 * 1024;
+
+  /**
+   * Cached transformed images up to this number of bytes are also kept in memory.
+   * 0 disables the memory cache.
+   */
+  private long transformedCacheMemoryMaxSize = 512L * 1024;
+
+  /**
+   * The maximum number of bytes of cached transformed images which are kept in memory.
+   * Least recently used images are removed from memory if the capacity is exceeded.
+   */
+  private long transformedCacheMemoryCapacity = 64L * 1024 * 1024;
+
+  public boolean isSpoolEnabled() {
+    return spoolEnabled;
+  }
+
+  public void setSpoolEnabled(boolean spoolEnabled) {
+    this.spoolEnabled = spoolEnabled;
+  }
+
+  public String getSpoolDirectory() {
+    return spoolDirectory;
+  }
+
+  public void setSpoolDirectory(String spoolDirectory) {
+    this.spoolDirectory = spoolDirectory;
+  }
+
+  public long getSpoolMinSize() {
+    return spoolMinSize;
+  }
+
+  public void setSpoolMinSize(long spoolMinSize) {
+    this.spoolMinSize = spoolMinSize;
+  }
+
+  public long getSpoolCapacity() {
+    return spoolCapacity;
+  }
+
+  public void setSpoolCapacity(long spoolCapacity) {
+    this.spoolCapacity = spoolCapacity;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  public boolean isSendfile() {
+    return sendfile;
+  }
+
+  public void setSendfile(boolean sendfile) {
+    this.sendfile = sendfile;
+  }
+
+  public long getSendfileGracePeriod() {
+    return sendfileGracePeriod;
+  }
+
+  public void setSendfileGracePeriod(long sendfileGracePeriod) {
+    this.sendfileGracePeriod = sendfileGracePeriod;
+  }
+
+  public boolean isTransformedCacheEnabled() {
+    return transformedCacheEnabled;
+  }
+
+  public void setTransformedCacheEnabled(boolean transformedCacheEnabled) {
+    this.transformedCacheEnabled = transformedCacheEnabled;
+  }
+
+  public String getTransformedCacheDirectory() {
+    return transformedCacheDirectory;
+  }
+
+  public void setTransformedCacheDirectory(String transformedCacheDirectory) {
+    this.transformedCacheDirectory = transformedCacheDirectory;
+  }
+
+  public long getTransformedCacheCapacity() {
+    return transformedCacheCapacity;
+  }
+
+  public void setTransformedCacheCapacity(long transformedCacheCapacity) {
+    this.transformedCacheCapacity = transformedCacheCapacity;
+  }
+
+  public long getTransformedCacheMemoryMaxSize() {
+    return transformedCacheMemoryMaxSize;
+  }
+
+  public void setTransformedCacheMemoryMaxSize(long transformedCacheMemoryMaxSize) {
+    this.transformedCacheMemoryMaxSize = transformedCacheMemoryMaxSize;
+  }
+
+  public long getTransformedCacheMemoryCapacity() {
+    return transformedCacheMemoryCapacity;
+  }
+
+  public void setTransformedCacheMemoryCapacity(long transformedCacheMemoryCapacity) {
+    this.transformedCacheMemoryCapacity = transformedCacheMemoryCapacity;
+  }
+}
@@ -0,0 +1,81 @@
+package com.coremedia.blueprint.cae.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the parallel rendering of page grid placements.
+ *
+ * @see com.coremedia.blueprint.cae.view.ParallelPlacementRenderer
+ */
+@ConfigurationProperties(prefix = "cae.placement-rendering")
+public class CaePlacementRenderingConfigurationProperties {
+
+  /**
+   * Whether the placements of a page grid row are rendered in parallel.
+   * If disabled, placements are rendered one after another on the request thread.
+   */
+  private boolean parallel = false;
+
+  /**
+   * The maximum number of threads rendering placements, shared by all requests.
+   */
+  private int threads = 16;
+
+  /**
+   * The maximum number of placements waiting for a rendering thread. Further placements
+   * are rendered on the request thread.
+   */
+  private int queueCapacity = 64;
+
+  /**
+   * The time to wait for a placement before it is rendered on the request thread.
+   */
+  private Duration timeout = Duration.ofSeconds(10);
+
+  /**
+   * Rows with fewer placements are rendered sequentially.
+   */
+  private int minPlacements = 2;
+
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  public int getMinPlacements() {
+    return minPlacements;
+  }
+
+  public void setMinPlacements(int minPlacements) {
+    this.minPlacements = minPlacements;
+  }
+}
@@ -0,0 +1,111 @@
+package com.coremedia.blueprint.cae.handlers;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A segment trie of the navigation hierarchy below a root navigation.
+ * <p>
+ * Each node of the trie stands for a navigation content and maps the segments
+ * of the navigation's children to their nodes, so a navigation path is
+ * resolved with one map lookup per segment.  A navigation which is the child
+ * of several navigations has one node, which is reachable by all of these
+ * paths.
+ * <p>
+ * Navigations whose children are not completely indexed, e.g. because some of
+ * them depend on the commerce system, are marked, and paths through them are
+ * not resolved by the index.
+ * <p>
+ * Instances are immutable once built and can be used concurrently.
+ */
+final class NavigationSegmentsIndex {
+
+  private final String rootSegment;
+  private final Node root;
+  private final Map<String, Node> nodesById = new HashMap<>();
+
+  /**
+   * @param rootId      the id of the root navigation content
+   * @param rootSegment the segment of the root navigation
+   */
+  NavigationSegmentsIndex(@NonNull String rootId, @NonNull String rootSegment) {
+    this.rootSegment = rootSegment;
+    root = new Node(rootId);
+    nodesById.put(rootId, root);
+  }
+
+  /**
+   * Returns the id of the navigation with the given path or {@code null}, if
+   * the path cannot be resolved by the index.
+   *
+   * @param segments the navigation path, starting with the segment of the root navigation
+   */
+  @Nullable
+  String lookup(@NonNull List<String> segments) {
+    if (segments.isEmpty() || !segments.get(0).equals(rootSegment)) {
+      return null;
+    }
+    Node node = root;
+    for (int i = 1; i < segments.size() && node != null; i++) {
+      node = node.complete ? node.children.get(segments.get(i)) : null;
+    }
+    return node != null ? node.id : null;
+  }
+
+  /**
+   * Returns the number of navigations.
+   */
+  int size() {
+    return nodesById.size();
+  }
+
+  // --- building ---
+
+  /**
+   * Adds a child to the navigation with the given parent id.  The first
+   * child with a segment wins, like in a linear scan of the children.
+   *
+   * @return true if the child navigation has not been added before and its children must be added, too
+   */
+  boolean addChild(@NonNull String parentId, @NonNull String childId, @NonNull String segment) {
+    Node parent = nodesById.get(parentId);
+    if (parent == null || parent.children.containsKey(segment)) {
+      return false;
+    }
+    Node child = nodesById.get(childId);
+    boolean added = child == null;
+    if (added) {
+      child = new Node(childId);
+      nodesById.put(childId, child);
+    }
+    parent.children.put(segment, child);
+    return added;
+  }
+
+  /**
+   * Marks the navigation with the given id as not completely indexed, so that
+   * the paths through it are resolved by walking the navigation hierarchy.
+   */
+  void markIncomplete(@NonNull String id) {
+    Node node = nodesById.get(id);
+    if (node != null) {
+      node.complete = false;
+    }
+  }
+
+  // --- inner classes ---
+
+  private static final class Node {
+    private final String id;
+    private final Map<String, Node> children = new HashMap<>(4);
+    private boolean complete = true;
+
+    private Node(String id) {
+      this.id = id;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.coremedia.blueprint.cae.handlers;
+
+import com.coremedia.blueprint.common.contentbeans.CMNavigation;
+import com.coremedia.blueprint.common.navigation.Linkable;
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.cap.common.CapObjectDestroyedException;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentType;
+import com.coremedia.objectserver.beans.ContentBeanFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * {@link com.coremedia.cache.CacheKey} to compute the {@link NavigationSegmentsIndex} of a root navigation.
+ * <p>
+ * The index is built from the {@link CMNavigation#getChildren() children} of
+ * the navigation beans and their {@link CMNavigation#getSegment() segments},
+ * like the resolution by walking the navigation hierarchy, so the tree relation
+ * applies and invalid children are skipped.  The validation records the next
+ * change of validity with {@link Cache#cacheUntil(java.util.Date)}, so the
+ * index is recomputed when a child becomes valid or invalid.
+ * <p>
+ * The children of navigations of the given non indexed types, e.g. augmented
+ * commerce categories, depend on the store context of the request.  Therefore
+ * navigations with such a child, or with a child which is not a content bean,
+ * are marked as incomplete, and their paths are resolved by walking the
+ * navigation hierarchy.
+ */
+class NavigationSegmentsIndexCacheKey extends CacheKey<NavigationSegmentsIndex> {
+  private static final Logger LOG = LoggerFactory.getLogger(NavigationSegmentsIndexCacheKey.class);
+
+  private final Content rootNavigation;
+  private final ContentBeanFactory contentBeanFactory;
+  private final List<String> nonIndexedTypes;
+
+  /**
+   * @param nonIndexedTypes the names of navigation content types whose children are not part of the content
+   */
+  NavigationSegmentsIndexCacheKey(Content rootNavigation, ContentBeanFactory contentBeanFactory, List<String> nonIndexedTypes) {
+    this.rootNavigation = rootNavigation;
+    this.contentBeanFactory = contentBeanFactory;
+    this.nonIndexedTypes = nonIndexedTypes;
+  }
+
+  @Override
+  public NavigationSegmentsIndex evaluate(Cache cache) {
+    CMNavigation root = contentBeanFactory.createBeanFor(rootNavigation, CMNavigation.class);
+    if (root == null || root.getSegment() == null || isNonIndexed(rootNavigation)) {
+      return null;
+    }
+
+    NavigationSegmentsIndex index = new NavigationSegmentsIndex(rootNavigation.getId(), root.getSegment());
+    Deque<CMNavigation> queue = new ArrayDeque<>();
+    queue.add(root);
+    // breadth first, like the resolution of paths level by level
+    while (!queue.isEmpty()) {
+      CMNavigation navigation = queue.remove();
+      String navigationId = navigation.getContent().getId();
+      for (Linkable child : navigation.getChildren()) {
+        try {
+          if (!(child instanceof CMNavigation) || isNonIndexed(((CMNavigation) child).getContent())) {
+            index.markIncomplete(navigationId);
+            break;
+          }
+          CMNavigation childNavigation = (CMNavigation) child;
+          String segment = childNavigation.getSegment();
+          if (segment != null && index.addChild(navigationId, childNavigation.getContent().getId(), segment)) {
+            queue.add(childNavigation);
+          }
+        } catch (CapObjectDestroyedException e) {
+          LOG.debug("ignoring destroyed content '{}'", child, e);
+        }
+      }
+    }
+    LOG.debug("Indexed {} navigations below '{}'", index.size(), rootNavigation.getId());
+    return index;
+  }
+
+  private boolean isNonIndexed(Content content) {
+    ContentType type = content.getType();
+    return nonIndexedTypes.stream().anyMatch(type::isSubtypeOf);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    NavigationSegmentsIndexCacheKey that = (NavigationSegmentsIndexCacheKey) o;
+    return rootNavigation.equals(that.rootNavigation) && contentBeanFactory.equals(that.contentBeanFactory)
+            && nonIndexedTypes.equals(that.nonIndexedTypes);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * rootNavigation.hashCode() + contentBeanFactory.hashCode()) + nonIndexedTypes.hashCode();
+  }
+}
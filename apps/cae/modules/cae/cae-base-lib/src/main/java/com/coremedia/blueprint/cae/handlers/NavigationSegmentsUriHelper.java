@@ -20,6 +20,15 @@ import java.util.Map;
 import static java.util.stream.Collectors.toList;
 import static org.springframework.util.CollectionUtils.isEmpty;
 
+/**
+ * Maps navigations to navigation paths of segments and back.
+ * <p>
+ * Paths are built from the canonical {@link Navigation#getNavigationPathList() navigation path}.
+ * Outside of preview, they are parsed with a cached {@link NavigationSegmentsIndex}
+ * of the content navigation hierarchy per root navigation.  Paths which are
+ * not part of the index, e.g. paths through augmented commerce categories, are
+ * resolved by walking the navigation hierarchy.
+ */
 public class NavigationSegmentsUriHelper {
 
   public static final String SEGMENT_DELIM = "/";
@@ -28,6 +37,8 @@ public class NavigationSegmentsUriHelper {
   private SitesService sitesService;
   private Cache cache;
   private UrlPathFormattingHelper urlPathFormattingHelper;
+  private boolean previewMode = false;
+  private List<String> nonIndexedNavigationTypes = List.of("CMExternalChannel");
 
   // --- features ---------------------------------------------------
 
@@ -54,6 +65,14 @@ public class NavigationSegmentsUriHelper {
     Iterator<String> it = segments.iterator();
     Navigation navigation = lookupRootSegment(it.next());
 
+    if (!previewMode && navigation instanceof CMNavigation) {
+      NavigationSegmentsIndex index = lookupIndex(((CMNavigation) navigation).getContent());
+      String id = index != null ? index.lookup(segments) : null;
+      if (id != null) {
+        return contentBeanFactory.createBeanFor(((CMNavigation) navigation).getContent().getRepository().getContent(id), CMNavigation.class);
+      }
+    }
+
     // iterate over next segments and find the respective navigation child
     while (navigation != null && it.hasNext()) {
       navigation = childBySegment(navigation, it.next());
@@ -96,6 +115,14 @@ public class NavigationSegmentsUriHelper {
     return contentBeanFactory.createBeanFor(content, CMNavigation.class);
   }
 
+  @Nullable
+  private NavigationSegmentsIndex lookupIndex(@Nullable Content rootNavigation) {
+    if (rootNavigation == null) {
+      return null;
+    }
+    return cache.get(new NavigationSegmentsIndexCacheKey(rootNavigation, contentBeanFactory, nonIndexedNavigationTypes));
+  }
+
   // --- configuration ----------------------------------------------
 
   public void setContentBeanFactory(ContentBeanFactory contentBeanFactory) {
@@ -114,6 +141,23 @@ public class NavigationSegmentsUriHelper {
     this.urlPathFormattingHelper = urlPathFormattingHelper;
   }
 
+  /**
+   * In preview, the children of a navigation depend on the preview date of
+   * the request, so the navigation hierarchy is not indexed.
+   */
+  public void setPreviewMode(boolean previewMode) {
+    this.previewMode = previewMode;
+  }
+
+  /**
+   * Navigation content types whose children depend on more than the content,
+   * e.g. on the commerce system.  Paths through them are not indexed.
+   * Default is CMExternalChannel.
+   */
+  public void setNonIndexedNavigationTypes(List<String> nonIndexedNavigationTypes) {
+    this.nonIndexedNavigationTypes = List.copyOf(nonIndexedNavigationTypes);
+  }
+
   @PostConstruct
   protected void initialize() {
     if (cache == null) {
@@ -0,0 +1,651 @@
+package com.coremedia.blueprint.cae.handlers;
+
+import com.coremedia.cap.common.Blob;
+import com.google.common.hash.Hashing;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.activation.MimeType;
+import javax.activation.MimeTypeParseException;
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * A size bounded cache of transformed blobs on the local disk, as second
+ * level below the CAE cache.
+ * <p>
+ * After a restart of the CAE or after eviction from the CAE cache, a
+ * transformed image is read from disk instead of being transformed again.
+ * Concurrent requests for an image which is not cached yet wait for a single
+ * transformation.  Entries are identified by the content, the transformation,
+ * the dimensions, the extension and the ETag of the transformed blob, so they
+ * need no invalidation.  The least recently used entries are removed if the
+ * cache exceeds its capacity.  The file of a removed entry is deleted when the
+ * last reader has finished.  Blobs which are returned by the cache, but whose
+ * entry was removed before they were read, read the transformed blob instead.
+ * <p>
+ * The data of entries of up to {@link #setMemoryMaxSize(long) memoryMaxSize}
+ * bytes is also kept in memory, for the most recently used entries up to
+ * {@link #setMemoryCapacity(long) memoryCapacity} bytes.
+ * <p>
+ * Hits, misses, coalesced requests, the bytes read and written and the cached
+ * bytes are provided as metrics {@value #METRIC_PREFIX}*.
+ */
+public class TransformedBlobDiskCache implements MeterBinder {
+  private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
+
+  static final String METRIC_PREFIX = "cae.transformed.blob.disk.cache.";
+
+  private static final String FILE_SUFFIX = ".blob";
+
+  private File directory;
+  private long capacity = 2L * 1024 * 1024 * 1024;
+  private long memoryMaxSize = 512L * 1024;
+  private long memoryCapacity = 64L * 1024 * 1024;
+
+  // cached entries by key in LRU order, guarded by itself
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedBytes;
+  // data of hot entries by key in LRU order, guarded by itself
+  private final Map<String, byte[]> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+  private long memoryBytes;
+  private final ConcurrentMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+
+
+  // --- construct and configure ------------------------------------
+
+  public void setDirectory(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * The maximum number of bytes in the cache directory.
+   */
+  public void setCapacity(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * The data of entries up to this number of bytes is kept in memory.
+   * 0 disables the memory cache.
+   */
+  public void setMemoryMaxSize(long memoryMaxSize) {
+    this.memoryMaxSize = memoryMaxSize;
+  }
+
+  /**
+   * The maximum number of bytes of entry data which is kept in memory.
+   */
+  public void setMemoryCapacity(long memoryCapacity) {
+    this.memoryCapacity = memoryCapacity;
+  }
+
+  @PostConstruct
+  protected void initialize() {
+    if (directory == null) {
+      throw new IllegalStateException("Required property not set: directory");
+    }
+    try {
+      Files.createDirectories(directory.toPath());
+      // keep the entries of a previous run, that is the point of the disk cache
+      for (Path file : listOldestFirst(directory.toPath())) {
+        String fileName = file.getFileName().toString();
+        long fileSize = Files.size(file);
+        if (fileName.endsWith(FILE_SUFFIX) && fileSize <= Integer.MAX_VALUE) {
+          register(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()), new Entry(file, fileSize));
+        } else {
+          // incomplete file of an aborted transformation, or too large for Blob#getSize
+          Files.deleteIfExists(file);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot initialize transformed blob cache directory " + directory.getAbsolutePath(), e);
+    }
+    LOG.info("Caching transformed blobs in {} (capacity {} bytes, {} bytes from a previous run).",
+            directory.getAbsolutePath(), capacity, getCachedBytes());
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Returns the cached blob, or writes the given transformed blob to the
+   * cache first, which performs the transformation.  Blobs which are too
+   * large for {@link Blob#getSize()} are not cached, the transformed blob is
+   * returned instead.
+   *
+   * @param contentId the ID of the transformed content
+   * @param transformedBlob the transformed blob, not transformed yet
+   * @throws IOException if the blob cannot be read or cached
+   */
+  @NonNull
+  public Blob get(@NonNull String contentId,
+                  @NonNull String transformationName,
+                  int width,
+                  int height,
+                  @NonNull String extension,
+                  @NonNull Blob transformedBlob) throws IOException {
+    String eTag = transformedBlob.getETag();
+    String key = Hashing.sha256().hashString(
+            String.join("/", contentId, transformationName, String.valueOf(width), String.valueOf(height), extension, eTag),
+            StandardCharsets.UTF_8).toString();
+
+    Entry entry = lookup(key);
+    if (entry != null) {
+      hits.increment();
+      return new CachedBlob(key, entry, transformedBlob);
+    }
+
+    CompletableFuture<Entry> future = new CompletableFuture<>();
+    CompletableFuture<Entry> running = inFlight.putIfAbsent(key, future);
+    if (running != null) {
+      // another request transforms the same blob
+      coalesced.increment();
+      return cachedBlob(key, await(running), transformedBlob);
+    }
+    try {
+      entry = lookup(key);
+      if (entry == null) {
+        misses.increment();
+        entry = write(key, transformedBlob);
+      } else {
+        hits.increment();
+      }
+      future.complete(entry);
+      return cachedBlob(key, entry, transformedBlob);
+    } catch (IOException | RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+
+  // --- MeterBinder ------------------------------------------------
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(METRIC_PREFIX + "hits", hits, LongAdder::sum)
+            .description("The number of requests which read a cached transformed blob")
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "misses", misses, LongAdder::sum)
+            .description("The number of requests which transformed the blob and wrote it to the cache")
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "coalesced", coalesced, LongAdder::sum)
+            .description("The number of requests which waited for the transformation of another request")
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "bytes.written", bytesWritten, LongAdder::sum)
+            .baseUnit("bytes")
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "bytes.read", bytesRead, LongAdder::sum)
+            .baseUnit("bytes")
+            .register(registry);
+    Gauge.builder(METRIC_PREFIX + "size", this, TransformedBlobDiskCache::getCachedBytes)
+            .description("The number of bytes in the cache directory")
+            .baseUnit("bytes")
+            .register(registry);
+    Gauge.builder(METRIC_PREFIX + "memory.size", this, TransformedBlobDiskCache::getMemoryBytes)
+            .description("The number of bytes of entry data which are kept in memory")
+            .baseUnit("bytes")
+            .register(registry);
+  }
+
+  long getHits() {
+    return hits.sum();
+  }
+
+  long getMisses() {
+    return misses.sum();
+  }
+
+  long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  long getCachedBytes() {
+    synchronized (entries) {
+      return cachedBytes;
+    }
+  }
+
+  long getMemoryBytes() {
+    synchronized (memoryEntries) {
+      return memoryBytes;
+    }
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  @Nullable
+  private Entry lookup(String key) {
+    synchronized (entries) {
+      return entries.get(key);
+    }
+  }
+
+  private Blob cachedBlob(String key, @Nullable Entry entry, Blob transformedBlob) {
+    return entry == null ? transformedBlob : new CachedBlob(key, entry, transformedBlob);
+  }
+
+  @Nullable
+  private static Entry await(CompletableFuture<Entry> running) throws IOException {
+    try {
+      return running.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Write the content type and the data of the blob to a file of the cache.
+   *
+   * @return the new entry, or null if the blob is too large to be cached
+   */
+  @Nullable
+  private Entry write(String key, Blob transformedBlob) throws IOException {
+    Path file = directory.toPath().resolve(key + FILE_SUFFIX);
+    Path tmpFile = Files.createTempFile(directory.toPath(), key, ".tmp");
+    long fileSize;
+    try {
+      try (InputStream in = transformedBlob.getInputStream();
+           DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmpFile))) {
+        MimeType contentType = transformedBlob.getContentType();
+        out.writeUTF(contentType == null ? "" : contentType.toString());
+        in.transferTo(out);
+      }
+      fileSize = Files.size(tmpFile);
+      if (fileSize > Integer.MAX_VALUE) {
+        LOG.warn("Transformed blob {} is too large to be cached ({} bytes).", key, fileSize);
+        return null;
+      }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+    Entry entry = new Entry(file, fileSize);
+    bytesWritten.add(fileSize);
+    register(key, entry);
+    return entry;
+  }
+
+  private void register(String key, Entry entry) {
+    synchronized (entries) {
+      Entry previous = entries.put(key, entry);
+      cachedBytes += entry.fileSize - (previous == null ? 0 : previous.fileSize);
+      Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+      while (cachedBytes > capacity && eldest.hasNext()) {
+        Map.Entry<String, Entry> evicted = eldest.next();
+        if (evicted.getKey().equals(key)) {
+          continue;
+        }
+        eldest.remove();
+        cachedBytes -= evicted.getValue().fileSize;
+        removeFromMemory(evicted.getKey());
+        // deleted now or when the last reader has finished
+        evicted.getValue().evict();
+      }
+    }
+  }
+
+  /**
+   * Returns the data of a hot entry from memory, or reads it into memory if
+   * it is small enough.  Returns null if the entry data is not kept in memory,
+   * or if the entry has been removed.
+   */
+  @Nullable
+  private byte[] fromMemory(String key, Entry entry) throws IOException {
+    if (entry.fileSize > memoryMaxSize || entry.fileSize > memoryCapacity) {
+      return null;
+    }
+    synchronized (memoryEntries) {
+      byte[] data = memoryEntries.get(key);
+      if (data != null) {
+        return data;
+      }
+    }
+    if (!entry.acquire()) {
+      return null;
+    }
+    byte[] data;
+    try (InputStream in = Files.newInputStream(entry.file)) {
+      byte[] file = in.readAllBytes();
+      data = Arrays.copyOfRange(file, entry.getHeaderSize(), file.length);
+    } finally {
+      entry.release();
+    }
+    // the data of a key never changes, so it may be kept even if the entry has been removed meanwhile
+    synchronized (memoryEntries) {
+      byte[] previous = memoryEntries.put(key, data);
+      memoryBytes += data.length - (previous == null ? 0 : previous.length);
+      Iterator<byte[]> eldest = memoryEntries.values().iterator();
+      while (memoryBytes > memoryCapacity && eldest.hasNext()) {
+        memoryBytes -= eldest.next().length;
+        eldest.remove();
+      }
+    }
+    return data;
+  }
+
+  private void removeFromMemory(String key) {
+    synchronized (memoryEntries) {
+      byte[] data = memoryEntries.remove(key);
+      if (data != null) {
+        memoryBytes -= data.length;
+      }
+    }
+  }
+
+  private static List<Path> listOldestFirst(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+              .sorted(Comparator.comparingLong(TransformedBlobDiskCache::lastModified))
+              .collect(Collectors.toList());
+    }
+  }
+
+  private static long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+
+  // --- inner classes ----------------------------------------------
+
+  /**
+   * A cached file, with the content type in front of the data.
+   * <p>
+   * Readers {@link #acquire() acquire} the entry before they open the file
+   * and {@link #release() release} it when they are done, so that the file of
+   * an {@link #evict() evicted} entry is deleted only when no reader holds it.
+   */
+  private static final class Entry {
+    private final Path file;
+    private final long fileSize;
+    private volatile MimeType contentType;
+    private volatile int headerSize = -1;
+
+    // guarded by this
+    private int readers;
+    private boolean evicted;
+
+    private Entry(Path file, long fileSize) {
+      this.file = file;
+      this.fileSize = fileSize;
+    }
+
+    /**
+     * Returns false if the entry has been evicted, and the file must not be read.
+     */
+    private synchronized boolean acquire() {
+      if (evicted) {
+        return false;
+      }
+      readers++;
+      return true;
+    }
+
+    private void release() {
+      boolean delete;
+      synchronized (this) {
+        readers--;
+        delete = evicted && readers == 0;
+      }
+      if (delete) {
+        delete();
+      }
+    }
+
+    private void evict() {
+      boolean delete;
+      synchronized (this) {
+        evicted = true;
+        delete = readers == 0;
+      }
+      if (delete) {
+        delete();
+      }
+    }
+
+    private void delete() {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        LOG.warn("Cannot delete cached transformed blob {}: {}", file, e.getMessage());
+      }
+    }
+
+    /**
+     * Must only be called while the entry is acquired, unless the header has been read.
+     */
+    private int getHeaderSize() throws IOException {
+      readHeader();
+      return headerSize;
+    }
+
+    private boolean isHeaderRead() {
+      return headerSize >= 0;
+    }
+
+    private void readHeader() throws IOException {
+      if (isHeaderRead()) {
+        return;
+      }
+      try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+        String type = in.readUTF();
+        try {
+          contentType = type.isEmpty() ? null : new MimeType(type);
+        } catch (MimeTypeParseException e) {
+          LOG.warn("Invalid content type {} of cached transformed blob {}.", type, file);
+        }
+        // modified UTF-8 with unsigned short length, see DataOutputStream#writeUTF
+        headerSize = 2 + type.getBytes(StandardCharsets.UTF_8).length;
+      }
+    }
+  }
+
+  /**
+   * A transformed blob which is read from the cache, or from the transformed
+   * blob if the entry has been removed in the meantime.
+   */
+  private final class CachedBlob implements Blob {
+    private final String key;
+    private final Entry entry;
+    private final Blob transformedBlob;
+
+    private CachedBlob(String key, Entry entry, Blob transformedBlob) {
+      this.key = key;
+      this.entry = entry;
+      this.transformedBlob = transformedBlob;
+    }
+
+    @Override
+    public MimeType getContentType() {
+      return readHeader() ? entry.contentType : transformedBlob.getContentType();
+    }
+
+    @Override
+    public int getSize() {
+      // entries which exceed an int are not cached
+      return readHeader() ? Math.toIntExact(entry.fileSize - entry.headerSize) : transformedBlob.getSize();
+    }
+
+    @Override
+    public String getETag() {
+      return transformedBlob.getETag();
+    }
+
+    @Override
+    public void writeOn(OutputStream out) throws IOException {
+      byte[] data = fromMemory(key, entry);
+      if (data != null) {
+        bytesRead.add(data.length);
+        out.write(data);
+        return;
+      }
+      if (!entry.acquire()) {
+        transformedBlob.writeOn(out);
+        return;
+      }
+      try (FileChannel in = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+        long position = entry.getHeaderSize();
+        long end = in.size();
+        while (position < end) {
+          long transferred = in.transferTo(position, end - position, Channels.newChannel(out));
+          if (transferred <= 0) {
+            throw new IOException("Cached transformed blob " + entry.file + " is shorter than expected.");
+          }
+          position += transferred;
+        }
+        bytesRead.add(end - entry.getHeaderSize());
+      } finally {
+        entry.release();
+      }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      try {
+        byte[] data = fromMemory(key, entry);
+        if (data != null) {
+          bytesRead.add(data.length);
+          return new ByteArrayInputStream(data);
+        }
+        if (!entry.acquire()) {
+          return transformedBlob.getInputStream();
+        }
+        try {
+          FileChannel in = FileChannel.open(entry.file, StandardOpenOption.READ);
+          in.position(entry.getHeaderSize());
+          bytesRead.add(entry.fileSize - entry.getHeaderSize());
+          return new ReleasingInputStream(Channels.newInputStream(in), entry);
+        } catch (IOException | RuntimeException e) {
+          entry.release();
+          throw e;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Cannot read cached transformed blob " + entry.file, e);
+      }
+    }
+
+    @Override
+    public byte[] asBytes() {
+      try (InputStream in = getInputStream()) {
+        return in.readAllBytes();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Cannot read cached transformed blob " + entry.file, e);
+      }
+    }
+
+    @Override
+    public void dispose() {
+      // nothing to release, readers release the entry when they are done
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "[file=" + entry.file + ", eTag=" + getETag() + ']';
+    }
+
+    /**
+     * Reads the header of the entry, returns false if the entry has been removed.
+     */
+    private boolean readHeader() {
+      if (entry.isHeaderRead()) {
+        return true;
+      }
+      if (!entry.acquire()) {
+        return false;
+      }
+      try {
+        entry.readHeader();
+        return true;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Cannot read cached transformed blob " + entry.file, e);
+      } finally {
+        entry.release();
+      }
+    }
+  }
+
+  /**
+   * Releases the entry when the stream is closed.
+   */
+  private static final class ReleasingInputStream extends FilterInputStream {
+    private final Entry entry;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private ReleasingInputStream(InputStream in, Entry entry) {
+      super(in);
+      this.entry = entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (released.compareAndSet(false, true)) {
+          entry.release();
+        }
+      }
+    }
+  }
+}
@@ -28,6 +28,7 @@ import org.springframework.web.servlet.ModelAndView;
 import javax.activation.MimeType;
 import javax.activation.MimeTypeParseException;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -78,6 +79,7 @@ public class TransformedBlobHandler extends HandlerBase {
 
   private SecureHashCodeGeneratorStrategy secureHashCodeGeneratorStrategy;
   private TransformImageService transformImageService;
+  private TransformedBlobDiskCache transformedBlobDiskCache;
 
   public void setValidationService(ValidationService<ContentBean> validationService) {
     this.validationService = validationService;
@@ -91,6 +93,13 @@ public class TransformedBlobHandler extends HandlerBase {
     this.transformImageService = transformImageService;
   }
 
+  /**
+   * Optional, caches transformed blobs on the local disk.
+   */
+  public void setTransformedBlobDiskCache(TransformedBlobDiskCache transformedBlobDiskCache) {
+    this.transformedBlobDiskCache = transformedBlobDiskCache;
+  }
+
   @Override
   protected void initialize() {
     super.initialize();
@@ -160,7 +169,7 @@ public class TransformedBlobHandler extends HandlerBase {
           }
         }
 
-        return HandlerHelper.createModel(transformedBlob);
+        return HandlerHelper.createModel(diskCached(media, transformationName, extension, width, height, transformedBlob));
       }
     }
 
@@ -252,6 +261,26 @@ public class TransformedBlobHandler extends HandlerBase {
     }
   }
 
+  /**
+   * Returns the transformed blob from the disk cache, if configured.
+   * The blob is transformed only if it is not cached yet.
+   */
+  @NonNull
+  private Blob diskCached(CMMedia media, String transformName, String extension, Integer width, Integer height, Blob transformedBlob) {
+    if (transformedBlobDiskCache == null || transformedBlob.getETag() == null) {
+      return transformedBlob;
+    }
+    try {
+      return transformedBlobDiskCache.get(media.getContent().getId(), transformName, width, height, extension, transformedBlob);
+    } catch (IOException e) {
+      LOG.warn("Cannot cache transformed blob of {}, transformation {}, width {}, height {}: {}",
+              media.getContent().getId(), transformName, width, height, e.getMessage());
+      return transformedBlob;
+    } catch (Exception e) {
+      throw new BlobTransformationException("Transformation of blob " + media.getContent().getId() + "#" + CMMedia.DATA + ", transformation " + transformName + ", width " + width + ", height " + height + " failed", e);
+    }
+  }
+
   private String getName(CapBlobRef o) {
     if (o.getCapObject().isContentObject() && ((ContentObject) o.getCapObject()).isContent()) {
       String contentName = ((Content) o.getCapObject()).getName();
@@ -45,11 +45,20 @@ public class AppendClassToElementFilter extends Filter implements FilterFactory
    */
   @Override
   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-    AttributesImpl attributes = new AttributesImpl(atts);
-    if (StringUtils.isNotEmpty(qName) && elementList.containsKey(qName)) {
+    // Only copy the attributes of elements to modify, most elements are passed as is.
+    if (appliesTo(qName)) {
+      AttributesImpl attributes = new AttributesImpl(atts);
       modifyAttributes(qName, attributes);
+      atts = attributes;
     }
-    super.startElement(uri, localName, qName, attributes);
+    super.startElement(uri, localName, qName, atts);
+  }
+
+  /**
+   * Returns true if a class is appended to elements with the given name.
+   */
+  boolean appliesTo(String qName) {
+    return StringUtils.isNotEmpty(qName) && elementList.containsKey(qName);
   }
 
   void modifyAttributes(String qName, AttributesImpl attributes) {
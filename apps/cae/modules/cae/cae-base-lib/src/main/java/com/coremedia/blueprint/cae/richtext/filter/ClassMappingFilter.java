@@ -0,0 +1,115 @@
+package com.coremedia.blueprint.cae.richtext.filter;
+
+import com.coremedia.xml.Filter;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * Applies a {@link ReservedClassToElementFilter}, an {@link AppendClassToElementFilter}
+ * and, optionally, the {@link UnsurroundFilter} in one pass, with the same
+ * output as a chain of these filters in this order.
+ * <p>
+ * Each event passes one filter instead of three.  The open elements are kept
+ * in one array, which holds the HTML element names of mapped elements, instead
+ * of a stack entry per element and filter.  Elements are only copied if their
+ * attributes are changed.
+ */
+public class ClassMappingFilter extends Filter implements FilterFactory {
+  private static final int INITIAL_DEPTH = 16;
+
+  private final ReservedClassToElementFilter reservedClassToElementFilter;
+  private final AppendClassToElementFilter appendClassToElementFilter;
+  private final boolean unsurround;
+
+  /**
+   * The HTML element names of the open elements, or null for elements which are not mapped.
+   */
+  private String[] mappedNames = new String[INITIAL_DEPTH];
+  private int depth = 0;
+  private int divCount = 0;
+
+  /**
+   * @param reservedClassToElementFilter the mappings of marker classes to HTML elements
+   * @param appendClassToElementFilter   the classes to append to HTML elements
+   * @param unsurround                   whether to remove the surrounding div like the {@link UnsurroundFilter}
+   */
+  public ClassMappingFilter(@NonNull ReservedClassToElementFilter reservedClassToElementFilter,
+                            @NonNull AppendClassToElementFilter appendClassToElementFilter,
+                            boolean unsurround) {
+    this.reservedClassToElementFilter = reservedClassToElementFilter;
+    this.appendClassToElementFilter = appendClassToElementFilter;
+    this.unsurround = unsurround;
+  }
+
+  @Override
+  public ClassMappingFilter getInstance(HttpServletRequest request, HttpServletResponse response) {
+    return new ClassMappingFilter(reservedClassToElementFilter, appendClassToElementFilter, unsurround);
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    String mappedName = null;
+    ReservedClassToElementFilter.MappedElement mappedElement = reservedClassToElementFilter.map(uri, localName, qName, atts);
+    if (mappedElement != null) {
+      mappedName = mappedElement.getName();
+      atts = mappedElement.getAttributes();
+    }
+    if (depth == mappedNames.length) {
+      mappedNames = Arrays.copyOf(mappedNames, depth * 2);
+    }
+    mappedNames[depth++] = mappedName;
+
+    String name = mappedName != null ? mappedName : qName;
+    if (appendClassToElementFilter.appliesTo(name)) {
+      AttributesImpl attributes = new AttributesImpl(atts);
+      appendClassToElementFilter.modifyAttributes(name, attributes);
+      atts = attributes;
+    }
+
+    // Ignore first div
+    if (unsurround && isDiv(name) && divCount++ == 0) {
+      return;
+    }
+    if (mappedName != null) {
+      // We are heading towards HTML. No namespace URI to add.
+      super.startElement("", mappedName, mappedName, atts);
+    } else {
+      super.startElement(uri, localName, qName, atts);
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    if (depth == 0) {
+      throw new SAXException(format("Unexpected state: More elements ended than started. Element requested to end: [uri=%s, localName=%s, qName=%s].", uri, localName, qName));
+    }
+    String mappedName = mappedNames[--depth];
+    mappedNames[depth] = null;
+
+    String name = mappedName != null ? mappedName : qName;
+    // Ignore first div
+    if (unsurround && isDiv(name) && --divCount == 0) {
+      return;
+    }
+    if (mappedName != null) {
+      super.endElement("", mappedName, mappedName);
+    } else {
+      super.endElement(uri, localName, qName);
+    }
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  private static boolean isDiv(String qName) {
+    return "div".equals(qName);
+  }
+}
@@ -16,6 +16,11 @@ import java.util.List;
  * addition, lets you add custom filter factories before and after the default ones. All
  * filter factories in <code>xmlFilters</code> will be executed after the default filters, all filters in
  * <code>xmlFiltersBeforeUriFormatter</code> will be executed before the default filters.
+ * <p>
+ * The filters are created per render, since they keep per-render state like
+ * element stacks, and rich text of embedded content is rendered with its own
+ * filters on the same thread.  Their output is not cached, since it depends on
+ * the request dependent link formatting.
  */
 public class ConfigurableRichtextToHtmlFilterFactory extends RichtextToHtmlFilterFactory {
 
@@ -19,12 +19,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import static com.coremedia.blueprint.cae.richtext.filter.SaxAttributes.classAttribute;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static java.lang.String.format;
 import static java.lang.invoke.MethodHandles.lookup;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -71,9 +71,13 @@ public class ReservedClassToElementFilter extends Filter implements FilterFactor
    *   markerClass: elementNameHtml,
    * }
    * }</pre>
+   * <p>
+   * The mappings are not modified after construction and thus shared with all
+   * instances created by {@link #getInstance(HttpServletRequest, HttpServletResponse)}.
+   * </p>
    */
   @NonNull
-  private final Map<String, Map<String, String>> parsedMappingConfig = new HashMap<>();
+  private final Map<String, Map<String, String>> parsedMappingConfig;
   /**
    * <p>
    * Active mappings, where the last activated mapping is at the
@@ -101,15 +105,13 @@ public class ReservedClassToElementFilter extends Filter implements FilterFactor
   private Locator locator;
 
   /**
-   * Copy constructor, which copies the configuration, not the processing state.
+   * Copy constructor, which shares the configuration, not the processing state.
    *
    * @param original original filter to copy
    */
   @VisibleForTesting
   ReservedClassToElementFilter(@NonNull ReservedClassToElementFilter original) {
-    original.parsedMappingConfig.forEach(
-            (rtElement, classToHtmlElement) -> parsedMappingConfig.put(rtElement, new HashMap<>(classToHtmlElement))
-    );
+    parsedMappingConfig = original.parsedMappingConfig;
     locator = null;
   }
 
@@ -125,17 +127,20 @@ public class ReservedClassToElementFilter extends Filter implements FilterFactor
    * @param configurations mapping configurations
    */
   public ReservedClassToElementFilter(@NonNull Iterable<? extends ReservedClassToElementConfig> configurations) {
+    Map<String, Map<String, String>> mappings = new HashMap<>();
     for (ReservedClassToElementConfig configuration : configurations) {
       String elementNameRichText = configuration.getElementNameRichText();
       String markerClass = configuration.getMarkerClass();
       String elementNameHtml = configuration.getElementNameHtml();
 
-      parsedMappingConfig.merge(
+      mappings.merge(
               elementNameRichText,
               // Must be mutable for further processing.
               new HashMap<>(Map.of(markerClass, elementNameHtml)),
               (previousMapping, newMapping) -> mergeClassToHtmlElementMappings(elementNameRichText, previousMapping, newMapping));
     }
+    mappings.replaceAll((elementNameRichText, classToHtmlElement) -> unmodifiableMap(classToHtmlElement));
+    parsedMappingConfig = unmodifiableMap(mappings);
 
     if (LOG.isDebugEnabled()) {
       LOG.debug(describeMappings());
@@ -254,37 +259,65 @@ public class ReservedClassToElementFilter extends Filter implements FilterFactor
 
     activeMappings.push(activeMapping);
 
-    Map<String, String> classToHtmlElement = parsedMappingConfig.get(qName);
+    MappedElement mappedElement = map(uri, localName, qName, attributes);
 
     // No mapping? Just proceed.
-    if (classToHtmlElement == null) {
+    if (mappedElement == null) {
       activeMapping.startElement(attributes);
       return;
     }
 
+    // We are heading towards HTML. No namespace URI to add.
+    activeMapping.overrideElement("", mappedElement.getName(), mappedElement.getName());
+
+    activeMapping.startElement(mappedElement.getAttributes());
+  }
+
+  /**
+   * Maps the given rich text element to an HTML element, if it has a
+   * configured marker class.
+   *
+   * @param uri        The element's Namespace URI, or the empty string.
+   * @param localName  The element's local name, or the empty string.
+   * @param qName      The element's qualified (prefixed) name, or the empty
+   *                   string.
+   * @param attributes The element's attributes.
+   * @return the HTML element with the attributes without the marker classes,
+   * or {@code null} if no mapping applies
+   */
+  @Nullable
+  MappedElement map(String uri, String localName, String qName, Attributes attributes) {
+    Map<String, String> classToHtmlElement = parsedMappingConfig.get(qName);
+
+    if (classToHtmlElement == null) {
+      return null;
+    }
+
     Optional<SaxAttribute> optionalClassAttribute = classAttribute(attributes);
 
     // No class attribute, thus, no relevant mapping to check.
     if (optionalClassAttribute.isEmpty()) {
-      activeMapping.startElement(attributes);
-      return;
+      return null;
     }
 
     SaxAttribute classAttribute = optionalClassAttribute.get();
 
     List<String> allClasses = classAttribute.getDistinctValues();
-    List<String> classNamesToHandle = allClasses.stream()
-            .filter(classToHtmlElement::containsKey)
-            .distinct()
-            .collect(Collectors.toCollection(ArrayList::new));
+    // Values are distinct already. Avoid a stream pipeline per element, as
+    // this is called for each element of possibly long rich texts.
+    List<String> classNamesToHandle = new ArrayList<>(1);
+    for (String className : allClasses) {
+      if (classToHtmlElement.containsKey(className)) {
+        classNamesToHandle.add(className);
+      }
+    }
 
     // No relevant class attributes, thus, no relevant mapping to check.
     if (classNamesToHandle.isEmpty()) {
-      activeMapping.startElement(attributes);
-      return;
+      return null;
     }
 
-    String firstMatchedClassName = classNamesToHandle.stream().findFirst().orElseThrow();
+    String firstMatchedClassName = classNamesToHandle.get(0);
     // We will ignore any classes mapped here when starting the element.
     allClasses.removeAll(classNamesToHandle);
     // If not empty, classNamesToHandle now contains ambiguous mappings.
@@ -297,13 +330,7 @@ public class ReservedClassToElementFilter extends Filter implements FilterFactor
               classNamesToHandle);
     }
 
-    Attributes newAttributes = classAttribute.withOverriddenValues(allClasses);
-    String newName = classToHtmlElement.get(firstMatchedClassName);
-
-    // We are heading towards HTML. No namespace URI to add.
-    activeMapping.overrideElement("", newName, newName);
-
-    activeMapping.startElement(newAttributes);
+    return new MappedElement(classToHtmlElement.get(firstMatchedClassName), classAttribute.withOverriddenValues(allClasses));
   }
 
   /**
@@ -352,6 +379,31 @@ public class ReservedClassToElementFilter extends Filter implements FilterFactor
             .toString();
   }
 
+  /**
+   * An HTML element which a rich text element is mapped to.
+   */
+  static final class MappedElement {
+    @NonNull
+    private final String name;
+    @NonNull
+    private final Attributes attributes;
+
+    private MappedElement(@NonNull String name, @NonNull Attributes attributes) {
+      this.name = name;
+      this.attributes = attributes;
+    }
+
+    @NonNull
+    String getName() {
+      return name;
+    }
+
+    @NonNull
+    Attributes getAttributes() {
+      return attributes;
+    }
+  }
+
   /**
    * Represents a possible mapped element. If no configured mapping exists for
    * tuple {@code <richTextElement, classValue>}, but the given
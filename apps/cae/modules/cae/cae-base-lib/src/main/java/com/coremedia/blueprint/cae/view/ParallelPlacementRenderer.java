@@ -0,0 +1,548 @@
+package com.coremedia.blueprint.cae.view;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.objectserver.view.ViewUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders independent page grid placements concurrently.
+ * <p>
+ * Each placement is rendered into a separate buffer, and the buffers are
+ * returned in the order of the placements, so that templates can write them
+ * one after another.  The first placement is rendered on the request thread
+ * while the others are rendered by the executor.
+ * <p>
+ * The workers see a snapshot of the request attributes, which is taken on the
+ * request thread.  Attributes which are set or removed while a placement is
+ * rendered are only visible to this placement, and changes of the status,
+ * content type, headers and cookies are buffered and applied to the response
+ * by the request thread when the rendering is used, in the order of the
+ * placements.  So the workers never modify the request or the response,
+ * and a worker which is abandoned cannot interfere with the request thread.
+ * The request bound to the thread, e.g. for the current context and navigation,
+ * and the locale are propagated to the workers.  Further thread bound state,
+ * like the store context, can be propagated by {@link TaskDecorator}s.
+ * <p>
+ * Placements which are rejected by the executor, fail or are not rendered
+ * within the timeout are cancelled and rendered again on the request thread,
+ * so that the usual error handling applies.
+ * <p>
+ * Dependencies are tracked per thread by the CoreMedia cache.  Placements
+ * which are rendered while a cache key is evaluated, e.g. for a cached
+ * fragment, are therefore always rendered sequentially on the request
+ * thread, so that the cached value depends on everything they have read.
+ * <p>
+ * The parallel renderings, the fallbacks to the request thread and the
+ * timeouts are provided as metrics {@value #METRIC_PREFIX}*.
+ */
+public class ParallelPlacementRenderer implements MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelPlacementRenderer.class);
+
+  static final String METRIC_PREFIX = "cae.parallel.placement.renderer.";
+
+  private Executor executor;
+  private List<TaskDecorator> taskDecorators = Collections.emptyList();
+  private long timeoutMillis = 10_000;
+  private int minPlacements = 2;
+
+  private final LongAdder parallelRenderings = new LongAdder();
+  private final LongAdder fallbackRenderings = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+
+
+  // --- configuration ----------------------------------------------
+
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Decorators which propagate further thread bound state to the workers.
+   * They are applied after the request has been bound to the worker.
+   */
+  public void setTaskDecorators(List<TaskDecorator> taskDecorators) {
+    this.taskDecorators = List.copyOf(taskDecorators);
+  }
+
+  /**
+   * The time to wait for a placement before it is rendered on the request thread.
+   */
+  public void setTimeoutMillis(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Rows with fewer placements are rendered sequentially.
+   */
+  public void setMinPlacements(int minPlacements) {
+    this.minPlacements = minPlacements;
+  }
+
+  @PostConstruct
+  void initialize() {
+    if (executor == null) {
+      throw new IllegalStateException("Required property not set: executor");
+    }
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Render the placements with the given view.
+   *
+   * @return the rendered placements in the order of the given placements,
+   * or null if the placements should be rendered sequentially by the template
+   */
+  @Nullable
+  public List<String> render(@NonNull List<?> placements,
+                             @Nullable String view,
+                             @NonNull HttpServletRequest request,
+                             @NonNull HttpServletResponse response) {
+    if (placements.size() < Math.max(2, minPlacements) || isEvaluatingCacheKey()) {
+      return null;
+    }
+    List<Rendering<String>> renderings = new ArrayList<>(placements.size());
+    for (Object placement : placements) {
+      renderings.add(new Rendering<>() {
+        @NonNull
+        @Override
+        public String render(@NonNull HttpServletRequest workerRequest, @NonNull HttpServletResponse workerResponse) {
+          return ParallelPlacementRenderer.render(placement, view, workerRequest, workerResponse);
+        }
+
+        @Override
+        public String toString() {
+          return String.valueOf(placement);
+        }
+      });
+    }
+    return renderAll(renderings, request, response);
+  }
+
+  /**
+   * Perform the given renderings concurrently, like placements.
+   * <p>
+   * Each rendering gets its own view of the request attributes and must not
+   * write to the response.  If a cache key is being evaluated, the renderings
+   * are performed sequentially on the request thread.  A rendering which fails
+   * or times out is performed again on the request thread, so renderings must
+   * return their results instead of writing them to shared state.
+   *
+   * @return the results in the order of the given renderings
+   */
+  @NonNull
+  public <T> List<T> renderAll(@NonNull List<? extends Rendering<T>> renderings,
+                               @NonNull HttpServletRequest request,
+                               @NonNull HttpServletResponse response) {
+    if (renderings.size() < 2 || isEvaluatingCacheKey()) {
+      List<T> result = new ArrayList<>(renderings.size());
+      for (Rendering<T> rendering : renderings) {
+        result.add(rendering.render(request, response));
+      }
+      return result;
+    }
+    parallelRenderings.increment();
+
+    List<Task<T>> tasks = new ArrayList<>(renderings.size());
+    for (Rendering<T> rendering : renderings) {
+      // the snapshots of the request attributes are taken on the request thread
+      tasks.add(new Task<>(rendering, new WorkerRequest(request), new WorkerResponse(response)));
+    }
+    for (Task<T> task : tasks.subList(1, tasks.size())) {
+      submit(task);
+    }
+    // meanwhile, the first rendering is performed on the request thread
+    decorate(tasks.get(0)).run();
+
+    List<T> result = new ArrayList<>(renderings.size());
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    try {
+      for (Task<T> task : tasks) {
+        T rendered = await(task, deadline);
+        if (rendered != null) {
+          applyChanges(task);
+        } else {
+          fallbackRenderings.increment();
+          rendered = task.rendering.render(request, response);
+        }
+        result.add(rendered);
+      }
+    } finally {
+      // abandon the remaining workers if the request thread fails
+      tasks.forEach(task -> task.future.cancel(true));
+    }
+    return result;
+  }
+
+  // --- MeterBinder ------------------------------------------------
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(METRIC_PREFIX + "parallel", parallelRenderings, LongAdder::sum)
+            .description("The number of rows and batches which have been rendered in parallel")
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "fallbacks", fallbackRenderings, LongAdder::sum)
+            .description("The number of placements which have been rendered again on the request thread")
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "timeouts", timeouts, LongAdder::sum)
+            .description("The number of placements which have not been rendered within the timeout")
+            .register(registry);
+  }
+
+  long getParallelRenderings() {
+    return parallelRenderings.sum();
+  }
+
+  long getFallbackRenderings() {
+    return fallbackRenderings.sum();
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  /**
+   * Whether the current thread evaluates a cache key, whose dependencies
+   * would not be tracked for renderings on other threads.
+   */
+  private static boolean isEvaluatingCacheKey() {
+    return Cache.currentCache() != null;
+  }
+
+  private static void applyChanges(@NonNull Task<?> task) {
+    try {
+      task.response.applyChanges();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot apply the response changes of placement " + task.rendering, e);
+    }
+  }
+
+  private void submit(@NonNull Task<?> task) {
+    try {
+      executor.execute(decorate(task));
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Rendering of placement {} rejected, rendering it on the request thread.", task.rendering);
+      task.future.cancel(false);
+    }
+  }
+
+  /**
+   * Bind the request scope of the worker and apply the task decorators.
+   * The decorators are invoked on the request thread, so they can capture its state.
+   */
+  @NonNull
+  private Runnable decorate(@NonNull Task<?> task) {
+    Runnable decorated = task.future;
+    // applied in reverse order, so that the first decorator is the outermost one
+    for (int i = taskDecorators.size() - 1; i >= 0; i--) {
+      decorated = taskDecorators.get(i).decorate(decorated);
+    }
+    return bindRequestScope(decorated, task.request, task.response);
+  }
+
+  @NonNull
+  private static Runnable bindRequestScope(@NonNull Runnable task,
+                                           @NonNull HttpServletRequest workerRequest,
+                                           @NonNull HttpServletResponse workerResponse) {
+    LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+    return () -> {
+      // restored afterwards, since the first placement is rendered on the request thread
+      RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+      LocaleContext previousLocaleContext = LocaleContextHolder.getLocaleContext();
+      RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(workerRequest, workerResponse));
+      LocaleContextHolder.setLocaleContext(localeContext);
+      try {
+        task.run();
+      } finally {
+        LocaleContextHolder.setLocaleContext(previousLocaleContext);
+        RequestContextHolder.setRequestAttributes(previousAttributes);
+      }
+    };
+  }
+
+  /**
+   * Wait for the task until the deadline, and cancel it if it does not succeed.
+   *
+   * @return the rendering, or null if it must be rendered on the request thread
+   */
+  @Nullable
+  private <T> T await(@NonNull Task<T> task, long deadline) {
+    if (task.future.isCancelled()) {
+      return null;
+    }
+    try {
+      return task.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while rendering placement " + task.rendering, e);
+    } catch (ExecutionException e) {
+      LOG.debug("Rendering of placement {} failed, rendering it on the request thread.", task.rendering, e.getCause());
+    } catch (TimeoutException e) {
+      LOG.warn("Rendering of placement {} exceeded {} ms, rendering it on the request thread.", task.rendering, timeoutMillis);
+      timeouts.increment();
+      task.future.cancel(true);
+    } catch (CancellationException e) {
+      LOG.debug("Rendering of placement {} cancelled, rendering it on the request thread.", task.rendering);
+    }
+    return null;
+  }
+
+  @NonNull
+  private static String render(@NonNull Object placement,
+                               @Nullable String view,
+                               @NonNull HttpServletRequest request,
+                               @NonNull HttpServletResponse response) {
+    StringWriter out = new StringWriter();
+    ViewUtils.render(placement, view, out, request, response);
+    return out.toString();
+  }
+
+
+  // --- inner classes ----------------------------------------------
+
+  /**
+   * A rendering which can be performed by {@link #renderAll(List, HttpServletRequest, HttpServletResponse)}.
+   */
+  @FunctionalInterface
+  public interface Rendering<T> {
+    /**
+     * Render, e.g. to a string.
+     *
+     * @param request  the request, with attributes isolated from the other renderings
+     * @param response the response, which must not be written to
+     */
+    @NonNull
+    T render(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response);
+  }
+
+  /**
+   * A rendering together with the request and response of its worker.
+   */
+  private static final class Task<T> {
+    private final Rendering<T> rendering;
+    private final WorkerRequest request;
+    private final WorkerResponse response;
+    private final FutureTask<T> future;
+
+    Task(@NonNull Rendering<T> rendering, @NonNull WorkerRequest request, @NonNull WorkerResponse response) {
+      this.rendering = rendering;
+      this.request = request;
+      this.response = response;
+      this.future = new FutureTask<>(() -> rendering.render(request, response));
+    }
+  }
+
+  /**
+   * Provides a worker with a snapshot of the request attributes, so that its
+   * attribute changes are isolated from the request and the other workers.
+   * The snapshot must be created on the request thread.
+   */
+  static class WorkerRequest extends HttpServletRequestWrapper {
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    WorkerRequest(HttpServletRequest request) {
+      super(request);
+      for (String name : Collections.list(request.getAttributeNames())) {
+        attributes.put(name, request.getAttribute(name));
+      }
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+      return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+      return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+      if (value == null) {
+        attributes.remove(name);
+      } else {
+        attributes.put(name, value);
+      }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+      attributes.remove(name);
+    }
+  }
+
+  /**
+   * Buffers the status, content type, header and cookie changes of a worker,
+   * until the request thread applies them with {@link #applyChanges()}, and
+   * keeps the worker from writing to the response.
+   */
+  static class WorkerResponse extends HttpServletResponseWrapper {
+    private final List<ResponseChange> changes = new ArrayList<>();
+    private Integer status;
+    private String contentType;
+    private String characterEncoding;
+
+    WorkerResponse(HttpServletResponse response) {
+      super(response);
+    }
+
+    /**
+     * Apply the buffered changes to the response.  Must be invoked on the request
+     * thread, after the worker has finished.
+     */
+    void applyChanges() throws IOException {
+      HttpServletResponse response = (HttpServletResponse) getResponse();
+      for (ResponseChange change : changes) {
+        change.applyTo(response);
+      }
+      changes.clear();
+    }
+
+    @Override
+    public void setStatus(int sc) {
+      status = sc;
+      changes.add(response -> response.setStatus(sc));
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+      setStatus(sc);
+    }
+
+    @Override
+    public int getStatus() {
+      return status != null ? status : super.getStatus();
+    }
+
+    @Override
+    public void sendError(int sc) {
+      status = sc;
+      changes.add(response -> response.sendError(sc));
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+      status = sc;
+      changes.add(response -> response.sendError(sc, msg));
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+      status = SC_FOUND;
+      changes.add(response -> response.sendRedirect(location));
+    }
+
+    @Override
+    public void setContentType(String type) {
+      contentType = type;
+      changes.add(response -> response.setContentType(type));
+    }
+
+    @Override
+    public String getContentType() {
+      return contentType != null ? contentType : super.getContentType();
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+      characterEncoding = charset;
+      changes.add(response -> response.setCharacterEncoding(charset));
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+      return characterEncoding != null ? characterEncoding : super.getCharacterEncoding();
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      changes.add(response -> response.setHeader(name, value));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      changes.add(response -> response.addHeader(name, value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+      changes.add(response -> response.setDateHeader(name, date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+      changes.add(response -> response.addDateHeader(name, date));
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+      changes.add(response -> response.setIntHeader(name, value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+      changes.add(response -> response.addIntHeader(name, value));
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+      changes.add(response -> response.addCookie(cookie));
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+      throw new IllegalStateException("Placements must be rendered to their buffer, not to the response.");
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      throw new IllegalStateException("Placements must be rendered to their buffer, not to the response.");
+    }
+  }
+
+  @FunctionalInterface
+  private interface ResponseChange {
+    void applyTo(HttpServletResponse response) throws IOException;
+  }
+}
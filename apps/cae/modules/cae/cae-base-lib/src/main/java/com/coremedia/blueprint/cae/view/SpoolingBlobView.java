@@ -0,0 +1,559 @@
+package com.coremedia.blueprint.cae.view;
+
+import com.coremedia.cap.common.Blob;
+import com.coremedia.cap.common.CapBlobRef;
+import com.coremedia.objectserver.view.ServletView;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.activation.MimeType;
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Programmed view for {@link Blob}s which delivers large blobs from a local
+ * spool directory instead of streaming them from the content server on every
+ * request.
+ * <p>
+ * A blob is spooled on its first request.  Later requests, in particular the
+ * many range requests of video and audio players, are served from the spooled
+ * file, either by sendfile of the servlet container or by
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel) transferTo}
+ * in chunks of {@link #setChunkSize(int) chunkSize} bytes.  Spooled files are
+ * identified by the ETag of the blob, so they need no invalidation.  The
+ * least recently used files are removed if the spool exceeds its capacity.
+ * Files which are still streamed are deleted when the last request has
+ * finished.  Files which have been handed to sendfile are kept for
+ * {@link #setSendfileGracePeriod(long) sendfileGracePeriod} milliseconds,
+ * since the container opens them only after the view has returned.
+ * <p>
+ * Single byte ranges are answered with 206 Partial Content, also with
+ * <code>If-Range</code>.  Multiple byte ranges, small blobs and blobs which
+ * are no {@link CapBlobRef}s are rendered by the delegate view, usually the
+ * {@link com.coremedia.objectserver.view.MultiRangeBlobView}.
+ * <p>
+ * The bytes served, spool hits and misses, partial responses and the spooled
+ * bytes are provided as metrics {@value #METRIC_PREFIX}*.
+ */
+public class SpoolingBlobView implements ServletView<Blob>, MeterBinder {
+  private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
+
+  static final String METRIC_PREFIX = "cae.spooling.blob.view.";
+
+  // Tomcat's sendfile request attributes
+  static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+  static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private static final String BYTES_UNIT = "bytes";
+  private static final String SPOOL_FILE_SUFFIX = ".blob";
+  @VisibleForTesting
+  static final long[] NOT_SATISFIABLE = new long[0];
+
+  private ServletView<? super Blob> delegate;
+  private File spoolDirectory;
+  private long minSize = 1024L * 1024;
+  private long capacity = 10L * 1024 * 1024 * 1024;
+  private int chunkSize = 256 * 1024;
+  private boolean sendfile = true;
+  private long sendfileGracePeriod = 60_000;
+
+  // spooled files by key in LRU order, guarded by itself
+  private final Map<String, SpoolEntry> spooled = new LinkedHashMap<>(16, 0.75f, true);
+  // evicted files which are still in use, guarded by spooled
+  private final Map<String, SpoolEntry> evicted = new HashMap<>();
+  private long spooledBytes;
+  private final Map<String, Object> spoolLocks = new ConcurrentHashMap<>();
+
+  private final LongAdder bytesServed = new LongAdder();
+  private final LongAdder spoolHits = new LongAdder();
+  private final LongAdder spoolMisses = new LongAdder();
+  private final LongAdder partialResponses = new LongAdder();
+
+
+  // --- construct and configure ------------------------------------
+
+  /**
+   * The view which renders the blobs that are not delivered from the spool.
+   */
+  public void setDelegate(ServletView<? super Blob> delegate) {
+    this.delegate = delegate;
+  }
+
+  public void setSpoolDirectory(File spoolDirectory) {
+    this.spoolDirectory = spoolDirectory;
+  }
+
+  /**
+   * Blobs smaller than this number of bytes are rendered by the delegate.
+   */
+  public void setMinSize(long minSize) {
+    this.minSize = minSize;
+  }
+
+  /**
+   * The maximum number of bytes in the spool directory.
+   */
+  public void setCapacity(long capacity) {
+    this.capacity = capacity;
+  }
+
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Whether spooled files are handed to the servlet container for sendfile,
+   * if the container supports it.
+   */
+  public void setSendfile(boolean sendfile) {
+    this.sendfile = sendfile;
+  }
+
+  /**
+   * Milliseconds an evicted file is kept after it has been handed to
+   * sendfile, so that the container can still open it.
+   * <p>
+   * Defaults to 60,000.
+   */
+  public void setSendfileGracePeriod(long sendfileGracePeriod) {
+    this.sendfileGracePeriod = sendfileGracePeriod;
+  }
+
+  @PostConstruct
+  protected void initialize() {
+    if (delegate == null) {
+      throw new IllegalStateException("Required property not set: delegate");
+    }
+    if (spoolDirectory == null) {
+      throw new IllegalStateException("Required property not set: spoolDirectory");
+    }
+    if (chunkSize <= 0) {
+      throw new IllegalStateException("chunkSize must be positive: " + chunkSize);
+    }
+    try {
+      Files.createDirectories(spoolDirectory.toPath());
+      // files of a previous run are not in the LRU bookkeeping, start afresh
+      try (var files = Files.list(spoolDirectory.toPath())) {
+        for (Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+          Files.deleteIfExists(it.next());
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot initialize blob spool directory " + spoolDirectory.getAbsolutePath(), e);
+    }
+    LOG.info("Spooling blobs of at least {} bytes to {} (capacity {} bytes).", minSize, spoolDirectory.getAbsolutePath(), capacity);
+  }
+
+
+  // --- ServletView ------------------------------------------------
+
+  @Override
+  public void render(Blob blob, String view, @NonNull HttpServletRequest request, @NonNull HttpServletResponse response) {
+    if (!isSpoolable(blob, view, request)) {
+      delegate.render(blob, view, request, response);
+      return;
+    }
+
+    String eTag = ((CapBlobRef) blob).getETag();
+    String rangeHeader = request.getHeader("Range");
+    if (rangeHeader != null && rangeHeader.indexOf(',') >= 0) {
+      // multipart/byteranges responses are left to the delegate
+      delegate.render(blob, view, request, response);
+      return;
+    }
+
+    String key = Hashing.sha256().hashString(eTag, StandardCharsets.UTF_8).toString();
+    try {
+      Path file = spool(blob, key);
+      boolean sentByContainer = false;
+      try {
+        sentByContainer = deliver(blob, file, eTag, rangeHeader, request, response);
+      } finally {
+        release(key, sentByContainer);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot deliver blob " + blob, e);
+    }
+  }
+
+
+  // --- MeterBinder ------------------------------------------------
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(METRIC_PREFIX + "bytes.served", bytesServed, LongAdder::sum)
+            .description("The number of bytes delivered from the spool")
+            .baseUnit(BYTES_UNIT)
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "hits", spoolHits, LongAdder::sum)
+            .description("The number of requests which were served by an already spooled file")
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "misses", spoolMisses, LongAdder::sum)
+            .description("The number of requests which needed to spool the blob first")
+            .register(registry);
+    FunctionCounter.builder(METRIC_PREFIX + "partial.responses", partialResponses, LongAdder::sum)
+            .description("The number of requests which were answered with 206 Partial Content")
+            .register(registry);
+    Gauge.builder(METRIC_PREFIX + "size", this, SpoolingBlobView::getSpooledBytes)
+            .description("The number of bytes in the spool directory")
+            .baseUnit(BYTES_UNIT)
+            .register(registry);
+  }
+
+  long getBytesServed() {
+    return bytesServed.sum();
+  }
+
+  long getSpoolHits() {
+    return spoolHits.sum();
+  }
+
+  long getSpoolMisses() {
+    return spoolMisses.sum();
+  }
+
+  long getSpooledBytes() {
+    synchronized (spooled) {
+      return spooledBytes;
+    }
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  private boolean isSpoolable(Blob blob, String view, HttpServletRequest request) {
+    String method = request.getMethod();
+    return view == null
+            && ("GET".equals(method) || "HEAD".equals(method))
+            && blob instanceof CapBlobRef
+            && ((CapBlobRef) blob).getETag() != null
+            && blob.getSize() >= minSize
+            && blob.getSize() <= capacity;
+  }
+
+  /**
+   * Return the spooled file of the blob, spool it if necessary.
+   * Concurrent requests for the same blob spool it only once.
+   * <p>
+   * The file is in use until {@link #release} is called.
+   */
+  @NonNull
+  private Path spool(Blob blob, String key) throws IOException {
+    Path file = spoolFile(key);
+    if (acquire(key)) {
+      spoolHits.increment();
+      return file;
+    }
+
+    Object lock = spoolLocks.computeIfAbsent(key, k -> new Object());
+    try {
+      synchronized (lock) {
+        if (acquire(key)) {
+          spoolHits.increment();
+          return file;
+        }
+        spoolMisses.increment();
+        Path tmpFile = Files.createTempFile(spoolDirectory.toPath(), key, ".tmp");
+        try {
+          try (InputStream in = blob.getInputStream()) {
+            Files.copy(in, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+          }
+          Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+          Files.deleteIfExists(tmpFile);
+        }
+        register(key, Files.size(file));
+        return file;
+      }
+    } finally {
+      spoolLocks.remove(key, lock);
+    }
+  }
+
+  /**
+   * Mark the spooled file of the key as recently used and in use.
+   * <p>
+   * An evicted file which is still on disk, because it is in use, is taken
+   * back into the spool.
+   *
+   * @return true if the key is spooled
+   */
+  private boolean acquire(String key) {
+    synchronized (spooled) {
+      SpoolEntry entry = spooled.get(key);
+      if (entry == null) {
+        entry = evicted.remove(key);
+        if (entry == null) {
+          return false;
+        }
+        spooled.put(key, entry);
+        spooledBytes += entry.size;
+        evict(key);
+      } else if (!entry.isInUse(System.currentTimeMillis()) && !Files.exists(spoolFile(key))) {
+        // deleted by someone else, spool it again
+        spooled.remove(key);
+        spooledBytes -= entry.size;
+        return false;
+      }
+      entry.readers++;
+      return true;
+    }
+  }
+
+  /**
+   * The request does not use the spooled file of the key anymore.
+   *
+   * @param sentByContainer whether the file has been handed to sendfile
+   */
+  private void release(String key, boolean sentByContainer) {
+    synchronized (spooled) {
+      SpoolEntry entry = spooled.get(key);
+      if (entry == null) {
+        entry = evicted.get(key);
+      }
+      if (entry != null) {
+        entry.readers--;
+        if (sentByContainer) {
+          entry.sendfileUntil = System.currentTimeMillis() + sendfileGracePeriod;
+        }
+      }
+      deleteUnusedEvicted();
+    }
+  }
+
+  /**
+   * Register a newly spooled file, which is in use by the spooling request.
+   */
+  private void register(String key, long size) {
+    synchronized (spooled) {
+      SpoolEntry entry = new SpoolEntry(size);
+      entry.readers = 1;
+      SpoolEntry previous = spooled.put(key, entry);
+      spooledBytes += size - (previous == null ? 0 : previous.size);
+      evict(key);
+    }
+  }
+
+  /**
+   * Remove the least recently used files until the spool fits its capacity.
+   * Files in use are deleted when they are released.
+   * <p>
+   * Must be called with the lock of {@link #spooled}.
+   */
+  private void evict(String keep) {
+    Iterator<Map.Entry<String, SpoolEntry>> eldest = spooled.entrySet().iterator();
+    while (spooledBytes > capacity && eldest.hasNext()) {
+      Map.Entry<String, SpoolEntry> entry = eldest.next();
+      if (entry.getKey().equals(keep)) {
+        continue;
+      }
+      eldest.remove();
+      spooledBytes -= entry.getValue().size;
+      if (entry.getValue().isInUse(System.currentTimeMillis())) {
+        evicted.put(entry.getKey(), entry.getValue());
+      } else {
+        delete(entry.getKey());
+      }
+    }
+    deleteUnusedEvicted();
+  }
+
+  /**
+   * Must be called with the lock of {@link #spooled}.
+   */
+  private void deleteUnusedEvicted() {
+    long now = System.currentTimeMillis();
+    for (Iterator<Map.Entry<String, SpoolEntry>> it = evicted.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<String, SpoolEntry> entry = it.next();
+      if (!entry.getValue().isInUse(now)) {
+        it.remove();
+        delete(entry.getKey());
+      }
+    }
+  }
+
+  private void delete(String key) {
+    try {
+      Files.deleteIfExists(spoolFile(key));
+    } catch (IOException e) {
+      LOG.warn("Cannot delete spooled blob {}: {}", key, e.getMessage());
+    }
+  }
+
+  @NonNull
+  private Path spoolFile(String key) {
+    return spoolDirectory.toPath().resolve(key + SPOOL_FILE_SUFFIX);
+  }
+
+  /**
+   * Write the headers and hand the requested range of the spooled file
+   * to the response.
+   *
+   * @return true if the file has been handed to sendfile
+   */
+  private boolean deliver(Blob blob, Path file, String eTag, String rangeHeader,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+    long size = Files.size(file);
+
+    long[] range = null;
+    if (rangeHeader != null && ifRangeMatches(request.getHeader("If-Range"), eTag)) {
+      range = parseRange(rangeHeader, size);
+      if (range == NOT_SATISFIABLE) {
+        response.setHeader("Content-Range", BYTES_UNIT + " */" + size);
+        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        return false;
+      }
+    }
+
+    long start = range == null ? 0 : range[0];
+    long length = range == null ? size : range[1] - range[0] + 1;
+
+    MimeType contentType = blob.getContentType();
+    if (contentType != null) {
+      response.setContentType(contentType.toString());
+    }
+    response.setHeader("Accept-Ranges", BYTES_UNIT);
+    if (range != null) {
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setHeader("Content-Range", BYTES_UNIT + " " + range[0] + "-" + range[1] + "/" + size);
+      partialResponses.increment();
+    }
+    response.setContentLengthLong(length);
+
+    if ("HEAD".equals(request.getMethod())) {
+      return false;
+    }
+    boolean sentByContainer = transfer(file, start, length, request, response);
+    bytesServed.add(length);
+    return sentByContainer;
+  }
+
+  /**
+   * @return true if the file has been handed to sendfile
+   */
+  private boolean transfer(Path file, long start, long length, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (sendfile && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+      request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, start);
+      request.setAttribute(SENDFILE_END, start + length);
+      return true;
+    }
+
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      long end = start + length;
+      while (position < end) {
+        long transferred = in.transferTo(position, Math.min(chunkSize, end - position), out);
+        if (transferred <= 0) {
+          throw new IOException("Spooled blob " + file + " is shorter than expected.");
+        }
+        position += transferred;
+      }
+    }
+    response.flushBuffer();
+    return false;
+  }
+
+  /**
+   * A range request is only served partially if the <code>If-Range</code>
+   * validator is absent or matches the ETag of the blob.  HTTP dates are not
+   * compared, they result in a complete response, which is always allowed.
+   */
+  @VisibleForTesting
+  static boolean ifRangeMatches(@Nullable String ifRange, @NonNull String eTag) {
+    if (ifRange == null) {
+      return true;
+    }
+    String validator = ifRange.trim();
+    return validator.equals(eTag) || validator.equals('"' + eTag + '"');
+  }
+
+  /**
+   * Parse a single byte range.
+   *
+   * @return the first and last byte position (inclusive), {@link #NOT_SATISFIABLE},
+   * or null if the header is malformed and must be ignored
+   */
+  @VisibleForTesting
+  @Nullable
+  static long[] parseRange(@NonNull String rangeHeader, long size) {
+    String header = rangeHeader.trim();
+    if (!header.startsWith(BYTES_UNIT + "=")) {
+      return null;
+    }
+    String spec = header.substring(BYTES_UNIT.length() + 1).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    try {
+      String first = spec.substring(0, dash).trim();
+      String last = spec.substring(dash + 1).trim();
+      if (first.isEmpty()) {
+        // suffix range: the last n bytes
+        long suffixLength = Long.parseLong(last);
+        return suffixLength <= 0 || size == 0 ? NOT_SATISFIABLE : new long[]{Math.max(0, size - suffixLength), size - 1};
+      }
+      long start = Long.parseLong(first);
+      if (!last.isEmpty() && Long.parseLong(last) < start) {
+        return null;
+      }
+      long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+      return start >= size ? NOT_SATISFIABLE : new long[]{start, end};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+
+  // --- inner classes ----------------------------------------------
+
+  /**
+   * Bookkeeping of a spooled file, guarded by {@link #spooled}.
+   */
+  private static final class SpoolEntry {
+    private final long size;
+    private int readers;
+    private long sendfileUntil;
+
+    private SpoolEntry(long size) {
+      this.size = size;
+    }
+
+    private boolean isInUse(long now) {
+      return readers > 0 || now < sendfileUntil;
+    }
+  }
+}
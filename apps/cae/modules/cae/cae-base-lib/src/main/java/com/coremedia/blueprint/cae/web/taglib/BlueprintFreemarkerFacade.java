@@ -7,6 +7,7 @@ import com.coremedia.blueprint.base.links.UriConstants;
 import com.coremedia.blueprint.base.settings.SettingsService;
 import com.coremedia.blueprint.base.taxonomies.TaxonomyLocalizationStrategy;
 import com.coremedia.blueprint.cae.action.webflow.BlueprintFlowUrlHandler;
+import com.coremedia.blueprint.cae.view.ParallelPlacementRenderer;
 import com.coremedia.blueprint.cae.web.FreemarkerEnvironment;
 import com.coremedia.blueprint.cae.web.links.ThemeResourceLinkBuilder;
 import com.coremedia.blueprint.coderesources.ThemeService;
@@ -55,11 +56,16 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import static org.springframework.util.CollectionUtils.isEmpty;
 
@@ -96,6 +102,8 @@ public class BlueprintFreemarkerFacade extends MetadataTagSupport {
   private ContextHelper contextHelper;
   private DynamicContainerStrategy dynamicContainerStrategy;
   private TaxonomyLocalizationStrategy taxonomyLocalizationStrategy;
+  private ParallelPlacementRenderer parallelPlacementRenderer;
+  private ResponsiveImageLinksCache responsiveImageLinksCache;
 
   private final ViewHookEventNamesFreemarker viewHookEventNames = new ViewHookEventNamesFreemarker();
 
@@ -151,6 +159,16 @@ public class BlueprintFreemarkerFacade extends MetadataTagSupport {
     this.dynamicContainerStrategy = dynamicContainerStrategy;
   }
 
+  @Autowired(required = false)
+  public void setParallelPlacementRenderer(ParallelPlacementRenderer parallelPlacementRenderer) {
+    this.parallelPlacementRenderer = parallelPlacementRenderer;
+  }
+
+  @Autowired(required = false)
+  public void setResponsiveImageLinksCache(ResponsiveImageLinksCache responsiveImageLinksCache) {
+    this.responsiveImageLinksCache = responsiveImageLinksCache;
+  }
+
   // --- functionality -------------------------------------------------------------------------------------------------
 
   public List<Transformation> getTransformations(Content content) {
@@ -206,7 +224,6 @@ public class BlueprintFreemarkerFacade extends MetadataTagSupport {
     }
 
     Map<String, Map> responsiveImageSettings = getResponsiveImageSettings(page);
-    Map<String, String> linkMimeTypeMappingSettings = getLinkMimeTypeMapping(page);
 
     List<String> aspectRatiosToUse = aspectRatios;
     // use list of given aspect ratios if set, otherwise use all
@@ -214,34 +231,20 @@ public class BlueprintFreemarkerFacade extends MetadataTagSupport {
       aspectRatiosToUse = new ArrayList<>(responsiveImageSettings.keySet());
     }
 
-    HttpServletRequest currentRequest = FreemarkerEnvironment.getCurrentRequest();
-    HttpServletResponse currentResponse = FreemarkerEnvironment.getCurrentResponse();
+    ResponsiveImageLinks responsiveImageLinks = getResponsiveImageLinks(picture, page, responsiveImageSettings, aspectRatiosToUse, false);
     List<TransformationLinks> result = new ArrayList<>();
     for (String aspectRatioName : aspectRatiosToUse) {
-      @SuppressWarnings("unchecked")
-      Map<String, Map> aspectRatioSizes = responsiveImageSettings.get(aspectRatioName);
-      if (aspectRatioSizes != null) {
-        Blob blob = picture.getTransformedData(aspectRatioName);
-        String targetMimeType = getMappedMimeType(blob, linkMimeTypeMappingSettings);
-        Map<Integer, String> links = ImageFunctions.getImageLinksForAspectRatios(blob, aspectRatioName, aspectRatioSizes,
-                false, targetMimeType, currentRequest, currentResponse);
-
-        if (!isEmpty(links)) {
-          // only the "TransformImageService" holds the actual crop ratio in proper values
-          Transformation transformation = transformImageService.getTransformation(picture.getContent(), aspectRatioName);
-          if (transformation == null) {
-            throw new IllegalArgumentException("Could not find image variant for name " + aspectRatioName);
-          }
-          TransformationLinks transformationLinks = new TransformationLinks(
-                  aspectRatioName, transformation.getWidthRatio(), transformation.getHeightRatio(), links
-          );
+      if (responsiveImageSettings.get(aspectRatioName) != null) {
+        if (responsiveImageLinks.isTransformationMissing(aspectRatioName)) {
+          throw new IllegalArgumentException("Could not find image variant for name " + aspectRatioName);
+        }
+        TransformationLinks transformationLinks = responsiveImageLinks.getTransformationLinks(aspectRatioName);
+        if (transformationLinks != null) {
           result.add(transformationLinks);
-
         } else {
           LOG.info("No responsive image links found for CMPicture {} with transformationName {}", picture, aspectRatioName);
         }
       }
-
     }
 
     if (isEmpty(result)) {
@@ -283,26 +286,83 @@ public class BlueprintFreemarkerFacade extends MetadataTagSupport {
     }
 
     Map<String, Map> responsiveImageSettings = getResponsiveImageSettings(page);
-    @SuppressWarnings("unchecked")
-    Map<String, Map<String, Object>> aspectRatioSizes = responsiveImageSettings.get(aspectRatio);
+    Map aspectRatioSizes = responsiveImageSettings.get(aspectRatio);
     if (aspectRatioSizes == null || aspectRatioSizes.isEmpty()) {
       throw new IllegalArgumentException(String.format("Error creating responsive image links: aspect ratio '%s' not defined", aspectRatio));
     }
-    @SuppressWarnings("unchecked")
-    Map<String, ?> biggestSize = ImageFunctions.getBiggestSize(aspectRatioSizes);
-    if (biggestSize != null) {
-      Blob transformedData = picture.getTransformedData(aspectRatio);
-      if (transformedData != null) {
-        String targetMimeType = getMappedMimeType(transformedData, getLinkMimeTypeMapping(page));
-        return ImageFunctions.getImageLinkForAspectRatio(transformedData,
-                aspectRatio, biggestSize,
-                false,
-                targetMimeType,
-                FreemarkerEnvironment.getCurrentRequest(),
-                FreemarkerEnvironment.getCurrentResponse());
+    String link = getResponsiveImageLinks(picture, page, responsiveImageSettings, List.of(aspectRatio), true)
+            .getBiggestImageLink(aspectRatio);
+    return link == null ? "" : link;
+  }
+
+  /**
+   * Returns the responsive image links of the picture, from the
+   * {@link ResponsiveImageLinksCache} if available.  Without cache, only the
+   * links of the given aspect ratios are created, and either the links of
+   * all sizes or the links of the biggest sizes.
+   */
+  private ResponsiveImageLinks getResponsiveImageLinks(CMPicture picture,
+                                                       Page page,
+                                                       Map<String, Map> responsiveImageSettings,
+                                                       List<String> aspectRatios,
+                                                       boolean biggestImageLinksOnly) {
+    Map<String, String> linkMimeTypeMapping = getLinkMimeTypeMapping(page);
+    HttpServletRequest currentRequest = FreemarkerEnvironment.getCurrentRequest();
+    HttpServletResponse currentResponse = FreemarkerEnvironment.getCurrentResponse();
+    if (responsiveImageLinksCache != null && responsiveImageLinksCache.isCacheable(currentRequest)) {
+      return responsiveImageLinksCache.get(picture.getContent(), responsiveImageSettings, linkMimeTypeMapping, currentRequest,
+              () -> createResponsiveImageLinks(picture, responsiveImageSettings, linkMimeTypeMapping,
+                      responsiveImageSettings.keySet(), true, true, currentRequest, currentResponse));
+    }
+    return createResponsiveImageLinks(picture, responsiveImageSettings, linkMimeTypeMapping, aspectRatios,
+            !biggestImageLinksOnly, biggestImageLinksOnly, currentRequest, currentResponse);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ResponsiveImageLinks createResponsiveImageLinks(CMPicture picture,
+                                                          Map<String, Map> responsiveImageSettings,
+                                                          Map<String, String> linkMimeTypeMapping,
+                                                          Collection<String> aspectRatios,
+                                                          boolean withTransformationLinks,
+                                                          boolean withBiggestImageLinks,
+                                                          HttpServletRequest request,
+                                                          HttpServletResponse response) {
+    Map<String, TransformationLinks> transformationLinks = new LinkedHashMap<>();
+    Map<String, String> biggestImageLinks = new HashMap<>();
+    Set<String> missingTransformations = new HashSet<>();
+    for (String aspectRatioName : aspectRatios) {
+      Map<String, Map> aspectRatioSizes = responsiveImageSettings.get(aspectRatioName);
+      Blob blob = aspectRatioSizes == null ? null : picture.getTransformedData(aspectRatioName);
+      if (blob == null) {
+        continue;
+      }
+      String targetMimeType = getMappedMimeType(blob, linkMimeTypeMapping);
+      Map<Integer, String> links = !withTransformationLinks ? null :
+              ImageFunctions.getImageLinksForAspectRatios(blob, aspectRatioName, aspectRatioSizes,
+                      false, targetMimeType, request, response);
+
+      if (!isEmpty(links)) {
+        // only the "TransformImageService" holds the actual crop ratio in proper values
+        Transformation transformation = transformImageService.getTransformation(picture.getContent(), aspectRatioName);
+        if (transformation == null) {
+          missingTransformations.add(aspectRatioName);
+        } else {
+          transformationLinks.put(aspectRatioName, new TransformationLinks(
+                  aspectRatioName, transformation.getWidthRatio(), transformation.getHeightRatio(),
+                  Collections.unmodifiableMap(links)));
+        }
+      }
+
+      Map<String, ?> biggestSize = !withBiggestImageLinks ? null : ImageFunctions.getBiggestSize((Map) aspectRatioSizes);
+      if (biggestSize != null) {
+        String biggestImageLink = ImageFunctions.getImageLinkForAspectRatio(blob, aspectRatioName, biggestSize,
+                false, targetMimeType, request, response);
+        if (biggestImageLink != null) {
+          biggestImageLinks.put(aspectRatioName, biggestImageLink);
+        }
       }
     }
-    return "";
+    return new ResponsiveImageLinks(transformationLinks, biggestImageLinks, missingTransformations);
   }
 
   private Map<String, Map> getResponsiveImageSettings(Page page) {
@@ -370,6 +430,22 @@ public class BlueprintFreemarkerFacade extends MetadataTagSupport {
     return placement != null ? placement.getPropertyName() : "";
   }
 
+  /**
+   * Renders the given placements in parallel, if enabled.
+   *
+   * @param placements the placements of a page grid row
+   * @return the rendered placements in the given order, or an empty list if the placements
+   * are to be included one after another by the template
+   */
+  public List<String> renderPlacements(List<PageGridPlacement> placements) {
+    if (parallelPlacementRenderer == null || placements == null) {
+      return Collections.emptyList();
+    }
+    List<String> rendered = parallelPlacementRenderer.render(placements, null,
+            FreemarkerEnvironment.getCurrentRequest(), FreemarkerEnvironment.getCurrentResponse());
+    return rendered != null ? rendered : Collections.emptyList();
+  }
+
   /**
    * Utility function to allow rendering of containers with custom items, e.g. partial containers with a subset of
    * the items the original container had.
@@ -0,0 +1,56 @@
+package com.coremedia.blueprint.cae.web.taglib;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The responsive image links of a picture for the aspect ratios of the
+ * responsive image settings, as created by {@link BlueprintFreemarkerFacade}.
+ * <p>
+ * Instances are immutable, so that they can be cached by the
+ * {@link ResponsiveImageLinksCache} and shared between requests.
+ */
+public final class ResponsiveImageLinks {
+
+  private final Map<String, TransformationLinks> transformationLinks;
+  private final Map<String, String> biggestImageLinks;
+  private final Set<String> missingTransformations;
+
+  ResponsiveImageLinks(@NonNull Map<String, TransformationLinks> transformationLinks,
+                       @NonNull Map<String, String> biggestImageLinks,
+                       @NonNull Set<String> missingTransformations) {
+    this.transformationLinks = Collections.unmodifiableMap(new LinkedHashMap<>(transformationLinks));
+    this.biggestImageLinks = Map.copyOf(biggestImageLinks);
+    this.missingTransformations = Set.copyOf(missingTransformations);
+  }
+
+  /**
+   * Returns the links of the given aspect ratio, or null if the picture has
+   * no links for it.
+   */
+  @Nullable
+  public TransformationLinks getTransformationLinks(@NonNull String aspectRatio) {
+    return transformationLinks.get(aspectRatio);
+  }
+
+  /**
+   * Returns the link to the biggest size of the given aspect ratio, or null.
+   */
+  @Nullable
+  public String getBiggestImageLink(@NonNull String aspectRatio) {
+    return biggestImageLinks.get(aspectRatio);
+  }
+
+  /**
+   * Returns true if the picture has links for the given aspect ratio, but
+   * the transform image service does not know the transformation.
+   */
+  public boolean isTransformationMissing(@NonNull String aspectRatio) {
+    return missingTransformations.contains(aspectRatio);
+  }
+}
@@ -0,0 +1,155 @@
+package com.coremedia.blueprint.cae.web.taglib;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cms.delivery.configuration.DeliveryConfigurationProperties;
+import com.coremedia.objectserver.view.ViewUtils;
+import com.coremedia.objectserver.web.UserVariantHelper;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.coremedia.blueprint.base.links.UriConstants.Links.ABSOLUTE_URI_KEY;
+
+/**
+ * Caches the {@link ResponsiveImageLinks} of pictures, so that
+ * {@link BlueprintFreemarkerFacade} does not resolve the transformations and
+ * format the links of every width variant whenever a picture is rendered.
+ * <p>
+ * The links are created while the cache key is evaluated, so they depend on
+ * the picture and on all other contents which were read by the link
+ * formatting, and are invalidated when one of them changes.
+ * <p>
+ * Links differ by the scheme, host, port and path prefix of the request, by
+ * whether absolute links are requested and by the link parameters of the
+ * current view.  Link post processors which depend on other request details
+ * must not be combined with this cache.  Links are not cached in the preview,
+ * for developer variants and for sessions which are tracked by URL rewriting.
+ * <p>
+ * The number of lookups and creations are provided as metrics
+ * {@value #METRIC_LOOKUPS} and {@value #METRIC_CREATIONS}.
+ */
+public class ResponsiveImageLinksCache implements MeterBinder {
+
+  static final String METRIC_LOOKUPS = "cae.responsive.image.links.lookups";
+  static final String METRIC_CREATIONS = "cae.responsive.image.links.creations";
+
+  private Cache cache;
+  private DeliveryConfigurationProperties deliveryConfigurationProperties;
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder creations = new LongAdder();
+
+
+  // --- configuration ----------------------------------------------
+
+  public void setCache(Cache cache) {
+    this.cache = cache;
+  }
+
+  public void setDeliveryConfigurationProperties(DeliveryConfigurationProperties deliveryConfigurationProperties) {
+    this.deliveryConfigurationProperties = deliveryConfigurationProperties;
+  }
+
+  @PostConstruct
+  protected void initialize() {
+    if (cache == null) {
+      throw new IllegalStateException("Required property not set: cache");
+    }
+    if (deliveryConfigurationProperties == null) {
+      throw new IllegalStateException("Required property not set: deliveryConfigurationProperties");
+    }
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Returns true if the image links of the request may be cached.
+   */
+  public boolean isCacheable(@NonNull HttpServletRequest request) {
+    return !deliveryConfigurationProperties.isPreviewMode()
+            && UserVariantHelper.getUser(request) == null
+            && !isSessionTrackedByUrl(request);
+  }
+
+  /**
+   * Returns the cached image links of the picture, or creates them.
+   *
+   * @param factory creates the links for all aspect ratios of the responsive image settings
+   */
+  @NonNull
+  public ResponsiveImageLinks get(@NonNull Content picture,
+                                  @NonNull Map<String, ?> responsiveImageSettings,
+                                  @Nullable Map<String, String> linkMimeTypeMapping,
+                                  @NonNull HttpServletRequest request,
+                                  @NonNull Supplier<ResponsiveImageLinks> factory) {
+    lookups.increment();
+    return cache.get(createKey(picture, responsiveImageSettings, linkMimeTypeMapping, request, () -> {
+      creations.increment();
+      return factory.get();
+    }));
+  }
+
+  @NonNull
+  static ResponsiveImageLinksCacheKey createKey(@NonNull Content picture,
+                                                @NonNull Map<String, ?> responsiveImageSettings,
+                                                @Nullable Map<String, String> linkMimeTypeMapping,
+                                                @NonNull HttpServletRequest request,
+                                                @NonNull Supplier<ResponsiveImageLinks> factory) {
+    return new ResponsiveImageLinksCacheKey(picture, responsiveImageSettings, linkMimeTypeMapping,
+            linkContext(request), linkParameters(request), factory);
+  }
+
+
+  // --- MeterBinder ------------------------------------------------
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(METRIC_LOOKUPS, lookups, LongAdder::sum)
+            .description("The number of responsive image link lookups")
+            .register(registry);
+    FunctionCounter.builder(METRIC_CREATIONS, creations, LongAdder::sum)
+            .description("The number of responsive image link lookups which had to create the links")
+            .register(registry);
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  private static List<String> linkContext(HttpServletRequest request) {
+    return List.of(request.getScheme(), request.getServerName(), String.valueOf(request.getServerPort()),
+            request.getContextPath(), request.getServletPath(),
+            String.valueOf(isAbsolute(request.getAttribute(ABSOLUTE_URI_KEY))));
+  }
+
+  private static Map<String, String> linkParameters(HttpServletRequest request) {
+    Map<String, String> linkParameters = new TreeMap<>();
+    Map<String, Object> parameters = ViewUtils.getParameters(request);
+    if (parameters != null) {
+      parameters.forEach((name, value) -> linkParameters.put(name, String.valueOf(value)));
+    }
+    return linkParameters;
+  }
+
+  /**
+   * Links are encoded with the session id if the session is not tracked by a cookie.
+   */
+  private static boolean isSessionTrackedByUrl(HttpServletRequest request) {
+    return request.getSession(false) != null && !request.isRequestedSessionIdFromCookie();
+  }
+
+  private static boolean isAbsolute(Object absolute) {
+    return absolute != null && Boolean.parseBoolean(absolute.toString());
+  }
+}
@@ -0,0 +1,84 @@
+package com.coremedia.blueprint.cae.web.taglib;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.cap.content.Content;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * {@link CacheKey} for the {@link ResponsiveImageLinks} of a picture.
+ * <p>
+ * The key is identified by the picture, the responsive image settings and
+ * the link MIME type mapping of the page, and the link context of the request,
+ * which consists of the scheme, host, port, context path and servlet path,
+ * the absolute link flag and the link parameters of the current view.
+ * <p>
+ * The links are created by the factory, which is not part of the key.
+ */
+class ResponsiveImageLinksCacheKey extends CacheKey<ResponsiveImageLinks> {
+
+  private final Content picture;
+  private final Map<String, ?> responsiveImageSettings;
+  private final Map<String, String> linkMimeTypeMapping;
+  private final List<String> linkContext;
+  private final Map<String, String> linkParameters;
+  // the settings are compared for each lookup, but hashed only once
+  private final int hashCode;
+
+  // not part of the key
+  private final Supplier<ResponsiveImageLinks> factory;
+
+  ResponsiveImageLinksCacheKey(@NonNull Content picture,
+                               @NonNull Map<String, ?> responsiveImageSettings,
+                               @Nullable Map<String, String> linkMimeTypeMapping,
+                               @NonNull List<String> linkContext,
+                               @NonNull Map<String, String> linkParameters,
+                               @NonNull Supplier<ResponsiveImageLinks> factory) {
+    this.picture = picture;
+    this.responsiveImageSettings = responsiveImageSettings;
+    this.linkMimeTypeMapping = linkMimeTypeMapping;
+    this.linkContext = linkContext;
+    this.linkParameters = linkParameters;
+    this.factory = factory;
+    this.hashCode = Objects.hash(picture, linkContext, linkParameters, responsiveImageSettings, linkMimeTypeMapping);
+  }
+
+  @Override
+  public ResponsiveImageLinks evaluate(Cache cache) {
+    return factory.get();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ResponsiveImageLinksCacheKey that = (ResponsiveImageLinksCacheKey) o;
+    return hashCode == that.hashCode &&
+            picture.equals(that.picture) &&
+            linkContext.equals(that.linkContext) &&
+            linkParameters.equals(that.linkParameters) &&
+            responsiveImageSettings.equals(that.responsiveImageSettings) &&
+            Objects.equals(linkMimeTypeMapping, that.linkMimeTypeMapping);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[picture=" + picture + ", linkContext=" + linkContext +
+            ", linkParameters=" + linkParameters + ']';
+  }
+}
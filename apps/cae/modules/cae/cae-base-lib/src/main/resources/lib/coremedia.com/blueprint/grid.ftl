@@ -19,6 +19,16 @@
   <#return blueprintFreemarkerFacade.getPlacementPropertyName(placement) />
 </#function>
 
+<#--
+ * Renders the placements of a page grid row in parallel, if enabled by "cae.placement-rendering.parallel".
+ *
+ * @param placements The placements of the row
+ * @return the rendered placements in the given order, or an empty sequence if the placements are to be included
+ -->
+<#function renderPlacements placements=[]>
+  <#return blueprintFreemarkerFacade.renderPlacements(placements) />
+</#function>
+
 <#-- GET CONTAINER WITH ITEMS -->
 <#function getContainer items=[]>
   <#return blueprintFreemarkerFacade.getContainer(items) />
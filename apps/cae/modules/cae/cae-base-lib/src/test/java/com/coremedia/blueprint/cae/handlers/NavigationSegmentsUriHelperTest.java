@@ -5,6 +5,8 @@ import com.coremedia.blueprint.common.navigation.Navigation;
 import com.coremedia.blueprint.common.contentbeans.CMNavigation;
 import com.coremedia.cache.Cache;
 import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.content.ContentType;
 import com.coremedia.objectserver.beans.ContentBeanFactory;
 import org.junit.Before;
 import org.junit.Test;
@@ -16,6 +18,8 @@ import java.util.List;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -25,11 +29,19 @@ import static org.mockito.Mockito.when;
  */
 public class NavigationSegmentsUriHelperTest {
 
+  private static final String EXTERNAL_CHANNEL = "CMExternalChannel";
+
   private String rootSegment = "root";
   private String child1Segment = "child1";
   private String child2Segment = "child2";
 
   private NavigationSegmentsUriHelper testling;
+  private Cache cache;
+  private ContentBeanFactory contentBeanFactory;
+  private ContentRepository contentRepository;
+  private Content rootNavigationContent;
+  private Content child1NavigationContent;
+  private Content child2NavigationContent;
   private CMNavigation child2Navigation;
 
   @Before
@@ -38,14 +50,16 @@ public class NavigationSegmentsUriHelperTest {
     // 1. --- set up testling.
     // Tell Mockito that we want to use real methods and only use mocked methods when using "doReturn().when().method()"
     testling = mock(NavigationSegmentsUriHelper.class, Mockito.CALLS_REAL_METHODS);
-    ContentBeanFactory contentBeanFactory = mock(ContentBeanFactory.class);
-    Cache cache = mock(Cache.class);
+    contentBeanFactory = mock(ContentBeanFactory.class);
+    cache = mock(Cache.class);
 
     testling.setCache(cache);
     testling.setContentBeanFactory(contentBeanFactory);
+    testling.setNonIndexedNavigationTypes(List.of(EXTERNAL_CHANNEL));
 
     // 2. --- set up mocked content
-    Content rootNavigationContent = mock(Content.class);
+    contentRepository = mock(ContentRepository.class);
+    rootNavigationContent = mockContent("coremedia:///cap/content/2");
     CMNavigation rootNavigation = mock(CMNavigation.class);
     when(rootNavigation.getSegment()).thenReturn(rootSegment);
     when(rootNavigation.getContent()).thenReturn(rootNavigationContent);
@@ -54,10 +68,15 @@ public class NavigationSegmentsUriHelperTest {
 
     CMNavigation child1Navigation = mock(CMNavigation.class);
     when(child1Navigation.getSegment()).thenReturn(child1Segment);
+    child1NavigationContent = mockContent("coremedia:///cap/content/4");
+    when(child1Navigation.getContent()).thenReturn(child1NavigationContent);
 
-    Content child2NavigationContent = mock(Content.class);
+    child2NavigationContent = mockContent("coremedia:///cap/content/6");
     child2Navigation = mock(CMNavigation.class);
     when(child2Navigation.getSegment()).thenReturn(child2Segment);
+    when(child2Navigation.getContent()).thenReturn(child2NavigationContent);
+    when(contentBeanFactory.createBeanFor(rootNavigationContent, CMNavigation.class)).thenReturn(rootNavigation);
+    when(contentBeanFactory.createBeanFor(child1NavigationContent, CMNavigation.class)).thenReturn(child1Navigation);
     when(contentBeanFactory.createBeanFor(child2NavigationContent, CMNavigation.class)).thenReturn(child2Navigation);
 
     // 3. --- mock cascade of child documents linked to each other.
@@ -89,4 +108,53 @@ public class NavigationSegmentsUriHelperTest {
     Navigation actualPath = testling.parsePath(rootSegment + NavigationSegmentsUriHelper.SEGMENT_DELIM + child1Segment + NavigationSegmentsUriHelper.SEGMENT_DELIM + child2Segment);
     assertEquals("CMNavigation does not match", child2Navigation, actualPath);
   }
+
+  @Test
+  public void testParsePathWithIndex() {
+    NavigationSegmentsIndex index = new NavigationSegmentsIndexCacheKey(rootNavigationContent, contentBeanFactory, List.of(EXTERNAL_CHANNEL)).evaluate(cache);
+    when(cache.get(any(NavigationSegmentsIndexCacheKey.class))).thenReturn(index);
+
+    assertEquals(3, index.size());
+    assertEquals(child2NavigationContent.getId(), index.lookup(asList(rootSegment, child1Segment, child2Segment)));
+    assertEquals(child2Navigation, testling.parsePath(asList(rootSegment, child1Segment, child2Segment)));
+    assertNull(index.lookup(asList(rootSegment, child2Segment)));
+  }
+
+  @Test
+  public void testInvalidChildrenAreNotIndexed() {
+    // the validated children of the navigation bean, child1 is not valid
+    CMNavigation rootNavigation = contentBeanFactory.createBeanFor(rootNavigationContent, CMNavigation.class);
+    doReturn(List.of()).when(rootNavigation).getChildren();
+    NavigationSegmentsIndex index = new NavigationSegmentsIndexCacheKey(rootNavigationContent, contentBeanFactory, List.of(EXTERNAL_CHANNEL)).evaluate(cache);
+
+    assertEquals(1, index.size());
+    assertNull(index.lookup(asList(rootSegment, child1Segment)));
+  }
+
+  @Test
+  public void testExternalChannelsAreNotIndexed() {
+    when(child1NavigationContent.getType().isSubtypeOf(EXTERNAL_CHANNEL)).thenReturn(true);
+    NavigationSegmentsIndex index = new NavigationSegmentsIndexCacheKey(rootNavigationContent, contentBeanFactory, List.of(EXTERNAL_CHANNEL)).evaluate(cache);
+    when(cache.get(any(NavigationSegmentsIndexCacheKey.class))).thenReturn(index);
+
+    assertEquals(1, index.size());
+    assertNull(index.lookup(asList(rootSegment, child1Segment, child2Segment)));
+    // resolved by walking the hierarchy
+    assertEquals(child2Navigation, testling.parsePath(asList(rootSegment, child1Segment, child2Segment)));
+  }
+
+  @Test
+  public void testGetPathListUsesNavigationPath() {
+    assertEquals(asList(rootSegment, child1Segment, child2Segment), testling.getPathList(child2Navigation));
+  }
+
+  private Content mockContent(String id) {
+    Content content = mock(Content.class);
+    ContentType type = mock(ContentType.class);
+    when(content.getId()).thenReturn(id);
+    when(content.getType()).thenReturn(type);
+    when(content.getRepository()).thenReturn(contentRepository);
+    when(contentRepository.getContent(id)).thenReturn(content);
+    return content;
+  }
 }
@@ -0,0 +1,211 @@
+package com.coremedia.blueprint.cae.handlers;
+
+import com.coremedia.cap.common.Blob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.activation.MimeType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Class under Test: {@link TransformedBlobDiskCache}.
+ */
+class TransformedBlobDiskCacheTest {
+  private static final byte[] DATA = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+  // the content type "image/webp" in front of the data
+  private static final long FILE_SIZE = 2 + 10 + DATA.length;
+
+  @TempDir
+  Path directory;
+
+  private TransformedBlobDiskCache testling;
+  private Blob transformedBlob;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    testling = createCache();
+
+    transformedBlob = mock(Blob.class);
+    when(transformedBlob.getETag()).thenReturn("abc");
+    when(transformedBlob.getContentType()).thenReturn(new MimeType("image/webp"));
+    when(transformedBlob.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(DATA));
+  }
+
+  @Test
+  void transformsOnce() throws Exception {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    testling.bindTo(meterRegistry);
+    Blob blob = testling.get("coremedia:///cap/content/42", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+
+    assertThat(blob.getContentType()).hasToString("image/webp");
+    assertThat(blob.getSize()).isEqualTo(DATA.length);
+    assertThat(blob.getETag()).isEqualTo("abc");
+    assertThat(read(blob)).isEqualTo(DATA);
+
+    Blob cached = testling.get("coremedia:///cap/content/42", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    assertThat(read(cached)).isEqualTo(DATA);
+    verify(transformedBlob, times(1)).getInputStream();
+    assertThat(testling.getMisses()).isEqualTo(1);
+    assertThat(testling.getHits()).isEqualTo(1);
+    assertThat(testling.getBytesRead()).isEqualTo(2L * DATA.length);
+    assertThat(meterRegistry.get(TransformedBlobDiskCache.METRIC_PREFIX + "hits").functionCounter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get(TransformedBlobDiskCache.METRIC_PREFIX + "size").gauge().value()).isEqualTo((double) FILE_SIZE);
+  }
+
+  @Test
+  void readsFilesNotKeptInMemory() throws Exception {
+    testling.setMemoryMaxSize(0);
+    Blob blob = testling.get("coremedia:///cap/content/42", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    blob.writeOn(out);
+    assertThat(out.toByteArray()).isEqualTo(DATA);
+    assertThat(read(blob)).isEqualTo(DATA);
+  }
+
+  @Test
+  void keyIncludesDimensions() throws Exception {
+    testling.get("coremedia:///cap/content/42", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    testling.get("coremedia:///cap/content/42", "portrait_ratio1x1", 400, 400, "webp", transformedBlob);
+
+    assertThat(testling.getMisses()).isEqualTo(2);
+  }
+
+  @Test
+  void keepsEntriesOnRestart() throws Exception {
+    testling.get("coremedia:///cap/content/42", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+
+    TransformedBlobDiskCache restarted = createCache();
+    Blob blob = restarted.get("coremedia:///cap/content/42", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+
+    assertThat(blob.getContentType()).hasToString("image/webp");
+    assertThat(read(blob)).isEqualTo(DATA);
+    assertThat(restarted.getHits()).isEqualTo(1);
+    verify(transformedBlob, times(1)).getInputStream();
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() throws Exception {
+    testling.setCapacity(2 * FILE_SIZE);
+    testling.get("coremedia:///cap/content/1", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    testling.get("coremedia:///cap/content/2", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    testling.get("coremedia:///cap/content/1", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    testling.get("coremedia:///cap/content/3", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+
+    assertThat(testling.getCachedBytes()).isEqualTo(2 * FILE_SIZE);
+    testling.get("coremedia:///cap/content/1", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    assertThat(testling.getMisses()).isEqualTo(3);
+    testling.get("coremedia:///cap/content/2", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    assertThat(testling.getMisses()).isEqualTo(4);
+  }
+
+  @Test
+  void deletesEvictedFileWhenReaderIsDone() throws Exception {
+    testling.setMemoryMaxSize(0);
+    testling.setCapacity(2 * FILE_SIZE);
+    Blob blob = testling.get("coremedia:///cap/content/1", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    List<Path> files = cachedFiles();
+
+    try (InputStream in = blob.getInputStream()) {
+      testling.get("coremedia:///cap/content/2", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+      testling.get("coremedia:///cap/content/3", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+
+      assertThat(files).allMatch(Files::exists);
+      assertThat(in.readAllBytes()).isEqualTo(DATA);
+    }
+    assertThat(files).noneMatch(Files::exists);
+  }
+
+  @Test
+  void readsTransformedBlobIfEvictedBeforeRead() throws Exception {
+    doAnswer(invocation -> {
+      invocation.<OutputStream>getArgument(0).write(DATA);
+      return null;
+    }).when(transformedBlob).writeOn(any());
+    testling.setMemoryMaxSize(0);
+    testling.setCapacity(2 * FILE_SIZE);
+    Blob blob = testling.get("coremedia:///cap/content/1", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    testling.get("coremedia:///cap/content/2", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+    testling.get("coremedia:///cap/content/3", "portrait_ratio1x1", 200, 200, "webp", transformedBlob);
+
+    assertThat(blob.getContentType()).hasToString("image/webp");
+    assertThat(read(blob)).isEqualTo(DATA);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    blob.writeOn(out);
+    assertThat(out.toByteArray()).isEqualTo(DATA);
+  }
+
+  @Test
+  void concurrentMissesTransformOnce() throws Exception {
+    CountDownLatch transforming = new CountDownLatch(1);
+    CountDownLatch waiting = new CountDownLatch(1);
+    when(transformedBlob.getInputStream()).thenAnswer(invocation -> {
+      transforming.countDown();
+      waiting.await(10, TimeUnit.SECONDS);
+      return new ByteArrayInputStream(DATA);
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Blob> first = executor.submit(() ->
+              testling.get("coremedia:///cap/content/42", "portrait_ratio1x1", 200, 200, "webp", transformedBlob));
+      assertThat(transforming.await(10, TimeUnit.SECONDS)).isTrue();
+      Future<Blob> second = executor.submit(() ->
+              testling.get("coremedia:///cap/content/42", "portrait_ratio1x1", 200, 200, "webp", transformedBlob));
+      while (testling.getCoalesced() == 0 && !second.isDone()) {
+        Thread.sleep(10);
+      }
+      waiting.countDown();
+
+      assertThat(read(first.get(10, TimeUnit.SECONDS))).isEqualTo(DATA);
+      assertThat(read(second.get(10, TimeUnit.SECONDS))).isEqualTo(DATA);
+      verify(transformedBlob, times(1)).getInputStream();
+      assertThat(testling.getCoalesced()).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private TransformedBlobDiskCache createCache() {
+    TransformedBlobDiskCache cache = new TransformedBlobDiskCache();
+    cache.setDirectory(directory.toFile());
+    cache.initialize();
+    return cache;
+  }
+
+  private List<Path> cachedFiles() throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  private static byte[] read(Blob blob) throws Exception {
+    try (InputStream in = blob.getInputStream()) {
+      return in.readAllBytes();
+    }
+  }
+}
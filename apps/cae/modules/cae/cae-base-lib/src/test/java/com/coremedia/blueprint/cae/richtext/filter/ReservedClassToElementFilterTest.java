@@ -237,6 +237,27 @@ class ReservedClassToElementFilterTest {
     }
   }
 
+  @Nested
+  class FilterFactoryUseCase {
+    private final ReservedClassToElementFilter factory = new ReservedClassToElementFilter(List.of(
+            ReservedClassToElementConfig.of("span", "mark")
+    ));
+
+    @Test
+    void shouldApplyMappingsInEachInstance() {
+      XMLFilter first = factory.getInstance(null, null);
+      XMLFilter second = factory.getInstance(null, null);
+
+      assertSoftly(softly -> {
+        softly.assertThat(first).isNotSameAs(second);
+        softly.assertThat(applyFilterToInline("Lorem <span class=\"mark\">ipsum</span> dolor", first))
+                .contains("Lorem <mark>ipsum</mark> dolor");
+        softly.assertThat(applyFilterToInline("Lorem <span class=\"mark\">ipsum</span> dolor", second))
+                .contains("Lorem <mark>ipsum</mark> dolor");
+      });
+    }
+  }
+
   @Nested
   class Robustness {
     @ParameterizedTest(name = "[{index}] Probe for span nesting level: {0}")
@@ -0,0 +1,115 @@
+package com.coremedia.blueprint.cae.richtext.filter;
+
+import com.coremedia.xml.Filter;
+import com.coremedia.xml.Markup;
+import com.coremedia.xml.MarkupFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static com.coremedia.cap.common.XmlGrammar.RICH_TEXT_1_0_NAME;
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Measures the filters which are applied to each rich text after the link
+ * formatting, {@link ReservedClassToElementFilter},
+ * {@link AppendClassToElementFilter} and {@link UnsurroundFilter}, on a long
+ * detail text, as a chain and fused into a {@link ClassMappingFilter},
+ * compared to writing the text without any filters.
+ * <p>
+ * Run with {@code -Dbenchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class RichtextFiltersBenchmarkTest {
+  private static final Logger LOG = getLogger(lookup().lookupClass());
+
+  private static final String RICH_TEXT_NAMESPACE = "http://www.coremedia.com/2003/richtext-1.0";
+  private static final int PARAGRAPHS = 2_000;
+  private static final int ITERATIONS = 200;
+
+  private final MockHttpServletRequest request = new MockHttpServletRequest();
+  private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+  @Test
+  void measureFiltersAfterLinkFormatting() {
+    ReservedClassToElementFilter reservedClassToElementFilter = new ReservedClassToElementFilter(List.of(
+            ReservedClassToElementConfig.of("span", "code"),
+            ReservedClassToElementConfig.of("span", "strike", "s"),
+            ReservedClassToElementConfig.of("p", "p--heading-2", "h2"),
+            ReservedClassToElementConfig.of("p", "p--standard", "p")
+    ));
+    AppendClassToElementFilter appendClassToElementFilter = new AppendClassToElementFilter();
+    appendClassToElementFilter.setElementList(Map.of("ul", "rte--list", "ol", "rte--list"));
+    UnsurroundFilter unsurroundFilter = new UnsurroundFilter();
+    ClassMappingFilter classMappingFilter = new ClassMappingFilter(reservedClassToElementFilter, appendClassToElementFilter, true);
+
+    Markup markup = MarkupFactory.fromString(longDetailText()).withGrammar(RICH_TEXT_1_0_NAME);
+    Supplier<List<Filter>> chainedFilters = () -> List.of(
+            reservedClassToElementFilter.getInstance(request, response),
+            appendClassToElementFilter.getInstance(request, response),
+            unsurroundFilter.getInstance(request, response));
+    Supplier<List<Filter>> fusedFilter = () -> List.of(classMappingFilter.getInstance(request, response));
+
+    String filtered = write(markup, chainedFilters.get());
+    assertThat(filtered)
+            .contains("<h2", "<code", "rte--list")
+            .doesNotContain("p--heading-2", "<div");
+    assertThat(write(markup, fusedFilter.get())).isEqualTo(filtered);
+
+    long unfilteredNanos = measure(() -> write(markup, List.of()));
+    long chainedNanos = measure(() -> write(markup, chainedFilters.get()));
+    long fusedNanos = measure(() -> write(markup, fusedFilter.get()));
+    LOG.info("{} paragraphs, {} chars: unfiltered {} µs, chained {} µs, fused {} µs",
+            PARAGRAPHS, filtered.length(), unfilteredNanos / 1000, chainedNanos / 1000, fusedNanos / 1000);
+  }
+
+  private static String write(Markup markup, List<Filter> filters) {
+    StringWriter writer = new StringWriter();
+    markup.writeOn(filters, writer);
+    return writer.toString();
+  }
+
+  /**
+   * Returns the average time of one run in nanoseconds, after a warm up.
+   */
+  private static long measure(Runnable runnable) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    return (System.nanoTime() - start) / ITERATIONS;
+  }
+
+  private static String longDetailText() {
+    StringBuilder text = new StringBuilder("<div xmlns=\"").append(RICH_TEXT_NAMESPACE).append("\">");
+    for (int i = 0; i < PARAGRAPHS; i++) {
+      switch (i % 4) {
+        case 0:
+          text.append("<p class=\"p--heading-2\">Heading ").append(i).append("</p>");
+          break;
+        case 1:
+          text.append("<p>Lorem <span class=\"code\">ipsum</span> dolor <strong>sit</strong> amet, ")
+                  .append("<span class=\"strike other\">consectetur</span> adipiscing elit.</p>");
+          break;
+        case 2:
+          text.append("<ul><li><p>Item ").append(i).append("</p></li><li><p>Item</p></li></ul>");
+          break;
+        default:
+          text.append("<p class=\"p--standard\">Sed do <em>eiusmod</em> tempor incididunt ut labore.</p>");
+      }
+    }
+    return text.append("</div>").toString();
+  }
+}
@@ -0,0 +1,92 @@
+package com.coremedia.blueprint.cae.richtext.filter;
+
+import com.coremedia.xml.Filter;
+import com.coremedia.xml.Markup;
+import com.coremedia.xml.MarkupFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import static com.coremedia.cap.common.XmlGrammar.RICH_TEXT_1_0_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the filters which are applied to each rich text after the link
+ * formatting, like {@link ReservedClassToElementFilter},
+ * {@link AppendClassToElementFilter} and {@link UnsurroundFilter}, in one chain.
+ */
+class RichtextFiltersTest {
+
+  private static final String RICH_TEXT_NAMESPACE = "http://www.coremedia.com/2003/richtext-1.0";
+
+  private final MockHttpServletRequest request = new MockHttpServletRequest();
+  private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+  @Test
+  void filtersAfterLinkFormatting() {
+    ReservedClassToElementFilter reservedClassToElementFilter = new ReservedClassToElementFilter(List.of(
+            ReservedClassToElementConfig.of("span", "code"),
+            ReservedClassToElementConfig.of("p", "p--heading-2", "h2")
+    ));
+    AppendClassToElementFilter appendClassToElementFilter = new AppendClassToElementFilter();
+    appendClassToElementFilter.setElementList(Map.of("ul", "rte--list"));
+    UnsurroundFilter unsurroundFilter = new UnsurroundFilter();
+
+    Markup markup = MarkupFactory.fromString("<div xmlns=\"" + RICH_TEXT_NAMESPACE + "\">" +
+            "<p class=\"p--heading-2\">Heading</p>" +
+            "<p>Lorem <span class=\"code\">ipsum</span> <strong class=\"keep\">dolor</strong></p>" +
+            "<ul><li><p>Item</p></li></ul>" +
+            "</div>").withGrammar(RICH_TEXT_1_0_NAME);
+
+    // the filters keep per-render state, so they are created per render
+    String filtered = write(markup, List.of(
+            reservedClassToElementFilter.getInstance(request, response),
+            appendClassToElementFilter.getInstance(request, response),
+            unsurroundFilter.getInstance(request, response)));
+
+    assertThat(filtered)
+            .contains("<h2", "<code", "class=\"rte--list\"", "class=\"keep\"")
+            .doesNotContain("p--heading-2", "<div");
+  }
+
+  @Test
+  void classMappingFilterWritesTheOutputOfTheChain() {
+    ReservedClassToElementFilter reservedClassToElementFilter = new ReservedClassToElementFilter(List.of(
+            ReservedClassToElementConfig.of("span", "code"),
+            ReservedClassToElementConfig.of("p", "p--heading-2", "h2"),
+            ReservedClassToElementConfig.of("p", "p--list", "ul")
+    ));
+    AppendClassToElementFilter appendClassToElementFilter = new AppendClassToElementFilter();
+    appendClassToElementFilter.setElementList(Map.of("ul", "rte--list"));
+    UnsurroundFilter unsurroundFilter = new UnsurroundFilter();
+    ClassMappingFilter classMappingFilter = new ClassMappingFilter(reservedClassToElementFilter, appendClassToElementFilter, true);
+
+    Markup markup = MarkupFactory.fromString("<div xmlns=\"" + RICH_TEXT_NAMESPACE + "\">" +
+            "<p class=\"p--heading-2 other\">Heading</p>" +
+            "<p>Lorem <span class=\"code\">ipsum</span> <strong class=\"keep\">dolor</strong></p>" +
+            "<p class=\"p--list\">mapped list</p>" +
+            "<ul class=\"plain\"><li><p>Item</p></li></ul>" +
+            "</div>").withGrammar(RICH_TEXT_1_0_NAME);
+
+    String chained = write(markup, List.of(
+            reservedClassToElementFilter.getInstance(request, response),
+            appendClassToElementFilter.getInstance(request, response),
+            unsurroundFilter.getInstance(request, response)));
+    String fused = write(markup, List.of(classMappingFilter.getInstance(request, response)));
+
+    assertThat(fused)
+            .isEqualTo(chained)
+            .contains("<h2 class=\"other\"", "<ul class=\"rte--list\"", "class=\"plain rte--list\"")
+            .doesNotContain("<div");
+  }
+
+  private static String write(Markup markup, List<Filter> filters) {
+    StringWriter writer = new StringWriter();
+    markup.writeOn(filters, writer);
+    return writer.toString();
+  }
+}
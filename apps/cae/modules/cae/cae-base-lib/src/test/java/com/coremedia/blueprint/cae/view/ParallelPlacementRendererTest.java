@@ -0,0 +1,190 @@
+package com.coremedia.blueprint.cae.view;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Class under Test: {@link ParallelPlacementRenderer}.
+ */
+class ParallelPlacementRendererTest {
+
+  @Test
+  void workerRequestIsolatesAttributes() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setAttribute("shared", "request");
+    request.setAttribute("removed", "request");
+
+    ParallelPlacementRenderer.WorkerRequest workerRequest = new ParallelPlacementRenderer.WorkerRequest(request);
+    workerRequest.setAttribute("shared", "worker");
+    workerRequest.setAttribute("local", "worker");
+    workerRequest.removeAttribute("removed");
+
+    assertThat(workerRequest.getAttribute("shared")).isEqualTo("worker");
+    assertThat(workerRequest.getAttribute("local")).isEqualTo("worker");
+    assertThat(workerRequest.getAttribute("removed")).isNull();
+    assertThat(Collections.list(workerRequest.getAttributeNames())).containsExactlyInAnyOrder("shared", "local");
+
+    assertThat(request.getAttribute("shared")).isEqualTo("request");
+    assertThat(request.getAttribute("local")).isNull();
+    assertThat(request.getAttribute("removed")).isEqualTo("request");
+  }
+
+  @Test
+  void workerResponseBuffersHeadersAndDoesNotExposeWriter() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ParallelPlacementRenderer.WorkerResponse workerResponse = new ParallelPlacementRenderer.WorkerResponse(response);
+    workerResponse.setHeader("Cache-Control", "max-age=60");
+    workerResponse.addCookie(new Cookie("name", "value"));
+
+    assertThat(response.getHeader("Cache-Control")).isNull();
+    assertThat(response.getCookies()).isEmpty();
+    assertThatThrownBy(workerResponse::getWriter).isInstanceOf(IllegalStateException.class);
+
+    workerResponse.applyChanges();
+    assertThat(response.getHeader("Cache-Control")).isEqualTo("max-age=60");
+    assertThat(response.getCookie("name")).isNotNull();
+  }
+
+  @Test
+  void workerResponseBuffersStatusAndContentType() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ParallelPlacementRenderer.WorkerResponse workerResponse = new ParallelPlacementRenderer.WorkerResponse(response);
+    workerResponse.setContentType("text/html");
+    workerResponse.setCharacterEncoding("UTF-8");
+    workerResponse.sendError(404, "not found");
+
+    assertThat(workerResponse.getStatus()).isEqualTo(404);
+    assertThat(workerResponse.getContentType()).isEqualTo("text/html");
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentType()).isNull();
+    assertThat(response.getErrorMessage()).isNull();
+
+    workerResponse.applyChanges();
+    assertThat(response.getStatus()).isEqualTo(404);
+    assertThat(response.getErrorMessage()).isEqualTo("not found");
+    assertThat(response.getCharacterEncoding()).isEqualTo("UTF-8");
+  }
+
+  @Test
+  void changesAreAppliedInPlacementOrder() {
+    ParallelPlacementRenderer testling = new ParallelPlacementRenderer();
+    testling.setExecutor(Runnable::run);
+    testling.initialize();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    testling.renderAll(List.of(
+            (workerRequest, workerResponse) -> {
+              workerResponse.setStatus(201);
+              return "a";
+            },
+            (workerRequest, workerResponse) -> {
+              workerResponse.setStatus(202);
+              return "b";
+            }),
+            new MockHttpServletRequest(), response);
+
+    assertThat(response.getStatus()).isEqualTo(202);
+  }
+
+  @Test
+  void singlePlacementIsRenderedByTemplate() {
+    ParallelPlacementRenderer testling = new ParallelPlacementRenderer();
+    testling.setExecutor(Runnable::run);
+    testling.initialize();
+
+    assertThat(testling.render(List.of(new Object()), null, new MockHttpServletRequest(), new MockHttpServletResponse())).isNull();
+    assertThat(testling.getParallelRenderings()).isZero();
+  }
+
+  @Test
+  void renderAllKeepsOrderAndIsolatesAttributes() {
+    ParallelPlacementRenderer testling = new ParallelPlacementRenderer();
+    testling.setExecutor(Runnable::run);
+    testling.initialize();
+    MockHttpServletRequest request = new MockHttpServletRequest();
+
+    List<String> result = testling.renderAll(List.of(
+            (workerRequest, workerResponse) -> {
+              workerRequest.setAttribute("fragment", "a");
+              return "a";
+            },
+            (workerRequest, workerResponse) -> String.valueOf(workerRequest.getAttribute("fragment"))),
+            request, new MockHttpServletResponse());
+
+    assertThat(result).containsExactly("a", "null");
+    assertThat(request.getAttribute("fragment")).isNull();
+  }
+
+  @Test
+  void timedOutRenderingIsCancelledAndRenderedOnRequestThread() {
+    List<Runnable> pending = new ArrayList<>();
+    ParallelPlacementRenderer testling = new ParallelPlacementRenderer();
+    testling.setExecutor(pending::add);
+    testling.setTimeoutMillis(0);
+    testling.initialize();
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicInteger workerRenderings = new AtomicInteger();
+
+    List<String> result = testling.renderAll(List.of(
+            (fragmentRequest, fragmentResponse) -> "a",
+            (fragmentRequest, fragmentResponse) -> {
+              if (fragmentRequest != request) {
+                workerRenderings.incrementAndGet();
+              }
+              fragmentResponse.addHeader("X-Rendered-By", fragmentRequest == request ? "request" : "worker");
+              return "b";
+            }),
+            request, response);
+
+    assertThat(result).containsExactly("a", "b");
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    testling.bindTo(registry);
+    assertThat(registry.get(ParallelPlacementRenderer.METRIC_PREFIX + "parallel").functionCounter().count()).isEqualTo(1);
+    assertThat(registry.get(ParallelPlacementRenderer.METRIC_PREFIX + "fallbacks").functionCounter().count()).isEqualTo(1);
+    assertThat(registry.get(ParallelPlacementRenderer.METRIC_PREFIX + "timeouts").functionCounter().count()).isEqualTo(1);
+
+    // the abandoned worker neither renders nor changes the response
+    pending.forEach(Runnable::run);
+    assertThat(workerRenderings).hasValue(0);
+    assertThat(response.getHeaders("X-Rendered-By")).containsExactly("request");
+  }
+
+  @Test
+  void placementsAreRenderedSequentiallyWhileCacheKeyIsEvaluated() {
+    ParallelPlacementRenderer testling = new ParallelPlacementRenderer();
+    testling.setExecutor(Runnable::run);
+    testling.initialize();
+    MockHttpServletRequest request = new MockHttpServletRequest();
+
+    List<String> result = new Cache("test").get(new CacheKey<List<String>>() {
+      @Override
+      public List<String> evaluate(Cache cache) {
+        assertThat(testling.render(List.of(new Object(), new Object()), null, request, new MockHttpServletResponse())).isNull();
+        return testling.renderAll(List.of(
+                (fragmentRequest, fragmentResponse) -> {
+                  fragmentRequest.setAttribute("fragment", "a");
+                  return "a";
+                },
+                (fragmentRequest, fragmentResponse) -> String.valueOf(fragmentRequest.getAttribute("fragment"))),
+                request, new MockHttpServletResponse());
+      }
+    });
+
+    assertThat(result).containsExactly("a", "a");
+    assertThat(testling.getParallelRenderings()).isZero();
+  }
+}
@@ -0,0 +1,214 @@
+package com.coremedia.blueprint.cae.view;
+
+import com.coremedia.cap.common.Blob;
+import com.coremedia.cap.common.CapBlobRef;
+import com.coremedia.objectserver.view.ServletView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.activation.MimeType;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Class under Test: {@link SpoolingBlobView}.
+ */
+class SpoolingBlobViewTest {
+  private static final byte[] DATA = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+  @TempDir
+  Path spoolDirectory;
+
+  private ServletView<Blob> delegate;
+  private SpoolingBlobView testling;
+  private CapBlobRef blob;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() throws Exception {
+    delegate = mock(ServletView.class);
+    testling = new SpoolingBlobView();
+    testling.setDelegate(delegate);
+    testling.setSpoolDirectory(spoolDirectory.toFile());
+    testling.setMinSize(10);
+    testling.setChunkSize(4);
+    testling.initialize();
+
+    blob = blob("abc");
+  }
+
+  @Test
+  void completeResponse() throws Exception {
+    MockHttpServletResponse response = render(new MockHttpServletRequest("GET", "/blob"));
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentType()).isEqualTo("video/mp4");
+    assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+    assertThat(response.getContentAsByteArray()).isEqualTo(DATA);
+    assertThat(testling.getSpoolMisses()).isEqualTo(1);
+    assertThat(testling.getBytesServed()).isEqualTo(DATA.length);
+  }
+
+  @Test
+  void rangeResponsesFromSpool() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/blob");
+    request.addHeader("Range", "bytes=2-5");
+    MockHttpServletResponse response = render(request);
+
+    assertThat(response.getStatus()).isEqualTo(206);
+    assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-5/20");
+    assertThat(response.getContentAsString()).isEqualTo("2345");
+
+    request = new MockHttpServletRequest("GET", "/blob");
+    request.addHeader("Range", "bytes=-3");
+    response = render(request);
+
+    assertThat(response.getStatus()).isEqualTo(206);
+    assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 17-19/20");
+    assertThat(response.getContentAsString()).isEqualTo("hij");
+    assertThat(testling.getSpoolMisses()).isEqualTo(1);
+    assertThat(testling.getSpoolHits()).isEqualTo(1);
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    testling.bindTo(registry);
+    assertThat(registry.get(SpoolingBlobView.METRIC_PREFIX + "hits").functionCounter().count()).isEqualTo(1);
+    assertThat(registry.get(SpoolingBlobView.METRIC_PREFIX + "misses").functionCounter().count()).isEqualTo(1);
+    assertThat(registry.get(SpoolingBlobView.METRIC_PREFIX + "partial.responses").functionCounter().count()).isEqualTo(2);
+    assertThat(registry.get(SpoolingBlobView.METRIC_PREFIX + "bytes.served").functionCounter().count()).isEqualTo(7);
+    assertThat(registry.get(SpoolingBlobView.METRIC_PREFIX + "size").gauge().value()).isEqualTo((double) DATA.length);
+  }
+
+  @Test
+  void ifRangeMismatchYieldsCompleteResponse() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/blob");
+    request.addHeader("Range", "bytes=2-5");
+    request.addHeader("If-Range", "\"outdated\"");
+    MockHttpServletResponse response = render(request);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsByteArray()).isEqualTo(DATA);
+  }
+
+  @Test
+  void unsatisfiableRange() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/blob");
+    request.addHeader("Range", "bytes=20-");
+    MockHttpServletResponse response = render(request);
+
+    assertThat(response.getStatus()).isEqualTo(416);
+    assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */20");
+  }
+
+  @Test
+  void sendfile() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/blob");
+    request.setAttribute(SpoolingBlobView.SENDFILE_SUPPORTED, Boolean.TRUE);
+    request.addHeader("Range", "bytes=10-");
+    MockHttpServletResponse response = render(request);
+
+    assertThat(response.getStatus()).isEqualTo(206);
+    assertThat(response.getContentAsByteArray()).isEmpty();
+    assertThat((String) request.getAttribute(SpoolingBlobView.SENDFILE_FILENAME)).startsWith(spoolDirectory.toString());
+    assertThat(request.getAttribute(SpoolingBlobView.SENDFILE_START)).isEqualTo(10L);
+    assertThat(request.getAttribute(SpoolingBlobView.SENDFILE_END)).isEqualTo(20L);
+  }
+
+  @Test
+  void evictionDeletesUnusedFiles() throws Exception {
+    testling.setCapacity(30);
+    render(new MockHttpServletRequest("GET", "/blob"));
+    render(blob("def"), new MockHttpServletRequest("GET", "/other"));
+
+    try (var files = Files.list(spoolDirectory)) {
+      assertThat(files.count()).isEqualTo(1);
+    }
+    assertThat(testling.getSpooledBytes()).isEqualTo(DATA.length);
+  }
+
+  @Test
+  void evictionKeepsFilesHandedToSendfile() throws Exception {
+    testling.setCapacity(30);
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/blob");
+    request.setAttribute(SpoolingBlobView.SENDFILE_SUPPORTED, Boolean.TRUE);
+    render(request);
+    Path sendfile = Path.of((String) request.getAttribute(SpoolingBlobView.SENDFILE_FILENAME));
+
+    render(blob("def"), new MockHttpServletRequest("GET", "/other"));
+    assertThat(sendfile).exists();
+    assertThat(testling.getSpooledBytes()).isEqualTo(DATA.length);
+
+    // still on disk, so it is taken back without spooling it again
+    MockHttpServletResponse response = render(new MockHttpServletRequest("GET", "/blob"));
+    assertThat(response.getContentAsByteArray()).isEqualTo(DATA);
+    verify(blob, times(1)).getInputStream();
+  }
+
+  @Test
+  void evictedFilesAreDeletedAfterSendfileGracePeriod() throws Exception {
+    testling.setCapacity(30);
+    testling.setSendfileGracePeriod(0);
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/blob");
+    request.setAttribute(SpoolingBlobView.SENDFILE_SUPPORTED, Boolean.TRUE);
+    render(request);
+    Path sendfile = Path.of((String) request.getAttribute(SpoolingBlobView.SENDFILE_FILENAME));
+
+    render(blob("def"), new MockHttpServletRequest("GET", "/other"));
+    assertThat(sendfile).doesNotExist();
+  }
+
+  @Test
+  void smallBlobsAndMultipleRangesAreDelegated() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/blob");
+    request.addHeader("Range", "bytes=0-1,4-5");
+    render(request);
+    testling.setMinSize(100);
+    render(new MockHttpServletRequest("GET", "/blob"));
+
+    verify(delegate, times(2)).render(any(), any(), any(), any());
+    verify(blob, never()).getInputStream();
+  }
+
+  @Test
+  void parseRange() {
+    assertThat(SpoolingBlobView.parseRange("bytes=0-", 10)).containsExactly(0, 9);
+    assertThat(SpoolingBlobView.parseRange("bytes=3-100", 10)).containsExactly(3, 9);
+    assertThat(SpoolingBlobView.parseRange("bytes=-100", 10)).containsExactly(0, 9);
+    assertThat(SpoolingBlobView.parseRange("bytes=10-", 10)).isSameAs(SpoolingBlobView.NOT_SATISFIABLE);
+    assertThat(SpoolingBlobView.parseRange("bytes=5-3", 10)).isNull();
+    assertThat(SpoolingBlobView.parseRange("items=0-1", 10)).isNull();
+    assertThat(SpoolingBlobView.parseRange("bytes=x-1", 10)).isNull();
+  }
+
+  private MockHttpServletResponse render(MockHttpServletRequest request) {
+    return render(blob, request);
+  }
+
+  private MockHttpServletResponse render(CapBlobRef blob, MockHttpServletRequest request) {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    testling.render(blob, null, request, response);
+    return response;
+  }
+
+  private static CapBlobRef blob(String eTag) throws Exception {
+    CapBlobRef blob = mock(CapBlobRef.class);
+    when(blob.getETag()).thenReturn(eTag);
+    when(blob.getSize()).thenReturn((long) DATA.length);
+    when(blob.getContentType()).thenReturn(new MimeType("video/mp4"));
+    when(blob.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(DATA));
+    return blob;
+  }
+}
@@ -0,0 +1,122 @@
+package com.coremedia.blueprint.cae.web.taglib;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cms.delivery.configuration.DeliveryConfigurationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Measures the links of {@code responsiveImageLinksData} for a gallery with
+ * 30 pictures and 6 aspect ratios, once creating the links of each picture
+ * and once looking them up in the {@link ResponsiveImageLinksCache}.
+ * <p>
+ * The links are created by string formatting here, because the CAE link
+ * formatting needs a complete web application context.  So the measurement
+ * shows the overhead of the cache lookup, which includes hashing and
+ * comparing the responsive image settings, rather than the real savings.
+ * <p>
+ * Run with {@code -Dbenchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class ResponsiveImageLinksBenchmarkTest {
+  private static final Logger LOG = getLogger(lookup().lookupClass());
+
+  private static final int PICTURES = 30;
+  private static final List<String> ASPECT_RATIOS = List.of(
+          "portrait_ratio1x1", "portrait_ratio3x4", "landscape_ratio4x3",
+          "landscape_ratio16x9", "landscape_ratio2x1", "landscape_ratio5x2");
+  private static final int[] WIDTHS = {200, 320, 400, 640, 800, 1024, 1280, 1920};
+  private static final int ITERATIONS = 2_000;
+
+  private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+  @Test
+  void measureGalleryLinks() {
+    DeliveryConfigurationProperties deliveryConfigurationProperties = new DeliveryConfigurationProperties();
+    deliveryConfigurationProperties.setPreviewMode(false);
+    ResponsiveImageLinksCache cache = new ResponsiveImageLinksCache();
+    cache.setCache(new Cache("benchmark"));
+    cache.setDeliveryConfigurationProperties(deliveryConfigurationProperties);
+    cache.initialize();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    cache.bindTo(meterRegistry);
+
+    Map<String, Map<String, Object>> settings = responsiveImageSettings();
+    List<Content> pictures = new ArrayList<>();
+    for (int i = 0; i < PICTURES; i++) {
+      pictures.add(mock(Content.class));
+    }
+
+    Runnable uncached = () -> pictures.forEach(picture -> createLinks(picture, settings));
+    Runnable cached = () -> pictures.forEach(picture ->
+            cache.get(picture, settings, Map.of(), request, () -> createLinks(picture, settings)));
+
+    cached.run();
+    assertThat(creations(meterRegistry)).isEqualTo((long) PICTURES);
+
+    long uncachedNanos = measure(uncached);
+    long cachedNanos = measure(cached);
+    LOG.info("{} pictures, {} aspect ratios: created {} µs, cached {} µs",
+            PICTURES, ASPECT_RATIOS.size(), uncachedNanos / 1000, cachedNanos / 1000);
+    assertThat(creations(meterRegistry)).isEqualTo((long) PICTURES);
+  }
+
+  private static long creations(SimpleMeterRegistry meterRegistry) {
+    return (long) meterRegistry.get(ResponsiveImageLinksCache.METRIC_CREATIONS).functionCounter().count();
+  }
+
+  private static ResponsiveImageLinks createLinks(Content picture, Map<String, Map<String, Object>> settings) {
+    Map<String, TransformationLinks> transformationLinks = new LinkedHashMap<>();
+    for (String aspectRatio : settings.keySet()) {
+      Map<Integer, String> links = new TreeMap<>();
+      for (int width : WIDTHS) {
+        links.put(width, String.format("/resource/image/%d/%s/%d/%d/%08x/image.jpg",
+                System.identityHashCode(picture), aspectRatio, width, width * 9 / 16, picture.hashCode()));
+      }
+      transformationLinks.put(aspectRatio, new TransformationLinks(aspectRatio, 16, 9, links));
+    }
+    return new ResponsiveImageLinks(transformationLinks, Map.of(), Set.of());
+  }
+
+  private static Map<String, Map<String, Object>> responsiveImageSettings() {
+    Map<String, Map<String, Object>> settings = new LinkedHashMap<>();
+    for (String aspectRatio : ASPECT_RATIOS) {
+      Map<String, Object> sizes = new LinkedHashMap<>();
+      for (int i = 0; i < WIDTHS.length; i++) {
+        sizes.put(String.valueOf(i), Map.of("width", WIDTHS[i], "height", WIDTHS[i] * 9 / 16));
+      }
+      settings.put(aspectRatio, sizes);
+    }
+    return settings;
+  }
+
+  /**
+   * Returns the average time of one run in nanoseconds, after a warm up.
+   */
+  private static long measure(Runnable runnable) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    return (System.nanoTime() - start) / ITERATIONS;
+  }
+}
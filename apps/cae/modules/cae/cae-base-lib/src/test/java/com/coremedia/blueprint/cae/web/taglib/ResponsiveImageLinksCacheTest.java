@@ -0,0 +1,138 @@
+package com.coremedia.blueprint.cae.web.taglib;
+
+import com.coremedia.blueprint.base.links.UriConstants;
+import com.coremedia.cache.Cache;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cms.delivery.configuration.DeliveryConfigurationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResponsiveImageLinksCacheTest {
+
+  private static final Map<String, Map<String, Object>> SETTINGS = Map.of(
+          "landscape_ratio16x9", Map.of("0", Map.of("width", 320, "height", 180)));
+
+  private ResponsiveImageLinksCache testling;
+  private DeliveryConfigurationProperties deliveryConfigurationProperties;
+
+  @Mock
+  private Content picture;
+
+  private final MockHttpServletRequest request = new MockHttpServletRequest();
+  private final AtomicInteger creations = new AtomicInteger();
+
+  @Before
+  public void setUp() {
+    deliveryConfigurationProperties = new DeliveryConfigurationProperties();
+    deliveryConfigurationProperties.setPreviewMode(false);
+    testling = new ResponsiveImageLinksCache();
+    testling.setCache(new Cache("test"));
+    testling.setDeliveryConfigurationProperties(deliveryConfigurationProperties);
+    testling.initialize();
+  }
+
+  @Test
+  public void linksAreCreatedOnce() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    testling.bindTo(meterRegistry);
+
+    ResponsiveImageLinks links = testling.get(picture, SETTINGS, Map.of(), request, factory());
+
+    assertSame(links, testling.get(picture, Map.copyOf(SETTINGS), Map.of(), request, factory()));
+    assertEquals(1, creations.get());
+    assertEquals(2, meterRegistry.get(ResponsiveImageLinksCache.METRIC_LOOKUPS).functionCounter().count(), 0);
+    assertEquals(1, meterRegistry.get(ResponsiveImageLinksCache.METRIC_CREATIONS).functionCounter().count(), 0);
+  }
+
+  @Test
+  public void keyIncludesLinkContext() {
+    ResponsiveImageLinksCacheKey relative = createKey(SETTINGS, Map.of(), request);
+
+    MockHttpServletRequest otherHost = new MockHttpServletRequest();
+    otherHost.setServerName("www.example.org");
+    assertNotEquals(relative, createKey(SETTINGS, Map.of(), otherHost));
+
+    MockHttpServletRequest otherServletPath = new MockHttpServletRequest();
+    otherServletPath.setServletPath("/servlet");
+    assertNotEquals(relative, createKey(SETTINGS, Map.of(), otherServletPath));
+
+    request.setAttribute(UriConstants.Links.ABSOLUTE_URI_KEY, "true");
+    assertNotEquals(relative, createKey(SETTINGS, Map.of(), request));
+  }
+
+  @Test
+  public void keyIncludesLinkParameters() {
+    List<String> linkContext = List.of("http", "localhost", "80", "", "", "false");
+    ResponsiveImageLinksCacheKey key = new ResponsiveImageLinksCacheKey(picture, SETTINGS, Map.of(),
+            linkContext, Map.of(), factory());
+
+    assertNotEquals(key, new ResponsiveImageLinksCacheKey(picture, SETTINGS, Map.of(),
+            linkContext, Map.of("view", "teaser"), factory()));
+  }
+
+  @Test
+  public void keyIncludesSettings() {
+    ResponsiveImageLinksCacheKey key = createKey(SETTINGS, Map.of(), request);
+
+    assertNotEquals(key, createKey(Map.of(), Map.of(), request));
+    assertNotEquals(key, createKey(SETTINGS, Map.of("image/png", "image/webp"), request));
+  }
+
+  @Test
+  public void factoryIsNotPartOfTheKey() {
+    assertEquals(createKey(SETTINGS, Map.of(), request),
+            ResponsiveImageLinksCache.createKey(picture, SETTINGS, Map.of(), request, () -> null));
+  }
+
+  @Test
+  public void previewRequestsAreNotCacheable() {
+    assertTrue(testling.isCacheable(request));
+
+    deliveryConfigurationProperties.setPreviewMode(true);
+
+    assertFalse(testling.isCacheable(request));
+  }
+
+  @Test
+  public void sessionsTrackedByUrlAreNotCacheable() {
+    request.getSession(true);
+    request.setRequestedSessionIdFromCookie(false);
+
+    assertFalse(testling.isCacheable(request));
+
+    request.setRequestedSessionIdFromCookie(true);
+
+    assertTrue(testling.isCacheable(request));
+  }
+
+  private ResponsiveImageLinksCacheKey createKey(Map<String, ?> settings,
+                                                 Map<String, String> linkMimeTypeMapping,
+                                                 MockHttpServletRequest request) {
+    return ResponsiveImageLinksCache.createKey(picture, settings, linkMimeTypeMapping, request, factory());
+  }
+
+  private Supplier<ResponsiveImageLinks> factory() {
+    return () -> {
+      creations.incrementAndGet();
+      return new ResponsiveImageLinks(Map.of(), Map.of(), Set.of());
+    };
+  }
+}
@@ -9,6 +9,7 @@ import com.coremedia.blueprint.cae.sitemap.CaeSitemapManagementConfiguration;
 import com.coremedia.blueprint.cae.sitemap.ContentBasedSitemapSetupFactory;
 import com.coremedia.blueprint.cae.sitemap.ContentUrlGenerator;
 import com.coremedia.blueprint.cae.sitemap.PlainSitemapRendererFactory;
+import com.coremedia.blueprint.cae.sitemap.SitemapChanges;
 import com.coremedia.blueprint.cae.sitemap.SitemapGenerationHandler;
 import com.coremedia.blueprint.cae.sitemap.SitemapSetup;
 import com.coremedia.blueprint.cae.sitemap.SitemapSetupSelector;
@@ -22,6 +23,7 @@ import com.coremedia.id.IdProvider;
 import com.coremedia.objectserver.beans.ContentBeanFactory;
 import com.coremedia.objectserver.request.RequestUtils;
 import com.coremedia.objectserver.web.links.LinkFormatter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.autoconfigure.web.ManagementContextConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -86,8 +88,11 @@ public class CaeManagementConfiguration {
    */
   @Bean
   public SitemapGenerationHandler sitemapGenerationHandler(SiteResolver siteResolver,
-                                                           ContentBasedSitemapSetupFactory contentBasedSitemapSetupFactory) {
-    return new SitemapGenerationHandler(siteResolver, contentBasedSitemapSetupFactory);
+                                                           ContentBasedSitemapSetupFactory contentBasedSitemapSetupFactory,
+                                                           ObjectProvider<SitemapChanges> sitemapChangesProvider) {
+    SitemapGenerationHandler sitemapGenerationHandler = new SitemapGenerationHandler(siteResolver, contentBasedSitemapSetupFactory);
+    sitemapGenerationHandler.setSitemapChanges(sitemapChangesProvider.getIfAvailable());
+    return sitemapGenerationHandler;
   }
 
   /**
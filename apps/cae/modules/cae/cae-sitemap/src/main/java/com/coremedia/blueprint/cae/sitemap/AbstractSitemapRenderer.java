@@ -47,6 +47,11 @@ public abstract class AbstractSitemapRenderer implements SitemapRenderer {
     return result;
   }
 
+  @Override
+  public long getUrlCount() {
+    return count;
+  }
+
   @Override
   public void setSite(Site site) {
     this.site = site;
@@ -6,6 +6,7 @@ import com.coremedia.cap.common.CapConnection;
 import com.coremedia.cms.delivery.configuration.DeliveryPropertiesAutoConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -36,4 +37,20 @@ public class CaeSitemapAutoConfiguration {
                                        CapConnection connection) {
     return new SitemapHandler(connection, configurationProperties.getTargetRoot());
   }
+
+  /**
+   * The outcome of the latest sitemap generation per site.
+   * <p>
+   * Populated by the sitemap trigger and exposed by the {@link SitemapEndpoint}.
+   */
+  @Bean
+  public SitemapStatistics sitemapStatistics() {
+    return new SitemapStatistics();
+  }
+
+  @Bean
+  @ConditionalOnAvailableEndpoint
+  public SitemapEndpoint sitemapEndpoint(SitemapStatistics sitemapStatistics) {
+    return new SitemapEndpoint(sitemapStatistics);
+  }
 }
@@ -3,6 +3,9 @@ package com.coremedia.blueprint.cae.sitemap;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @ConfigurationProperties(prefix = "cae.sitemap")
 public class CaeSitemapConfigurationProperties {
 
@@ -29,11 +32,46 @@ public class CaeSitemapConfigurationProperties {
    */
   private long periodMinutes = 1440;
 
+  /**
+   * Define the period in which incremental sitemap updates are triggered between the
+   * complete sitemap generations. 0 disables incremental updates.
+   */
+  private long incrementalPeriodMinutes = 0;
+
   /**
    * Define the protocol of the sitemap file URL.
    */
   private String protocol = "https";
 
+  /**
+   * Define the number of threads that walk the folder tree of a site during sitemap generation.
+   */
+  private int traversalParallelism = 1;
+
+  /**
+   * Define the number of sites whose sitemaps are generated concurrently.
+   */
+  private int generationParallelism = 1;
+
+  /**
+   * Define how often the sitemap generation of a site is retried after a failure.
+   */
+  private int generationRetries = 2;
+
+  /**
+   * Define the delay before the first retry of a failed sitemap generation. The delay doubles with each further retry.
+   */
+  private long generationRetryDelayMinutes = 5;
+
+  /**
+   * Define the priority and the period of the sitemap generation of particular sites, by site ID.
+   * <p>
+   * Example:
+   * cae.sitemap.sites.[siteId].priority=10
+   * cae.sitemap.sites.[siteId].period-minutes=10080
+   */
+  private Map<String, SiteSchedule> sites = new HashMap<>();
+
   public long getPeriodMinutes() {
     return periodMinutes;
   }
@@ -42,6 +80,14 @@ public class CaeSitemapConfigurationProperties {
     this.periodMinutes = periodMinutes;
   }
 
+  public long getIncrementalPeriodMinutes() {
+    return incrementalPeriodMinutes;
+  }
+
+  public void setIncrementalPeriodMinutes(long incrementalPeriodMinutes) {
+    this.incrementalPeriodMinutes = incrementalPeriodMinutes;
+  }
+
   public String getStarttime() {
     return starttime;
   }
@@ -65,4 +111,74 @@ public class CaeSitemapConfigurationProperties {
   public void setProtocol(String protocol) {
     this.protocol = protocol;
   }
+
+  public int getTraversalParallelism() {
+    return traversalParallelism;
+  }
+
+  public void setTraversalParallelism(int traversalParallelism) {
+    this.traversalParallelism = traversalParallelism;
+  }
+
+  public int getGenerationParallelism() {
+    return generationParallelism;
+  }
+
+  public void setGenerationParallelism(int generationParallelism) {
+    this.generationParallelism = generationParallelism;
+  }
+
+  public int getGenerationRetries() {
+    return generationRetries;
+  }
+
+  public void setGenerationRetries(int generationRetries) {
+    this.generationRetries = generationRetries;
+  }
+
+  public long getGenerationRetryDelayMinutes() {
+    return generationRetryDelayMinutes;
+  }
+
+  public void setGenerationRetryDelayMinutes(long generationRetryDelayMinutes) {
+    this.generationRetryDelayMinutes = generationRetryDelayMinutes;
+  }
+
+  public Map<String, SiteSchedule> getSites() {
+    return sites;
+  }
+
+  public void setSites(Map<String, SiteSchedule> sites) {
+    this.sites = sites;
+  }
+
+  public static class SiteSchedule {
+
+    /**
+     * Define the priority of the site. Sites with a higher priority are generated first.
+     */
+    private int priority = 0;
+
+    /**
+     * Define the period of the sitemap generation of the site. It is rounded up to a multiple of
+     * cae.sitemap.period-minutes. 0 generates the sitemap in each period of the sitemap generation job.
+     */
+    private long periodMinutes = 0;
+
+    public int getPriority() {
+      return priority;
+    }
+
+    public void setPriority(int priority) {
+      this.priority = priority;
+    }
+
+    public long getPeriodMinutes() {
+      return periodMinutes;
+    }
+
+    public void setPeriodMinutes(long periodMinutes) {
+      this.periodMinutes = periodMinutes;
+    }
+  }
 }
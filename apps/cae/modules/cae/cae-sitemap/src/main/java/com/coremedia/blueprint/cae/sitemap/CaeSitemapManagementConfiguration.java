@@ -3,6 +3,7 @@ package com.coremedia.blueprint.cae.sitemap;
 import com.coremedia.blueprint.base.links.UrlPathFormattingHelper;
 import com.coremedia.blueprint.base.links.UrlPrefixResolver;
 import com.coremedia.blueprint.base.settings.SettingsService;
+import com.coremedia.cap.content.ContentRepository;
 import com.coremedia.cap.multisite.SitesService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,9 +11,11 @@ import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.actuate.autoconfigure.web.ManagementContextConfiguration;
 import org.springframework.boot.actuate.autoconfigure.web.server.ManagementServerProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.context.annotation.Bean;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,9 +63,19 @@ public class CaeSitemapManagementConfiguration {
     SitemapGenerationJob generationJob = new SitemapGenerationJob(sitemapTrigger);
     generationJob.setStartTime(properties.getStarttime());
     generationJob.setPeriodMinutes(properties.getPeriodMinutes());
+    generationJob.setIncrementalPeriodMinutes(properties.getIncrementalPeriodMinutes());
     return generationJob;
   }
 
+  /**
+   * Collects content changes for incremental sitemap updates.
+   */
+  @Bean(initMethod = "start", destroyMethod = "stop")
+  @ConditionalOnExpression("${cae.sitemap.incremental-period-minutes:0} > 0")
+  public SitemapChanges sitemapChanges(ContentRepository contentRepository) {
+    return new SitemapChanges(contentRepository);
+  }
+
   /**
    * Triggers a Sitemap by sending a request to the cae by using the HttpClient.
    */
@@ -71,7 +84,10 @@ public class CaeSitemapManagementConfiguration {
                                            UrlPathFormattingHelper urlPathFormattingHelper,
                                            SitemapSetupSelector sitemapSetupSelector,
                                            ManagementServerProperties managementServerProperties,
-                                           ServerProperties serverProperties) {
+                                           ServerProperties serverProperties,
+                                           ObjectProvider<SitemapChanges> sitemapChangesProvider,
+                                           ObjectProvider<SitemapStatistics> sitemapStatisticsProvider,
+                                           CaeSitemapConfigurationProperties properties) {
     Integer port = managementServerProperties.getPort();
     if (port == null) {
       port = serverProperties.getPort();
@@ -81,6 +97,13 @@ public class CaeSitemapManagementConfiguration {
       LOG.debug("Management port not set, using port {} instead for sitemap trigger.", port);
     }
     LOG.info("Creating sitemap trigger for port {}.", port);
-    return new SitemapTriggerImpl(sitemapSetupSelector, urlPathFormattingHelper, sitesService, port);
+    SitemapTriggerImpl sitemapTrigger = new SitemapTriggerImpl(sitemapSetupSelector, urlPathFormattingHelper, sitesService, port);
+    sitemapTrigger.setSitemapChanges(sitemapChangesProvider.getIfAvailable());
+    sitemapTrigger.setSitemapStatistics(sitemapStatisticsProvider.getIfAvailable());
+    sitemapTrigger.setParallelism(properties.getGenerationParallelism());
+    sitemapTrigger.setRetries(properties.getGenerationRetries());
+    sitemapTrigger.setRetryDelay(Duration.ofMinutes(properties.getGenerationRetryDelayMinutes()));
+    sitemapTrigger.setSiteSchedules(properties.getSites());
+    return sitemapTrigger;
   }
 }
@@ -10,28 +10,49 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import static com.coremedia.blueprint.base.links.UriConstants.Links.ABSOLUTE_URI_KEY;
 import static java.lang.invoke.MethodHandles.lookup;
 
-public class ContentUrlGenerator implements SitemapUrlGenerator {
+public class ContentUrlGenerator implements IncrementalSitemapUrlGenerator, DisposableBean {
   private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
 
   private final LinkFormatter linkFormatter;
   private final ContentBeanFactory contentBeanFactory;
   private final ValidationService validationService;
 
+  private static final int DOCUMENT_QUEUE_CAPACITY = 256;
+  private static final long PROGRESS_LOG_INTERVAL_MILLIS = 60_000;
+  private static final long QUEUE_POLL_MILLIS = 1000;
+  private static final long IDLE_THREAD_SECONDS = 60;
+  private static final List<Content> END_OF_TRAVERSAL = Collections.emptyList();
+
   private final List<String> exclusionPaths;
   private final List<Predicate<Content>> predicates;
 
+  private int traversalParallelism = 1;
+  private ExecutorService traversalExecutor;
+  private boolean destroyed;
+  private SitemapStatistics sitemapStatistics;
+
   /**
    * The predicates are combined, i.e. if a predicate is not fulfilled for
    * a content, the URL is not generated.
@@ -50,6 +71,50 @@ public class ContentUrlGenerator implements SitemapUrlGenerator {
     this.predicates = predicates;
   }
 
+  /**
+   * The number of threads that walk the folder tree of a site.
+   * <p>
+   * Folders are traversed and documents are filtered by the predicates
+   * in parallel, while the links are still built on the request thread,
+   * since link building depends on the request.  The documents are handed
+   * over through a bounded queue, so memory consumption does not depend
+   * on the size of the site.
+   * <p>
+   * Defaults to 1, i.e. the whole traversal runs on the request thread.
+   * <p>
+   * The threads are shared by all sitemap generations of this generator,
+   * so concurrent generations of several sites do not multiply them.
+   * They are created with the first sitemap generation and released
+   * when the generator is destroyed, so the parallelism cannot be changed
+   * afterwards.
+   */
+  public synchronized void setTraversalParallelism(int traversalParallelism) {
+    if (traversalParallelism<1) {
+      throw new IllegalArgumentException("traversalParallelism must be > 0.");
+    }
+    if (traversalExecutor!=null) {
+      throw new IllegalStateException("traversalParallelism cannot be changed after the traversal threads have been created.");
+    }
+    this.traversalParallelism = traversalParallelism;
+  }
+
+  /**
+   * Optional, the progress of running sitemap generations is reported to
+   * the statistics and thus exposed by the {@link SitemapEndpoint}.
+   */
+  public void setSitemapStatistics(SitemapStatistics sitemapStatistics) {
+    this.sitemapStatistics = sitemapStatistics;
+  }
+
+  @Override
+  public synchronized void destroy() {
+    destroyed = true;
+    if (traversalExecutor!=null) {
+      traversalExecutor.shutdownNow();
+      traversalExecutor = null;
+    }
+  }
+
   // --- SitemapUrlGenerator ----------------------------------------
 
   /**
@@ -62,23 +127,85 @@ public class ContentUrlGenerator implements SitemapUrlGenerator {
                            boolean absoluteUrls,
                            String protocol,
                            UrlCollector sitemapRenderer) {
-    String folderNamesToExcludeParam = request.getParameter(SitemapRequestParams.PARAM_EXCLUDE_FOLDERS);
-    List<String> folderNamesToExclude = StringUtils.isNotEmpty(folderNamesToExcludeParam) ? Arrays.asList(folderNamesToExcludeParam.split(",")) : new ArrayList<String>();
+    List<String> folderNamesToExclude = folderNamesToExclude(request);
     Content sitemapRoot = site.getSiteRootFolder();
-    buildUrls(sitemapRenderer, sitemapRoot, sitemapRoot, request, response, absoluteUrls, protocol, folderNamesToExclude);
+    SitemapStatistics.Progress progress = sitemapStatistics!=null ? sitemapStatistics.startProgress(site) : new SitemapStatistics.Progress(site.getName());
+    try {
+      ExecutorService executor = getTraversalExecutor();
+      if (executor!=null) {
+        buildUrlsInParallel(executor, progress, sitemapRenderer, sitemapRoot, request, response, absoluteUrls, protocol, folderNamesToExclude);
+      } else {
+        buildUrls(progress, sitemapRenderer, sitemapRoot, sitemapRoot, request, response, absoluteUrls, protocol, folderNamesToExclude);
+      }
+    } finally {
+      if (sitemapStatistics!=null) {
+        sitemapStatistics.endProgress(site, progress);
+      }
+    }
+  }
+
+  /**
+   * Generate the URL of a single document, if it is located in the site
+   * and not excluded from the sitemap.
+   */
+  @Override
+  public void generateUrl(@NonNull HttpServletRequest request,
+                          @NonNull HttpServletResponse response,
+                          Site site,
+                          boolean absoluteUrls,
+                          String protocol,
+                          Content content,
+                          UrlCollector urlCollector) {
+    if (content.isDestroyed() || content.isFolder()) {
+      return;
+    }
+    Content siteRoot = site.getSiteRootFolder();
+    List<String> folderNamesToExclude = folderNamesToExclude(request);
+    for (Content folder = content.getParent(); folder != null; folder = folder.getParent()) {
+      if (isPathExcluded(siteRoot, folder) || isFolderNameExcluded(folder, folderNamesToExclude)) {
+        return;
+      }
+      if (folder.equals(siteRoot)) {
+        buildUrl(urlCollector, content, request, response, absoluteUrls, protocol);
+        return;
+      }
+    }
+    // not located in the site
   }
 
   // --- internal ---------------------------------------------------
 
+  private synchronized ExecutorService getTraversalExecutor() {
+    if (traversalExecutor==null && traversalParallelism>1) {
+      if (destroyed) {
+        throw new IllegalStateException("The sitemap traversal pool has been shut down.");
+      }
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(traversalParallelism, traversalParallelism,
+              IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+              new CustomizableThreadFactory("sitemap-traversal-"));
+      // sitemaps are generated rarely, do not keep the threads in between
+      executor.allowCoreThreadTimeOut(true);
+      traversalExecutor = executor;
+    }
+    return traversalExecutor;
+  }
+
+  private static List<String> folderNamesToExclude(@NonNull HttpServletRequest request) {
+    String folderNamesToExcludeParam = request.getParameter(SitemapRequestParams.PARAM_EXCLUDE_FOLDERS);
+    return StringUtils.isNotEmpty(folderNamesToExcludeParam) ? Arrays.asList(folderNamesToExcludeParam.split(",")) : new ArrayList<String>();
+  }
+
   /**
    * Recursive call through the repository.
    *
+   * @param progress The progress of the sitemap generation.
    * @param builder  The string builder the urls are stored into.
    * @param folder   The current folder.
    * @param request  The active request.
    * @param response The active response.
    */
-  private void buildUrls(UrlCollector builder,
+  private void buildUrls(SitemapStatistics.Progress progress,
+                         UrlCollector builder,
                          Content folder,
                          Content siteRoot,
                          @NonNull HttpServletRequest request,
@@ -90,14 +217,57 @@ public class ContentUrlGenerator implements SitemapUrlGenerator {
       Set<Content> children = folder.getChildren();
       for (Content child : children) {
         if (child.isFolder()) {
-          buildUrls(builder, child, siteRoot, request, response, absoluteUrls, protocol, folderNamesToExclude);
+          buildUrls(progress, builder, child, siteRoot, request, response, absoluteUrls, protocol, folderNamesToExclude);
         } else {
           buildUrl(builder, child, request, response, absoluteUrls, protocol);
+          progress.addDocuments(1);
         }
       }
     }
   }
 
+  /**
+   * Walks the folder tree on the traversal pool and builds the URLs of the
+   * valid documents on the current thread as they come in.
+   * <p>
+   * Failures of the URL collector, e.g. IO errors while writing the sitemap
+   * files, abort the traversal and are propagated.
+   */
+  private void buildUrlsInParallel(ExecutorService executor,
+                                   SitemapStatistics.Progress progress,
+                                   UrlCollector builder,
+                                   Content siteRoot,
+                                   @NonNull HttpServletRequest request,
+                                   @NonNull HttpServletResponse response,
+                                   boolean absoluteUrls,
+                                   String protocol,
+                                   List<String> folderNamesToExclude) {
+    FolderTraversal traversal = new FolderTraversal(executor, siteRoot, folderNamesToExclude);
+    try {
+      traversal.submit(siteRoot);
+      long start = System.currentTimeMillis();
+      long lastLog = start;
+      for (List<Content> documents = traversal.take(); documents!=END_OF_TRAVERSAL; documents = traversal.take()) {
+        for (Content document : documents) {
+          buildUrl(builder, document, request, response, absoluteUrls, protocol, false);
+        }
+        progress.addDocuments(documents.size());
+        progress.setPendingFolders(traversal.pendingFolders());
+        long now = System.currentTimeMillis();
+        if (now - lastLog >= PROGRESS_LOG_INTERVAL_MILLIS) {
+          lastLog = now;
+          LOG.info("Sitemap generation for {}: {} documents processed ({} per second), {} folders still to process.",
+                  siteRoot, progress.getDocuments(), progress.getDocumentsPerSecond(), traversal.pendingFolders());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while generating URLs for " + siteRoot, e);
+    } finally {
+      traversal.cancel();
+    }
+  }
+
   /**
    * Append the URL for the content.
    *
@@ -108,19 +278,26 @@ public class ContentUrlGenerator implements SitemapUrlGenerator {
    */
   private void buildUrl(UrlCollector builder, Content content, @NonNull HttpServletRequest request,
                         @NonNull HttpServletResponse response, boolean absoluteUrls, String protocol) {
+    buildUrl(builder, content, request, response, absoluteUrls, protocol, true);
+  }
+
+  private void buildUrl(UrlCollector builder, Content content, @NonNull HttpServletRequest request,
+                        @NonNull HttpServletResponse response, boolean absoluteUrls, String protocol,
+                        boolean checkPredicates) {
+    String link;
     try {
-      if (isValid(content)) {
-        String link = createLink(content, request, response, absoluteUrls);
-        if (link != null) {
-          // Make absolutely absolute
-          if (link.startsWith("//")) {
-            link = protocol + ":" + link;
-          }
-          builder.appendUrl(link);
-        }
-      }
+      link = !checkPredicates || isValid(content) ? createLink(content, request, response, absoluteUrls) : null;
     } catch (Exception e) {
       LOG.warn("Cannot handle \"" + content + "\". Omit and continue.", e);
+      return;
+    }
+    if (link != null) {
+      // Make absolutely absolute
+      if (link.startsWith("//")) {
+        link = protocol + ":" + link;
+      }
+      // Not caught, failures of the collector (e.g. IO errors) must abort the sitemap generation.
+      builder.appendUrl(link, content);
     }
   }
 
@@ -177,4 +354,109 @@ public class ContentUrlGenerator implements SitemapUrlGenerator {
     }
     return false;
   }
+
+  /**
+   * Walks a folder tree on an executor and hands over the valid documents
+   * of each folder through a bounded queue.
+   * <p>
+   * The executor is shared, so a traversal is not stopped by shutting the
+   * executor down, but by {@link #cancel()}.  Pending tasks of a cancelled
+   * traversal return immediately.
+   */
+  private class FolderTraversal {
+    private final ExecutorService executor;
+    private final Content siteRoot;
+    private final List<String> folderNamesToExclude;
+    private final BlockingQueue<List<Content>> documents = new ArrayBlockingQueue<>(DOCUMENT_QUEUE_CAPACITY);
+    private final AtomicInteger pendingFolders = new AtomicInteger();
+    private volatile boolean cancelled;
+
+    FolderTraversal(ExecutorService executor, Content siteRoot, List<String> folderNamesToExclude) {
+      this.executor = executor;
+      this.siteRoot = siteRoot;
+      this.folderNamesToExclude = folderNamesToExclude;
+    }
+
+    void submit(Content folder) {
+      pendingFolders.incrementAndGet();
+      executor.execute(() -> {
+        try {
+          if (!cancelled) {
+            visit(folder);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (Exception e) {
+          LOG.warn("Cannot handle folder \"" + folder + "\". Omit and continue.", e);
+        } finally {
+          if (pendingFolders.decrementAndGet()==0) {
+            finish();
+          }
+        }
+      });
+    }
+
+    List<Content> take() throws InterruptedException {
+      List<Content> next = documents.poll(QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+      while (next == null) {
+        if (executor.isShutdown()) {
+          throw new IllegalStateException("The sitemap traversal pool has been shut down.");
+        }
+        next = documents.poll(QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      return next;
+    }
+
+    int pendingFolders() {
+      return pendingFolders.get();
+    }
+
+    void cancel() {
+      cancelled = true;
+    }
+
+    private void visit(Content folder) throws InterruptedException {
+      if (isPathExcluded(siteRoot, folder) || isFolderNameExcluded(folder, folderNamesToExclude)) {
+        return;
+      }
+      List<Content> validDocuments = new ArrayList<>();
+      for (Content child : folder.getChildren()) {
+        if (child.isFolder()) {
+          // submit before this folder is finished, so that the pending count never drops to 0 prematurely
+          submit(child);
+        } else if (isValidQuietly(child)) {
+          validDocuments.add(child);
+        }
+      }
+      if (!validDocuments.isEmpty()) {
+        put(validDocuments);
+      }
+    }
+
+    /**
+     * Hand over documents to the consumer, unless the traversal has been cancelled meanwhile.
+     */
+    private void put(List<Content> validDocuments) throws InterruptedException {
+      while (!cancelled && !documents.offer(validDocuments, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        // queue is full, the consumer is busy
+      }
+    }
+
+    private boolean isValidQuietly(Content content) {
+      try {
+        return isValid(content);
+      } catch (Exception e) {
+        LOG.warn("Cannot handle \"" + content + "\". Omit and continue.", e);
+        return false;
+      }
+    }
+
+    private void finish() {
+      try {
+        put(END_OF_TRAVERSAL);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
 }
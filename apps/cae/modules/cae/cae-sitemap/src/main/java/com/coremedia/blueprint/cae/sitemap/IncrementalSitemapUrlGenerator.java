@@ -0,0 +1,30 @@
+package com.coremedia.blueprint.cae.sitemap;
+
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.multisite.Site;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A {@link SitemapUrlGenerator} which can also generate the URL of a single
+ * content.
+ * <p>
+ * Incremental sitemap updates are only performed if all URL generators of
+ * a sitemap setup implement this interface.  Otherwise, the sitemap is
+ * always generated completely.
+ */
+public interface IncrementalSitemapUrlGenerator extends SitemapUrlGenerator {
+  /**
+   * Generate the URL of a single content, if the content belongs into the
+   * sitemap of the site.
+   */
+  void generateUrl(HttpServletRequest request,
+                   HttpServletResponse response,
+                   Site site,
+                   boolean absoluteUrls,
+                   String protocol,
+                   Content content,
+                   UrlCollector urlCollector);
+}
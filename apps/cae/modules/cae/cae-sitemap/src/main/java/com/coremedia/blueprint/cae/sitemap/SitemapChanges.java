@@ -0,0 +1,98 @@
+package com.coremedia.blueprint.cae.sitemap;
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.content.events.ContentEvent;
+import com.coremedia.cap.content.events.ContentRepositoryListenerBase;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * A {@link com.coremedia.cap.content.events.ContentRepositoryListener} that
+ * collects the documents which have been changed, published or withdrawn
+ * since the last incremental sitemap update.
+ * <p>
+ * An update cycle is started by {@link #startCycle()}, which freezes the
+ * changes collected so far.  Changes which occur during the cycle are kept
+ * for the next cycle.  If the cycle fails, its changes are kept, too.
+ * <p>
+ * Folder changes are ignored.  Changes which affect the URLs of documents
+ * without changing the documents themselves (e.g. renaming the segment of a
+ * channel) are not detected, so a periodic full sitemap generation is still
+ * necessary.
+ */
+public class SitemapChanges extends ContentRepositoryListenerBase {
+  private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
+
+  private final ContentRepository repository;
+  private final Set<Content> pending = ConcurrentHashMap.newKeySet();
+  private volatile Set<Content> cycle = Collections.emptySet();
+
+  public SitemapChanges(@NonNull ContentRepository repository) {
+    this.repository = repository;
+  }
+
+
+  // --- lifecycle --------------------------------------------------
+
+  public void start() {
+    LOG.info("Listening to content changes for incremental sitemap updates.");
+    repository.addContentRepositoryListener(this);
+  }
+
+  public void stop() {
+    repository.removeContentRepositoryListener(this);
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Freeze the changes collected so far for the next update cycle.
+   */
+  public synchronized void startCycle() {
+    Set<Content> changes = new HashSet<>(pending);
+    pending.removeAll(changes);
+    cycle = changes;
+  }
+
+  /**
+   * The changed documents of the current update cycle.
+   */
+  @NonNull
+  public Collection<Content> getChangedContents() {
+    return Collections.unmodifiableSet(cycle);
+  }
+
+  /**
+   * End the current update cycle.
+   *
+   * @param success if false, the changes of the cycle are kept for the next cycle
+   */
+  public synchronized void endCycle(boolean success) {
+    if (!success) {
+      pending.addAll(cycle);
+    }
+    cycle = Collections.emptySet();
+  }
+
+
+  // --- ContentRepositoryListenerBase ------------------------------
+
+  @Override
+  protected void handleContentEvent(ContentEvent event) {
+    Content content = event.getContent();
+    if (content != null && (content.isDestroyed() || content.isDocument())) {
+      pending.add(content);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.coremedia.blueprint.cae.sitemap;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent index of the URLs in a sitemap file.
+ * <p>
+ * Each sitemap file of a site has an index file, which lists the URLs of
+ * the sitemap file together with the ids of the contents they have been
+ * generated for.  This allows for incremental sitemap updates which rewrite
+ * only the affected sitemap files.  The index files are written while the
+ * sitemap files are streamed and read one at a time, so memory consumption
+ * does not depend on the size of the site.
+ * <p>
+ * URLs which have not been generated for a particular content (e.g. by
+ * other {@link SitemapUrlGenerator}s) are kept without content id.
+ * <p>
+ * An index file is gzipped UTF-8 text, one URL per line:
+ * <code>content id (may be empty) TAB URL</code>.
+ */
+final class SitemapContentIndex {
+
+  private static final char SEPARATOR = '\t';
+  private static final String SITEMAP_FILE_SUFFIX = ".xml.gz";
+  private static final String INDEX_FILE_SUFFIX = ".idx.gz";
+
+  private SitemapContentIndex() {
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Returns the name of the index file of the given sitemap file,
+   * e.g. sitemap1.idx.gz for sitemap1.xml.gz.
+   */
+  @NonNull
+  static String indexFileName(@NonNull String sitemapFile) {
+    String basename = sitemapFile.endsWith(SITEMAP_FILE_SUFFIX)
+            ? sitemapFile.substring(0, sitemapFile.length() - SITEMAP_FILE_SUFFIX.length())
+            : sitemapFile;
+    return basename + INDEX_FILE_SUFFIX;
+  }
+
+  /**
+   * Read the entries of an index file.
+   * <p>
+   * An index file has at most as many entries as a sitemap file, i.e. 50,000.
+   */
+  @NonNull
+  static List<Entry> read(@NonNull File file) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int separator = line.indexOf(SEPARATOR);
+        if (separator < 0) {
+          throw new IOException("Corrupt sitemap content index " + file.getAbsolutePath() + ": " + line);
+        }
+        String contentId = line.substring(0, separator);
+        entries.add(new Entry(contentId.isEmpty() ? null : contentId, line.substring(separator + 1)));
+      }
+    }
+    return entries;
+  }
+
+
+  // --- inner classes ----------------------------------------------
+
+  /**
+   * Streams the entries of a sitemap file into its index file.
+   */
+  static final class Writer implements Closeable {
+    private final BufferedWriter writer;
+
+    Writer(@NonNull File file) throws IOException {
+      writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8));
+    }
+
+    void add(@Nullable String contentId, @NonNull String url) throws IOException {
+      writer.write(contentId == null ? "" : contentId);
+      writer.write(SEPARATOR);
+      writer.write(url);
+      writer.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+
+  static final class Entry {
+    private final String contentId;
+    private final String url;
+
+    Entry(@Nullable String contentId, @NonNull String url) {
+      this.contentId = contentId;
+      this.url = url;
+    }
+
+    @Nullable
+    String getContentId() {
+      return contentId;
+    }
+
+    @NonNull
+    String getUrl() {
+      return url;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.coremedia.blueprint.cae.sitemap;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.Map;
+
+/**
+ * Exposes the per site {@link SitemapStatistics} as actuator endpoint
+ * {@code sitemaps}.
+ */
+@Endpoint(id = "sitemaps")
+public class SitemapEndpoint {
+
+  private final SitemapStatistics sitemapStatistics;
+
+  public SitemapEndpoint(SitemapStatistics sitemapStatistics) {
+    this.sitemapStatistics = sitemapStatistics;
+  }
+
+  @ReadOperation
+  public Map<String, SitemapStatistics.SiteStatistics> sites() {
+    return sitemapStatistics.getSites();
+  }
+
+  @ReadOperation
+  public SitemapStatistics.SiteStatistics site(@Selector String siteId) {
+    return sitemapStatistics.getSite(siteId);
+  }
+}
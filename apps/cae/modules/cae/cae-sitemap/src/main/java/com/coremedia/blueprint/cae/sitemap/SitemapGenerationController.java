@@ -1,6 +1,7 @@
 package com.coremedia.blueprint.cae.sitemap;
 
 import com.coremedia.blueprint.base.multisite.cae.SiteResolver;
+import com.coremedia.cap.content.Content;
 import com.coremedia.cap.multisite.Site;
 import com.coremedia.cap.multisite.SiteHelper;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -14,6 +15,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
 
@@ -32,6 +35,7 @@ public class SitemapGenerationController {
 
   private final SiteResolver siteResolver;
   private final SitemapSetupFactory sitemapSetupFactory;
+  private SitemapChanges sitemapChanges;
 
 
   // --- construct and configure ------------------------------------
@@ -41,6 +45,16 @@ public class SitemapGenerationController {
     this.sitemapSetupFactory = sitemapSetupFactory;
   }
 
+  /**
+   * The content changes for incremental sitemap updates.
+   * <p>
+   * Optional, if not set, incremental update requests result in a
+   * complete sitemap generation.
+   */
+  public void setSitemapChanges(SitemapChanges sitemapChanges) {
+    this.sitemapChanges = sitemapChanges;
+  }
+
   // --- features ---------------------------------------------------
 
   protected ModelAndView handleRequestInternal(String rootSegment, HttpServletRequest request, HttpServletResponse response) {
@@ -92,6 +106,13 @@ public class SitemapGenerationController {
    * @return The renderer's result.
    */
   String createUrls(Site site, SitemapSetup config, HttpServletRequest request, HttpServletResponse response) {
+    if (getBooleanParameter(request, SitemapRequestParams.PARAM_INCREMENTAL, false)) {
+      String result = updateUrls(site, config, request, response);
+      if (result != null) {
+        return result;
+      }
+      LOG.info("Cannot update the sitemap of {} incrementally, generate the complete sitemap.", site);
+    }
     SitemapRendererFactory sitemapRendererFactory = config.getSitemapRendererFactory();
     SitemapRenderer sitemapRenderer = sitemapRendererFactory.createInstance();
     sitemapRenderer.setSite(site);
@@ -100,9 +121,53 @@ public class SitemapGenerationController {
       urlGenerator.generateUrls(request, response, site, sitemapRendererFactory.absoluteUrls(), config.getProtocol(), sitemapRenderer);
     }
     sitemapRenderer.endUrlList();
+    setUrlCountHeader(sitemapRenderer, response);
     return sitemapRenderer.getResponse();
   }
 
+  /**
+   * Updates only the URLs of the contents which have been changed since
+   * the last update.
+   *
+   * @return The renderer's result, or null if an incremental update is not possible.
+   */
+  private String updateUrls(Site site, SitemapSetup config, HttpServletRequest request, HttpServletResponse response) {
+    if (sitemapChanges == null || !config.getUrlGenerators().stream().allMatch(IncrementalSitemapUrlGenerator.class::isInstance)) {
+      return null;
+    }
+    SitemapRendererFactory sitemapRendererFactory = config.getSitemapRendererFactory();
+    SitemapRenderer sitemapRenderer = sitemapRendererFactory.createInstance();
+    if (!(sitemapRenderer instanceof SitemapIndexRenderer)) {
+      return null;
+    }
+    SitemapIndexRenderer sitemapIndexRenderer = (SitemapIndexRenderer) sitemapRenderer;
+    sitemapIndexRenderer.setSite(site);
+    if (!sitemapIndexRenderer.startUpdate()) {
+      return null;
+    }
+    for (Content content : sitemapChanges.getChangedContents()) {
+      List<String> urls = new ArrayList<>(1);
+      for (SitemapUrlGenerator urlGenerator : config.getUrlGenerators()) {
+        ((IncrementalSitemapUrlGenerator) urlGenerator).generateUrl(request, response, site, sitemapRendererFactory.absoluteUrls(), config.getProtocol(), content, urls::add);
+      }
+      sitemapIndexRenderer.updateUrl(content.getId(), urls.isEmpty() ? null : urls.get(0));
+    }
+    sitemapIndexRenderer.endUpdate();
+    setUrlCountHeader(sitemapIndexRenderer, response);
+    return sitemapIndexRenderer.getResponse();
+  }
+
+  /**
+   * Report the number of URLs to the {@link SitemapTriggerImpl} as structured
+   * data, independent of the renderer's response format.
+   */
+  private static void setUrlCountHeader(SitemapRenderer sitemapRenderer, HttpServletResponse response) {
+    long urlCount = sitemapRenderer.getUrlCount();
+    if (urlCount >= 0) {
+      response.setHeader(SitemapHelper.URL_COUNT_HEADER, String.valueOf(urlCount));
+    }
+  }
+
   private void handleError(HttpServletResponse response, String msg, Exception e, int httpErrorCode) {
     if (e != null) {
       LOG.error(msg, e);
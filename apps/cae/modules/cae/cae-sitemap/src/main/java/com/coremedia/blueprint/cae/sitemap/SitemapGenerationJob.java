@@ -30,6 +30,7 @@ public class SitemapGenerationJob implements SmartLifecycle {
   private ScheduledExecutorService executor;
   private String startTime = STARTTIME_DISABLE;
   private long periodMinutes = DAILY;
+  private long incrementalPeriodMinutes = 0;
   private long counter = 0;
 
   private final SitemapTrigger sitemapTrigger;
@@ -72,6 +73,24 @@ public class SitemapGenerationJob implements SmartLifecycle {
     this.periodMinutes = periodMinutes;
   }
 
+  /**
+   * The period for incremental sitemap updates between the complete
+   * sitemap generations.
+   * <p>
+   * Defaults to 0, i.e. no incremental updates.
+   * <p>
+   * Incremental updates share the thread with the complete generation,
+   * so they never run concurrently.  Retries of failed complete generations
+   * run in the background, the {@link SitemapTriggerImpl} skips a site while
+   * its sitemap is being generated.
+   */
+  public void setIncrementalPeriodMinutes(long incrementalPeriodMinutes) {
+    if (incrementalPeriodMinutes<0) {
+      throw new IllegalArgumentException("incrementalPeriodMinutes must be >= 0.");
+    }
+    this.incrementalPeriodMinutes = incrementalPeriodMinutes;
+  }
+
 
   // --- SmartLifecycle ---------------------------------------------
 
@@ -141,11 +160,26 @@ public class SitemapGenerationJob implements SmartLifecycle {
     if (initialDelay>=0) {
       LOG.info("First sitemap generation job will start in {} minutes.", initialDelay);
       scheduler.scheduleAtFixedRate(job, initialDelay, periodMinutes, TimeUnit.MINUTES);
+      scheduleIncrementalSitemapUpdates(scheduler);
     } else {
       LOG.info("Periodic sitemap generation is disabled. You can still manually trigger sitemap generation by the sitemap generation URL.");
     }
   }
 
+  private void scheduleIncrementalSitemapUpdates(ScheduledExecutorService scheduler) {
+    if (incrementalPeriodMinutes>0) {
+      final Runnable job = () -> {
+        try {
+          sitemapTrigger.updateSitemaps();
+        } catch (Exception e) {
+          LOG.error("Incremental sitemap update failed.", e);
+        }
+      };
+      LOG.info("Incremental sitemap updates will run every {} minutes.", incrementalPeriodMinutes);
+      scheduler.scheduleWithFixedDelay(job, incrementalPeriodMinutes, incrementalPeriodMinutes, TimeUnit.MINUTES);
+    }
+  }
+
   @VisibleForTesting
   int initialDelayMinutes() {
     try {
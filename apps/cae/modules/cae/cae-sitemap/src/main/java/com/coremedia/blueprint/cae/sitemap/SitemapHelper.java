@@ -21,6 +21,7 @@ public class SitemapHelper {
   static final String SITEMAP_ORG_CONFIGURATION_KEY = "sitemapOrgConfiguration";
   static final String FILE_PREFIX = "sitemap";
   static final String SITEMAP_INDEX_FILENAME = FILE_PREFIX + "_index.xml";
+  static final String URL_COUNT_HEADER = "X-Sitemap-Url-Count";
 
   private final SettingsService settingsService;
   private final UrlPrefixResolver urlPrefixResolver;
@@ -2,8 +2,10 @@ package com.coremedia.blueprint.cae.sitemap;
 
 
 import com.coremedia.blueprint.base.links.UrlPrefixResolver;
+import com.coremedia.cap.content.Content;
 import com.coremedia.cap.multisite.Site;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -15,10 +17,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.zip.GZIPOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import static org.apache.commons.text.StringEscapeUtils.escapeXml11;
 
@@ -28,6 +41,9 @@ class SitemapIndexRenderer extends AbstractSitemapRenderer {
   private static final int SITEMAP_INDEX_MAX_ENTRIES = 50000;
   private static final int SITEMAP_INDEX_MAX_SIZE = 10485760;
 
+  private static final String CONTENT_INDEX_DIRECTORY = SitemapHelper.FILE_PREFIX + ".idx";
+  private static final String SITEMAP_FILE_SUFFIX = ".xml.gz";
+
   private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
 
   private UrlPrefixResolver urlPrefixResolver;
@@ -39,8 +55,17 @@ class SitemapIndexRenderer extends AbstractSitemapRenderer {
   private File tmpDir; //targetDir/SiteId/sitemap.tmp, used for creation of the sitemap before replacing the old one.
   private String absoluteUrlPrefix;  // same as the site's url prefix, need it for the sitemap index entries
 
-  // Delegate renderer for the sitemap fragment currently in progress
-  private SitemapXmlRenderer sitemapXmlRenderer;
+  // Streaming writers for the sitemap file currently in progress and its
+  // content index file, created lazily
+  private SitemapXmlFileWriter sitemapWriter;
+  private SitemapContentIndex.Writer contentIndexWriter;
+  private long urlCount;
+
+  // State of an incremental update, see startUpdate()
+  private boolean updating;
+  private Map<String, String> changedUrls;
+  private Set<String> changedFiles;
+  private List<String> remainingFiles;
 
 
   // --- config -----------------------------------------------------
@@ -86,11 +111,15 @@ class SitemapIndexRenderer extends AbstractSitemapRenderer {
     try {
       super.startUrlList();
       tmpDir = getSitemapTmpDir();
+      File contentIndexDir = new File(tmpDir, CONTENT_INDEX_DIRECTORY);
+      FileUtils.deleteDirectory(contentIndexDir);
+      FileUtils.forceMkdir(contentIndexDir);
       backupSitemap();
       filenameIndex = 0;
+      urlCount = 0;
+      sitemapWriter = null;
+      contentIndexWriter = null;
       printOpening();
-      sitemapXmlRenderer = new SitemapXmlRenderer(absoluteUrlPrefix);
-      sitemapXmlRenderer.startUrlList();
     } catch (IOException e) {
       throw new IllegalStateException("Cannot create sitemap", e);
     }
@@ -103,13 +132,21 @@ class SitemapIndexRenderer extends AbstractSitemapRenderer {
    */
   @Override
   public void appendUrl(String url) {
+    appendUrl(url, null);
+  }
+
+  @Override
+  public void appendUrl(String url, Content content) {
     try {
       newSitemapIfFull(url);
     } catch (IOException e) {
       throw new IllegalStateException("Cannot create sitemap", e);
     }
     try {
-      sitemapXmlRenderer.appendUrl(url);
+      sitemapWriter.appendUrl(url);
+      contentIndexWriter.add(content == null ? null : content.getId(), url);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot write sitemap", e);
     } catch (Exception e) {
       LOG.warn("Cannot render sitemap url {}: {}, omit and continue.", url, e.getMessage());
     }
@@ -125,7 +162,9 @@ class SitemapIndexRenderer extends AbstractSitemapRenderer {
       replaceOldSitemap();
     } catch (IOException e) {
       try {
+        closeQuietly();
         deleteSitemap();
+        FileUtils.deleteDirectory(getContentIndexDir());
         FileUtils.forceDelete(tmpDir);
       } catch (IOException e1) {
         throw new IllegalStateException("Cannot create sitemap, and cannot even cleanup!", e);
@@ -140,12 +179,283 @@ class SitemapIndexRenderer extends AbstractSitemapRenderer {
     for (File file : files) {
       FileUtils.moveFileToDirectory(file, outputDir, false);
     }
+    File contentIndexDir = getContentIndexDir();
+    FileUtils.deleteDirectory(contentIndexDir);
+    FileUtils.moveDirectory(new File(tmpDir, CONTENT_INDEX_DIRECTORY), contentIndexDir);
     FileUtils.forceDelete(tmpDir);
   }
 
   @Override
   public String getResponse() {
-    return "Sitemap has been written to " + outputDir + ", " + new Date() + "\n";
+    if (updating) {
+      return "Sitemap with " + urlCount + " URLs in " + remainingFiles.size() + " files has been updated in " + outputDir + ", " + changedFiles.size() + " files rewritten, " + new Date() + "\n";
+    }
+    return "Sitemap with " + urlCount + " URLs in " + filenameIndex + " files has been written to " + outputDir + ", " + new Date() + "\n";
+  }
+
+  /**
+   * The number of URLs in all sitemap files, also after an incremental update.
+   */
+  @Override
+  public long getUrlCount() {
+    return urlCount;
+  }
+
+
+  // --- incremental update -----------------------------------------
+
+  /**
+   * Start an incremental update of the existing sitemap.
+   * <p>
+   * Instead of startUrlList/appendUrl/endUrlList, an incremental update
+   * consists of startUpdate, {@link #updateUrl} for each changed content
+   * and {@link #endUpdate}.
+   *
+   * @return false if there is no content index of a previous sitemap generation,
+   * so that a complete sitemap generation is necessary.
+   */
+  boolean startUpdate() {
+    if (!new File(outputDir, SitemapHelper.SITEMAP_INDEX_FILENAME).isFile()) {
+      return false;
+    }
+    try {
+      for (String sitemapFile : listSitemapFilenames()) {
+        if (!getContentIndexFile(getContentIndexDir(), sitemapFile).isFile()) {
+          return false;
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot read sitemap content index of {}, a complete sitemap generation is necessary.", outputDir, e);
+      return false;
+    }
+    updating = true;
+    changedUrls = new LinkedHashMap<>();
+    changedFiles = new TreeSet<>();
+    remainingFiles = new ArrayList<>();
+    return true;
+  }
+
+  /**
+   * Set the URL of a changed content.
+   *
+   * @param contentId the id of the content
+   * @param url the new URL, or null if the content does not belong into the sitemap (anymore)
+   */
+  void updateUrl(@NonNull String contentId, @Nullable String url) {
+    if (!updating) {
+      throw new IllegalStateException("Must call startUpdate before.");
+    }
+    if (url != null && !isValidUrl(url)) {
+      url = null;
+    }
+    changedUrls.put(contentId, url);
+  }
+
+  /**
+   * Rewrite the affected sitemap files and the sitemap index.
+   * <p>
+   * The content index files are processed one by one, so at most the
+   * entries of one sitemap file are held in memory.
+   */
+  void endUpdate() {
+    if (!updating) {
+      throw new IllegalStateException("Must call startUpdate before.");
+    }
+    try {
+      tmpDir = getSitemapTmpDir();
+      FileUtils.cleanDirectory(tmpDir);
+      FileUtils.forceMkdir(new File(tmpDir, CONTENT_INDEX_DIRECTORY));
+      urlCount = 0;
+
+      Map<String, String> addedUrls = new LinkedHashMap<>();
+      changedUrls.forEach((contentId, url) -> {
+        if (url != null) {
+          addedUrls.put(contentId, url);
+        }
+      });
+      List<String> sitemapFiles = listSitemapFilenames();
+      String lastFile = null;
+      List<SitemapContentIndex.Entry> lastEntries = new ArrayList<>();
+      boolean lastChanged = false;
+      for (String sitemapFile : sitemapFiles) {
+        if (lastFile != null) {
+          finishSitemapFile(lastFile, lastEntries, lastChanged);
+        }
+        List<SitemapContentIndex.Entry> entries = SitemapContentIndex.read(getContentIndexFile(getContentIndexDir(), sitemapFile));
+        lastChanged = applyChanges(entries, addedUrls);
+        lastFile = sitemapFile;
+        lastEntries = entries;
+      }
+      appendAddedUrls(lastFile, lastEntries, lastChanged, addedUrls);
+
+      if (!changedFiles.isEmpty()) {
+        super.startUrlList();
+        printOpening();
+        for (String sitemapFile : remainingFiles) {
+          printIndexEntry(sitemapFile);
+          super.appendUrl(sitemapFile);  // For the counter
+        }
+        printClosing();
+        super.endUrlList();
+        writeSitemapIndexFile();
+        replaceChangedFiles();
+      }
+      FileUtils.forceDelete(tmpDir);
+    } catch (IOException e) {
+      // The content index may be inconsistent now, enforce a complete generation next time.
+      FileUtils.deleteQuietly(getContentIndexDir());
+      FileUtils.deleteQuietly(tmpDir);
+      throw new IllegalStateException("Cannot update sitemap", e);
+    }
+  }
+
+  private boolean isValidUrl(String url) {
+    try {
+      SitemapXmlRenderer.validateUrlHost(url, SitemapXmlRenderer.getHostFromUrlString(absoluteUrlPrefix));
+      return url.length() <= SitemapXmlRenderer.SITEMAP_XML_MAX_URL_LENGTH;
+    } catch (Exception e) {
+      LOG.warn("Cannot render sitemap url {}: {}, omit and continue.", url, e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Apply the changed URLs to the entries of a sitemap file.
+   * <p>
+   * Contents which are found in the sitemap file are removed from addedUrls.
+   *
+   * @return true if the sitemap file must be rewritten
+   */
+  private boolean applyChanges(List<SitemapContentIndex.Entry> entries, Map<String, String> addedUrls) {
+    boolean changed = false;
+    for (ListIterator<SitemapContentIndex.Entry> iterator = entries.listIterator(); iterator.hasNext(); ) {
+      SitemapContentIndex.Entry entry = iterator.next();
+      String contentId = entry.getContentId();
+      if (contentId != null && changedUrls.containsKey(contentId)) {
+        addedUrls.remove(contentId);
+        String url = changedUrls.get(contentId);
+        if (url == null) {
+          iterator.remove();
+          changed = true;
+        } else if (!url.equals(entry.getUrl())) {
+          iterator.set(new SitemapContentIndex.Entry(contentId, url));
+          changed = true;
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Append the URLs of new contents to the last sitemap file, or to new
+   * sitemap files if it is full.
+   */
+  private void appendAddedUrls(String lastFile, List<SitemapContentIndex.Entry> lastEntries, boolean lastChanged,
+                               Map<String, String> addedUrls) throws IOException {
+    String targetFile = lastFile;
+    List<SitemapContentIndex.Entry> targetEntries = lastEntries;
+    boolean targetChanged = lastChanged;
+    long targetSize = 0;
+    for (SitemapContentIndex.Entry entry : targetEntries) {
+      targetSize += itemSize(entry.getUrl());
+    }
+    int maxFilenameIndex = lastFile == null ? 0 : filenameIndexOf(lastFile);
+    long maxSize = SitemapXmlRenderer.SITEMAP_XML_MAX_SIZE
+            - SitemapXmlRenderer.toUTF8(SitemapXmlRenderer.opening()).length
+            - SitemapXmlRenderer.toUTF8(SitemapXmlRenderer.CLOSING + "\n").length;
+    for (Map.Entry<String, String> added : addedUrls.entrySet()) {
+      int itemSize = itemSize(added.getValue());
+      if (targetFile == null || targetEntries.size() >= SitemapXmlRenderer.SITEMAP_XML_MAX_URLS || targetSize + itemSize > maxSize) {
+        if (targetFile != null) {
+          finishSitemapFile(targetFile, targetEntries, targetChanged);
+        }
+        if (remainingFiles.size() >= SITEMAP_INDEX_MAX_ENTRIES) {
+          throw new IllegalStateException("Too many entries in sitemap index file. Abort.");
+        }
+        targetFile = SitemapHelper.FILE_PREFIX + ++maxFilenameIndex + SITEMAP_FILE_SUFFIX;
+        targetEntries = new ArrayList<>();
+        targetSize = 0;
+      }
+      targetEntries.add(new SitemapContentIndex.Entry(added.getKey(), added.getValue()));
+      targetChanged = true;
+      targetSize += itemSize;
+    }
+    if (targetFile != null) {
+      finishSitemapFile(targetFile, targetEntries, targetChanged);
+    }
+  }
+
+  /**
+   * Write the sitemap file and its content index file into the tmp dir
+   * if it has changed.  Empty sitemap files are removed in replaceChangedFiles.
+   */
+  private void finishSitemapFile(String sitemapFile, List<SitemapContentIndex.Entry> entries, boolean changed) throws IOException {
+    urlCount += entries.size();
+    if (!entries.isEmpty()) {
+      remainingFiles.add(sitemapFile);
+    }
+    if (!changed) {
+      return;
+    }
+    changedFiles.add(sitemapFile);
+    if (entries.isEmpty()) {
+      return;
+    }
+    try (SitemapXmlFileWriter writer = new SitemapXmlFileWriter(new File(tmpDir, sitemapFile), absoluteUrlPrefix);
+         SitemapContentIndex.Writer indexWriter = new SitemapContentIndex.Writer(getContentIndexFile(new File(tmpDir, CONTENT_INDEX_DIRECTORY), sitemapFile))) {
+      for (SitemapContentIndex.Entry entry : entries) {
+        writer.appendUrl(entry.getUrl());
+        indexWriter.add(entry.getContentId(), entry.getUrl());
+      }
+    }
+  }
+
+  private void replaceChangedFiles() throws IOException {
+    File contentIndexDir = getContentIndexDir();
+    for (String sitemapFile : changedFiles) {
+      if (!remainingFiles.contains(sitemapFile)) {
+        FileUtils.deleteQuietly(new File(outputDir, sitemapFile));
+        FileUtils.deleteQuietly(getContentIndexFile(contentIndexDir, sitemapFile));
+      }
+    }
+    for (File file : listSitemapFiles(tmpDir)) {
+      Files.move(file.toPath(), new File(outputDir, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    for (File file : listSitemapFiles(new File(tmpDir, CONTENT_INDEX_DIRECTORY))) {
+      Files.move(file.toPath(), new File(contentIndexDir, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * The names of the current sitemap files, ordered by their filename index.
+   */
+  private List<String> listSitemapFilenames() throws IOException {
+    return Arrays.stream(listSitemapFiles())
+            .map(File::getName)
+            .filter(name -> name.endsWith(SITEMAP_FILE_SUFFIX))
+            .sorted(Comparator.comparingInt(SitemapIndexRenderer::filenameIndexOf))
+            .collect(Collectors.toList());
+  }
+
+  private static int filenameIndexOf(String sitemapFile) {
+    String index = sitemapFile.substring(SitemapHelper.FILE_PREFIX.length(), sitemapFile.length() - SITEMAP_FILE_SUFFIX.length());
+    try {
+      return Integer.parseInt(index);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static int itemSize(String url) {
+    return SitemapXmlRenderer.toUTF8(SitemapXmlRenderer.toItem(url)).length;
+  }
+
+  private File getContentIndexDir() {
+    return new File(outputDir, CONTENT_INDEX_DIRECTORY);
+  }
+
+  private static File getContentIndexFile(File contentIndexDir, String sitemapFile) {
+    return new File(contentIndexDir, SitemapContentIndex.indexFileName(sitemapFile));
   }
 
 
@@ -175,7 +485,7 @@ class SitemapIndexRenderer extends AbstractSitemapRenderer {
    * @throws IOException
    */
   private void newSitemapIfFull(String url) throws IOException {
-    if (!sitemapXmlRenderer.canAppend(url)) {
+    if (sitemapWriter!=null && !sitemapWriter.canAppend(url)) {
       // Sitemap is full, i.e. reached the limit of 10 MB or 50,000 URLs.
       // Finish the current sitemap and start a new one.
       endCurrentSitemap();
@@ -183,38 +493,60 @@ class SitemapIndexRenderer extends AbstractSitemapRenderer {
         FileUtils.forceDelete(tmpDir);
         throw new IllegalStateException("Too many entries in sitemap index file. Abort.");
       }
-      sitemapXmlRenderer = new SitemapXmlRenderer(absoluteUrlPrefix);
-      sitemapXmlRenderer.startUrlList();
+    }
+    if (sitemapWriter==null) {
+      String sitemapFilename = SitemapHelper.FILE_PREFIX + ++filenameIndex + SITEMAP_FILE_SUFFIX;
+      sitemapWriter = new SitemapXmlFileWriter(new File(getSitemapTmpDir(), sitemapFilename), absoluteUrlPrefix);
+      contentIndexWriter = new SitemapContentIndex.Writer(getContentIndexFile(new File(tmpDir, CONTENT_INDEX_DIRECTORY), sitemapFilename));
     }
   }
 
   /**
-   * Write the sitemap file and the index entry.
+   * Finish the sitemap file and write the index entry.
+   * <p>
+   * The URLs have already been streamed into the file, so there is
+   * nothing left to be rendered here.
    *
    * @throws IOException
    */
   private void endCurrentSitemap() throws IOException {
-    sitemapXmlRenderer.endUrlList();
-    if (!sitemapXmlRenderer.isEmpty()) {
-      String sitemapFilename = writeSitemapFile();
+    if (sitemapWriter==null) {
+      return;
+    }
+    SitemapXmlFileWriter writer = sitemapWriter;
+    sitemapWriter = null;
+    writer.close();
+    contentIndexWriter.close();
+    contentIndexWriter = null;
+    if (writer.isEmpty()) {
+      FileUtils.forceDelete(writer.getFile());
+      FileUtils.forceDelete(getContentIndexFile(new File(tmpDir, CONTENT_INDEX_DIRECTORY), writer.getFile().getName()));
+      --filenameIndex;
+    } else {
+      String sitemapFilename = writer.getFile().getName();
       printIndexEntry(sitemapFilename);
       super.appendUrl(sitemapFilename);  // For the counter
+      urlCount += writer.getCount();
     }
   }
 
-  /**
-   * Write the next sitemap file.
-   *
-   * @return  the name of the sitemap file
-   * @throws IOException
-   */
-  private String writeSitemapFile() throws IOException {
-    String sitemap = sitemapXmlRenderer.getResponse();
-    File sitemapFile = new File(getSitemapTmpDir(), SitemapHelper.FILE_PREFIX + ++filenameIndex + ".xml.gz");
-    try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(sitemapFile))) {
-      IOUtils.write(sitemap, outputStream, StandardCharsets.UTF_8);
+  private void closeQuietly() {
+    if (sitemapWriter!=null) {
+      try {
+        sitemapWriter.close();
+      } catch (IOException e) {
+        LOG.debug("Cannot close sitemap {}: {}", sitemapWriter.getFile(), e.getMessage());
+      }
+      sitemapWriter = null;
+    }
+    if (contentIndexWriter!=null) {
+      try {
+        contentIndexWriter.close();
+      } catch (IOException e) {
+        LOG.debug("Cannot close sitemap content index: {}", e.getMessage());
+      }
+      contentIndexWriter = null;
     }
-    return sitemapFile.getName();
   }
 
   /**
@@ -26,6 +26,15 @@ public interface SitemapRenderer extends UrlCollector {
    */
   String getResponse();
 
+  /**
+   * Return the number of URLs in the list after {@link #endUrlList()}.
+   * <p>
+   * Defaults to -1, i.e. unknown.
+   */
+  default long getUrlCount() {
+    return -1;
+  }
+
   /**
    * Set the site the request refers to.
    */
@@ -12,4 +12,13 @@ public interface SitemapRequestParams {
    * Determines whether the generated sitemap is to be gzipped.
    */
   String PARAM_GZIP_COMPRESSION = "gzip";
+
+  /**
+   * Determines whether only the contents changed since the last update are
+   * to be processed, instead of generating the complete sitemap.
+   * <p>
+   * Falls back to a complete generation if the sitemap setup does not support
+   * incremental updates or if there is no previous sitemap.
+   */
+  String PARAM_INCREMENTAL = "incremental";
 }
@@ -0,0 +1,257 @@
+package com.coremedia.blueprint.cae.sitemap;
+
+import com.coremedia.cap.multisite.Site;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the outcome of the latest sitemap generation per site, and the
+ * progress of the running generations.
+ * <p>
+ * Populated by the {@link SitemapTriggerImpl} and the
+ * {@link ContentUrlGenerator}, and exposed by the {@link SitemapEndpoint}.
+ */
+public class SitemapStatistics {
+
+  private final ConcurrentMap<String, SiteStatistics> sites = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Progress> running = new ConcurrentHashMap<>();
+
+  // --- features ---
+
+  /**
+   * Returns the statistics of all sites which have been processed so far,
+   * sorted by site ID.
+   */
+  @NonNull
+  public Map<String, SiteStatistics> getSites() {
+    Map<String, SiteStatistics> result = new TreeMap<>();
+    sites.keySet().forEach(siteId -> result.put(siteId, getSite(siteId)));
+    running.keySet().forEach(siteId -> result.put(siteId, getSite(siteId)));
+    result.values().removeIf(Objects::isNull);
+    return result;
+  }
+
+  @Nullable
+  public SiteStatistics getSite(@NonNull String siteId) {
+    SiteStatistics siteStatistics = sites.get(siteId);
+    Progress progress = running.get(siteId);
+    if (progress == null) {
+      return siteStatistics;
+    }
+    return siteStatistics == null ? new SiteStatistics(progress) : siteStatistics.withProgress(progress);
+  }
+
+  /**
+   * Start tracking the progress of a sitemap generation.
+   */
+  @NonNull
+  Progress startProgress(@NonNull Site site) {
+    Progress progress = new Progress(site.getName());
+    running.put(site.getId(), progress);
+    return progress;
+  }
+
+  void endProgress(@NonNull Site site, @NonNull Progress progress) {
+    running.remove(site.getId(), progress);
+  }
+
+  /**
+   * @param urlCount the number of URLs of the sitemap, -1 if unknown
+   */
+  void recordSuccess(@NonNull Site site, boolean incremental, Instant start, long durationMillis, int attempts, long urlCount) {
+    sites.compute(site.getId(), (id, previous) -> new SiteStatistics(
+            site.getName(),
+            incremental,
+            start,
+            durationMillis,
+            attempts,
+            urlCount >= 0 || previous == null ? urlCount : previous.getUrlCount(),
+            start,
+            previous == null ? 0 : previous.getFailures()));
+  }
+
+  void recordFailure(@NonNull Site site, boolean incremental, Instant start, long durationMillis, int attempts) {
+    sites.compute(site.getId(), (id, previous) -> new SiteStatistics(
+            site.getName(),
+            incremental,
+            start,
+            durationMillis,
+            attempts,
+            previous == null ? -1 : previous.getUrlCount(),
+            previous == null ? null : previous.getLastSuccess(),
+            previous == null ? 1 : previous.getFailures() + 1));
+  }
+
+  // --- inner classes ---
+
+  /**
+   * The outcome of the latest sitemap generation of a site.
+   */
+  public static class SiteStatistics {
+    private final String siteName;
+    private final boolean incremental;
+    private final Instant lastStart;
+    private final long lastDurationMillis;
+    private final int lastAttempts;
+    private final long urlCount;
+    private final Instant lastSuccess;
+    private final long failures;
+    private final Progress progress;
+
+    SiteStatistics(String siteName,
+                   boolean incremental,
+                   Instant lastStart,
+                   long lastDurationMillis,
+                   int lastAttempts,
+                   long urlCount,
+                   Instant lastSuccess,
+                   long failures) {
+      this.siteName = siteName;
+      this.incremental = incremental;
+      this.lastStart = lastStart;
+      this.lastDurationMillis = lastDurationMillis;
+      this.lastAttempts = lastAttempts;
+      this.urlCount = urlCount;
+      this.lastSuccess = lastSuccess;
+      this.failures = failures;
+      this.progress = null;
+    }
+
+    private SiteStatistics(SiteStatistics siteStatistics, Progress progress) {
+      siteName = siteStatistics.siteName;
+      incremental = siteStatistics.incremental;
+      lastStart = siteStatistics.lastStart;
+      lastDurationMillis = siteStatistics.lastDurationMillis;
+      lastAttempts = siteStatistics.lastAttempts;
+      urlCount = siteStatistics.urlCount;
+      lastSuccess = siteStatistics.lastSuccess;
+      failures = siteStatistics.failures;
+      this.progress = progress;
+    }
+
+    /**
+     * Statistics of a site whose first generation is still running.
+     */
+    private SiteStatistics(Progress progress) {
+      this(progress.siteName, false, null, 0, 0, -1, null, 0);
+    }
+
+    private SiteStatistics withProgress(Progress progress) {
+      return new SiteStatistics(this, progress);
+    }
+
+    public String getSiteName() {
+      return siteName;
+    }
+
+    /**
+     * Whether the latest run was an incremental update.
+     */
+    public boolean isIncremental() {
+      return incremental;
+    }
+
+    public Instant getLastStart() {
+      return lastStart;
+    }
+
+    /**
+     * The duration of the latest run, including all retries.
+     */
+    public long getLastDurationMillis() {
+      return lastDurationMillis;
+    }
+
+    public int getLastAttempts() {
+      return lastAttempts;
+    }
+
+    /**
+     * The number of URLs of the sitemap after the latest successful run, -1 if unknown.
+     */
+    public long getUrlCount() {
+      return urlCount;
+    }
+
+    /**
+     * The start of the latest successful run, or null.
+     */
+    @Nullable
+    public Instant getLastSuccess() {
+      return lastSuccess;
+    }
+
+    /**
+     * The number of failed runs since the CAE has been started.
+     */
+    public long getFailures() {
+      return failures;
+    }
+
+    public boolean isFailed() {
+      return lastStart != null && (lastSuccess == null || lastSuccess.isBefore(lastStart));
+    }
+
+    /**
+     * The progress of the running generation, or null if the site is not being generated right now.
+     */
+    @Nullable
+    public Progress getProgress() {
+      return progress;
+    }
+  }
+
+  /**
+   * The progress of a running sitemap generation.
+   */
+  public static class Progress {
+    private final String siteName;
+    private final Instant start = Instant.now();
+    private final LongAdder documents = new LongAdder();
+    private volatile int pendingFolders = -1;
+
+    Progress(String siteName) {
+      this.siteName = siteName;
+    }
+
+    public Instant getStart() {
+      return start;
+    }
+
+    /**
+     * The number of documents processed so far.
+     */
+    public long getDocuments() {
+      return documents.sum();
+    }
+
+    public long getDocumentsPerSecond() {
+      return getDocuments() * 1000 / Math.max(1, Duration.between(start, Instant.now()).toMillis());
+    }
+
+    /**
+     * The number of folders still to process, -1 if unknown, i.e. if the
+     * folders are not traversed in parallel.
+     */
+    public int getPendingFolders() {
+      return pendingFolders;
+    }
+
+    void addDocuments(int count) {
+      documents.add(count);
+    }
+
+    void setPendingFolders(int pendingFolders) {
+      this.pendingFolders = pendingFolders;
+    }
+  }
+}
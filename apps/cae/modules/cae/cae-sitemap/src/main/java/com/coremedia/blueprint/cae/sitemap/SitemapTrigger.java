@@ -9,4 +9,13 @@ public interface SitemapTrigger {
    * Trigger generation of sitemaps for all sites.
    */
   void generateSitemaps();
+
+  /**
+   * Trigger incremental updates of the sitemaps of all sites.
+   * <p>
+   * Defaults to a complete generation.
+   */
+  default void updateSitemaps() {
+    generateSitemaps();
+  }
 }
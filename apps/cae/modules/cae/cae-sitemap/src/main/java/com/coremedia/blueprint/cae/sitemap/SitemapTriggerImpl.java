@@ -9,31 +9,67 @@ import com.google.common.annotations.VisibleForTesting;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import org.apache.commons.io.Charsets;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static java.lang.invoke.MethodHandles.lookup;
 
-public class SitemapTriggerImpl implements SitemapTrigger {
+public class SitemapTriggerImpl implements SitemapTrigger, DisposableBean {
 
   private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
 
   private static final String LOCALHOST = "localhost";
 
+  // the generation job runs at a fixed rate, but is not exactly on time
+  private static final Duration DUE_TOLERANCE = Duration.ofMinutes(1);
+  private static final int MAX_BACKOFF_SHIFT = 10;
+
   private final SitemapSetupSelector sitemapSetupSelector;
   private final UrlPathFormattingHelper urlPathFormattingHelper;
   private final SitesService sitesService;
   private final int port;
+  private SitemapChanges sitemapChanges;
+  private SitemapStatistics sitemapStatistics;
+  private int parallelism = 1;
+  private int retries = 0;
+  private Duration retryDelay = Duration.ofMinutes(1);
+  private Map<String, CaeSitemapConfigurationProperties.SiteSchedule> siteSchedules = Map.of();
+
+  // start of the cycle of the last successful complete generation, by site ID
+  private final Map<String, Instant> lastGenerations = new ConcurrentHashMap<>();
+
+  // Runs the generations and the delayed retries, created lazily
+  private ScheduledThreadPoolExecutor executor;
+  private final Set<String> runningSites = ConcurrentHashMap.newKeySet();
+  private final Map<String, ScheduledFuture<?>> pendingRetries = new ConcurrentHashMap<>();
 
   public SitemapTriggerImpl(@NonNull SitemapSetupSelector sitemapSetupSelector,
                             @NonNull UrlPathFormattingHelper urlPathFormattingHelper,
@@ -45,27 +81,264 @@ public class SitemapTriggerImpl implements SitemapTrigger {
     this.port = port;
   }
 
+  /**
+   * The content changes for incremental sitemap updates.
+   * <p>
+   * Optional, if not set, {@link #updateSitemaps()} generates the complete sitemaps.
+   */
+  public void setSitemapChanges(SitemapChanges sitemapChanges) {
+    this.sitemapChanges = sitemapChanges;
+  }
+
+  /**
+   * The number of sites whose sitemaps are generated concurrently.
+   * <p>
+   * Each site is generated by a request to this CAE, so this is also the
+   * number of request threads occupied by the sitemap generation.
+   * Defaults to 1.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be > 0.");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * The number of retries after a failed complete generation of a site.
+   * <p>
+   * Retries are scheduled after the {@link #setRetryDelay(Duration) retry delay}
+   * and do not block the generation of other sites.  Failed incremental
+   * updates are not retried, their changes are processed by the next update.
+   * <p>
+   * Defaults to 0.
+   */
+  public void setRetries(int retries) {
+    this.retries = Math.max(0, retries);
+  }
+
+  /**
+   * The delay before the first retry, doubled for each further retry.
+   */
+  public void setRetryDelay(@NonNull Duration retryDelay) {
+    this.retryDelay = retryDelay;
+  }
+
+  /**
+   * Priorities and periods of particular sites, by site ID.
+   * <p>
+   * Sites with a higher priority are generated first.  A site with a period
+   * is skipped by {@link #generateSitemaps()} until its period has elapsed
+   * since its last successful generation.
+   */
+  public void setSiteSchedules(@NonNull Map<String, CaeSitemapConfigurationProperties.SiteSchedule> siteSchedules) {
+    this.siteSchedules = Map.copyOf(siteSchedules);
+  }
+
+  /**
+   * Optional, records the outcome of each generation per site.
+   */
+  public void setSitemapStatistics(SitemapStatistics sitemapStatistics) {
+    this.sitemapStatistics = sitemapStatistics;
+  }
+
+  // --- features ---
+
   public void generateSitemaps() {
-    Set<Site> sites = sitesService.getSites();
-    if (sites.isEmpty()) {
-      // This sometimes happens on test machines when the first
-      // sitemap generation starts before the example content has been imported.
-      LOG.info("Sitemap generation found no sites at all. Check your content repository and your SitesService configuration.");
+    Instant cycleStart = Instant.now();
+    List<Site> sites = new ArrayList<>();
+    for (Site site : getSites()) {
+      if (!sitemapSetupSelector.isSitemapEnabled(site)) {
+        LOG.info("{} has no sitemap configuration.", site);
+      } else if (!isDue(site, cycleStart)) {
+        LOG.info("Skip sitemap generation for {}, its period has not elapsed yet.", site);
+      } else {
+        sites.add(site);
+      }
+    }
+    generateSitemaps(sites, false, cycleStart);
+  }
+
+  /**
+   * Update the sitemaps of all sites with the content changes since the
+   * last update.
+   * <p>
+   * If a site has no sitemap yet, its complete sitemap is generated.
+   */
+  @Override
+  public void updateSitemaps() {
+    if (sitemapChanges == null) {
+      generateSitemaps();
+      return;
+    }
+    sitemapChanges.startCycle();
+    boolean success = false;
+    try {
+      LOG.info("Start incremental sitemap update for {} changed contents.", sitemapChanges.getChangedContents().size());
+      List<Site> sites = getSites().stream()
+              .filter(sitemapSetupSelector::isSitemapEnabled)
+              .collect(Collectors.toCollection(ArrayList::new));
+      success = generateSitemaps(sites, true, Instant.now());
+    } finally {
+      sitemapChanges.endCycle(success);
     }
+  }
 
+  @Override
+  public synchronized void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    pendingRetries.clear();
+  }
+
+  // --- internal ---
+
+  /**
+   * Generates the sitemaps of the given sites in the order of their
+   * priorities, with up to {@link #setParallelism(int) parallelism} sites
+   * at the same time, and waits until the first attempts of all of them are
+   * done.  Retries of failed sites are scheduled and not waited for.
+   * <p>
+   * If the calling thread is interrupted, e.g. because the
+   * {@link SitemapGenerationJob} is stopped, pending generations and
+   * retries are cancelled.
+   *
+   * @return true if the sitemaps of all sites have been generated successfully
+   * by their first attempt
+   */
+  private boolean generateSitemaps(List<Site> sites, boolean incremental, Instant cycleStart) {
+    if (sites.isEmpty()) {
+      return true;
+    }
+    sites.sort(Comparator.comparingInt(this::priority).reversed());
+    ScheduledThreadPoolExecutor scheduler = executor();
+    // the queue of the executor is FIFO for tasks without delay, so sites are started in the order of their priorities
+    List<Future<Boolean>> results = new ArrayList<>(sites.size());
     for (Site site : sites) {
-      if (sitemapSetupSelector.isSitemapEnabled(site)) {
+      cancelRetry(site);
+      Instant start = Instant.now();
+      results.add(scheduler.submit(() -> generateSitemap(site, incremental, cycleStart, start, 1)));
+    }
+    try {
+      boolean success = true;
+      for (Future<Boolean> result : results) {
         try {
-          LOG.info("Start sitemap generation for {}.", site);
-          String result = generateSitemap(site);
-          LOG.info("Finished sitemap generation for {}: {}.", site, result);
-        } catch (Exception e) {
-          LOG.warn("Sitemap generation for {} failed.", site, e);
+          success &= result.get();
+        } catch (ExecutionException e) {
+          LOG.warn("Sitemap generation failed unexpectedly.", e.getCause());
+          success = false;
         }
-      } else {
-        LOG.info("{} has no sitemap configuration.", site);
       }
+      return success;
+    } catch (InterruptedException e) {
+      LOG.info("Sitemap generation has been interrupted, cancelling the remaining sites.");
+      Thread.currentThread().interrupt();
+      results.forEach(result -> result.cancel(true));
+      sites.forEach(this::cancelRetry);
+      return false;
+    }
+  }
+
+  /**
+   * One attempt to generate the sitemap of a site.
+   * <p>
+   * If a complete generation fails and there are retries left, the next
+   * attempt is scheduled with exponential backoff.
+   *
+   * @return true if the sitemap has been generated successfully
+   */
+  private boolean generateSitemap(Site site, boolean incremental, Instant cycleStart, Instant start, int attempt) {
+    String job = incremental ? "incremental sitemap update" : "sitemap generation";
+    if (!runningSites.add(site.getId())) {
+      LOG.info("Skip {} for {}, the previous one is still running.", job, site);
+      return false;
+    }
+    Exception failure;
+    try {
+      LOG.info("Start {} for {} (attempt {}).", job, site, attempt);
+      GenerationResult result = incremental ? generateSitemap(site, true) : generateSitemap(site);
+      long duration = Duration.between(start, Instant.now()).toMillis();
+      LOG.info("Finished {} for {} in {} ms: {}.", job, site, duration, result.getResponse());
+      if (!incremental) {
+        lastGenerations.put(site.getId(), cycleStart);
+      }
+      if (sitemapStatistics != null) {
+        sitemapStatistics.recordSuccess(site, incremental, start, duration, attempt, result.getUrlCount());
+      }
+      return true;
+    } catch (Exception e) {
+      failure = e;
+    } finally {
+      runningSites.remove(site.getId());
+    }
+    if (incremental || attempt > retries) {
+      LOG.warn("{} for {} failed after {} attempt(s).", StringUtils.capitalize(job), site, attempt, failure);
+      if (sitemapStatistics != null) {
+        sitemapStatistics.recordFailure(site, incremental, start, Duration.between(start, Instant.now()).toMillis(), attempt);
+      }
+    } else {
+      scheduleRetry(site, cycleStart, start, attempt, failure);
+    }
+    return false;
+  }
+
+  private void scheduleRetry(Site site, Instant cycleStart, Instant start, int attempt, Exception e) {
+    long delay = retryDelay.toMillis() << Math.min(attempt - 1, MAX_BACKOFF_SHIFT);
+    LOG.warn("Sitemap generation for {} failed, retrying in {} ms: {}", site, delay, e.getMessage());
+    try {
+      pendingRetries.put(site.getId(), executor().schedule(() -> {
+        pendingRetries.remove(site.getId());
+        generateSitemap(site, false, cycleStart, start, attempt + 1);
+      }, delay, TimeUnit.MILLISECONDS));
+    } catch (RejectedExecutionException ree) {
+      LOG.info("Cannot retry sitemap generation for {}, the sitemap trigger has been shut down.", site);
+    }
+  }
+
+  /**
+   * Cancel a pending retry of the site, since it is superseded by a new
+   * generation.
+   */
+  private void cancelRetry(Site site) {
+    ScheduledFuture<?> retry = pendingRetries.remove(site.getId());
+    if (retry != null) {
+      retry.cancel(false);
+    }
+  }
+
+  private synchronized ScheduledThreadPoolExecutor executor() {
+    if (executor == null) {
+      executor = new ScheduledThreadPoolExecutor(parallelism, new CustomizableThreadFactory("sitemap-generation-"));
+      executor.setRemoveOnCancelPolicy(true);
     }
+    return executor;
+  }
+
+  private int priority(Site site) {
+    CaeSitemapConfigurationProperties.SiteSchedule schedule = siteSchedules.get(site.getId());
+    return schedule == null ? 0 : schedule.getPriority();
+  }
+
+  private boolean isDue(Site site, Instant cycleStart) {
+    CaeSitemapConfigurationProperties.SiteSchedule schedule = siteSchedules.get(site.getId());
+    Instant lastGeneration = lastGenerations.get(site.getId());
+    if (schedule == null || schedule.getPeriodMinutes() <= 0 || lastGeneration == null) {
+      return true;
+    }
+    Instant due = lastGeneration.plus(Duration.ofMinutes(schedule.getPeriodMinutes())).minus(DUE_TOLERANCE);
+    return !cycleStart.isBefore(due);
+  }
+
+  private Set<Site> getSites() {
+    Set<Site> sites = sitesService.getSites();
+    if (sites.isEmpty()) {
+      // This sometimes happens on test machines when the first
+      // sitemap generation starts before the example content has been imported.
+      LOG.info("Sitemap generation found no sites at all. Check your content repository and your SitesService configuration.");
+    }
+    return sites;
   }
 
   /*
@@ -78,17 +351,23 @@ public class SitemapTriggerImpl implements SitemapTrigger {
    * Trigger generation for one site
    *
    * @param site site to generate the sitemap for
-   * @return the result of the generation - the sitemap for this site
+   * @return the result of the generation
    * @throws IOException
    */
   @VisibleForTesting
-  String generateSitemap(Site site) throws IOException {
-    HttpGet httpGet = new HttpGet(sitemapGenerationUrl(urlSegment(site)));
+  GenerationResult generateSitemap(Site site) throws IOException {
+    return generateSitemap(site, false);
+  }
+
+  private GenerationResult generateSitemap(Site site, boolean incremental) throws IOException {
+    HttpGet httpGet = new HttpGet(sitemapGenerationUrl(urlSegment(site), incremental));
     try(CloseableHttpClient httpclient = createHttpClient();
         CloseableHttpResponse response = httpclient.execute(httpGet)) {
       int statusCode = response.getStatusLine().getStatusCode();
       if (statusCode == HttpServletResponse.SC_OK) {
-        return IOUtils.toString(response.getEntity().getContent(), Charsets.UTF_8);
+        Header urlCount = response.getFirstHeader(SitemapHelper.URL_COUNT_HEADER);
+        return new GenerationResult(IOUtils.toString(response.getEntity().getContent(), Charsets.UTF_8),
+                urlCount == null ? -1 : Long.parseLong(urlCount.getValue()));
       } else {
         throw new IllegalStateException("Unable to generate sitemap for " + site + " (" + statusCode + ")");
       }
@@ -110,13 +389,42 @@ public class SitemapTriggerImpl implements SitemapTrigger {
   }
 
   // http://localhost:${port}/internal/${segment}/sitemap-org
-  private URI sitemapGenerationUrl(String segment) {
+  private URI sitemapGenerationUrl(String segment, boolean incremental) {
     UriComponentsBuilder ucb = UriComponentsBuilder.newInstance();
     ucb.scheme("http");
     ucb.host(LOCALHOST);
     ucb.port(port);
     ucb.pathSegment(BlueprintUriConstants.Prefixes.PREFIX_INTERNAL, segment, SitemapHelper.SITEMAP_ORG);
+    if (incremental) {
+      ucb.queryParam(SitemapRequestParams.PARAM_INCREMENTAL, true);
+    }
     return ucb.build().toUri();
   }
 
+  // --- inner classes ---
+
+  @VisibleForTesting
+  static final class GenerationResult {
+    private final String response;
+    private final long urlCount;
+
+    GenerationResult(String response, long urlCount) {
+      this.response = response;
+      this.urlCount = urlCount;
+    }
+
+    /**
+     * The response of the sitemap generation request.
+     */
+    String getResponse() {
+      return response;
+    }
+
+    /**
+     * The number of URLs of the sitemap, -1 if unknown.
+     */
+    long getUrlCount() {
+      return urlCount;
+    }
+  }
 }
@@ -0,0 +1,108 @@
+package com.coremedia.blueprint.cae.sitemap;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.coremedia.blueprint.cae.sitemap.SitemapXmlRenderer.CLOSING;
+import static com.coremedia.blueprint.cae.sitemap.SitemapXmlRenderer.SITEMAP_XML_MAX_SIZE;
+import static com.coremedia.blueprint.cae.sitemap.SitemapXmlRenderer.SITEMAP_XML_MAX_URLS;
+import static com.coremedia.blueprint.cae.sitemap.SitemapXmlRenderer.SITEMAP_XML_MAX_URL_LENGTH;
+
+/**
+ * Streams URLs in sitemap XML format directly into a gzipped sitemap file.
+ * <p>
+ * Unlike {@link SitemapXmlRenderer}, this writer does not keep the sitemap
+ * in memory, so memory consumption does not depend on the number of URLs.
+ * The limits of a sitemap (50,000 URLs, 10 MB uncompressed) are the same,
+ * use {@link #canAppend(String)} to check whether a new sitemap file must
+ * be started.
+ */
+class SitemapXmlFileWriter implements Closeable {
+
+  private final File file;
+  private final String urlHostForSite;
+  private final OutputStream outputStream;
+
+  private int count;
+  private long availableSize;
+  private boolean closed;
+
+
+  // --- construct and configure ------------------------------------
+
+  /**
+   * Create the sitemap file and write the opening of the url set.
+   *
+   * @param file the sitemap file, usually sitemap&lt;n&gt;.xml.gz
+   * @param absoluteUrlPrefix format like in the site prefix mappings
+   */
+  SitemapXmlFileWriter(@NonNull File file, @NonNull String absoluteUrlPrefix) throws IOException {
+    this.file = file;
+    urlHostForSite = SitemapXmlRenderer.getHostFromUrlString(absoluteUrlPrefix);
+    outputStream = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    byte[] opening = SitemapXmlRenderer.toUTF8(SitemapXmlRenderer.opening());
+    outputStream.write(opening);
+    availableSize = SITEMAP_XML_MAX_SIZE - opening.length - SitemapXmlRenderer.toUTF8(CLOSING + "\n").length;
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  void appendUrl(String url) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Sitemap " + file.getName() + " is already closed.");
+    }
+    SitemapXmlRenderer.validateUrlHost(url, urlHostForSite);
+    if (count>=SITEMAP_XML_MAX_URLS) {
+      throw new IllegalStateException("Sitemap is full (50,000 entries max).");
+    }
+    if (url.length()>SITEMAP_XML_MAX_URL_LENGTH) {
+      throw new IllegalArgumentException("URL \"" + url + "\" is too long for sitemap xml (2048 chars max).");
+    }
+
+    byte[] item = SitemapXmlRenderer.toUTF8(SitemapXmlRenderer.toItem(url));
+    if (item.length > availableSize) {
+      throw new IllegalStateException("Sitemap is too large (10,485,760 bytes max).");
+    }
+
+    outputStream.write(item);
+    availableSize -= item.length;
+    ++count;
+  }
+
+  boolean canAppend(String url) {
+    return count<SITEMAP_XML_MAX_URLS && SitemapXmlRenderer.toUTF8(SitemapXmlRenderer.toItem(url)).length<=availableSize;
+  }
+
+  boolean isEmpty() {
+    return count == 0;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Write the closing of the url set and finish the gzip stream.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      try (OutputStream out = outputStream) {
+        out.write(SitemapXmlRenderer.toUTF8(CLOSING + "\n"));
+      }
+    }
+  }
+}
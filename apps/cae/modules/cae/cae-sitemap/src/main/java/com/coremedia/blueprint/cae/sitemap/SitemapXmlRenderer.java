@@ -22,11 +22,11 @@ import java.util.Objects;
  */
 class SitemapXmlRenderer extends AbstractSitemapRenderer {
 
-  private static final int SITEMAP_XML_MAX_URL_LENGTH = 2048;
-  private static final int SITEMAP_XML_MAX_URLS = 50000;
-  private static final int SITEMAP_XML_MAX_SIZE = 10485760;
+  static final int SITEMAP_XML_MAX_URL_LENGTH = 2048;
+  static final int SITEMAP_XML_MAX_URLS = 50000;
+  static final int SITEMAP_XML_MAX_SIZE = 10485760;
 
-  private static final String CLOSING = "</urlset>";
+  static final String CLOSING = "</urlset>";
   private final String urlHostForSite;
 
   private int availableSize;
@@ -49,15 +49,7 @@ class SitemapXmlRenderer extends AbstractSitemapRenderer {
   @Override
   public void startUrlList() {
     super.startUrlList();
-
-    //NOSONAR : All the following Strings are not "magic".
-    println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");  //NOSONAR
-    print("<!-- Generated: ");  //NOSONAR
-    print(StringEscapeUtils.escapeXml(new SimpleDateFormat().format(new Date())));
-    println(" -->");  //NOSONAR
-    println("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"");  //NOSONAR
-    println("        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");  //NOSONAR
-    println("        xsi:schemaLocation=\"http://www.sitemaps.org/schemas/sitemap/0.9 http://www.sitemaps.org/schemas/sitemap/0.9/sitemap.xsd\">");  //NOSONAR
+    print(opening());
 
     availableSize = SITEMAP_XML_MAX_SIZE - toUTF8(currentResult()).length - toUTF8(CLOSING).length;
   }
@@ -85,6 +77,10 @@ class SitemapXmlRenderer extends AbstractSitemapRenderer {
   }
 
   private void validateUrlHost(@NonNull String url) {
+    validateUrlHost(url, urlHostForSite);
+  }
+
+  static void validateUrlHost(@NonNull String url, @Nullable String urlHostForSite) {
     String urlHost = getHostFromUrlString(url);
     if (!Objects.equals(urlHost, urlHostForSite)) {
       throw new IllegalArgumentException("URL \"" + url + "\" does not belong to the target domain " + urlHostForSite + ".");
@@ -92,7 +88,7 @@ class SitemapXmlRenderer extends AbstractSitemapRenderer {
   }
 
   @Nullable
-  private static String getHostFromUrlString(@NonNull String url) {
+  static String getHostFromUrlString(@NonNull String url) {
     return UriComponentsBuilder.fromUriString(url).build().getHost();
   }
 
@@ -116,7 +112,21 @@ class SitemapXmlRenderer extends AbstractSitemapRenderer {
 
   // --- internal ---------------------------------------------------
 
-  private static String toItem(String url) {
+  /**
+   * The file header and opening &lt;urlset&gt; tag of a sitemap.
+   */
+  static String opening() {
+    //NOSONAR : All the following Strings are not "magic".
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +  //NOSONAR
+            "<!-- Generated: " +  //NOSONAR
+            StringEscapeUtils.escapeXml(new SimpleDateFormat().format(new Date())) +
+            " -->\n" +  //NOSONAR
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"\n" +  //NOSONAR
+            "        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +  //NOSONAR
+            "        xsi:schemaLocation=\"http://www.sitemaps.org/schemas/sitemap/0.9 http://www.sitemaps.org/schemas/sitemap/0.9/sitemap.xsd\">\n";  //NOSONAR
+  }
+
+  static String toItem(String url) {
     StringBuilder sb = new StringBuilder();
 
     // sitemapXml size is limited, do not waste chars on indentation or too many linebreaks.
@@ -129,7 +139,7 @@ class SitemapXmlRenderer extends AbstractSitemapRenderer {
     return sb.toString();
   }
 
-  private static byte[] toUTF8(String s) {
+  static byte[] toUTF8(String s) {
     try {
       return s.getBytes("UTF-8");
     } catch (UnsupportedEncodingException e) {
@@ -1,5 +1,7 @@
 package com.coremedia.blueprint.cae.sitemap;
 
+import com.coremedia.cap.content.Content;
+
 /**
  * Callback interface for URL generators
  */
@@ -10,4 +12,17 @@ public interface UrlCollector {
    * @param url the URL
    */
   void appendUrl(String url);
+
+  /**
+   * Append the URL of a content to the list.
+   * <p>
+   * Collectors which support incremental sitemap updates remember the
+   * content, the default implementation just appends the URL.
+   *
+   * @param url the URL
+   * @param content the content the URL has been generated for
+   */
+  default void appendUrl(String url, Content content) {
+    appendUrl(url);
+  }
 }
@@ -142,13 +142,23 @@ public class SitemapGenerationControllerTest {
   }
 
   private void initTestling(ValidationService validationService, List<String> exclusionPaths) {
+    initTestling(validationService, exclusionPaths, 1);
+  }
+
+  private void initTestling(ValidationService validationService, List<String> exclusionPaths, int traversalParallelism) {
+    initTestling(validationService, exclusionPaths, traversalParallelism, new PlainSitemapRendererFactory());
+  }
+
+  private void initTestling(ValidationService validationService, List<String> exclusionPaths, int traversalParallelism,
+                            SitemapRendererFactory sitemapRendererFactory) {
     SitemapSetup sitemapSetup = new SitemapSetup(properties);
-    sitemapSetup.setSitemapRendererFactory(new PlainSitemapRendererFactory());
+    sitemapSetup.setSitemapRendererFactory(sitemapRendererFactory);
     List<Predicate<Content>> predicates = List.of(content -> {
       var bean = contentBeanFactory.createBeanFor(content, CMLinkable.class);
       return bean != null && new ValidationPeriodPredicate(Calendar.getInstance()).test(bean);
     });
     var generator = new ContentUrlGenerator(linkFormatter, contentBeanFactory, validationService, exclusionPaths, predicates);
+    generator.setTraversalParallelism(traversalParallelism);
     sitemapSetup.setUrlGenerators(List.of(generator));
 
     testling = new SitemapGenerationController(siteResolver, site -> sitemapSetup);
@@ -223,6 +233,40 @@ public class SitemapGenerationControllerTest {
     assertEquals(6, urlList.size());
   }
 
+  @Test
+  public void testParallelTraversal() throws Exception {
+    request.addParameter(SitemapRequestParams.PARAM_EXCLUDE_FOLDERS, (String) null);
+    initTestling(validationServiceAlwaysTrue, List.of(), 4);
+
+    testling.handleRequestInternal(SITE_SEGMENT, request, response);
+
+    List<String> urlList = convertToList();
+    assertNotNull(urlList);
+    assertEquals(7, urlList.size());
+  }
+
+  @Test
+  public void testParallelTraversalWithExclusions() throws Exception {
+    request.addParameter(SitemapRequestParams.PARAM_EXCLUDE_FOLDERS, "Navigation");
+    initTestling(validationServiceAlwaysTrue, List.of("About/Contact"), 4);
+
+    testling.handleRequestInternal(SITE_SEGMENT, request, response);
+
+    List<String> urlList = convertToList();
+    assertNotNull(urlList);
+    assertEquals(5, urlList.size());
+  }
+
+  @Test
+  public void testCollectorFailureAbortsGeneration() throws Exception {
+    request.addParameter(SitemapRequestParams.PARAM_EXCLUDE_FOLDERS, (String) null);
+    initTestling(validationServiceAlwaysTrue, List.of(), 4, new FailingSitemapRendererFactory());
+
+    testling.handleRequestInternal(SITE_SEGMENT, request, response);
+
+    assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+  }
+
   @Test
   public void testValidationService() throws Exception {
     ValidationService validationServiceRemoveCMChannel = new ValidationService() {
@@ -252,6 +296,31 @@ public class SitemapGenerationControllerTest {
     assertEquals(6, urlList.size());
   }
 
+  /**
+   * Creates renderers which fail like a renderer that cannot write its files.
+   */
+  private static class FailingSitemapRendererFactory implements SitemapRendererFactory {
+    @Override
+    public SitemapRenderer createInstance() {
+      return new PlainSitemapRenderer() {
+        @Override
+        public void appendUrl(String url) {
+          throw new IllegalStateException("Cannot write sitemap");
+        }
+      };
+    }
+
+    @Override
+    public String getContentType() {
+      return "text/plain";
+    }
+
+    @Override
+    public boolean absoluteUrls() {
+      return false;
+    }
+  }
+
   /**
    * Link scheme for tests. This link scheme renders links for all content beans with the pattern
    * http://www.coremedia.com/<content type>/<content id>
@@ -1,6 +1,7 @@
 package com.coremedia.blueprint.cae.sitemap;
 
 import com.coremedia.blueprint.base.links.UrlPrefixResolver;
+import com.coremedia.cap.content.Content;
 import com.coremedia.cap.multisite.Site;
 import com.coremedia.xml.DelegatingSaxHandler;
 import com.coremedia.xml.XmlUtil5;
@@ -25,6 +26,7 @@ import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -43,6 +45,7 @@ public class SitemapIndexRendererTest {
 
   private static final String FILENAME = "sitemap";
   private static final String SITEMAP_INDEX_FILENAME = "sitemap_index.xml";
+  private static final String CONTENT_INDEX_DIRECTORY = "sitemap.idx";
   private static final String THE_SITE_ID = "thesiteid";
 
   private String uniqueTmpdirPostfix;
@@ -64,11 +67,7 @@ public class SitemapIndexRendererTest {
     when(site.getId()).thenReturn(THE_SITE_ID);
     when(urlPrefixResolver.getUrlPrefix(THE_SITE_ID, null, null)).thenReturn("//www.acme.com");
 
-    testling = new SitemapIndexRenderer();
-    testling.setTargetDirectory(getTargetDir().getAbsolutePath());
-    testling.setUrlPrefixResolver(urlPrefixResolver);
-    testling.setSitemapHelper(sitemapHelper);
-    testling.setSite(site);
+    testling = createTestling();
   }
 
   @After
@@ -131,11 +130,109 @@ public class SitemapIndexRendererTest {
     sitemap = gzipToString(new File(getOutputDir(), FILENAME + "2.xml.gz"));
     assertTrue("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "50000</loc></url>"));
     assertFalse("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "49999</loc></url>"));
+
+    File contentIndexDir = new File(getOutputDir(), CONTENT_INDEX_DIRECTORY);
+    assertTrue("No content index for sitemap1", new File(contentIndexDir, "sitemap1.idx.gz").isFile());
+    assertTrue("No content index for sitemap2", new File(contentIndexDir, "sitemap2.idx.gz").isFile());
+    assertFalse("Unexpected content index", new File(contentIndexDir, "sitemap3.idx.gz").exists());
+  }
+
+
+  @Test
+  public void testIncrementalUpdate() {
+    when(sitemapHelper.sitemapIndexEntryUrl(site, SITEMAP_ENTRY_FILENAME_1)).thenReturn(SITEMAP_ENTRY_URL_1);
+    Content content1 = content("coremedia:///cap/content/2");
+    Content content2 = content("coremedia:///cap/content/4");
+
+    testling.startUrlList();
+    testling.appendUrl(A_URL + "1", content1);
+    testling.appendUrl(A_URL + "2", content2);
+    testling.appendUrl(A_URL + "noContent");
+    testling.endUrlList();
+
+    SitemapIndexRenderer updater = createTestling();
+    assertTrue("No content index", updater.startUpdate());
+    updater.updateUrl("coremedia:///cap/content/2", null);
+    updater.updateUrl("coremedia:///cap/content/4", A_URL + "2changed");
+    updater.updateUrl("coremedia:///cap/content/6", A_URL + "3");
+    updater.endUpdate();
+    updater.getResponse();
+
+    checkSitemapIndexIn(getOutputDir());
+    String sitemap = gzipToString(new File(getOutputDir(), SITEMAP_ENTRY_FILENAME_1));
+    assertFalse("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "1</loc></url>"));
+    assertFalse("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "2</loc></url>"));
+    assertTrue("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "2changed</loc></url>"));
+    assertTrue("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "3</loc></url>"));
+    assertTrue("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "noContent</loc></url>"));
+  }
+
+  @Test
+  public void testIncrementalUpdateOfSplitSitemap() {
+    when(sitemapHelper.sitemapIndexEntryUrl(site, SITEMAP_ENTRY_FILENAME_1)).thenReturn(SITEMAP_ENTRY_URL_1);
+    when(sitemapHelper.sitemapIndexEntryUrl(site, SITEMAP_ENTRY_FILENAME_2)).thenReturn(SITEMAP_ENTRY_URL_2);
+    Content content1 = content("coremedia:///cap/content/2");
+    Content content2 = content("coremedia:///cap/content/4");
+
+    testling.startUrlList();
+    testling.appendUrl(A_URL + "first", content1);
+    for (int i = 1; i < 50000; ++i) {
+      testling.appendUrl(A_URL + i);
+    }
+    testling.appendUrl(A_URL + "last", content2);
+    testling.endUrlList();
+    assertTrue("No second sitemap file", new File(getOutputDir(), SITEMAP_ENTRY_FILENAME_2).exists());
+
+    SitemapIndexRenderer updater = createTestling();
+    assertTrue("No content index", updater.startUpdate());
+    updater.updateUrl("coremedia:///cap/content/2", A_URL + "firstChanged");
+    updater.updateUrl("coremedia:///cap/content/4", null);
+    updater.endUpdate();
+    updater.getResponse();
+
+    checkSitemapIndexIn(getOutputDir());
+    String sitemapIndex = fileToString(new File(getOutputDir(), SITEMAP_INDEX_FILENAME));
+    assertFalse("Unexpected index content", sitemapIndex.contains("<loc>" + SITEMAP_ENTRY_URL_2 + "</loc>"));
+    assertFalse("Empty sitemap file not removed", new File(getOutputDir(), SITEMAP_ENTRY_FILENAME_2).exists());
+    assertFalse("Empty content index not removed", new File(new File(getOutputDir(), CONTENT_INDEX_DIRECTORY), "sitemap2.idx.gz").exists());
+
+    String sitemap = gzipToString(new File(getOutputDir(), SITEMAP_ENTRY_FILENAME_1));
+    assertTrue("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "firstChanged</loc></url>"));
+    assertTrue("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "49999</loc></url>"));
+
+    // The rewritten content index must be usable for the next update.
+    updater = createTestling();
+    assertTrue("No content index", updater.startUpdate());
+    updater.updateUrl("coremedia:///cap/content/4", A_URL + "lastAgain");
+    updater.endUpdate();
+    assertTrue("No second sitemap file", new File(getOutputDir(), SITEMAP_ENTRY_FILENAME_2).exists());
+    sitemap = gzipToString(new File(getOutputDir(), SITEMAP_ENTRY_FILENAME_2));
+    assertTrue("Unexpected sitemap content", sitemap.contains("<url><loc>" + XML_ESCAPED_URL + "lastAgain</loc></url>"));
+  }
+
+  @Test
+  public void testIncrementalUpdateWithoutPreviousSitemap() {
+    assertFalse("Unexpected content index", testling.startUpdate());
   }
 
 
   // --- internal ---------------------------------------------------
 
+  private SitemapIndexRenderer createTestling() {
+    SitemapIndexRenderer renderer = new SitemapIndexRenderer();
+    renderer.setTargetDirectory(getTargetDir().getAbsolutePath());
+    renderer.setUrlPrefixResolver(urlPrefixResolver);
+    renderer.setSitemapHelper(sitemapHelper);
+    renderer.setSite(site);
+    return renderer;
+  }
+
+  private static Content content(String id) {
+    Content content = mock(Content.class);
+    when(content.getId()).thenReturn(id);
+    return content;
+  }
+
   private void simpleSitemapIndex() {
     testling.startUrlList();
     testling.appendUrl(A_URL);
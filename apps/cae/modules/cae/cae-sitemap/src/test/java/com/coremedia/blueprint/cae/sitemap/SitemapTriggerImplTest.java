@@ -7,8 +7,10 @@ import com.coremedia.cap.multisite.SitesService;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,15 +21,25 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.coremedia.blueprint.links.BlueprintUriConstants.Prefixes.PREFIX_INTERNAL;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -56,6 +68,11 @@ class SitemapTriggerImplTest {
     sitemapTrigger = Mockito.spy(new SitemapTriggerImpl(sitemapSetupSelector, urlPathFormattingHelper, sitesService, 666));
   }
 
+  @AfterEach
+  void tearDown() {
+    sitemapTrigger.destroy();
+  }
+
   @Test
   void testGenerateSitemaps() throws IOException {
     Set<Site> sites = new HashSet<>();
@@ -68,13 +85,135 @@ class SitemapTriggerImplTest {
 
     //trigger
     //just ignore generate sitemap because this logic will be tested in a separated test...
-    doReturn("result").when(sitemapTrigger).generateSitemap(any(Site.class));
+    doReturn(result()).when(sitemapTrigger).generateSitemap(any(Site.class));
 
     sitemapTrigger.generateSitemaps();
     verify(sitemapTrigger, times(1)).generateSitemap(enabledSite);
     verify(sitemapTrigger, times(0)).generateSitemap(disabledSite);
   }
 
+  @Test
+  void testGenerateSitemapsByPriority() throws IOException {
+    Site low = createSite("low", true);
+    Site high = createSite("high", true);
+    Site unconfigured = createSite("unconfigured", true);
+    when(sitesService.getSites()).thenReturn(new LinkedHashSet<>(List.of(low, unconfigured, high)));
+    sitemapTrigger.setSiteSchedules(Map.of("low", siteSchedule(-1, 0), "high", siteSchedule(10, 0)));
+
+    List<Site> generated = new CopyOnWriteArrayList<>();
+    doAnswer(invocation -> {
+      generated.add(invocation.getArgument(0));
+      return result();
+    }).when(sitemapTrigger).generateSitemap(any(Site.class));
+
+    sitemapTrigger.generateSitemaps();
+    assertThat(generated).containsExactly(high, unconfigured, low);
+  }
+
+  @Test
+  void testGenerateSitemapsInParallel() throws IOException {
+    Site site1 = createSite("site1", true);
+    Site site2 = createSite("site2", true);
+    when(sitesService.getSites()).thenReturn(Set.of(site1, site2));
+    sitemapTrigger.setParallelism(2);
+
+    // each generation waits for the other one
+    CountDownLatch running = new CountDownLatch(2);
+    doAnswer(invocation -> {
+      running.countDown();
+      return running.await(10, TimeUnit.SECONDS) ? result() : new SitemapTriggerImpl.GenerationResult("timeout", -1);
+    }).when(sitemapTrigger).generateSitemap(any(Site.class));
+
+    SitemapStatistics statistics = new SitemapStatistics();
+    sitemapTrigger.setSitemapStatistics(statistics);
+    sitemapTrigger.generateSitemaps();
+
+    assertThat(running.getCount()).isZero();
+    assertThat(statistics.getSites()).containsOnlyKeys("site1", "site2");
+  }
+
+  @Test
+  void testGenerateSitemapsRetries() throws Exception {
+    Site site = createSite("site", true);
+    when(site.getName()).thenReturn("Site");
+    when(sitesService.getSites()).thenReturn(Set.of(site));
+    sitemapTrigger.setRetries(2);
+    sitemapTrigger.setRetryDelay(Duration.ZERO);
+    SitemapStatistics statistics = new SitemapStatistics();
+    sitemapTrigger.setSitemapStatistics(statistics);
+
+    doThrow(new IllegalStateException("Unable to generate sitemap"))
+            .doReturn(new SitemapTriggerImpl.GenerationResult("Sitemap has been written to /sitemap/site", 42))
+            .when(sitemapTrigger).generateSitemap(site);
+
+    sitemapTrigger.generateSitemaps();
+    // the retry is scheduled, not awaited
+    SitemapStatistics.SiteStatistics siteStatistics = awaitSiteStatistics(statistics, "site");
+    verify(sitemapTrigger, times(2)).generateSitemap(site);
+    assertThat(siteStatistics).isNotNull();
+    assertThat(siteStatistics.getSiteName()).isEqualTo("Site");
+    assertThat(siteStatistics.getLastAttempts()).isEqualTo(2);
+    assertThat(siteStatistics.getUrlCount()).isEqualTo(42);
+    assertThat(siteStatistics.isFailed()).isFalse();
+    assertThat(siteStatistics.getFailures()).isZero();
+  }
+
+  @Test
+  void testGenerateSitemapsFailure() throws Exception {
+    Site site = createSite("site", true);
+    when(sitesService.getSites()).thenReturn(Set.of(site));
+    sitemapTrigger.setRetries(1);
+    sitemapTrigger.setRetryDelay(Duration.ZERO);
+    SitemapStatistics statistics = new SitemapStatistics();
+    sitemapTrigger.setSitemapStatistics(statistics);
+
+    doThrow(new IllegalStateException("Unable to generate sitemap")).when(sitemapTrigger).generateSitemap(site);
+
+    sitemapTrigger.generateSitemaps();
+    SitemapStatistics.SiteStatistics siteStatistics = awaitSiteStatistics(statistics, "site");
+    verify(sitemapTrigger, times(2)).generateSitemap(site);
+
+    assertThat(siteStatistics).isNotNull();
+    assertThat(siteStatistics.isFailed()).isTrue();
+    assertThat(siteStatistics.getFailures()).isEqualTo(1);
+    assertThat(siteStatistics.getUrlCount()).isEqualTo(-1);
+  }
+
+  @Test
+  void testGenerateSitemapsRetryDoesNotBlockOtherSites() throws IOException {
+    Site failing = createSite("failing", true);
+    Site other = createSite("other", true);
+    when(sitesService.getSites()).thenReturn(new LinkedHashSet<>(List.of(failing, other)));
+    sitemapTrigger.setSiteSchedules(Map.of("failing", siteSchedule(10, 0)));
+    sitemapTrigger.setRetries(1);
+    sitemapTrigger.setRetryDelay(Duration.ofHours(1));
+    SitemapStatistics statistics = new SitemapStatistics();
+    sitemapTrigger.setSitemapStatistics(statistics);
+
+    doThrow(new IllegalStateException("Unable to generate sitemap")).when(sitemapTrigger).generateSitemap(failing);
+    doReturn(result()).when(sitemapTrigger).generateSitemap(other);
+
+    // the retry of the failing site is pending, but does not delay the other site
+    sitemapTrigger.generateSitemaps();
+    verify(sitemapTrigger, times(1)).generateSitemap(failing);
+    verify(sitemapTrigger, times(1)).generateSitemap(other);
+    assertThat(statistics.getSites()).containsOnlyKeys("other");
+  }
+
+  @Test
+  void testGenerateSitemapsSitePeriod() throws IOException {
+    Site daily = createSite("daily", true);
+    Site weekly = createSite("weekly", true);
+    when(sitesService.getSites()).thenReturn(Set.of(daily, weekly));
+    sitemapTrigger.setSiteSchedules(Map.of("weekly", siteSchedule(0, 10080)));
+    doReturn(result()).when(sitemapTrigger).generateSitemap(any(Site.class));
+
+    sitemapTrigger.generateSitemaps();
+    sitemapTrigger.generateSitemaps();
+    verify(sitemapTrigger, times(2)).generateSitemap(daily);
+    verify(sitemapTrigger, times(1)).generateSitemap(weekly);
+  }
+
   @Test
   void testGenerateSitemap() throws IOException {
     //inputs
@@ -90,11 +229,14 @@ class SitemapTriggerImplTest {
     doReturn(httpClient).when(sitemapTrigger).createHttpClient();
 
     CloseableHttpResponse response = mockResponse(HttpServletResponse.SC_OK, expectedResult);
+    when(response.getFirstHeader(SitemapHelper.URL_COUNT_HEADER)).thenReturn(new BasicHeader(SitemapHelper.URL_COUNT_HEADER, "42"));
     HttpGetMatcher httpGetMatcher = new HttpGetMatcher("http://localhost:666/" + PREFIX_INTERNAL + "/" + siteSegment + "/sitemap-org");
     when(httpClient.execute(argThat(httpGetMatcher))).thenReturn(response);
 
     //action
-    assertThat(sitemapTrigger.generateSitemap(site)).isEqualTo(expectedResult);
+    SitemapTriggerImpl.GenerationResult result = sitemapTrigger.generateSitemap(site);
+    assertThat(result.getResponse()).isEqualTo(expectedResult);
+    assertThat(result.getUrlCount()).isEqualTo(42);
   }
 
   @Test
@@ -147,12 +289,39 @@ class SitemapTriggerImplTest {
     when(urlPathFormattingHelper.getVanityName(siteRootDocument)).thenReturn(siteSegment);
   }
 
+  private static SitemapStatistics.SiteStatistics awaitSiteStatistics(SitemapStatistics statistics, String siteId) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    SitemapStatistics.SiteStatistics siteStatistics;
+    while ((siteStatistics = statistics.getSite(siteId)) == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    return siteStatistics;
+  }
+
+  private static SitemapTriggerImpl.GenerationResult result() {
+    return new SitemapTriggerImpl.GenerationResult("result", -1);
+  }
+
   private Site createSite(boolean isEnabledForGeneration) {
     Site site = mock(Site.class);
+    lenient().when(site.getId()).thenReturn(String.valueOf(System.identityHashCode(site)));
     when(sitemapSetupSelector.isSitemapEnabled(site)).thenReturn(isEnabledForGeneration);
     return site;
   }
 
+  private Site createSite(String id, boolean isEnabledForGeneration) {
+    Site site = createSite(isEnabledForGeneration);
+    lenient().when(site.getId()).thenReturn(id);
+    return site;
+  }
+
+  private static CaeSitemapConfigurationProperties.SiteSchedule siteSchedule(int priority, long periodMinutes) {
+    CaeSitemapConfigurationProperties.SiteSchedule siteSchedule = new CaeSitemapConfigurationProperties.SiteSchedule();
+    siteSchedule.setPriority(priority);
+    siteSchedule.setPeriodMinutes(periodMinutes);
+    return siteSchedule;
+  }
+
   private class HttpGetMatcher extends BaseMatcher<HttpGet> {
 
     private String expectedUrl;
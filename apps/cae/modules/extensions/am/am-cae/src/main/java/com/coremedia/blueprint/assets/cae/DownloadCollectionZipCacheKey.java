@@ -3,41 +3,26 @@ package com.coremedia.blueprint.assets.cae;
 import com.coremedia.blueprint.assets.contentbeans.AMAssetRendition;
 import com.coremedia.cache.Cache;
 import com.coremedia.cache.CacheKey;
-import com.coremedia.cap.common.Blob;
-import com.coremedia.cap.common.IdHelper;
 import com.coremedia.cap.common.TempFileService;
-import com.coremedia.cap.content.Content;
 import com.coremedia.cap.content.ContentRepository;
 import com.coremedia.mimetype.MimeTypeService;
 import edu.umd.cs.findbugs.annotations.NonNull;
-import org.apache.commons.io.IOUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
-
-import static com.google.common.base.MoreObjects.firstNonNull;
 
 final class DownloadCollectionZipCacheKey extends CacheKey<File> {
 
-  private static final Logger LOG = LoggerFactory.getLogger(DownloadCollectionZipCacheKey.class);
-
   private static final String TEMP_FILE_PREFIX = "amDownloadPortalCollectionZip";
   private static final String ZIP_FILE_EXTENSION = "zip";
 
   public static final int DOWNLOAD_COLLECTION_DATA_EXPIRATION_MINUTES = 10;
 
   static final String CACHE_CLASS_DISK = "com.coremedia.cap.disk";
-  private static final String DEFAULT_EXTENSION = "raw";
 
   private List<AMAssetRendition> renditions;
   private ContentRepository contentRepository;
@@ -109,47 +94,12 @@ final class DownloadCollectionZipCacheKey extends CacheKey<File> {
     }
   }
 
+  /**
+   * Renditions which cannot be fetched are skipped by the writer.  Failures
+   * while writing an entry are propagated, so that the temp file is released
+   * and no truncated ZIP is cached.
+   */
   private void createDownloadCollectionZip(@NonNull OutputStream outputStream) throws IOException {
-
-    try (
-            BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream);
-            ZipOutputStream zipOutputStream = new ZipOutputStream(bufferedOutputStream)
-    ) {
-      for (AMAssetRendition rendition : renditions) {
-        addBlobToZipFile(zipOutputStream, rendition);
-      }
-      zipOutputStream.finish();
-      zipOutputStream.flush();
-    } catch (Exception e) {
-      LOG.error("An exception occurred while zipping asset download collection", e);
-    }
-  }
-
-  private void addBlobToZipFile(@NonNull ZipOutputStream zipOutputStream,
-                                @NonNull AMAssetRendition rendition) throws IOException {
-    Blob blob = rendition.getBlob();
-    Content assetContent = rendition.getAsset().getContent();
-    if (blob == null) {
-      LOG.warn("No blob for AMAssetRendition with name {} for asset with id {}, it will be skipped in the zip file",
-              rendition.getName(), assetContent.getId());
-      return;
-    }
-    try (InputStream blobInputStream = blob.getInputStream()) {
-      String extension = getExtension(blob.getContentType().toString(), DEFAULT_EXTENSION);
-      int id = IdHelper.parseContentId(assetContent.getId());
-      String zipEntryName = String.format("%s_%s_%s.%s", assetContent.getName(), rendition.getName(), id, extension);
-      zipOutputStream.putNextEntry(new ZipEntry(zipEntryName));
-      IOUtils.copy(blobInputStream, zipOutputStream);
-    } catch (Exception e) {
-      LOG.error("An exception occurred while adding zip entry for rendition {} of asset {} to download collection zip",
-              rendition.getName(), assetContent.getId(), e);
-    } finally {
-      zipOutputStream.closeEntry();
-    }
-  }
-
-  private String getExtension(String contentType, String fallback) {
-    String extension = mimeTypeService.getExtensionForMimeType(contentType);
-    return firstNonNull(extension, fallback);
+    new DownloadCollectionZipWriter(mimeTypeService).write(renditions, outputStream);
   }
 }
@@ -0,0 +1,250 @@
+package com.coremedia.blueprint.assets.cae;
+
+import com.coremedia.blueprint.assets.contentbeans.AMAssetRendition;
+import com.coremedia.cap.common.Blob;
+import com.coremedia.cap.common.IdHelper;
+import com.coremedia.cap.content.Content;
+import com.coremedia.mimetype.MimeTypeService;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+
+/**
+ * Writes the renditions of a download collection as ZIP to an output stream.
+ * <p>
+ * The entries are written as soon as their blobs are available, so the
+ * download starts immediately, independent of the size of the collection.
+ * If an executor is given, the blobs of the next renditions are fetched in
+ * parallel while the current entry is written.  Blobs up to
+ * {@code maxBufferedBlobSize} bytes are fetched completely, larger blobs are
+ * only opened in advance and streamed when their entry is written.  Thus the
+ * memory consumption is bounded by the read-ahead and does not depend on the
+ * size of the collection.
+ * <p>
+ * Already compressed media (images, audio, video, archives) is not deflated
+ * again: buffered blobs are written as STORED entries, streamed blobs with
+ * compression level 0, since STORED entries need their CRC in advance.
+ */
+final class DownloadCollectionZipWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DownloadCollectionZipWriter.class);
+
+  private static final String DEFAULT_EXTENSION = "raw";
+
+  private static final Set<String> COMPRESSED_MEDIA_TYPE_PREFIXES = Set.of("audio/", "video/");
+  private static final Set<String> COMPRESSED_MEDIA_TYPES = Set.of(
+          "image/jpeg",
+          "image/png",
+          "image/gif",
+          "image/webp",
+          "application/zip",
+          "application/gzip",
+          "application/x-7z-compressed",
+          "application/x-rar-compressed");
+
+  private final MimeTypeService mimeTypeService;
+  private final Executor executor;
+  private final int readAhead;
+  private final long maxBufferedBlobSize;
+
+  /**
+   * Create a writer which fetches the blobs sequentially.
+   */
+  DownloadCollectionZipWriter(@NonNull MimeTypeService mimeTypeService) {
+    this(mimeTypeService, null, 0, 0);
+  }
+
+  /**
+   * @param executor            fetches the blobs of the next renditions, or null to fetch sequentially
+   * @param readAhead           the maximum number of renditions which are fetched in advance
+   * @param maxBufferedBlobSize the maximum size of a blob which is fetched completely in advance
+   */
+  DownloadCollectionZipWriter(@NonNull MimeTypeService mimeTypeService,
+                              @Nullable Executor executor,
+                              int readAhead,
+                              long maxBufferedBlobSize) {
+    this.mimeTypeService = mimeTypeService;
+    this.executor = executor;
+    this.readAhead = executor == null ? 0 : Math.max(0, readAhead);
+    this.maxBufferedBlobSize = maxBufferedBlobSize;
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Write the ZIP of the given renditions.
+   * <p>
+   * Renditions which cannot be added are logged and skipped, like in the
+   * prepared ZIP files.  The output stream is not closed.
+   */
+  void write(@NonNull List<AMAssetRendition> renditions, @NonNull OutputStream outputStream) throws IOException {
+    List<CompletableFuture<FetchedBlob>> fetches = new ArrayList<>(renditions.size());
+    ZipOutputStream zipOutputStream = new ZipOutputStream(new BufferedOutputStream(outputStream));
+    try {
+      for (int i = 0; i < renditions.size(); i++) {
+        for (int next = fetches.size(); next < renditions.size() && next <= i + readAhead; next++) {
+          fetches.add(fetch(renditions.get(next)));
+        }
+        FetchedBlob fetchedBlob = await(fetches.get(i), renditions.get(i));
+        fetches.set(i, null);
+        if (fetchedBlob != null) {
+          addEntry(zipOutputStream, renditions.get(i), fetchedBlob);
+        }
+      }
+      zipOutputStream.finish();
+      zipOutputStream.flush();
+    } finally {
+      // on failure, e.g. if the client aborts the download, release the blobs fetched in advance
+      for (CompletableFuture<FetchedBlob> fetch : fetches) {
+        if (fetch != null) {
+          fetch.thenAccept(fetchedBlob -> {
+            if (fetchedBlob != null) {
+              IOUtils.closeQuietly(fetchedBlob.inputStream);
+            }
+          });
+        }
+      }
+    }
+  }
+
+  static boolean isCompressedMediaType(@Nullable String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    return COMPRESSED_MEDIA_TYPES.contains(contentType)
+            || COMPRESSED_MEDIA_TYPE_PREFIXES.stream().anyMatch(contentType::startsWith);
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  @NonNull
+  private CompletableFuture<FetchedBlob> fetch(@NonNull AMAssetRendition rendition) {
+    if (executor == null) {
+      // fetched lazily in await
+      return new CompletableFuture<>();
+    }
+    return CompletableFuture.supplyAsync(() -> fetchBlob(rendition), executor);
+  }
+
+  @Nullable
+  private FetchedBlob await(@NonNull CompletableFuture<FetchedBlob> fetch, @NonNull AMAssetRendition rendition) throws IOException {
+    if (executor == null) {
+      return fetchBlob(rendition);
+    }
+    try {
+      return fetch.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while fetching rendition " + rendition.getName(), e);
+    } catch (ExecutionException e) {
+      LOG.error("An exception occurred while fetching rendition {} of asset {} for download collection zip",
+              rendition.getName(), rendition.getAsset().getContent().getId(), e.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * Fetch the blob of the rendition and determine its entry.
+   *
+   * @return the fetched blob or null if the rendition cannot be added
+   */
+  @Nullable
+  private FetchedBlob fetchBlob(@NonNull AMAssetRendition rendition) {
+    Blob blob = rendition.getBlob();
+    Content assetContent = rendition.getAsset().getContent();
+    if (blob == null) {
+      LOG.warn("No blob for AMAssetRendition with name {} for asset with id {}, it will be skipped in the zip file",
+              rendition.getName(), assetContent.getId());
+      return null;
+    }
+    try {
+      String contentType = blob.getContentType().toString();
+      String extension = firstNonNull(mimeTypeService.getExtensionForMimeType(contentType), DEFAULT_EXTENSION);
+      int id = IdHelper.parseContentId(assetContent.getId());
+      String zipEntryName = String.format("%s_%s_%s.%s", assetContent.getName(), rendition.getName(), id, extension);
+      boolean compressed = isCompressedMediaType(blob.getContentType().getBaseType());
+
+      InputStream inputStream = blob.getInputStream();
+      if (executor != null && blob.getSize() <= maxBufferedBlobSize) {
+        try (InputStream in = inputStream) {
+          return new FetchedBlob(zipEntryName, compressed, IOUtils.toByteArray(in), null);
+        }
+      }
+      return new FetchedBlob(zipEntryName, compressed, null, inputStream);
+    } catch (Exception e) {
+      LOG.error("An exception occurred while adding zip entry for rendition {} of asset {} to download collection zip",
+              rendition.getName(), assetContent.getId(), e);
+      return null;
+    }
+  }
+
+  private static void addEntry(@NonNull ZipOutputStream zipOutputStream,
+                               @NonNull AMAssetRendition rendition,
+                               @NonNull FetchedBlob fetchedBlob) throws IOException {
+    ZipEntry zipEntry = new ZipEntry(fetchedBlob.name);
+    try (InputStream in = fetchedBlob.inputStream) {
+      if (fetchedBlob.data != null && fetchedBlob.compressed) {
+        CRC32 crc = new CRC32();
+        crc.update(fetchedBlob.data);
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(fetchedBlob.data.length);
+        zipEntry.setCompressedSize(fetchedBlob.data.length);
+        zipEntry.setCrc(crc.getValue());
+      } else {
+        zipOutputStream.setLevel(fetchedBlob.compressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+      }
+      try {
+        zipOutputStream.putNextEntry(zipEntry);
+      } catch (IOException e) {
+        // e.g. a duplicate entry, the stream is still usable
+        LOG.error("An exception occurred while adding zip entry for rendition {} of asset {} to download collection zip",
+                rendition.getName(), rendition.getAsset().getContent().getId(), e);
+        return;
+      }
+      if (fetchedBlob.data != null) {
+        zipOutputStream.write(fetchedBlob.data);
+      } else {
+        IOUtils.copy(in, zipOutputStream);
+      }
+      zipOutputStream.closeEntry();
+    }
+  }
+
+
+  // --- inner classes ----------------------------------------------
+
+  private static final class FetchedBlob {
+    private final String name;
+    private final boolean compressed;
+    private final byte[] data;
+    private final InputStream inputStream;
+
+    private FetchedBlob(String name, boolean compressed, @Nullable byte[] data, @Nullable InputStream inputStream) {
+      this.name = name;
+      this.compressed = compressed;
+      this.data = data;
+      this.inputStream = inputStream;
+    }
+  }
+}
@@ -16,13 +16,19 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -56,6 +62,16 @@ public class DownloadPortalFactory {
 
   private DownloadPortalSearchService downloadPortalSearchService;
 
+  private boolean zipStreaming = false;
+
+  private int zipReadAhead = 4;
+
+  private int zipReadAheadThreads = 8;
+
+  private long zipMaxBufferedBlobSize = 8L * 1024 * 1024;
+
+  private ExecutorService zipReadAheadExecutor;
+
   public void setSettingsService(SettingsService settingsService) {
     this.settingsService = settingsService;
   }
@@ -76,6 +92,40 @@ public class DownloadPortalFactory {
     this.mimeTypeService = mimeTypeService;
   }
 
+  /**
+   * If true, download collections are streamed as ZIP to the client instead of being prepared
+   * as ZIP files on disk. Default is false.
+   */
+  public void setZipStreaming(boolean zipStreaming) {
+    this.zipStreaming = zipStreaming;
+  }
+
+  public boolean isZipStreaming() {
+    return zipStreaming;
+  }
+
+  /**
+   * The number of renditions whose blobs are fetched in advance while streaming a download collection.
+   * 0 fetches the blobs sequentially.
+   */
+  public void setZipReadAhead(int zipReadAhead) {
+    this.zipReadAhead = zipReadAhead;
+  }
+
+  /**
+   * The number of threads which fetch blobs in advance, shared by all streamed download collections.
+   */
+  public void setZipReadAheadThreads(int zipReadAheadThreads) {
+    this.zipReadAheadThreads = zipReadAheadThreads;
+  }
+
+  /**
+   * Blobs up to this size are fetched completely in advance, larger blobs are only opened.
+   */
+  public void setZipMaxBufferedBlobSize(long zipMaxBufferedBlobSize) {
+    this.zipMaxBufferedBlobSize = zipMaxBufferedBlobSize;
+  }
+
   @PostConstruct
   void initialize() {
     if (contentRepository == null) {
@@ -93,6 +143,21 @@ public class DownloadPortalFactory {
     if (settingsService == null) {
       throw new IllegalStateException("Required property not set: settingsService");
     }
+    if (zipStreaming && zipReadAhead > 0) {
+      AtomicInteger threadCount = new AtomicInteger();
+      zipReadAheadExecutor = Executors.newFixedThreadPool(Math.max(1, zipReadAheadThreads), runnable -> {
+        Thread thread = new Thread(runnable, "am-download-collection-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  @PreDestroy
+  void destroy() {
+    if (zipReadAheadExecutor != null) {
+      zipReadAheadExecutor.shutdownNow();
+    }
   }
 
   /**
@@ -133,6 +198,10 @@ public class DownloadPortalFactory {
   }
 
   public void prepareRenditionsDownload(List<AMAssetRendition> renditionsToDownload) {
+    if (zipStreaming) {
+      // nothing to prepare, the ZIP is created while downloading
+      return;
+    }
     DownloadCollectionZipCacheKey zipFileCacheKey = new DownloadCollectionZipCacheKey(
             renditionsToDownload,
             contentRepository,
@@ -142,6 +211,19 @@ public class DownloadPortalFactory {
     contentRepository.getConnection().getCache().get(zipFileCacheKey);
   }
 
+  /**
+   * Streams the ZIP of the given renditions, see {@link #setZipStreaming(boolean)}.
+   * The output stream is not closed.
+   */
+  public void writeRenditionsDownload(List<AMAssetRendition> renditionsToDownload, OutputStream outputStream) throws IOException {
+    DownloadCollectionZipWriter zipWriter = new DownloadCollectionZipWriter(
+            mimeTypeService,
+            zipReadAheadExecutor,
+            zipReadAhead,
+            zipMaxBufferedBlobSize);
+    zipWriter.write(renditionsToDownload, outputStream);
+  }
+
   public File getPreparedDownload(List<AMAssetRendition> renditionsToDownload) {
     File file = null;
     DownloadCollectionZipCacheKey zipFileCacheKey = new DownloadCollectionZipCacheKey(
@@ -448,6 +448,8 @@ public class DownloadPortalHandler {
   /**
    * Downloads the ZIP file containing multiple renditions that is prepared
    * in {@link #prepareDownloadingCollection(String, HttpServletResponse)}.
+   * If {@link DownloadPortalFactory#isZipStreaming() ZIP streaming} is enabled,
+   * the ZIP is written to the response while the renditions are fetched.
    *
    * @param downloadCollectionRawData the download collection data as a raw JSON String
    * @param response               the Servlet response
@@ -470,6 +472,11 @@ public class DownloadPortalHandler {
       response.addHeader("Content-Disposition", "attachment; filename=\"" + DOWNLOAD_COLLECTION_ZIP_FILENAME + "\"");
 
       List<AMAssetRendition> renditionsToDownload = getRenditionsToDownload(downloadCollectionMap);
+      if (downloadPortalFactory.isZipStreaming()) {
+        response.setStatus(HttpServletResponse.SC_OK);
+        downloadPortalFactory.writeRenditionsDownload(renditionsToDownload, response.getOutputStream());
+        return;
+      }
       File downloadFile = downloadPortalFactory.getPreparedDownload(renditionsToDownload);
       if (null != downloadFile ) {
         FileInputStream fis = new FileInputStream(downloadFile);
@@ -23,6 +23,7 @@ import javax.activation.MimeType;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
@@ -30,8 +31,11 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -212,6 +216,26 @@ public class DownloadCollectionZipCacheKeyTest {
     assertThat(unzippedFilenames).isEmpty();
   }
 
+  @Test
+  public void testFailingBlobIsNotCached() throws Exception {
+    CapBlobRef failingBlob = mock(CapBlobRef.class);
+    when(failingBlob.getContentType()).thenReturn(new MimeType("image/jpeg"));
+    when(failingBlob.getInputStream()).thenReturn(new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("connection reset");
+      }
+    });
+    AMAssetRendition failingRendition = mock(AMAssetRendition.class);
+    when(failingRendition.getBlob()).thenReturn(failingBlob);
+    when(failingRendition.getAsset()).thenReturn(asset);
+    when(failingRendition.getName()).thenReturn(ORIGINAL_RENDITION);
+    DownloadCollectionZipCacheKey cacheKey = newDownloadCollectionZipCacheKeyWithRenditions(List.of(failingRendition));
+
+    assertThatThrownBy(() -> cacheKey.evaluate(cache)).isInstanceOf(IOException.class);
+    verify(tempFileService).release(zipFile);
+  }
+
   @Test
   public void testWeight() throws Exception {
     File evaluatedZipFile = cacheKey.evaluate(cache);
@@ -0,0 +1,115 @@
+package com.coremedia.blueprint.assets.cae;
+
+import com.coremedia.blueprint.assets.contentbeans.AMAsset;
+import com.coremedia.blueprint.assets.contentbeans.AMAssetRendition;
+import com.coremedia.cap.common.CapBlobRef;
+import com.coremedia.cap.content.Content;
+import com.coremedia.mimetype.MimeTypeService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.activation.MimeType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DownloadCollectionZipWriterTest {
+
+  private ExecutorService executor;
+  private MimeTypeService mimeTypeService;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(2);
+    mimeTypeService = mock(MimeTypeService.class);
+    when(mimeTypeService.getExtensionForMimeType("image/jpeg")).thenReturn("jpg");
+    when(mimeTypeService.getExtensionForMimeType("text/plain")).thenReturn("txt");
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testStreamingWithReadAhead() throws Exception {
+    List<AMAssetRendition> renditions = List.of(
+            rendition(10, "original", "image/jpeg", "jpeg data"),
+            rendition(12, "web", "text/plain", "some text"),
+            rendition(14, "print", "image/jpeg", "more jpeg data"));
+    // the second jpeg is streamed instead of buffered
+    DownloadCollectionZipWriter testling = new DownloadCollectionZipWriter(mimeTypeService, executor, 1, 10);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    testling.write(renditions, out);
+
+    List<ZipEntry> entries = new ArrayList<>();
+    List<String> contents = new ArrayList<>();
+    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+        entries.add(entry);
+        contents.add(new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+      }
+    }
+
+    assertThat(entries).extracting(ZipEntry::getName)
+            .containsExactly("asset10_original_10.jpg", "asset12_web_12.txt", "asset14_print_14.jpg");
+    assertThat(entries).extracting(ZipEntry::getMethod)
+            .containsExactly(ZipEntry.STORED, ZipEntry.DEFLATED, ZipEntry.DEFLATED);
+    assertThat(contents).containsExactly("jpeg data", "some text", "more jpeg data");
+  }
+
+  @Test
+  public void testSkipRenditionWithoutBlob() throws Exception {
+    AMAssetRendition noBlob = rendition(16, "original", "image/jpeg", "");
+    when(noBlob.getBlob()).thenReturn(null);
+    List<AMAssetRendition> renditions = List.of(noBlob, rendition(18, "original", "image/jpeg", "jpeg data"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new DownloadCollectionZipWriter(mimeTypeService, executor, 4, 1024).write(renditions, out);
+
+    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      assertThat(zis.getNextEntry().getName()).isEqualTo("asset18_original_18.jpg");
+      assertThat(zis.getNextEntry()).isNull();
+    }
+  }
+
+  @Test
+  public void testIsCompressedMediaType() {
+    assertThat(DownloadCollectionZipWriter.isCompressedMediaType("image/jpeg")).isTrue();
+    assertThat(DownloadCollectionZipWriter.isCompressedMediaType("video/mp4")).isTrue();
+    assertThat(DownloadCollectionZipWriter.isCompressedMediaType("image/tiff")).isFalse();
+    assertThat(DownloadCollectionZipWriter.isCompressedMediaType(null)).isFalse();
+  }
+
+  private static AMAssetRendition rendition(int id, String name, String contentType, String data) throws Exception {
+    Content content = mock(Content.class);
+    when(content.getId()).thenReturn("coremedia:///cap/content/" + id);
+    when(content.getName()).thenReturn("asset" + id);
+    AMAsset asset = mock(AMAsset.class);
+    when(asset.getContent()).thenReturn(content);
+
+    byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+    CapBlobRef blob = mock(CapBlobRef.class);
+    when(blob.getContentType()).thenReturn(new MimeType(contentType));
+    when(blob.getSize()).thenReturn((long) bytes.length);
+    when(blob.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+
+    AMAssetRendition rendition = mock(AMAssetRendition.class);
+    when(rendition.getAsset()).thenReturn(asset);
+    when(rendition.getName()).thenReturn(name);
+    when(rendition.getBlob()).thenReturn(blob);
+    return rendition;
+  }
+}
@@ -7,6 +7,7 @@ import com.coremedia.blueprint.cae.sitemap.ExcludeFromSearchSitemapPredicate;
 import com.coremedia.blueprint.cae.sitemap.SitemapDoctypePredicate;
 import com.coremedia.blueprint.cae.sitemap.SitemapRendererFactory;
 import com.coremedia.blueprint.cae.sitemap.SitemapSetup;
+import com.coremedia.blueprint.cae.sitemap.SitemapStatistics;
 import com.coremedia.blueprint.cae.sitemap.SitemapUrlGenerator;
 import com.coremedia.blueprint.common.services.validation.ValidationService;
 import com.coremedia.blueprint.component.cae.management.CaeManagementConfiguration;
@@ -14,6 +15,7 @@ import com.coremedia.objectserver.beans.ContentBeanFactory;
 import com.coremedia.objectserver.web.links.LinkFormatter;
 import com.coremedia.springframework.customizer.Customize;
 import com.coremedia.springframework.customizer.CustomizerConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.autoconfigure.web.ManagementContextConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
@@ -46,9 +48,13 @@ public class CorporateManagementConfiguration {
 
   @SuppressWarnings("unchecked")
   @Bean
-  public ContentUrlGenerator corporateSitemapContentUrlGenerator(ContentBeanFactory contentBeanFactory, LinkFormatter linkFormatter, ValidationService validationService) {
+  public ContentUrlGenerator corporateSitemapContentUrlGenerator(ContentBeanFactory contentBeanFactory,
+                                                                 LinkFormatter linkFormatter,
+                                                                 ValidationService validationService,
+                                                                 CaeSitemapConfigurationProperties properties,
+                                                                 ObjectProvider<SitemapStatistics> sitemapStatisticsProvider) {
     List<String> exclusionPaths = List.of("Options");
-    return new ContentUrlGenerator(linkFormatter, contentBeanFactory, validationService, exclusionPaths, List.of(
+    ContentUrlGenerator contentUrlGenerator = new ContentUrlGenerator(linkFormatter, contentBeanFactory, validationService, exclusionPaths, List.of(
             new ValidContentPredicate(contentBeanFactory),
             new SitemapDoctypePredicate(List.of(
                     "CMTeasable",
@@ -68,6 +74,9 @@ public class CorporateManagementConfiguration {
             )),
             new ExcludeFromSearchSitemapPredicate("CMTeasable", "notSearchable")
     ));
+    contentUrlGenerator.setTraversalParallelism(properties.getTraversalParallelism());
+    contentUrlGenerator.setSitemapStatistics(sitemapStatisticsProvider.getIfAvailable());
+    return contentUrlGenerator;
   }
 
 }
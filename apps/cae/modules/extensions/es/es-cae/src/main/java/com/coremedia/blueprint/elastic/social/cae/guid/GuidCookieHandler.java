@@ -5,8 +5,13 @@ import com.coremedia.blueprint.common.contentbeans.CMNavigation;
 import com.coremedia.elastic.core.api.settings.Settings;
 import com.coremedia.objectserver.web.links.Link;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
@@ -23,13 +28,14 @@ import org.springframework.web.util.UriComponentsBuilder;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.security.Signature;
-import java.security.SignatureException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.coremedia.blueprint.base.links.UriConstants.Patterns.PATTERN_NUMBER;
 import static com.coremedia.blueprint.base.links.UriConstants.Segments.PREFIX_DYNAMIC;
@@ -43,10 +49,13 @@ import static java.lang.invoke.MethodHandles.lookup;
  * The links are supposed to be generated and called within a javascript snippet on the home page.
  * An asynchronous javaScirpt call in this snippet passes then the control to the given handler, which sets "guid"
  * session cookie.
+ * <p>
+ * The number of signature verifications and of GUIDs found in the verified cache are provided as metrics
+ * {@value #METRIC_VERIFICATIONS} and {@value #METRIC_VERIFIED_CACHE_HITS}.
  */
 @Link
 @RequestMapping
-public class GuidCookieHandler {
+public class GuidCookieHandler implements MeterBinder {
 
   private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
 
@@ -60,6 +69,9 @@ public class GuidCookieHandler {
    */
   static final String GUID_COOKIE_PREFIX = "guid";
 
+  static final String METRIC_VERIFICATIONS = "es.guid.verifications";
+  static final String METRIC_VERIFIED_CACHE_HITS = "es.guid.verified.cache.hits";
+
   /**
    * URI pattern, for URIs like "/dynamic/service/guid/corporate/6602"
    */
@@ -70,14 +82,65 @@ public class GuidCookieHandler {
       "/{" + SEGMENT_ID + ":" + PATTERN_NUMBER + "}";
 
   /**
-   * Public/private key pair used to generate GUID cookie
+   * Setting for the algorithm used to sign new GUIDs: "SHA1withRSA" (default), "HmacSHA256" or "Ed25519".
+   * GUIDs signed with RSA or HMAC are always accepted, so that existing cookies stay valid when the
+   * algorithm is changed.
+   */
+  static final String ALGORITHM_SETTING = "signCookie.algorithm";
+
+  /**
+   * Setting for the maximum number of verified GUIDs kept in memory, 0 disables the cache.
    */
-  private final RSAKeyPair rsaKeyPair;
+  static final String VERIFIED_CACHE_SIZE_SETTING = "signCookie.verifiedCacheSize";
+  private static final int DEFAULT_VERIFIED_CACHE_SIZE = 10_000;
+
+  /**
+   * Signatures of the given types are prefixed with the type and a '.', RSA signatures are not.
+   */
+  private static final String HMAC_SHA256_TYPE = "hs256";
+  private static final String ED25519_TYPE = "ed25519";
+  private static final char TYPE_SEPARATOR = '.';
+
   private final SettingsService settingsService;
 
+  /**
+   * Signer for legacy GUIDs, using the public/private key pair of the "signCookie" settings
+   */
+  private final GuidSigner rsaSigner;
+  private final Map<String, GuidSigner> signersByType = new HashMap<>();
+  private final GuidSigner signer;
+  private final String signaturePrefix;
+  @Nullable
+  private final Cache<String, Boolean> verifiedGuids;
+
+  private final LongAdder verifications = new LongAdder();
+  private final LongAdder verifiedCacheHits = new LongAdder();
+
   public GuidCookieHandler(Settings settings, SettingsService settingsService) throws NoSuchAlgorithmException {
-    this.rsaKeyPair = RSAKeyPair.createFrom(settings);
     this.settingsService = settingsService;
+
+    RSAKeyPair rsaKeyPair = RSAKeyPair.createFrom(settings);
+    rsaSigner = SignatureGuidSigner.rsa(rsaKeyPair);
+    signersByType.put(HMAC_SHA256_TYPE, HmacGuidSigner.fromSecret(rsaKeyPair.getPrivateKey().getEncoded()));
+
+    String algorithm = settings.getString(ALGORITHM_SETTING);
+    if (HmacGuidSigner.ALGORITHM.equalsIgnoreCase(algorithm)) {
+      signer = signersByType.get(HMAC_SHA256_TYPE);
+      signaturePrefix = HMAC_SHA256_TYPE + TYPE_SEPARATOR;
+    } else if (SignatureGuidSigner.ED25519_ALGORITHM.equalsIgnoreCase(algorithm)) {
+      signer = SignatureGuidSigner.ed25519(settings);
+      signersByType.put(ED25519_TYPE, signer);
+      signaturePrefix = ED25519_TYPE + TYPE_SEPARATOR;
+    } else {
+      if (algorithm != null && !SignatureGuidSigner.RSA_ALGORITHM.equalsIgnoreCase(algorithm)) {
+        LOG.warn("Unknown {} '{}', using {}.", ALGORITHM_SETTING, algorithm, SignatureGuidSigner.RSA_ALGORITHM);
+      }
+      signer = rsaSigner;
+      signaturePrefix = "";
+    }
+
+    int verifiedCacheSize = verifiedCacheSize(settings);
+    verifiedGuids = verifiedCacheSize > 0 ? CacheBuilder.newBuilder().maximumSize(verifiedCacheSize).build() : null;
   }
 
   /**
@@ -139,22 +202,32 @@ public class GuidCookieHandler {
     if (Strings.isNullOrEmpty(guid)) {
       return false;
     }
+    if (verifiedGuids != null && verifiedGuids.getIfPresent(guid) != null) {
+      verifiedCacheHits.increment();
+      return true;
+    }
     try {
       String uuid = extractUuidFromGuid(guid);
       String signature = extractSignatureFromGuid(guid);
-      Signature sig = Signature.getInstance("SHA1withRSA");
-      sig.initVerify(rsaKeyPair.getPublicKey());
-      byte[] update = uuid.getBytes();
-      sig.update(update, 0, update.length);
-      byte[] verify = Hex.decodeHex(signature.toCharArray());
-      return sig.verify(verify);
+      int separator = signature.indexOf(TYPE_SEPARATOR);
+      GuidSigner verifier = separator == -1 ? rsaSigner : signersByType.get(signature.substring(0, separator));
+      if (verifier == null) {
+        throw new IllegalArgumentException("Unknown signature type");
+      }
+      byte[] verify = Hex.decodeHex(signature.substring(separator + 1).toCharArray());
+      verifications.increment();
+      boolean valid = verifier.verify(uuid.getBytes(), verify);
+      if (valid && verifiedGuids != null) {
+        verifiedGuids.put(guid, Boolean.TRUE);
+      }
+      return valid;
     } catch (DecoderException e) {
       LOG.warn(format("Hex decoder exception while validating signature for %s: %s", guid, e.getMessage()), e);
     } catch (NoSuchAlgorithmException e) {
       LOG.warn(format("No such algorithm while validating signature for %s: %s", guid, e.getMessage()), e);
     } catch (InvalidKeyException e) {
       LOG.warn(format("Invalid key while validating signature for %s: %s", guid, e.getMessage()), e);
-    } catch (SignatureException e) {
+    } catch (GeneralSecurityException e) {
       LOG.warn(format("Cannot validate signature for %s: %s", guid, e.getMessage()), e);
     } catch (IllegalArgumentException e) {
       LOG.warn(format("Invalid Guid: %s: %s", guid, e.getMessage()), e);
@@ -178,17 +251,17 @@ public class GuidCookieHandler {
   String createGuid() {
     String uuid = UUID.randomUUID().toString();
     try {
-      Signature signature = Signature.getInstance("SHA1withRSA");
-      signature.initSign(rsaKeyPair.getPrivateKey());
-      byte[] bytes = uuid.getBytes();
-      signature.update(bytes, 0, bytes.length);
-      byte[] signed = signature.sign();
-      return uuid + '+' + Hex.encodeHexString(signed);
+      byte[] signed = signer.sign(uuid.getBytes());
+      String guid = uuid + '+' + signaturePrefix + Hex.encodeHexString(signed);
+      if (verifiedGuids != null) {
+        verifiedGuids.put(guid, Boolean.TRUE);
+      }
+      return guid;
     } catch (NoSuchAlgorithmException e) {
       throw new IllegalArgumentException("No such algorithm while generating signature for " + uuid + ": " + e.getMessage(), e);
     } catch (InvalidKeyException e) {
       throw new IllegalArgumentException("Invalid key while generating signature for " + uuid + ": " + e.getMessage(), e);
-    } catch (SignatureException e) {
+    } catch (GeneralSecurityException e) {
       throw new IllegalArgumentException("Cannot generate signature for " + uuid + ": " + e.getMessage(), e);
     }
   }
@@ -228,4 +301,28 @@ public class GuidCookieHandler {
     return guid.substring(index + 1);
   }
 
+  private static int verifiedCacheSize(Settings settings) {
+    String size = settings.getString(VERIFIED_CACHE_SIZE_SETTING);
+    if (size == null) {
+      return DEFAULT_VERIFIED_CACHE_SIZE;
+    }
+    try {
+      return Integer.parseInt(size.trim());
+    } catch (NumberFormatException e) {
+      LOG.warn("Invalid {} '{}', using {}.", VERIFIED_CACHE_SIZE_SETTING, size, DEFAULT_VERIFIED_CACHE_SIZE);
+      return DEFAULT_VERIFIED_CACHE_SIZE;
+    }
+  }
+
+  // --- MeterBinder ---
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(METRIC_VERIFICATIONS, verifications, LongAdder::sum)
+            .description("The number of GUID signature verifications, excluding GUIDs found in the verified cache")
+            .register(registry);
+    FunctionCounter.builder(METRIC_VERIFIED_CACHE_HITS, verifiedCacheHits, LongAdder::sum)
+            .description("The number of GUIDs found in the verified cache")
+            .register(registry);
+  }
 }
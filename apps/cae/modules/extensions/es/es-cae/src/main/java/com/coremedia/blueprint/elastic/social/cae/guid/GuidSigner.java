@@ -0,0 +1,15 @@
+package com.coremedia.blueprint.elastic.social.cae.guid;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Signs the UUIDs of GUID cookies and verifies their signatures.
+ * <p>
+ * Implementations are thread safe.
+ */
+interface GuidSigner {
+
+  byte[] sign(byte[] data) throws GeneralSecurityException;
+
+  boolean verify(byte[] data, byte[] signature) throws GeneralSecurityException;
+}
@@ -0,0 +1,57 @@
+package com.coremedia.blueprint.elastic.social.cae.guid;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Signs GUIDs with HMAC-SHA256.
+ * <p>
+ * The key is derived from a secret of the "signCookie" settings, so all CAEs
+ * with the same settings accept the GUIDs of each other.  Every thread reuses
+ * its own {@link Mac} instance.
+ */
+class HmacGuidSigner implements GuidSigner {
+
+  static final String ALGORITHM = "HmacSHA256";
+  private static final byte[] KEY_LABEL = "guid-cookie-hmac".getBytes(StandardCharsets.UTF_8);
+
+  private final SecretKeySpec key;
+  private final ThreadLocal<Mac> macs = new ThreadLocal<>();
+
+  private HmacGuidSigner(byte[] key) {
+    this.key = new SecretKeySpec(key, ALGORITHM);
+  }
+
+  /**
+   * Derive the HMAC key from the given secret.
+   */
+  static HmacGuidSigner fromSecret(byte[] secret) throws NoSuchAlgorithmException {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    digest.update(KEY_LABEL);
+    digest.update(secret);
+    // fail early if the JVM does not support the algorithm
+    Mac.getInstance(ALGORITHM);
+    return new HmacGuidSigner(digest.digest());
+  }
+
+  @Override
+  public byte[] sign(byte[] data) throws GeneralSecurityException {
+    Mac mac = macs.get();
+    if (mac == null) {
+      mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      macs.set(mac);
+    }
+    // doFinal resets the mac for the next use with the same key
+    return mac.doFinal(data);
+  }
+
+  @Override
+  public boolean verify(byte[] data, byte[] signature) throws GeneralSecurityException {
+    return MessageDigest.isEqual(sign(data), signature);
+  }
+}
@@ -0,0 +1,116 @@
+package com.coremedia.blueprint.elastic.social.cae.guid;
+
+import com.coremedia.elastic.core.api.settings.Settings;
+import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Signs GUIDs with a public/private key {@link Signature} algorithm.
+ * <p>
+ * Every thread reuses its own signature instances, one initialized for
+ * signing and one for verifying.
+ */
+class SignatureGuidSigner implements GuidSigner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SignatureGuidSigner.class);
+
+  static final String RSA_ALGORITHM = "SHA1withRSA";
+  static final String ED25519_ALGORITHM = "Ed25519";
+
+  private final String algorithm;
+  private final PrivateKey privateKey;
+  private final PublicKey publicKey;
+  private final ThreadLocal<Signature> signers = new ThreadLocal<>();
+  private final ThreadLocal<Signature> verifiers = new ThreadLocal<>();
+
+  SignatureGuidSigner(String algorithm, PrivateKey privateKey, PublicKey publicKey) throws NoSuchAlgorithmException {
+    // fail early if the JVM does not support the algorithm
+    Signature.getInstance(algorithm);
+    this.algorithm = algorithm;
+    this.privateKey = privateKey;
+    this.publicKey = publicKey;
+  }
+
+  static SignatureGuidSigner rsa(RSAKeyPair rsaKeyPair) throws NoSuchAlgorithmException {
+    return new SignatureGuidSigner(RSA_ALGORITHM, rsaKeyPair.getPrivateKey(), rsaKeyPair.getPublicKey());
+  }
+
+  /**
+   * Create an Ed25519 signer from the settings signCookie.ed25519.privateKey
+   * and signCookie.ed25519.publicKey, or from a new key pair.
+   * <p>
+   * Ed25519 is supported by Java 15 and newer.
+   */
+  static SignatureGuidSigner ed25519(Settings settings) throws NoSuchAlgorithmException {
+    String privateKeyString = settings.getString("signCookie.ed25519.privateKey");
+    String publicKeyString = settings.getString("signCookie.ed25519.publicKey");
+    if (privateKeyString != null && publicKeyString != null) {
+      try {
+        KeyFactory keyFactory = KeyFactory.getInstance(ED25519_ALGORITHM);
+        PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Base64.decodeBase64(privateKeyString)));
+        PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(Base64.decodeBase64(publicKeyString)));
+        return new SignatureGuidSigner(ED25519_ALGORITHM, privateKey, publicKey);
+      } catch (NoSuchAlgorithmException e) {
+        throw e;
+      } catch (Exception e) {
+        LOGGER.warn("Failed to initialize Ed25519 key pair from 'signCookie' settings: {}", e.getMessage(), e);
+      }
+    }
+
+    KeyPair keyPair = KeyPairGenerator.getInstance(ED25519_ALGORITHM).generateKeyPair();
+    LOGGER.warn("Missing or invalid properties signCookie.ed25519.privateKey and signCookie.ed25519.publicKey. " +
+                    "Please add the following newly generated key values to the settings of all existing CAEs: " +
+                    "signCookie.ed25519.privateKey={} , signCookie.ed25519.publicKey={}",
+            Base64.encodeBase64String(keyPair.getPrivate().getEncoded()),
+            Base64.encodeBase64String(keyPair.getPublic().getEncoded()));
+    return new SignatureGuidSigner(ED25519_ALGORITHM, keyPair.getPrivate(), keyPair.getPublic());
+  }
+
+  @Override
+  public byte[] sign(byte[] data) throws GeneralSecurityException {
+    Signature signature = signers.get();
+    if (signature == null) {
+      signature = Signature.getInstance(algorithm);
+      signature.initSign(privateKey);
+      signers.set(signature);
+    }
+    try {
+      // sign resets the signature for the next use with the same key
+      signature.update(data);
+      return signature.sign();
+    } catch (GeneralSecurityException | RuntimeException e) {
+      signers.remove();
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean verify(byte[] data, byte[] signatureBytes) throws GeneralSecurityException {
+    Signature signature = verifiers.get();
+    if (signature == null) {
+      signature = Signature.getInstance(algorithm);
+      signature.initVerify(publicKey);
+      verifiers.set(signature);
+    }
+    try {
+      // verify resets the signature for the next use with the same key
+      signature.update(data);
+      return signature.verify(signatureBytes);
+    } catch (GeneralSecurityException | RuntimeException e) {
+      verifiers.remove();
+      throw e;
+    }
+  }
+}
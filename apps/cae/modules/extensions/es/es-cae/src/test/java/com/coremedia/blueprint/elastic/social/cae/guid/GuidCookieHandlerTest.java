@@ -3,6 +3,9 @@ package com.coremedia.blueprint.elastic.social.cae.guid;
 import com.coremedia.blueprint.base.settings.SettingsService;
 import com.coremedia.blueprint.common.contentbeans.CMChannel;
 import com.coremedia.elastic.core.api.settings.Settings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.codec.binary.Base64;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -17,6 +20,8 @@ import org.springframework.web.util.UriComponents;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
 import java.util.Arrays;
 
 import static com.coremedia.blueprint.base.links.UriConstants.Segments.PREFIX_DYNAMIC;
@@ -27,6 +32,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
@@ -70,6 +76,66 @@ public class GuidCookieHandlerTest {
     assertTrue(testling.validateGuid(guid2));
   }
 
+  @Test
+  public void testValidateHmacGuid() throws Exception {
+    when(settings.getString(GuidCookieHandler.ALGORITHM_SETTING)).thenReturn("HmacSHA256");
+    when(settings.getString(GuidCookieHandler.VERIFIED_CACHE_SIZE_SETTING)).thenReturn("0");
+    GuidCookieHandler hmacHandler = new GuidCookieHandler(settings, settingsService);
+
+    String guid = hmacHandler.createGuid();
+    assertTrue(guid.contains("+hs256."));
+    assertTrue(hmacHandler.validateGuid(guid));
+    assertFalse(hmacHandler.validateGuid(tamper(guid)));
+    assertFalse(testling.validateGuid(guid));
+  }
+
+  @Test
+  public void testValidateEd25519Guid() throws Exception {
+    assumeTrue(isSupported("Ed25519"));
+    when(settings.getString(GuidCookieHandler.ALGORITHM_SETTING)).thenReturn("Ed25519");
+    when(settings.getString(GuidCookieHandler.VERIFIED_CACHE_SIZE_SETTING)).thenReturn("0");
+    GuidCookieHandler ed25519Handler = new GuidCookieHandler(settings, settingsService);
+
+    String guid = ed25519Handler.createGuid();
+    assertTrue(guid.contains("+ed25519."));
+    assertTrue(ed25519Handler.validateGuid(guid));
+    assertFalse(ed25519Handler.validateGuid(tamper(guid)));
+  }
+
+  /**
+   * GUIDs signed with RSA stay valid after switching to HMAC and vice versa
+   */
+  @Test
+  public void testValidateGuidAfterAlgorithmChange() throws Exception {
+    RSAKeyPair rsaKeyPair = RSAKeyPair.createFrom(settings);
+    when(settings.getString("signCookie.privateKey")).thenReturn(Base64.encodeBase64String(rsaKeyPair.getPrivateKey().getEncoded()));
+    when(settings.getString("signCookie.publicKey")).thenReturn(Base64.encodeBase64String(rsaKeyPair.getPublicKey().getEncoded()));
+    GuidCookieHandler rsaHandler = new GuidCookieHandler(settings, settingsService);
+    when(settings.getString(GuidCookieHandler.ALGORITHM_SETTING)).thenReturn("HmacSHA256");
+    GuidCookieHandler hmacHandler = new GuidCookieHandler(settings, settingsService);
+
+    assertTrue(hmacHandler.validateGuid(rsaHandler.createGuid()));
+    assertTrue(rsaHandler.validateGuid(hmacHandler.createGuid()));
+  }
+
+  @Test
+  public void testVerifiedGuidsAreCached() throws Exception {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    testling.bindTo(meterRegistry);
+    SimpleMeterRegistry otherMeterRegistry = new SimpleMeterRegistry();
+    GuidCookieHandler otherHandler = new GuidCookieHandler(settings, settingsService);
+    otherHandler.bindTo(otherMeterRegistry);
+    String guid = testling.createGuid();
+
+    assertTrue(testling.validateGuid(guid));
+    assertEquals(0, count(meterRegistry, GuidCookieHandler.METRIC_VERIFICATIONS), 0);
+    assertEquals(1, count(meterRegistry, GuidCookieHandler.METRIC_VERIFIED_CACHE_HITS), 0);
+
+    assertFalse(otherHandler.validateGuid(guid));
+    assertFalse(otherHandler.validateGuid(guid));
+    assertEquals(2, count(otherMeterRegistry, GuidCookieHandler.METRIC_VERIFICATIONS), 0);
+  }
+
   @Test
   public void getCurrentGuid() {
     HttpServletRequest request = new MockHttpServletRequest();
@@ -148,4 +214,22 @@ public class GuidCookieHandlerTest {
     verify(response, never()).addCookie(any());
     verify(response).setStatus(HttpServletResponse.SC_NO_CONTENT);
   }
+
+  private static String tamper(String guid) {
+    char last = guid.charAt(guid.length() - 1);
+    return guid.substring(0, guid.length() - 1) + (last == '0' ? '1' : '0');
+  }
+
+  private static double count(MeterRegistry registry, String name) {
+    return registry.get(name).functionCounter().count();
+  }
+
+  static boolean isSupported(String algorithm) {
+    try {
+      Signature.getInstance(algorithm);
+      return true;
+    } catch (NoSuchAlgorithmException e) {
+      return false;
+    }
+  }
 }
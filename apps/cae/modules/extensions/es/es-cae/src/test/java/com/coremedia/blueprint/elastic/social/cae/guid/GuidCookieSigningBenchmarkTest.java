@@ -0,0 +1,79 @@
+package com.coremedia.blueprint.elastic.social.cae.guid;
+
+import com.coremedia.blueprint.base.settings.SettingsService;
+import com.coremedia.elastic.core.api.settings.Settings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Measures creating and validating GUIDs with the supported signature
+ * algorithms, and validating GUIDs found in the verified cache.
+ * <p>
+ * Ed25519 is skipped on JVMs older than Java 15.
+ * <p>
+ * Run with {@code -Dbenchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class GuidCookieSigningBenchmarkTest {
+  private static final Logger LOG = getLogger(lookup().lookupClass());
+
+  private static final int GUIDS = 100;
+  private static final int ITERATIONS = 50;
+
+  @Test
+  void measureSigning() throws Exception {
+    List<String> algorithms = new ArrayList<>(List.of("SHA1withRSA", "HmacSHA256"));
+    if (GuidCookieHandlerTest.isSupported("Ed25519")) {
+      algorithms.add("Ed25519");
+    }
+
+    for (String algorithm : algorithms) {
+      GuidCookieHandler handler = createHandler(algorithm, "0");
+      GuidCookieHandler cachingHandler = createHandler(algorithm, "1000");
+      List<String> guids = new ArrayList<>();
+      List<String> cachedGuids = new ArrayList<>();
+      for (int i = 0; i < GUIDS; i++) {
+        guids.add(handler.createGuid());
+        cachedGuids.add(cachingHandler.createGuid());
+      }
+      guids.forEach(guid -> assertThat(handler.validateGuid(guid)).isTrue());
+
+      long createNanos = measure(handler::createGuid);
+      long validateNanos = measure(() -> guids.forEach(handler::validateGuid)) / GUIDS;
+      long cachedNanos = measure(() -> cachedGuids.forEach(cachingHandler::validateGuid)) / GUIDS;
+      LOG.info("{}: create {} µs, validate {} µs, validate cached {} µs",
+              algorithm, createNanos / 1000, validateNanos / 1000, cachedNanos / 1000);
+    }
+  }
+
+  private static GuidCookieHandler createHandler(String algorithm, String verifiedCacheSize) throws Exception {
+    Settings settings = mock(Settings.class);
+    when(settings.getString(GuidCookieHandler.ALGORITHM_SETTING)).thenReturn(algorithm);
+    when(settings.getString(GuidCookieHandler.VERIFIED_CACHE_SIZE_SETTING)).thenReturn(verifiedCacheSize);
+    return new GuidCookieHandler(settings, mock(SettingsService.class));
+  }
+
+  /**
+   * Returns the average time of one run in nanoseconds, after a warm up.
+   */
+  private static long measure(Runnable runnable) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    return (System.nanoTime() - start) / ITERATIONS;
+  }
+}
@@ -0,0 +1,33 @@
+package com.coremedia.livecontext.p13n.include;
+
+import com.coremedia.blueprint.personalization.contentbeans.CMP13NSearch;
+import com.coremedia.blueprint.personalization.contentbeans.CMSelectionRules;
+import com.coremedia.livecontext.fragment.FragmentOutputCache;
+import com.coremedia.objectserver.view.RenderNode;
+import com.coremedia.objectserver.view.dynamic.DynamicIncludePredicate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Never includes a bean dynamically, but marks the current request as
+ * {@link FragmentOutputCache#markPersonalized(javax.servlet.http.HttpServletRequest) personalized}
+ * if personalized content is rendered into it, so that the output of the fragment is not cached.
+ * <p>
+ * Personalized content which is included dynamically does not reach this
+ * predicate, since it is not rendered into the fragment.
+ */
+public class P13NFragmentOutputCachePredicate implements DynamicIncludePredicate {
+
+  @Override
+  public boolean test(RenderNode input) {
+    Object bean = input.getBean();
+    if (bean instanceof CMSelectionRules || bean instanceof CMP13NSearch) {
+      RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+      if (requestAttributes instanceof ServletRequestAttributes) {
+        FragmentOutputCache.markPersonalized(((ServletRequestAttributes) requestAttributes).getRequest());
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,54 @@
+package com.coremedia.livecontext.p13n.include;
+
+import com.coremedia.blueprint.personalization.contentbeans.CMSelectionRules;
+import com.coremedia.livecontext.fragment.FragmentOutputCache;
+import com.coremedia.objectserver.view.RenderNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class P13NFragmentOutputCachePredicateTest {
+
+  private final P13NFragmentOutputCachePredicate testling = new P13NFragmentOutputCachePredicate();
+  private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+  @Mock
+  private RenderNode input;
+
+  @Before
+  public void setUp() {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
+  @After
+  public void teardown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  public void personalizedContentMarksRequestPersonalized() {
+    when(input.getBean()).thenReturn(mock(CMSelectionRules.class));
+
+    assertThat(testling.test(input)).isFalse();
+    assertThat(FragmentOutputCache.isPersonalized(request)).isTrue();
+  }
+
+  @Test
+  public void otherContentIsIgnored() {
+    when(input.getBean()).thenReturn(new Object());
+
+    assertThat(testling.test(input)).isFalse();
+    assertThat(FragmentOutputCache.isPersonalized(request)).isFalse();
+  }
+}
@@ -10,6 +10,7 @@ import com.coremedia.blueprint.base.settings.impl.BlueprintSettingsServiceConfig
 import com.coremedia.blueprint.cae.action.search.SearchService;
 import com.coremedia.blueprint.cae.config.BlueprintHandlersCaeBaseLibConfiguration;
 import com.coremedia.blueprint.cae.handlers.NavigationSegmentsUriHelper;
+import com.coremedia.blueprint.cae.view.ParallelPlacementRenderer;
 import com.coremedia.blueprint.common.navigation.Linkable;
 import com.coremedia.blueprint.common.navigation.Navigation;
 import com.coremedia.blueprint.common.services.context.ContextHelper;
@@ -18,6 +19,7 @@ import com.coremedia.cache.Cache;
 import com.coremedia.cache.config.CacheConfiguration;
 import com.coremedia.cap.content.Content;
 import com.coremedia.cap.multisite.SitesService;
+import com.coremedia.cms.delivery.configuration.DeliveryConfigurationProperties;
 import com.coremedia.livecontext.asset.ProductAssetsHandler;
 import com.coremedia.livecontext.context.ResolveContextStrategy;
 import com.coremedia.livecontext.fragment.CMSearchFragmentHandler;
@@ -26,6 +28,7 @@ import com.coremedia.livecontext.fragment.ExternalPageContextStrategy;
 import com.coremedia.livecontext.fragment.ExternalPageFragmentHandler;
 import com.coremedia.livecontext.fragment.ExternalRefFragmentHandler;
 import com.coremedia.livecontext.fragment.FragmentHandler;
+import com.coremedia.livecontext.fragment.FragmentOutputCache;
 import com.coremedia.livecontext.fragment.FragmentPageHandler;
 import com.coremedia.livecontext.fragment.ProductFragmentHandler;
 import com.coremedia.livecontext.fragment.pagegrid.CompositePageGridPlacementResolver;
@@ -45,7 +48,9 @@ import com.coremedia.mimetype.MimeTypeService;
 import com.coremedia.objectserver.beans.ContentBeanFactory;
 import com.coremedia.objectserver.dataviews.DataViewFactory;
 import com.coremedia.springframework.xml.ResourceAwareXmlBeanDefinitionReader;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -71,6 +76,21 @@ import java.util.List;
 })
 public class LcCaeFragmentConfiguration {
 
+  @Bean
+  public FragmentOutputCache fragmentOutputCache(Cache cache,
+                                                 DeliveryConfigurationProperties deliveryConfigurationProperties,
+                                                 @Value("${livecontext.fragment.output-cache.enabled:false}") boolean enabled,
+                                                 @Value("${livecontext.fragment.output-cache.stale-while-revalidate-seconds:60}") long staleWhileRevalidateSeconds,
+                                                 @Value("${livecontext.fragment.output-cache.max-stale-entries:1000}") int maxStaleEntries) {
+    FragmentOutputCache fragmentOutputCache = new FragmentOutputCache();
+    fragmentOutputCache.setCache(cache);
+    fragmentOutputCache.setDeliveryConfigurationProperties(deliveryConfigurationProperties);
+    fragmentOutputCache.setEnabled(enabled);
+    fragmentOutputCache.setStaleWhileRevalidateSeconds(staleWhileRevalidateSeconds);
+    fragmentOutputCache.setMaxStaleEntries(maxStaleEntries);
+    return fragmentOutputCache;
+  }
+
   @Bean
   public FragmentPageHandler fragmentPageHandler(MimeTypeService mimeTypeService,
                                                  UrlPathFormattingHelper urlPathFormattingHelper,
@@ -82,7 +102,10 @@ public class LcCaeFragmentConfiguration {
                                                  SitesService sitesService,
                                                  Cache cache,
                                                  @Qualifier("fragmentHandlers") List<FragmentHandler> fragmentHandlers,
-                                                 CatalogAliasTranslationService catalogAliasTranslationService) {
+                                                 CatalogAliasTranslationService catalogAliasTranslationService,
+                                                 FragmentOutputCache fragmentOutputCache,
+                                                 ObjectProvider<ParallelPlacementRenderer> parallelPlacementRenderer,
+                                                 @Value("${livecontext.fragment.batch.max-fragments:50}") int maxBatchSize) {
     FragmentPageHandler pageHandler = new FragmentPageHandler();
 
     BlueprintHandlersCaeBaseLibConfiguration.configurePageHandlerBase(pageHandler,
@@ -99,6 +122,9 @@ public class LcCaeFragmentConfiguration {
     pageHandler.setFragmentHandlers(fragmentHandlers);
     pageHandler.setDataViewFactory(dataViewFactory);
     pageHandler.setCatalogAliasTranslationService(catalogAliasTranslationService);
+    pageHandler.setFragmentOutputCache(fragmentOutputCache);
+    pageHandler.setParallelPlacementRenderer(parallelPlacementRenderer.getIfAvailable());
+    pageHandler.setMaxBatchSize(maxBatchSize);
 
     return pageHandler;
   }
@@ -0,0 +1,516 @@
+package com.coremedia.livecontext.fragment;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cms.delivery.configuration.DeliveryConfigurationProperties;
+import com.coremedia.livecontext.ecommerce.catalog.CatalogAlias;
+import com.coremedia.livecontext.ecommerce.catalog.CatalogId;
+import com.coremedia.livecontext.ecommerce.common.StoreContext;
+import com.coremedia.livecontext.fragment.links.context.LiveContextContextHelper;
+import com.coremedia.objectserver.view.ViewUtils;
+import com.coremedia.objectserver.web.HandlerHelper;
+import com.coremedia.objectserver.web.HttpError;
+import com.coremedia.objectserver.web.UserVariantHelper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.coremedia.blueprint.base.links.UriConstants.ContentTypes.CONTENT_TYPE_HTML;
+
+/**
+ * Caches the rendered output of fragment requests.
+ * <p>
+ * The output is cached in the {@link Cache} by the site, the normalized
+ * fragment parameters, the catalog, contracts and user segments of the store
+ * context, the fragment context and the host of the request, see
+ * {@link FragmentOutputCacheKey}.  Since the fragment is resolved and rendered
+ * while the cache key is evaluated, the output depends on all contents which
+ * were read and is invalidated as soon as one of them changes or its validity
+ * ends.  The headers which describe the output, like its content language,
+ * are cached with the output and set again whenever it is served.  Outputs for
+ * which cookies or other headers are set are not cached, since these may be
+ * specific to the user.
+ * <p>
+ * When a fragment has been invalidated, one request renders it again, while
+ * concurrent requests for the same fragment are served the previous output,
+ * if it was still valid at most {@link #setStaleWhileRevalidateSeconds(long)
+ * some seconds} ago.
+ * <p>
+ * Fragments are not cached in the preview, for developer variants and for
+ * requests {@link #markPersonalized(HttpServletRequest) marked as personalized},
+ * e.g. by a logged-in user, or while personalized content is rendered.
+ * Errors and redirects are not cached either.
+ */
+public class FragmentOutputCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FragmentOutputCache.class);
+
+  private static final String PERSONALIZED_ATTRIBUTE = FragmentOutputCache.class.getName() + ".personalized";
+
+  /**
+   * The lower case names of the headers which may be set again whenever a cached output is served.
+   */
+  private static final Set<String> CACHEABLE_HEADERS = Set.of(
+          "cache-control", "content-language", "content-type", "expires", "last-modified", "vary");
+
+  private Cache cache;
+  private DeliveryConfigurationProperties deliveryConfigurationProperties;
+  private boolean enabled = false;
+  private long staleWhileRevalidateMillis = 60_000;
+  private int maxStaleEntries = 1_000;
+
+  private ConcurrentMap<FragmentOutputCacheKey, RenderedFragment> staleFragments;
+  private final Set<FragmentOutputCacheKey> revalidating = ConcurrentHashMap.newKeySet();
+
+
+  // --- configuration ----------------------------------------------
+
+  public void setCache(Cache cache) {
+    this.cache = cache;
+  }
+
+  public void setDeliveryConfigurationProperties(DeliveryConfigurationProperties deliveryConfigurationProperties) {
+    this.deliveryConfigurationProperties = deliveryConfigurationProperties;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * The time in seconds for which an invalidated output may be served while it is rendered again.
+   * 0 disables serving invalidated outputs.  Default is 60.
+   */
+  public void setStaleWhileRevalidateSeconds(long staleWhileRevalidateSeconds) {
+    this.staleWhileRevalidateMillis = staleWhileRevalidateSeconds * 1000;
+  }
+
+  /**
+   * The maximum number of previous outputs which are kept for stale-while-revalidate.  Default is 1000.
+   */
+  public void setMaxStaleEntries(int maxStaleEntries) {
+    this.maxStaleEntries = maxStaleEntries;
+  }
+
+  @PostConstruct
+  protected void initialize() {
+    if (cache == null) {
+      throw new IllegalStateException("Required property not set: cache");
+    }
+    if (deliveryConfigurationProperties == null) {
+      throw new IllegalStateException("Required property not set: deliveryConfigurationProperties");
+    }
+    staleFragments = CacheBuilder.newBuilder()
+            .maximumSize(maxStaleEntries)
+            .<FragmentOutputCacheKey, RenderedFragment>build()
+            .asMap();
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Excludes the output of the current request from caching, because it is
+   * personalized beyond the user segments of the store context.  May be
+   * called before the fragment is rendered or while it is rendered.
+   */
+  public static void markPersonalized(@NonNull HttpServletRequest request) {
+    request.setAttribute(PERSONALIZED_ATTRIBUTE, Boolean.TRUE);
+  }
+
+  /**
+   * Returns true if the current request has been {@link #markPersonalized(HttpServletRequest) marked as personalized}.
+   */
+  public static boolean isPersonalized(@NonNull HttpServletRequest request) {
+    return request.getAttribute(PERSONALIZED_ATTRIBUTE) != null;
+  }
+
+  /**
+   * Returns true if the output of the fragment request may be cached.
+   */
+  public boolean isCacheable(@NonNull StoreContext storeContext, @NonNull HttpServletRequest request) {
+    return enabled
+            && !deliveryConfigurationProperties.isPreviewMode()
+            && !isPersonalized(request)
+            && storeContext.getPreviewDate().isEmpty()
+            && UserVariantHelper.getUser(request) == null;
+  }
+
+  /**
+   * Returns the cached output of the fragment, or resolves and renders the fragment.
+   *
+   * @param resolver resolves the fragment to the model and view to render, as if it were not cached
+   * @return a model and view which writes the output, or the resolved model
+   * and view if it cannot be cached
+   */
+  @Nullable
+  public ModelAndView get(@NonNull FragmentParameters fragmentParameters,
+                          @NonNull StoreContext storeContext,
+                          @NonNull HttpServletRequest request,
+                          @NonNull HttpServletResponse response,
+                          @NonNull Supplier<ModelAndView> resolver) {
+    return getFragment(fragmentParameters, storeContext, request, response, resolver).toModelAndView();
+  }
+
+  /**
+   * Like {@link #get(FragmentParameters, StoreContext, HttpServletRequest, HttpServletResponse, Supplier)},
+   * but returns the output itself.  The headers and cookies of the fragment are not applied to the
+   * response, see {@link RenderedFragment#applyTo(HttpServletResponse)}.
+   */
+  @NonNull
+  RenderedFragment getFragment(@NonNull FragmentParameters fragmentParameters,
+                               @NonNull StoreContext storeContext,
+                               @NonNull HttpServletRequest request,
+                               @NonNull HttpServletResponse response,
+                               @NonNull Supplier<ModelAndView> resolver) {
+    AtomicBoolean rendered = new AtomicBoolean();
+    FragmentOutputCacheKey key = createKey(fragmentParameters, storeContext, request, () -> {
+      rendered.set(true);
+      return render(resolver.get(), request, response);
+    });
+
+    Optional<RenderedFragment> cached = cache.peek(key);
+    if (cached.isPresent()) {
+      return cached.get().served();
+    }
+
+    // only one request renders an invalidated fragment, the others get the previous output
+    boolean revalidate = revalidating.add(key);
+    if (!revalidate) {
+      RenderedFragment stale = staleFragments.get(key);
+      if (stale != null && stale.isServableUntil(System.currentTimeMillis() - staleWhileRevalidateMillis)) {
+        LOG.debug("Serving stale fragment for {}", key);
+        return stale;
+      }
+    }
+
+    RenderedFragment fragment;
+    try {
+      fragment = cache.get(key);
+    } finally {
+      if (revalidate) {
+        revalidating.remove(key);
+      }
+    }
+
+    if (!fragment.isCacheable()) {
+      // an output which is not cacheable, e.g. because it is personalized, must not be
+      // served to a concurrent request for the same key
+      return rendered.get() ? fragment : render(resolver.get(), request, response);
+    }
+    if (staleWhileRevalidateMillis > 0) {
+      staleFragments.put(key, fragment);
+    }
+    return fragment.served();
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  @NonNull
+  @VisibleForTesting
+  static FragmentOutputCacheKey createKey(@NonNull FragmentParameters fragmentParameters,
+                                          @NonNull StoreContext storeContext,
+                                          @NonNull HttpServletRequest request,
+                                          @NonNull Supplier<RenderedFragment> renderer) {
+    CatalogAlias catalogAlias = storeContext.getCatalogAlias();
+    Map<String, String> context = new TreeMap<>();
+    LiveContextContextHelper.findContext(request).ifPresent(fragmentContext -> {
+      for (String name : fragmentContext.getContextNames()) {
+        context.put(name, String.valueOf(fragmentContext.get(name)));
+      }
+    });
+    return new FragmentOutputCacheKey(
+            storeContext.getSiteId(),
+            fragmentParameters.getStoreId(),
+            fragmentParameters.getLocale(),
+            fragmentParameters.getNormalizedParameters(),
+            storeContext.getCatalogId().map(CatalogId::value).orElse(null),
+            catalogAlias != null ? catalogAlias.value() : null,
+            List.copyOf(storeContext.getContractIds()),
+            storeContext.getUserSegments().orElse(null),
+            context,
+            request.getScheme(),
+            request.getServerName(),
+            request.getServerPort(),
+            renderer);
+  }
+
+  /**
+   * Renders the model and view, and records the headers and cookies it sets.
+   */
+  @NonNull
+  private static RenderedFragment render(@Nullable ModelAndView modelAndView,
+                                         @NonNull HttpServletRequest request,
+                                         @NonNull HttpServletResponse response) {
+    RecordingResponse recordingResponse = new RecordingResponse(response);
+    String output = renderOutput(modelAndView, request, recordingResponse);
+    if (output == null) {
+      return new RenderedFragment(null, modelAndView, List.of(), false);
+    }
+    boolean cacheable = recordingResponse.status == HttpServletResponse.SC_OK
+            && !recordingResponse.hasUserSpecificChanges()
+            && !isPersonalized(request);
+    return new RenderedFragment(output, null, recordingResponse.changes, cacheable);
+  }
+
+  /**
+   * Renders the model and view like the dispatcher would.
+   *
+   * @return the output, or null for errors, redirects and views which cannot be rendered to a string
+   */
+  @Nullable
+  static String renderOutput(@Nullable ModelAndView modelAndView,
+                             @NonNull HttpServletRequest request,
+                             @NonNull HttpServletResponse response) {
+    Object root = modelAndView != null ? HandlerHelper.getRootModel(modelAndView) : null;
+    String viewName = modelAndView != null ? modelAndView.getViewName() : null;
+    if (root == null || root instanceof HttpError || modelAndView.getView() != null
+            || (viewName != null && viewName.startsWith("redirect:"))) {
+      return null;
+    }
+
+    for (Map.Entry<String, Object> entry : modelAndView.getModel().entrySet()) {
+      request.setAttribute(entry.getKey(), entry.getValue());
+    }
+    StringWriter out = new StringWriter();
+    ViewUtils.render(root, viewName, out, request, response);
+    return out.toString();
+  }
+
+
+  // --- inner classes ----------------------------------------------
+
+  /**
+   * The output of a fragment together with the headers and cookies it sets,
+   * or the model and view of a fragment which cannot be cached.
+   */
+  static final class RenderedFragment {
+    private final String output;
+    private final ModelAndView modelAndView;
+    private final List<Consumer<HttpServletResponse>> responseChanges;
+    private final boolean cacheable;
+    private volatile long lastServed;
+
+    private RenderedFragment(@Nullable String output,
+                             @Nullable ModelAndView modelAndView,
+                             @NonNull List<Consumer<HttpServletResponse>> responseChanges,
+                             boolean cacheable) {
+      this.output = output;
+      this.modelAndView = modelAndView;
+      this.responseChanges = List.copyOf(responseChanges);
+      this.cacheable = cacheable;
+      this.lastServed = System.currentTimeMillis();
+    }
+
+    @NonNull
+    private RenderedFragment served() {
+      lastServed = System.currentTimeMillis();
+      return this;
+    }
+
+    @Nullable
+    String getOutput() {
+      return output;
+    }
+
+    @Nullable
+    ModelAndView getModelAndView() {
+      return modelAndView;
+    }
+
+    boolean isCacheable() {
+      return cacheable;
+    }
+
+    /**
+     * Sets the headers, cookies and status which were set while the output was rendered.
+     */
+    void applyTo(@NonNull HttpServletResponse response) {
+      for (Consumer<HttpServletResponse> change : responseChanges) {
+        change.accept(response);
+      }
+    }
+
+    private boolean isServableUntil(long time) {
+      return lastServed >= time;
+    }
+
+    @Nullable
+    private ModelAndView toModelAndView() {
+      return output != null ? new ModelAndView(new RenderedFragmentView(this)) : modelAndView;
+    }
+  }
+
+  /**
+   * Writes a rendered output.
+   */
+  private static final class RenderedFragmentView implements View {
+    private final RenderedFragment fragment;
+
+    private RenderedFragmentView(@NonNull RenderedFragment fragment) {
+      this.fragment = fragment;
+    }
+
+    @Override
+    public String getContentType() {
+      return CONTENT_TYPE_HTML;
+    }
+
+    @Override
+    public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws IOException {
+      fragment.applyTo(response);
+      response.getWriter().write(fragment.output);
+    }
+  }
+
+  /**
+   * Records the headers, cookies and status which are set while a fragment is rendered,
+   * so that they can be set again whenever the output is served.
+   */
+  @VisibleForTesting
+  static final class RecordingResponse extends HttpServletResponseWrapper {
+    private final List<Consumer<HttpServletResponse>> changes = new ArrayList<>();
+    private final Set<String> headerNames = new HashSet<>();
+    private int status = SC_OK;
+    private boolean userSpecificChanges = false;
+
+    @VisibleForTesting
+    RecordingResponse(@NonNull HttpServletResponse response) {
+      super(response);
+    }
+
+    /**
+     * Returns true if a cookie or a header which is not one of the
+     * {@link #CACHEABLE_HEADERS} has been set, so that the output
+     * must not be served to other users.
+     */
+    boolean hasUserSpecificChanges() {
+      return userSpecificChanges;
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+      return headerNames.contains(name.toLowerCase(Locale.ROOT)) || super.containsHeader(name);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      record(name, response -> response.setHeader(name, value));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      record(name, response -> response.addHeader(name, value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+      record(name, response -> response.setDateHeader(name, date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+      record(name, response -> response.addDateHeader(name, date));
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+      record(name, response -> response.setIntHeader(name, value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+      record(name, response -> response.addIntHeader(name, value));
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+      userSpecificChanges = true;
+      Cookie copy = (Cookie) cookie.clone();
+      changes.add(response -> response.addCookie((Cookie) copy.clone()));
+    }
+
+    @Override
+    public void setStatus(int sc) {
+      status = sc;
+      changes.add(response -> response.setStatus(sc));
+    }
+
+    @Override
+    public int getStatus() {
+      return status;
+    }
+
+    @Override
+    public void sendError(int sc) {
+      status = sc;
+      changes.add(response -> {
+        try {
+          response.sendError(sc);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+      status = sc;
+      changes.add(response -> {
+        try {
+          response.sendError(sc, msg);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+      status = SC_FOUND;
+      changes.add(response -> {
+        try {
+          response.sendRedirect(location);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+
+    private void record(@NonNull String name, @NonNull Consumer<HttpServletResponse> change) {
+      String lowerCaseName = name.toLowerCase(Locale.ROOT);
+      headerNames.add(lowerCaseName);
+      if (!CACHEABLE_HEADERS.contains(lowerCaseName)) {
+        userSpecificChanges = true;
+      }
+      changes.add(change);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.coremedia.livecontext.fragment;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * {@link CacheKey} for the rendered output of a fragment request.
+ * <p>
+ * The key is identified by the site, the store, the locale, the normalized
+ * fragment parameters, the catalog, the contracts and the user segments of
+ * the store context, the values of the fragment context, and the scheme,
+ * host and port of the request, which determine absolute links.
+ * <p>
+ * The fragment is resolved and rendered by the renderer, which is not part
+ * of the key.  Fragments which the renderer reports as not cacheable are
+ * returned, but not cached.
+ */
+class FragmentOutputCacheKey extends CacheKey<FragmentOutputCache.RenderedFragment> {
+
+  private final String siteId;
+  private final String storeId;
+  private final Locale locale;
+  private final Map<String, String> parameters;
+  private final String catalogId;
+  private final String catalogAlias;
+  private final List<String> contractIds;
+  private final String userSegments;
+  private final Map<String, String> context;
+  private final String scheme;
+  private final String serverName;
+  private final int serverPort;
+
+  // not part of the key
+  private final Supplier<FragmentOutputCache.RenderedFragment> renderer;
+
+  FragmentOutputCacheKey(@NonNull String siteId,
+                         @NonNull String storeId,
+                         @NonNull Locale locale,
+                         @NonNull Map<String, String> parameters,
+                         @Nullable String catalogId,
+                         @Nullable String catalogAlias,
+                         @NonNull List<String> contractIds,
+                         @Nullable String userSegments,
+                         @NonNull Map<String, String> context,
+                         @NonNull String scheme,
+                         @NonNull String serverName,
+                         int serverPort,
+                         @NonNull Supplier<FragmentOutputCache.RenderedFragment> renderer) {
+    this.siteId = siteId;
+    this.storeId = storeId;
+    this.locale = locale;
+    this.parameters = parameters;
+    this.catalogId = catalogId;
+    this.catalogAlias = catalogAlias;
+    this.contractIds = contractIds;
+    this.userSegments = userSegments;
+    this.context = context;
+    this.scheme = scheme;
+    this.serverName = serverName;
+    this.serverPort = serverPort;
+    this.renderer = renderer;
+  }
+
+  @Override
+  public FragmentOutputCache.RenderedFragment evaluate(Cache cache) {
+    FragmentOutputCache.RenderedFragment fragment = renderer.get();
+    if (!fragment.isCacheable()) {
+      Cache.uncacheable();
+    }
+    return fragment;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    FragmentOutputCacheKey that = (FragmentOutputCacheKey) o;
+    return serverPort == that.serverPort &&
+            siteId.equals(that.siteId) &&
+            storeId.equals(that.storeId) &&
+            locale.equals(that.locale) &&
+            parameters.equals(that.parameters) &&
+            Objects.equals(catalogId, that.catalogId) &&
+            Objects.equals(catalogAlias, that.catalogAlias) &&
+            contractIds.equals(that.contractIds) &&
+            Objects.equals(userSegments, that.userSegments) &&
+            context.equals(that.context) &&
+            scheme.equals(that.scheme) &&
+            serverName.equals(that.serverName);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(siteId, storeId, locale, parameters, catalogId, catalogAlias, contractIds, userSegments,
+            context, scheme, serverName, serverPort);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[siteId=" + siteId + ", storeId=" + storeId + ", locale=" + locale +
+            ", parameters=" + parameters + ", catalogId=" + catalogId + ", catalogAlias=" + catalogAlias +
+            ", contractIds=" + contractIds + ", userSegments=" + userSegments + ", context=" + context +
+            ", url=" + scheme + "://" + serverName + ':' + serverPort + ']';
+  }
+}
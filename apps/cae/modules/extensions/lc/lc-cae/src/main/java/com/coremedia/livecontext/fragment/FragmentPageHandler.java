@@ -3,6 +3,7 @@ package com.coremedia.livecontext.fragment;
 import com.coremedia.blueprint.base.livecontext.ecommerce.common.CatalogAliasTranslationService;
 import com.coremedia.blueprint.base.livecontext.ecommerce.common.CurrentStoreContext;
 import com.coremedia.blueprint.cae.handlers.PageHandlerBase;
+import com.coremedia.blueprint.cae.view.ParallelPlacementRenderer;
 import com.coremedia.blueprint.common.contentbeans.CMChannel;
 import com.coremedia.blueprint.common.contentbeans.Page;
 import com.coremedia.cap.content.Content;
@@ -12,25 +13,47 @@ import com.coremedia.cap.user.User;
 import com.coremedia.cms.delivery.configuration.DeliveryConfigurationProperties;
 import com.coremedia.livecontext.ecommerce.catalog.CatalogAlias;
 import com.coremedia.livecontext.ecommerce.common.StoreContext;
+import com.coremedia.livecontext.view.PrefetchFragmentsViewUtils;
 import com.coremedia.objectserver.web.HandlerHelper;
+import com.coremedia.objectserver.web.HttpError;
 import com.coremedia.objectserver.web.UserVariantHelper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.coremedia.blueprint.base.links.UriConstants.ContentTypes.CONTENT_TYPE_HTML;
+import static com.coremedia.blueprint.base.links.UriConstants.ContentTypes.CONTENT_TYPE_JSON;
 import static com.coremedia.blueprint.base.links.UriConstants.Segments.SEGMENTS_FRAGMENT;
 import static com.coremedia.blueprint.links.BlueprintUriConstants.Prefixes.PREFIX_SERVICE;
 
@@ -49,6 +72,17 @@ public class FragmentPageHandler extends PageHandlerBase {
   //parameter name used for putting the value of the matrix-parameter "parameter" into the request
   private static final String ATTR_NAME_FRAGMENT_PARAMETER = "fragmentParameter";
 
+  private static final String PARAMETER_FRAGMENT = "fragment";
+
+  private static final Gson GSON = new Gson();
+  private static final String PAGE_KEY_PROPERTY = "pageKey";
+  private static final String FRAGMENTS_PROPERTY = "fragments";
+  private static final String FRAGMENT_KEY_PROPERTY = "fragmentKey";
+  private static final String PAYLOAD_PROPERTY = "payload";
+  private static final String STATUS_PROPERTY = "status";
+  private static final String HEADERS_PROPERTY = "headers";
+  private static final String COOKIES_PROPERTY = "cookies";
+
   public static final String FRAGMENT_URI_PREFIX = '/' + PREFIX_SERVICE + '/' + SEGMENTS_FRAGMENT;
   public static final String FRAGMENT_INTERCEPTOR_PATTERN = FRAGMENT_URI_PREFIX + "/{all:.*}";
   public static final String URI_PATTERN = FRAGMENT_URI_PREFIX +
@@ -60,6 +94,9 @@ public class FragmentPageHandler extends PageHandlerBase {
 
   private DeliveryConfigurationProperties deliveryConfigurationProperties;
   private List<FragmentHandler> fragmentHandlers;
+  private FragmentOutputCache fragmentOutputCache;
+  private ParallelPlacementRenderer parallelPlacementRenderer;
+  private int maxBatchSize = 50;
 
   @Autowired
   public void setDeliveryConfigurationProperties(DeliveryConfigurationProperties deliveryConfigurationProperties) {
@@ -90,10 +127,177 @@ public class FragmentPageHandler extends PageHandlerBase {
     FragmentParameters fragmentParameters = FragmentContextProvider.getFragmentContext(request).getParameters();
 
     //resolve the site first
-    Site site = getSitesService().getSite(storeContext.getSiteId());
+    Site site = initializeSite(storeContext, fragmentParameters, request);
     if (site == null) {
       return createNoSiteModelAndView(fragmentParameters, storeId, locale);
     }
+
+    StoreContext currentStoreContext = CurrentStoreContext.find(request).orElse(storeContext);
+    Supplier<Page> defaultPage = () -> createDefaultPage(site, request);
+    if (fragmentOutputCache != null && fragmentOutputCache.isCacheable(currentStoreContext, request)) {
+      return fragmentOutputCache.get(fragmentParameters, currentStoreContext, request, response,
+              () -> resolveFragment(fragmentParameters, defaultPage, request));
+    }
+    return resolveFragment(fragmentParameters, defaultPage, request);
+  }
+
+  /**
+   * Renders several fragments of a shop page in one request.
+   * <p>
+   * The matrix parameters of the request URL are shared by all fragments,
+   * e.g. the external reference or the product id of the shop page, so the
+   * store context, the site and the page of fragments without a
+   * {@link FragmentHandler} are resolved once.  Each {@value #PARAMETER_FRAGMENT}
+   * request parameter describes one fragment by its own matrix parameters, e.g.
+   * {@code placement=header;view=asHeader}, which override the shared parameters.
+   * <pre>
+   * GET /service/fragment/10001/en-US/params;productId=4711?fragment=placement%3Dheader&amp;fragment=view%3DasTeaser
+   * </pre>
+   * The fragments are rendered in parallel, if parallel placement rendering is
+   * enabled, and returned as JSON in the format of prefetched fragments, in
+   * the order of the request:
+   * <pre>
+   * {"pageKey": "...", "fragments": [{"fragmentKey": "...;view=;placement=header", "payload": "..."}, ...]}
+   * </pre>
+   * Fragments which cannot be rendered have a {@code status} instead of a
+   * payload and must be requested individually.  The status, headers and
+   * cookies of a fragment are not set on the response of the batch, which is
+   * shared by all fragments, but returned with the fragment:
+   * <pre>
+   * {"fragmentKey": "...", "payload": "...", "headers": {"Content-Language": ["en"]}, "cookies": [{"name": "...", "value": "..."}]}
+   * </pre>
+   * Without a site for the store, the response is a 404, or a 400 in the preview.
+   */
+  @GetMapping(value = URI_PATTERN, params = PARAMETER_FRAGMENT, produces = CONTENT_TYPE_JSON)
+  public ResponseEntity<String> handleFragments(@NonNull @PathVariable(SEGMENT_STOREID) String storeId,
+                                                @NonNull @PathVariable(SEGMENT_LOCALE) Locale locale,
+                                                @NonNull @RequestParam(PARAMETER_FRAGMENT) List<String> fragments,
+                                                @NonNull HttpServletRequest request,
+                                                @NonNull HttpServletResponse response) {
+    StoreContext storeContext = CurrentStoreContext.find(request).orElse(null);
+    if (storeContext == null || fragments.size() > maxBatchSize) {
+      return ResponseEntity.badRequest().build();
+    }
+
+    FragmentContext sharedContext = FragmentContextProvider.getFragmentContext(request);
+    FragmentParameters sharedParameters = sharedContext.getParameters();
+
+    Site site = initializeSite(storeContext, sharedParameters, request);
+    if (site == null) {
+      return createNoSiteModelAndView(sharedParameters, storeId, locale) != null
+              ? ResponseEntity.badRequest().build()
+              : ResponseEntity.notFound().build();
+    }
+
+    StoreContext currentStoreContext = CurrentStoreContext.find(request).orElse(storeContext);
+    List<FragmentParameters> fragmentParameters = fragments.stream()
+            .map(fragment -> FragmentParametersFactory.create(sharedParameters, fragment))
+            .collect(Collectors.toList());
+    // the keys are created before the handlers adjust the parameters
+    List<String> fragmentKeys = fragmentParameters.stream()
+            .map(PrefetchFragmentsViewUtils::createFragmentKeyFromParameters)
+            .collect(Collectors.toList());
+    // the page is resolved on the request thread and shared by all fragments without a handler
+    boolean needsDefaultPage = fragmentParameters.stream().anyMatch(parameters -> selectFragmentHandler(parameters) == null);
+    Page page = needsDefaultPage ? createDefaultPage(site, request) : null;
+    Supplier<Page> defaultPage = () -> page;
+
+    // each rendering returns its own result, since a rendering which times out
+    // is rendered again on the request thread while its worker may still run
+    List<ParallelPlacementRenderer.Rendering<RenderedFragmentStatus>> renderings = new ArrayList<>(fragmentParameters.size());
+    for (FragmentParameters parameters : fragmentParameters) {
+      renderings.add((fragmentRequest, fragmentResponse) -> {
+        // the fragment must not change the response, which is shared by all fragments
+        BatchedFragmentResponse batchedFragmentResponse = new BatchedFragmentResponse(fragmentResponse);
+        try {
+          return renderFragment(parameters, currentStoreContext, defaultPage, fragmentRequest, batchedFragmentResponse);
+        } catch (RuntimeException e) {
+          LOG.warn("Cannot render batched fragment {}: {}", parameters, e.getMessage());
+          return new RenderedFragmentStatus("", HttpServletResponse.SC_INTERNAL_SERVER_ERROR, null);
+        }
+      });
+    }
+    List<RenderedFragmentStatus> results = render(renderings, request, response);
+    // the renderings replace the fragment context of the request, unless rendered in parallel
+    request.setAttribute(FragmentContextProvider.FRAGMENT_CONTEXT_ATTRIBUTE, sharedContext);
+
+    JsonArray fragmentsJson = new JsonArray();
+    for (int i = 0; i < fragmentParameters.size(); i++) {
+      RenderedFragmentStatus result = results.get(i);
+      JsonObject fragmentJson = new JsonObject();
+      fragmentJson.addProperty(FRAGMENT_KEY_PROPERTY, fragmentKeys.get(i));
+      if (result.status == HttpServletResponse.SC_OK) {
+        fragmentJson.addProperty(PAYLOAD_PROPERTY, result.output.trim());
+      } else {
+        fragmentJson.addProperty(STATUS_PROPERTY, result.status);
+      }
+      if (result.response != null) {
+        result.response.addTo(fragmentJson);
+      }
+      fragmentsJson.add(fragmentJson);
+    }
+
+    JsonObject rootJson = new JsonObject();
+    rootJson.addProperty(PAGE_KEY_PROPERTY, PrefetchFragmentsViewUtils.createPageKeyFromParameters(sharedParameters));
+    rootJson.add(FRAGMENTS_PROPERTY, fragmentsJson);
+    return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(GSON.toJson(rootJson));
+  }
+
+  /**
+   * Optional cache for the rendered output of fragments.
+   */
+  public void setFragmentOutputCache(@Nullable FragmentOutputCache fragmentOutputCache) {
+    this.fragmentOutputCache = fragmentOutputCache;
+  }
+
+  /**
+   * Optional renderer for the fragments of batch requests.  Without it,
+   * batched fragments are rendered one after another.
+   */
+  public void setParallelPlacementRenderer(@Nullable ParallelPlacementRenderer parallelPlacementRenderer) {
+    this.parallelPlacementRenderer = parallelPlacementRenderer;
+  }
+
+  /**
+   * The maximum number of fragments of a batch request.  Default is 50.
+   */
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public void setFragmentHandlers(@NonNull List<FragmentHandler> fragmentHandlers) {
+    this.fragmentHandlers = List.copyOf(fragmentHandlers);
+  }
+
+  public void setCatalogAliasTranslationService(CatalogAliasTranslationService catalogAliasTranslationService) {
+    this.catalogAliasTranslationService = catalogAliasTranslationService;
+  }
+
+  @Override
+  protected void initialize() {
+    super.initialize();
+    if (catalogAliasTranslationService == null) {
+      throw new IllegalStateException("Required property not set: catalogAliasTranslationService");
+    }
+    if (fragmentHandlers == null) {
+      throw new IllegalStateException("Required property not set: fragmentHandlers");
+    }
+  }
+
+  /**
+   * Resolves the site of the store context and applies the catalog of the fragment parameters.
+   *
+   * @return the site, or null if there is no site for the store context
+   */
+  @Nullable
+  private Site initializeSite(@NonNull StoreContext storeContext, @NonNull FragmentParameters fragmentParameters,
+                              @NonNull HttpServletRequest request) {
+    Site site = getSitesService().getSite(storeContext.getSiteId());
+    if (site == null) {
+      return null;
+    }
     SiteHelper.setSiteToRequest(site, request);
 
     // Update store context with fragment parameters.
@@ -110,7 +314,66 @@ public class FragmentPageHandler extends PageHandlerBase {
               .build();
       CurrentStoreContext.set(updatedStoreContext, request);
     });
+    return site;
+  }
+
+  @NonNull
+  private <T> List<T> render(@NonNull List<ParallelPlacementRenderer.Rendering<T>> renderings,
+                             @NonNull HttpServletRequest request,
+                             @NonNull HttpServletResponse response) {
+    if (parallelPlacementRenderer != null) {
+      return parallelPlacementRenderer.renderAll(renderings, request, response);
+    }
+    return renderings.stream()
+            .map(rendering -> rendering.render(request, response))
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * Resolves and renders one fragment of a batch request.
+   */
+  @NonNull
+  private RenderedFragmentStatus renderFragment(@NonNull FragmentParameters fragmentParameters,
+                                                @NonNull StoreContext storeContext,
+                                                @NonNull Supplier<Page> defaultPage,
+                                                @NonNull HttpServletRequest request,
+                                                @NonNull BatchedFragmentResponse response) {
+    FragmentContext fragmentContext = new FragmentContext();
+    fragmentContext.setFragmentRequest(true);
+    fragmentContext.setParameters(fragmentParameters);
+    request.setAttribute(FragmentContextProvider.FRAGMENT_CONTEXT_ATTRIBUTE, fragmentContext);
+
+    Supplier<ModelAndView> resolver = () -> resolveFragment(fragmentParameters, defaultPage, request);
+    ModelAndView modelAndView;
+    String output;
+    if (fragmentOutputCache != null && fragmentOutputCache.isCacheable(storeContext, request)) {
+      FragmentOutputCache.RenderedFragment fragment =
+              fragmentOutputCache.getFragment(fragmentParameters, storeContext, request, response, resolver);
+      fragment.applyTo(response);
+      modelAndView = fragment.getModelAndView();
+      output = fragment.getOutput();
+    } else {
+      modelAndView = resolver.get();
+      output = FragmentOutputCache.renderOutput(modelAndView, request, response);
+    }
 
+    if (output != null) {
+      return new RenderedFragmentStatus(output, response.getStatus(), response);
+    }
+    Object root = modelAndView != null ? HandlerHelper.getRootModel(modelAndView) : null;
+    int status = root instanceof HttpError ? ((HttpError) root).getErrorCode() : HttpServletResponse.SC_NOT_FOUND;
+    return new RenderedFragmentStatus("", status, response);
+  }
+
+  /**
+   * Resolves the fragment with the responsible {@link FragmentHandler} or the default behaviour.
+   *
+   * @param defaultPage the page of the site's root channel, for fragments without a handler
+   */
+  @NonNull
+  private ModelAndView resolveFragment(@NonNull FragmentParameters fragmentParameters,
+                                       @NonNull Supplier<Page> defaultPage,
+                                       @NonNull HttpServletRequest request) {
     ModelAndView modelAndView;
     FragmentHandler handler = selectFragmentHandler(fragmentParameters);
     if (handler != null) {
@@ -119,8 +382,7 @@ public class FragmentPageHandler extends PageHandlerBase {
         return createErrorModelAndView(fragmentParameters, handler);
       }
     } else {
-      User developer = UserVariantHelper.getUser(request);
-      modelAndView = createDefaultModelAndView(fragmentParameters, site, developer);
+      modelAndView = createModelAndView(defaultPage.get(), fragmentParameters.getView());
     }
 
     //apply the parameter value to the request if a value was set
@@ -128,25 +390,6 @@ public class FragmentPageHandler extends PageHandlerBase {
     return modelAndView;
   }
 
-  public void setFragmentHandlers(@NonNull List<FragmentHandler> fragmentHandlers) {
-    this.fragmentHandlers = List.copyOf(fragmentHandlers);
-  }
-
-  public void setCatalogAliasTranslationService(CatalogAliasTranslationService catalogAliasTranslationService) {
-    this.catalogAliasTranslationService = catalogAliasTranslationService;
-  }
-
-  @Override
-  protected void initialize() {
-    super.initialize();
-    if (catalogAliasTranslationService == null) {
-      throw new IllegalStateException("Required property not set: catalogAliasTranslationService");
-    }
-    if (fragmentHandlers == null) {
-      throw new IllegalStateException("Required property not set: fragmentHandlers");
-    }
-  }
-
   /**
    * search for a FragmentHandler that feels responsible for the request,
    * depending on the parameters.
@@ -160,16 +403,15 @@ public class FragmentPageHandler extends PageHandlerBase {
   }
 
   /**
-   * If no handler has been applied we assume the default behaviour.
+   * If no handler has been applied we assume the default behaviour, which renders the page of the site's root channel.
    * This usually happens if only the view param is passed.
    */
   @NonNull
-  private ModelAndView createDefaultModelAndView(@NonNull FragmentParameters fragmentParameters, @NonNull Site site,
-                                                 @Nullable User developer) {
+  private Page createDefaultPage(@NonNull Site site, @NonNull HttpServletRequest request) {
+    User developer = UserVariantHelper.getUser(request);
     Content rootChannel = site.getSiteRootDocument();
     CMChannel channel = getContentBeanFactory().createBeanFor(rootChannel, CMChannel.class);
-    Page page = asPage(channel, channel, developer);
-    return createModelAndView(page, fragmentParameters.getView());
+    return asPage(channel, channel, developer);
   }
 
   @Nullable
@@ -192,4 +434,155 @@ public class FragmentPageHandler extends PageHandlerBase {
     return HandlerHelper.notFound(
             "Fragment handler '" + handler + "' did not return any ModelAndView for " + fragmentParameters);
   }
+
+  private static final class RenderedFragmentStatus {
+    private final String output;
+    private final int status;
+    private final BatchedFragmentResponse response;
+
+    private RenderedFragmentStatus(@NonNull String output, int status, @Nullable BatchedFragmentResponse response) {
+      this.output = output;
+      this.status = status;
+      this.response = response;
+    }
+  }
+
+  /**
+   * Keeps the status, headers and cookies of one fragment of a batch request
+   * from the response, so that they can be returned with the fragment.
+   */
+  @VisibleForTesting
+  static final class BatchedFragmentResponse extends HttpServletResponseWrapper {
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final List<Cookie> cookies = new ArrayList<>();
+    private int status = SC_OK;
+
+    @VisibleForTesting
+    BatchedFragmentResponse(@NonNull HttpServletResponse response) {
+      super(response);
+    }
+
+    /**
+     * Adds the headers and cookies of the fragment to its JSON representation.
+     */
+    void addTo(@NonNull JsonObject fragmentJson) {
+      if (!headers.isEmpty()) {
+        JsonObject headersJson = new JsonObject();
+        headers.forEach((name, values) -> {
+          JsonArray valuesJson = new JsonArray();
+          values.forEach(valuesJson::add);
+          headersJson.add(name, valuesJson);
+        });
+        fragmentJson.add(HEADERS_PROPERTY, headersJson);
+      }
+      if (!cookies.isEmpty()) {
+        JsonArray cookiesJson = new JsonArray();
+        for (Cookie cookie : cookies) {
+          JsonObject cookieJson = new JsonObject();
+          cookieJson.addProperty("name", cookie.getName());
+          cookieJson.addProperty("value", cookie.getValue());
+          cookieJson.addProperty("path", cookie.getPath());
+          cookieJson.addProperty("domain", cookie.getDomain());
+          cookieJson.addProperty("maxAge", cookie.getMaxAge());
+          cookieJson.addProperty("secure", cookie.getSecure());
+          cookieJson.addProperty("httpOnly", cookie.isHttpOnly());
+          cookiesJson.add(cookieJson);
+        }
+        fragmentJson.add(COOKIES_PROPERTY, cookiesJson);
+      }
+    }
+
+    @Override
+    public void setStatus(int sc) {
+      status = sc;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+      setStatus(sc);
+    }
+
+    @Override
+    public int getStatus() {
+      return status;
+    }
+
+    @Override
+    public void sendError(int sc) {
+      status = sc;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+      status = sc;
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+      status = SC_FOUND;
+      setHeader(HttpHeaders.LOCATION, location);
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+      return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+      List<String> values = headers.get(name);
+      return values != null ? values.get(0) : null;
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+      return List.copyOf(headers.getOrDefault(name, List.of()));
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+      return List.copyOf(headers.keySet());
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      headers.put(name, new ArrayList<>(List.of(value)));
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      headers.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+      setHeader(name, formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+      addHeader(name, formatDate(date));
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+      setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+      addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+      cookies.add(cookie);
+    }
+
+    @NonNull
+    private static String formatDate(long date) {
+      return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atZone(ZoneOffset.UTC));
+    }
+  }
 }
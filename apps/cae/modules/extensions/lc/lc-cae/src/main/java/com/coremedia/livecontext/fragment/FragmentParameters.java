@@ -12,6 +12,7 @@ import java.net.URLDecoder;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 /**
  * <p>
@@ -169,6 +170,15 @@ public class FragmentParameters {
     return matrixParams.get(key);
   }
 
+  /**
+   * Returns a copy of the matrix parameters, sorted by name, so that equal
+   * parameters in a different order yield equal maps.
+   */
+  @NonNull
+  Map<String, String> getNormalizedParameters() {
+    return new TreeMap<>(matrixParams);
+  }
+
   public void setParameter(@NonNull String parameter) {
     matrixParams.put(PARAMETER, parameter);
   }
@@ -53,6 +53,22 @@ public class FragmentParametersFactory {
     return new FragmentParameters(storeId, locale, matrixParams);
   }
 
+  /**
+   * Factory method for the parameters of one fragment of a batch request.
+   *
+   * @param sharedParameters the parameters of the batch request, which are shared by all of its fragments
+   * @param matrixParameters the matrix parameters of the fragment, e.g. {@code placement=header;view=asHeader},
+   *                         which override the shared parameters
+   * @return the combined parameters
+   */
+  @NonNull
+  public static FragmentParameters create(@NonNull FragmentParameters sharedParameters,
+                                          @NonNull String matrixParameters) {
+    Map<String, String> matrixParams = sharedParameters.getNormalizedParameters();
+    matrixParams.putAll(getMatrixParams(';' + matrixParameters));
+    return new FragmentParameters(sharedParameters.getStoreId(), sharedParameters.getLocale(), matrixParams);
+  }
+
   /**
    * Manual parsing of of the matrix parameters
    * @param requestUrl the request URL to retrieve the matrix parameters from.
@@ -14,6 +14,7 @@ import com.coremedia.livecontext.ecommerce.common.StoreContextBuilder;
 import com.coremedia.livecontext.ecommerce.common.StoreContextProvider;
 import com.coremedia.livecontext.ecommerce.user.UserContext;
 import com.coremedia.livecontext.fragment.FragmentContextProvider;
+import com.coremedia.livecontext.fragment.FragmentOutputCache;
 import com.coremedia.livecontext.fragment.FragmentParameters;
 import com.coremedia.livecontext.fragment.links.context.Context;
 import com.coremedia.livecontext.fragment.links.context.LiveContextContextHelper;
@@ -123,6 +124,11 @@ public class FragmentCommerceContextInterceptor extends AbstractCommerceContextI
     userContext = adjustUserContext(userContext, fragmentContext);
     CurrentUserContext.set(userContext, request);
 
+    // Fragments of logged-in users may be personalized beyond their segments.
+    if (findStringValue(fragmentContext, contextNameUserName).isPresent()) {
+      FragmentOutputCache.markPersonalized(request);
+    }
+
     StoreContext storeContext = CurrentStoreContext.find(request).orElseGet(commerceConnection::getInitialStoreContext);
     StoreContextBuilder storeContextBuilder = commerceConnection.getStoreContextProvider().buildContext(storeContext);
 
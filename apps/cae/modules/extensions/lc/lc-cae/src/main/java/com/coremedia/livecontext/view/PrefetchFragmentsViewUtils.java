@@ -6,7 +6,6 @@ import com.coremedia.blueprint.common.layout.PageGridPlacement;
 import com.coremedia.livecontext.fragment.FragmentContextProvider;
 import com.coremedia.livecontext.fragment.FragmentParameters;
 import com.coremedia.objectserver.view.ViewUtils;
-import com.google.common.annotations.VisibleForTesting;
 import edu.umd.cs.findbugs.annotations.DefaultAnnotation;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
@@ -64,6 +63,16 @@ public class PrefetchFragmentsViewUtils {
             "placement=" + nullToEmpty(placement).trim();
   }
 
+  /**
+   * Returns the fragment key of a single fragment request, in the same format
+   * as the fragment keys of prefetched fragments.
+   */
+  public static String createFragmentKeyFromParameters(FragmentParameters parameters) {
+    return createPageKeyFromParameters(parameters) + MATRIX_SEPERATOR +
+            "view=" + nullToEmpty(parameters.getView()) + MATRIX_SEPERATOR +
+            "placement=" + nullToEmpty(parameters.getPlacement()).trim();
+  }
+
   /**
    * Return the page grid placement name if the given bean is an instance of {@link PageGridPlacement}
    */
@@ -80,8 +89,10 @@ public class PrefetchFragmentsViewUtils {
     return createPageKeyFromParameters(parameters);
   }
 
-  @VisibleForTesting
-  static String createPageKeyFromParameters(FragmentParameters parameters) {
+  /**
+   * Returns the page key of a fragment request, as used for prefetched fragments.
+   */
+  public static String createPageKeyFromParameters(FragmentParameters parameters) {
     Map<String, String> parameterMap = new LinkedHashMap<>();
     parameterMap.put("externalRef", nullToEmpty(parameters.getExternalRef()));
     parameterMap.put("categoryId", nullToEmpty(parameters.getCategoryId()));
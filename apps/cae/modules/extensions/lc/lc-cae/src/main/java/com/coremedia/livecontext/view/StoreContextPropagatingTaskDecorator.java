@@ -0,0 +1,42 @@
+package com.coremedia.livecontext.view;
+
+import com.coremedia.blueprint.base.livecontext.ecommerce.common.CurrentStoreContext;
+import com.coremedia.blueprint.common.util.ContextAttributes;
+import com.coremedia.livecontext.ecommerce.common.StoreContext;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Propagates the store context of the current request to the threads which
+ * render placements in parallel.
+ *
+ * @see com.coremedia.blueprint.cae.view.ParallelPlacementRenderer
+ */
+public class StoreContextPropagatingTaskDecorator implements TaskDecorator {
+
+  @NonNull
+  @Override
+  public Runnable decorate(@NonNull Runnable runnable) {
+    StoreContext storeContext = ContextAttributes.findRequest()
+            .flatMap(CurrentStoreContext::find)
+            .orElse(null);
+    if (storeContext == null) {
+      return runnable;
+    }
+    Thread requestThread = Thread.currentThread();
+    return () -> {
+      if (Thread.currentThread() == requestThread) {
+        // the store context is already set up for the request thread
+        runnable.run();
+        return;
+      }
+      // the request of the worker is already bound to the thread
+      ContextAttributes.findRequest().ifPresent(request -> CurrentStoreContext.set(storeContext, request));
+      try {
+        runnable.run();
+      } finally {
+        CurrentStoreContext.remove();
+      }
+    };
+  }
+}
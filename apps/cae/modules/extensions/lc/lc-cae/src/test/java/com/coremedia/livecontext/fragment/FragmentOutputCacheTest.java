@@ -0,0 +1,150 @@
+package com.coremedia.livecontext.fragment;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cms.delivery.configuration.DeliveryConfigurationProperties;
+import com.coremedia.livecontext.ecommerce.common.StoreContext;
+import com.coremedia.livecontext.fragment.links.context.ContextBuilder;
+import com.coremedia.livecontext.fragment.links.context.LiveContextContextHelper;
+import com.coremedia.objectserver.web.HandlerHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.Cookie;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FragmentOutputCacheTest {
+
+  private static final String URL = "http://localhost:40081/blueprint/servlet/service/fragment/10001/en-US/params;";
+
+  private FragmentOutputCache testling;
+  private DeliveryConfigurationProperties deliveryConfigurationProperties;
+
+  @Mock
+  private StoreContext storeContext;
+
+  private final MockHttpServletRequest request = new MockHttpServletRequest();
+  private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+  @Before
+  public void setUp() {
+    deliveryConfigurationProperties = new DeliveryConfigurationProperties();
+    deliveryConfigurationProperties.setPreviewMode(false);
+    testling = new FragmentOutputCache();
+    testling.setCache(new Cache("test"));
+    testling.setDeliveryConfigurationProperties(deliveryConfigurationProperties);
+    testling.setEnabled(true);
+    testling.initialize();
+  }
+
+  @Test
+  public void keyIgnoresParameterOrder() {
+    when(storeContext.getSiteId()).thenReturn("site");
+    FragmentParameters parameters = FragmentParametersFactory.create(URL + "placement=header;view=test");
+    FragmentParameters reordered = FragmentParametersFactory.create(URL + "view=test;placement=header");
+    FragmentParameters otherView = FragmentParametersFactory.create(URL + "view=other;placement=header");
+
+    assertEquals(createKey(parameters), createKey(reordered));
+    assertNotEquals(createKey(parameters), createKey(otherView));
+  }
+
+  @Test
+  public void keyIncludesUserSegments() {
+    when(storeContext.getSiteId()).thenReturn("site");
+    FragmentParameters parameters = FragmentParametersFactory.create(URL + "placement=header");
+    FragmentOutputCacheKey anonymous = createKey(parameters);
+
+    when(storeContext.getUserSegments()).thenReturn(Optional.of("segment1"));
+
+    assertNotEquals(anonymous, createKey(parameters));
+  }
+
+  @Test
+  public void keyIncludesContractsContextAndHost() {
+    when(storeContext.getSiteId()).thenReturn("site");
+    FragmentParameters parameters = FragmentParametersFactory.create(URL + "placement=header");
+    FragmentOutputCacheKey key = createKey(parameters);
+
+    when(storeContext.getContractIds()).thenReturn(List.of("contract1"));
+    FragmentOutputCacheKey withContract = createKey(parameters);
+    assertNotEquals(key, withContract);
+
+    LiveContextContextHelper.setContext(request, ContextBuilder.create().withValue("wc.user.currency", "EUR").build());
+    FragmentOutputCacheKey withContext = createKey(parameters);
+    assertNotEquals(withContract, withContext);
+
+    request.setServerName("shop.example.com");
+    assertNotEquals(withContext, createKey(parameters));
+  }
+
+  @Test
+  public void personalizedRequestsAreNotCacheable() {
+    assertTrue(testling.isCacheable(storeContext, request));
+
+    FragmentOutputCache.markPersonalized(request);
+
+    assertFalse(testling.isCacheable(storeContext, request));
+  }
+
+  @Test
+  public void previewRequestsAreNotCacheable() {
+    deliveryConfigurationProperties.setPreviewMode(true);
+
+    assertFalse(testling.isCacheable(storeContext, request));
+  }
+
+  @Test
+  public void errorsAreNotCached() {
+    when(storeContext.getSiteId()).thenReturn("site");
+    FragmentParameters parameters = FragmentParametersFactory.create(URL + "placement=header");
+    AtomicInteger resolutions = new AtomicInteger();
+    ModelAndView notFound = HandlerHelper.notFound("test");
+
+    assertSame(notFound, testling.get(parameters, storeContext, request, response, () -> {
+      resolutions.incrementAndGet();
+      return notFound;
+    }));
+    assertSame(notFound, testling.get(parameters, storeContext, request, response, () -> {
+      resolutions.incrementAndGet();
+      return notFound;
+    }));
+    assertEquals(2, resolutions.get());
+  }
+
+  @Test
+  public void cookiesAndUnknownHeadersAreUserSpecific() {
+    FragmentOutputCache.RecordingResponse contentHeaders = new FragmentOutputCache.RecordingResponse(response);
+    contentHeaders.setHeader("Content-Language", "en");
+    contentHeaders.addHeader("Vary", "Accept-Encoding");
+    assertFalse(contentHeaders.hasUserSpecificChanges());
+
+    FragmentOutputCache.RecordingResponse cookie = new FragmentOutputCache.RecordingResponse(response);
+    cookie.addCookie(new Cookie("session", "4711"));
+    assertTrue(cookie.hasUserSpecificChanges());
+
+    FragmentOutputCache.RecordingResponse otherHeader = new FragmentOutputCache.RecordingResponse(response);
+    otherHeader.setHeader("X-User-Id", "4711");
+    assertTrue(otherHeader.hasUserSpecificChanges());
+  }
+
+  private FragmentOutputCacheKey createKey(FragmentParameters parameters) {
+    return FragmentOutputCache.createKey(parameters, storeContext, request, () -> {
+      throw new UnsupportedOperationException();
+    });
+  }
+}
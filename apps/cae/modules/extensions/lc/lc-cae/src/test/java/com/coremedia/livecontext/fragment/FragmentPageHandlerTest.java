@@ -15,6 +15,9 @@ import com.coremedia.livecontext.ecommerce.common.StoreContext;
 import com.coremedia.objectserver.beans.ContentBeanFactory;
 import com.coremedia.objectserver.web.HandlerHelper;
 import com.coremedia.objectserver.web.HttpError;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -22,18 +25,27 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.web.servlet.ModelAndView;
 
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -76,6 +88,9 @@ public class FragmentPageHandlerTest {
   @Mock
   private CatalogAliasTranslationService catalogAliasTranslationService;
 
+  @Mock
+  private FragmentHandler fragmentHandler;
+
   private final Cache cache = new Cache("test");
 
   private final HttpServletResponse response = new MockHttpServletResponse();
@@ -155,6 +170,77 @@ public class FragmentPageHandlerTest {
     assertEquals(HttpServletResponse.SC_BAD_REQUEST, error.getErrorCode());
   }
 
+  @Test
+  public void batchKeepsOrderOfFragments() {
+    when(fragmentHandler.test(any())).thenReturn(true);
+    when(fragmentHandler.createModelAndView(any(), any())).thenReturn(HandlerHelper.notFound("test"));
+    testling.setFragmentHandlers(List.of(fragmentHandler));
+
+    ResponseEntity<String> result = testling.handleFragments(STORE_ID, LOCALE,
+            List.of("placement=header", "placement=footer;view=asFooter"), request, response);
+
+    assertEquals(HttpStatus.OK, result.getStatusCode());
+    JsonObject json = JsonParser.parseString(result.getBody()).getAsJsonObject();
+    JsonArray fragments = json.getAsJsonArray("fragments");
+    assertEquals(2, fragments.size());
+    assertEquals("externalRef=;categoryId=;productId=;pageId=;view=;placement=header",
+            fragments.get(0).getAsJsonObject().get("fragmentKey").getAsString());
+    assertEquals("externalRef=;categoryId=;productId=;pageId=;view=asFooter;placement=footer",
+            fragments.get(1).getAsJsonObject().get("fragmentKey").getAsString());
+    assertEquals(HttpServletResponse.SC_NOT_FOUND, fragments.get(1).getAsJsonObject().get("status").getAsInt());
+    assertSame(fragmentParameters, FragmentContextProvider.getFragmentContext(request).getParameters());
+  }
+
+  @Test
+  public void batchResolvesDefaultPageOnce() {
+    ResponseEntity<String> result = testling.handleFragments(STORE_ID, LOCALE,
+            List.of("view=asHeader", "view=asFooter", "view=asTeaser"), request, response);
+
+    assertEquals(HttpStatus.OK, result.getStatusCode());
+    JsonArray fragments = JsonParser.parseString(result.getBody()).getAsJsonObject().getAsJsonArray("fragments");
+    assertEquals(3, fragments.size());
+    verify(contentBeanFactory, times(1)).createBeanFor(rootChannel, CMChannel.class);
+  }
+
+  @Test
+  public void batchIsLimited() {
+    testling.setMaxBatchSize(1);
+
+    ResponseEntity<String> result = testling.handleFragments(STORE_ID, LOCALE,
+            List.of("placement=header", "placement=footer"), request, response);
+
+    assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+  }
+
+  @Test
+  public void batchWithoutSiteIsNotFound() {
+    when(sitesService.getSite(SITE_ID)).thenReturn(null);
+
+    ResponseEntity<String> result = testling.handleFragments(STORE_ID, LOCALE,
+            List.of("placement=header"), request, response);
+
+    assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+  }
+
+  @Test
+  public void batchedFragmentsDoNotChangeTheResponse() {
+    FragmentPageHandler.BatchedFragmentResponse fragmentResponse = new FragmentPageHandler.BatchedFragmentResponse(response);
+    fragmentResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+    fragmentResponse.setHeader("Content-Language", "en");
+    fragmentResponse.addHeader("content-language", "de");
+    fragmentResponse.addCookie(new Cookie("session", "4711"));
+
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    assertFalse(response.containsHeader("Content-Language"));
+    assertEquals(0, ((MockHttpServletResponse) response).getCookies().length);
+
+    assertEquals(HttpServletResponse.SC_NOT_FOUND, fragmentResponse.getStatus());
+    JsonObject fragmentJson = new JsonObject();
+    fragmentResponse.addTo(fragmentJson);
+    assertEquals(2, fragmentJson.getAsJsonObject("headers").getAsJsonArray("Content-Language").size());
+    assertEquals("4711", fragmentJson.getAsJsonArray("cookies").get(0).getAsJsonObject().get("value").getAsString());
+  }
+
   @Test
   public void noSiteNoPreview() {
     when(sitesService.getSite(SITE_ID)).thenReturn(null);
@@ -27,4 +27,14 @@ class FragmentParametersTest {
             .returns(null, FragmentParameters::getExternalRef)
             .returns("{\"tags\":\"41%_to_50%\"}", FragmentParameters::getParameter);
   }
+
+  @Test
+  public void testBatchedFragment() {
+    var url = "http://localhost:40081/blueprint/servlet/service/fragment/10851/en-US/params;productId=4711;view=test";
+    assertThat(FragmentParametersFactory.create(FragmentParametersFactory.create(url), "placement=header;view=asHeader"))
+            .returns("10851", FragmentParameters::getStoreId)
+            .returns("4711", FragmentParameters::getProductId)
+            .returns("header", FragmentParameters::getPlacement)
+            .returns("asHeader", FragmentParameters::getView);
+  }
 }
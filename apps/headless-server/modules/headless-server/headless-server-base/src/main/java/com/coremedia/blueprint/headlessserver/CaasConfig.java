@@ -141,6 +141,7 @@ import graphql.execution.instrumentation.Instrumentation;
 import graphql.execution.preparsed.PreparsedDocumentEntry;
 import graphql.execution.preparsed.PreparsedDocumentProvider;
 import graphql.scalars.ExtendedScalars;
+import graphql.schema.DataFetcher;
 import graphql.schema.GraphQLObjectType;
 import graphql.schema.GraphQLScalarType;
 import graphql.schema.GraphQLSchema;
@@ -208,6 +209,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -246,6 +248,8 @@ import static java.lang.invoke.MethodHandles.lookup;
         StaxContextConfigurationProperties.class,
         MetadataConfigurationProperties.class,
         ContentConfigurationProperties.class,
+        CaasContentPrefetchConfigurationProperties.class,
+        CaasResponseCacheConfigurationProperties.class,
 })
 @EnableWebMvc
 @ImportResource(value = {
@@ -790,18 +794,53 @@ public class CaasConfig implements WebMvcConfigurer {
                                              DataLoaderRegistry dataLoaderRegistry,
                                              CaasServiceConfigurationProperties caasServiceConfigurationProperties,
                                              @Qualifier(ATTRIBUTE_NAMES_TO_GQL_CONTEXT) Set<String> requestAttributeNamesToGraphqlContext,
-                                             @Qualifier("copyToContextParameterList") List<CopyToContextParameter<Object, Object>> copyToContextParameterList
+                                             @Qualifier("copyToContextParameterList") List<CopyToContextParameter<Object, Object>> copyToContextParameterList,
+                                             CaasResponseCacheConfigurationProperties caasResponseCacheConfigurationProperties,
+                                             @Qualifier("persistedQueries") Map<String, String> persistedQueries,
+                                             ContentRepository contentRepository,
+                                             ObjectMapper objectMapper,
+                                             CaasContentPrefetchConfigurationProperties contentPrefetchConfigurationProperties,
+                                             ObjectProvider<ContentPrefetchBatchLoader> contentPrefetchBatchLoaderProvider
   ) {
-    return new GraphQLInvocationImpl(
+    boolean cacheResponses = isResponseCacheEnabled(caasResponseCacheConfigurationProperties);
+    Set<String> attributeNamesToGraphqlContext = requestAttributeNamesToGraphqlContext;
+    if (cacheResponses) {
+      attributeNamesToGraphqlContext = new HashSet<>(requestAttributeNamesToGraphqlContext);
+      attributeNamesToGraphqlContext.add(DependencyRecordingDataFetcher.DEPENDENCIES_ATTRIBUTE);
+    }
+    Map<String, Object> renamedQueryRoots = renameQueryRootsWithOptionalPrefix(queryRoots);
+    Set<String> graphqlContextAttributeNames = attributeNamesToGraphqlContext;
+    Function<DataLoaderRegistry, GraphQLInvocation> invocationFactory = registry -> new GraphQLInvocationImpl(
             graphQL,
-            renameQueryRootsWithOptionalPrefix(queryRoots),
-            dataLoaderRegistry,
+            renamedQueryRoots,
+            registry,
             caasServiceConfigurationProperties,
+            graphqlContextAttributeNames,
+            copyToContextParameterList
+    );
+    ContentPrefetchBatchLoader contentPrefetchBatchLoader = contentPrefetchBatchLoaderProvider.getIfAvailable();
+    GraphQLInvocation graphQLInvocation = contentPrefetchBatchLoader != null
+            ? new ContentPrefetchingGraphQLInvocation(invocationFactory, dataLoaderRegistry, contentPrefetchBatchLoader, contentPrefetchDataLoaderOptions(contentPrefetchConfigurationProperties))
+            : invocationFactory.apply(dataLoaderRegistry);
+    if (!cacheResponses) {
+      return graphQLInvocation;
+    }
+    return new ResponseCachingGraphQLInvocation(
+            graphQLInvocation,
+            contentRepository.getConnection().getCache(),
+            objectMapper,
+            caasResponseCacheConfigurationProperties,
+            persistedQueries,
             requestAttributeNamesToGraphqlContext,
             copyToContextParameterList
     );
   }
 
+  private boolean isResponseCacheEnabled(CaasResponseCacheConfigurationProperties caasResponseCacheConfigurationProperties) {
+    // preview results depend on the preview date and on unpublished contents
+    return caasResponseCacheConfigurationProperties.isEnabled() && !caasServiceConfigurationProperties.isPreview();
+  }
+
   @Bean
   public ExecutionResultHandler executionResultHandler() {
     return new CaasExecutionResultHandler();
@@ -831,18 +870,28 @@ public class CaasConfig implements WebMvcConfigurer {
   public DataFetcherMappingInstrumentation dataFetchingInstrumentation(@Qualifier("caasFilterPredicates") List<FilterPredicate<Object>> caasFilterPredicates,
                                                                        @Qualifier("graphQlConversionService") ConversionService conversionService,
                                                                        @Qualifier("conversionTypeMap") Map<String, Class<?>> conversionTypeMap,
-                                                                       SitesService sitesService
+                                                                       SitesService sitesService,
+                                                                       CaasContentPrefetchConfigurationProperties contentPrefetchConfigurationProperties,
+                                                                       CaasResponseCacheConfigurationProperties caasResponseCacheConfigurationProperties
   ) {
-    return new DataFetcherMappingInstrumentation((dataFetcher, parameters) ->
-            new ConvertingDataFetcher(
-                    new FilteringDataFetcher(
-                            new ViewBySiteFilterDataFetcher(dataFetcher, sitesService, caasServiceConfigurationProperties),
-                            caasFilterPredicates
-                    ),
-                    conversionService,
-                    conversionTypeMap
-            )
-    );
+    boolean prefetchContents = contentPrefetchConfigurationProperties.isEnabled();
+    boolean recordDependencies = isResponseCacheEnabled(caasResponseCacheConfigurationProperties);
+    return new DataFetcherMappingInstrumentation((dataFetcher, parameters) -> {
+      DataFetcher<?> convertingDataFetcher = new ConvertingDataFetcher(
+              new FilteringDataFetcher(
+                      new ViewBySiteFilterDataFetcher(dataFetcher, sitesService, caasServiceConfigurationProperties),
+                      caasFilterPredicates
+              ),
+              conversionService,
+              conversionTypeMap
+      );
+      if (recordDependencies) {
+        convertingDataFetcher = new DependencyRecordingDataFetcher(convertingDataFetcher);
+      }
+      return prefetchContents
+              ? new ContentPrefetchingDataFetcher(convertingDataFetcher)
+              : convertingDataFetcher;
+    });
   }
 
   @Bean
@@ -1067,7 +1116,7 @@ public class CaasConfig implements WebMvcConfigurer {
   }
 
   @Bean
-  public DataLoaderRegistry dataLoaderRegistry(Map<String, DataLoader<String, Try<String>>> dataLoaders) {
+  public DataLoaderRegistry dataLoaderRegistry(Map<String, DataLoader<?, ?>> dataLoaders) {
     DataLoaderRegistry registry = new DataLoaderRegistry();
     dataLoaders.forEach(registry::register);
     return registry;
@@ -1112,6 +1161,30 @@ public class CaasConfig implements WebMvcConfigurer {
     return Executors.newFixedThreadPool(5);
   }
 
+  /**
+   * Prefetches the contents of a query level, see {@link ContentPrefetchingGraphQLInvocation}
+   * for the data loaders which are created per query.
+   */
+  @Bean
+  @ConditionalOnProperty(prefix = "caas.content-prefetch", name = "enabled", havingValue = "true")
+  public ContentPrefetchBatchLoader contentPrefetchBatchLoader(CaasContentPrefetchConfigurationProperties contentPrefetchConfigurationProperties,
+                                                               @Qualifier("contentPrefetchExecutorService") ExecutorService contentPrefetchExecutorService) {
+    return new ContentPrefetchBatchLoader(contentPrefetchExecutorService, contentPrefetchConfigurationProperties.getLinkProperties());
+  }
+
+  private static DataLoaderOptions contentPrefetchDataLoaderOptions(CaasContentPrefetchConfigurationProperties contentPrefetchConfigurationProperties) {
+    // contents are cached by the UAPI, the data loader only collects the contents of a query level
+    return DataLoaderOptions.newOptions()
+            .setCachingEnabled(false)
+            .setMaxBatchSize(contentPrefetchConfigurationProperties.getMaxBatchSize());
+  }
+
+  @Bean(name = "contentPrefetchExecutorService", destroyMethod = "shutdown")
+  @ConditionalOnProperty(prefix = "caas.content-prefetch", name = "enabled", havingValue = "true")
+  ExecutorService contentPrefetchExecutorService(CaasContentPrefetchConfigurationProperties contentPrefetchConfigurationProperties) {
+    return Executors.newFixedThreadPool(contentPrefetchConfigurationProperties.getThreads());
+  }
+
   @Bean
   public PagingHelper pagingHelper() {
     return new PagingHelper();
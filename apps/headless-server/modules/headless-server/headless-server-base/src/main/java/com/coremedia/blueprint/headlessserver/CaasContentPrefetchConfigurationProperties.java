@@ -0,0 +1,68 @@
+package com.coremedia.blueprint.headlessserver;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the batched prefetching of contents while a GraphQL query is executed.
+ *
+ * @see ContentPrefetchBatchLoader
+ */
+@ConfigurationProperties(prefix = "caas.content-prefetch")
+public class CaasContentPrefetchConfigurationProperties {
+
+  /**
+   * Whether the contents of a query level are fetched in one batch before the next level is resolved.
+   * Disabled by default.
+   */
+  private boolean enabled = false;
+
+  /**
+   * The number of threads fetching contents, shared by all queries.
+   */
+  private int threads = 8;
+
+  /**
+   * The maximum number of contents in one batch.
+   */
+  private int maxBatchSize = 200;
+
+  /**
+   * Link properties whose targets are fetched along with a content, e.g. settings and media.
+   */
+  private List<String> linkProperties = new ArrayList<>(List.of("linkedSettings", "pictures"));
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public List<String> getLinkProperties() {
+    return linkProperties;
+  }
+
+  public void setLinkProperties(List<String> linkProperties) {
+    this.linkProperties = linkProperties;
+  }
+}
@@ -0,0 +1,56 @@
+package com.coremedia.blueprint.headlessserver;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the response cache for persisted queries.
+ *
+ * @see ResponseCachingGraphQLInvocation
+ */
+@ConfigurationProperties(prefix = "caas.response-cache")
+public class CaasResponseCacheConfigurationProperties {
+
+  /**
+   * Whether the results of persisted queries are cached. Results are never cached in preview mode.
+   */
+  private boolean enabled = false;
+
+  /**
+   * The maximum time a result is cached. Content changes invalidate a result earlier, but results of
+   * searches or remote services are only refreshed after this time.
+   */
+  private Duration timeToLive = Duration.ofMinutes(5);
+
+  /**
+   * Names of request headers whose values are part of the cache key, e.g. headers which select a variant.
+   */
+  private List<String> varyByHeaders = new ArrayList<>();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public Duration getTimeToLive() {
+    return timeToLive;
+  }
+
+  public void setTimeToLive(Duration timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  public List<String> getVaryByHeaders() {
+    return varyByHeaders;
+  }
+
+  public void setVaryByHeaders(List<String> varyByHeaders) {
+    this.varyByHeaders = varyByHeaders;
+  }
+}
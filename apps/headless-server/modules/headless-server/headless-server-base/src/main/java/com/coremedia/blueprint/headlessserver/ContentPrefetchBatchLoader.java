@@ -0,0 +1,98 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cap.content.Content;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.dataloader.BatchLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Loads the contents of one level of a GraphQL query.
+ * <p>
+ * The contents are returned unchanged, but their properties and the contents
+ * linked in the configured link properties, e.g. linked settings and pictures,
+ * are fetched into the UAPI cache before the next level is resolved.  The whole
+ * batch is fetched in two passes: first the distinct contents of the level, then
+ * the distinct link targets of all of them, each pass with the contents fetched
+ * concurrently.  Thus every content is fetched once per level, and the fields of
+ * the next level are resolved from the cache instead of one content after another.
+ * <p>
+ * The UAPI has no request which fetches the properties of several contents at
+ * once, so the contents of a pass are fetched concurrently on the executor.
+ * <p>
+ * Failures are only logged, they are reported by the data fetchers which
+ * actually resolve the fields.
+ */
+public class ContentPrefetchBatchLoader implements BatchLoader<Content, Content> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
+
+  private final Executor executor;
+  private final List<String> linkProperties;
+
+  /**
+   * @param executor       fetches the contents of a batch concurrently
+   * @param linkProperties link properties whose targets are fetched along with the content
+   */
+  public ContentPrefetchBatchLoader(@NonNull Executor executor, @NonNull List<String> linkProperties) {
+    this.executor = executor;
+    this.linkProperties = List.copyOf(linkProperties);
+  }
+
+  @Override
+  public CompletionStage<List<Content>> load(List<Content> contents) {
+    Set<Content> distinctContents = new LinkedHashSet<>(contents);
+    return fetchAll(distinctContents)
+            .thenCompose(ignored -> fetchAll(linkedContents(distinctContents)))
+            .handle((ignored, e) -> contents);
+  }
+
+  // --- internal ---
+
+  @NonNull
+  private CompletableFuture<Void> fetchAll(@NonNull Collection<Content> contents) {
+    return CompletableFuture.allOf(contents.stream()
+            .map(content -> CompletableFuture.runAsync(() -> fetch(content), executor))
+            .toArray(CompletableFuture[]::new));
+  }
+
+  /**
+   * The distinct targets of the link properties which are not part of the batch.
+   * The properties of the batch have already been fetched at this point.
+   */
+  @NonNull
+  private Set<Content> linkedContents(@NonNull Set<Content> contents) {
+    Set<Content> linkedContents = new LinkedHashSet<>();
+    for (Content content : contents) {
+      try {
+        for (String linkProperty : linkProperties) {
+          if (content.getType().getDescriptor(linkProperty) != null) {
+            linkedContents.addAll(content.getLinks(linkProperty));
+          }
+        }
+      } catch (RuntimeException e) {
+        LOG.debug("Cannot prefetch links of content {}.", content.getId(), e);
+      }
+    }
+    linkedContents.removeAll(contents);
+    return linkedContents;
+  }
+
+  private static void fetch(@NonNull Content content) {
+    try {
+      content.getProperties();
+    } catch (RuntimeException e) {
+      LOG.debug("Cannot prefetch content {}.", content.getId(), e);
+    }
+  }
+}
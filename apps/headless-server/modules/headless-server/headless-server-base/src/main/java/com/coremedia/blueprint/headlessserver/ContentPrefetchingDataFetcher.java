@@ -0,0 +1,67 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cap.content.Content;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import org.dataloader.DataLoader;
+
+import java.util.List;
+
+/**
+ * Passes contents returned by a data fetcher through the content data loader
+ * of the query.
+ * <p>
+ * The data loader collects the contents of all fields of a query level and
+ * loads them in one batch when the level is dispatched, see
+ * {@link ContentPrefetchBatchLoader}.  Other values, and the values of queries
+ * without a content data loader, are returned unchanged.
+ * <p>
+ * Queries which are executed for the response cache are not prefetched, since
+ * the next level would be resolved on the threads of the batch loader, where the
+ * dependencies of the response are not tracked, see {@link DependencyRecordingDataFetcher}.
+ *
+ * @see ContentPrefetchingGraphQLInvocation
+ */
+public class ContentPrefetchingDataFetcher implements DataFetcher<Object> {
+
+  /**
+   * The name of the content data loader in the data loader registry of a query.
+   */
+  public static final String DATA_LOADER_NAME = "contentPrefetchDataLoader";
+
+  private final DataFetcher<?> delegate;
+
+  public ContentPrefetchingDataFetcher(@NonNull DataFetcher<?> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Object get(DataFetchingEnvironment environment) throws Exception {
+    Object result = delegate.get(environment);
+    if ((!(result instanceof Content) && !isContentList(result)) || DependencyRecordingDataFetcher.dependencies(environment) != null) {
+      return result;
+    }
+    DataLoader<Content, Content> contentPrefetchDataLoader = environment.getDataLoader(DATA_LOADER_NAME);
+    if (contentPrefetchDataLoader == null) {
+      return result;
+    }
+    if (result instanceof Content) {
+      return contentPrefetchDataLoader.load((Content) result);
+    }
+    //noinspection unchecked
+    return contentPrefetchDataLoader.loadMany((List<Content>) result);
+  }
+
+  private static boolean isContentList(Object result) {
+    if (!(result instanceof List) || ((List<?>) result).isEmpty()) {
+      return false;
+    }
+    for (Object item : (List<?>) result) {
+      if (!(item instanceof Content)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,64 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cap.content.Content;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import graphql.ExecutionResult;
+import graphql.spring.web.servlet.GraphQLInvocation;
+import graphql.spring.web.servlet.GraphQLInvocationData;
+import org.dataloader.BatchLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.DataLoaderRegistry;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Executes every query with its own {@link DataLoaderRegistry}, which contains
+ * the shared data loaders and a new data loader for the prefetching of contents.
+ * <p>
+ * The content data loader is registered under
+ * {@link ContentPrefetchingDataFetcher#DATA_LOADER_NAME} and is dispatched by
+ * graphql-java after each level of the query, like the other data loaders of the
+ * execution input.  Since it belongs to one query, contents are neither batched
+ * nor cached across requests.
+ */
+public class ContentPrefetchingGraphQLInvocation implements GraphQLInvocation {
+
+  private final Function<DataLoaderRegistry, GraphQLInvocation> invocationFactory;
+  private final DataLoaderRegistry sharedDataLoaderRegistry;
+  private final BatchLoader<Content, Content> batchLoader;
+  private final DataLoaderOptions dataLoaderOptions;
+
+  /**
+   * @param invocationFactory        creates the invocation which executes a query with the given registry
+   * @param sharedDataLoaderRegistry the data loaders which are shared by all queries
+   * @param batchLoader              prefetches the contents of a query level
+   * @param dataLoaderOptions        the options of the content data loader
+   */
+  public ContentPrefetchingGraphQLInvocation(@NonNull Function<DataLoaderRegistry, GraphQLInvocation> invocationFactory,
+                                             @NonNull DataLoaderRegistry sharedDataLoaderRegistry,
+                                             @NonNull BatchLoader<Content, Content> batchLoader,
+                                             @NonNull DataLoaderOptions dataLoaderOptions) {
+    this.invocationFactory = invocationFactory;
+    this.sharedDataLoaderRegistry = sharedDataLoaderRegistry;
+    this.batchLoader = batchLoader;
+    this.dataLoaderOptions = dataLoaderOptions;
+  }
+
+  @Override
+  public CompletableFuture<ExecutionResult> invoke(GraphQLInvocationData invocationData, WebRequest webRequest) {
+    return invocationFactory.apply(createDataLoaderRegistry()).invoke(invocationData, webRequest);
+  }
+
+  // --- internal ---
+
+  @NonNull
+  DataLoaderRegistry createDataLoaderRegistry() {
+    DataLoaderRegistry registry = new DataLoaderRegistry();
+    sharedDataLoaderRegistry.getDataLoadersMap().forEach(registry::register);
+    registry.register(ContentPrefetchingDataFetcher.DATA_LOADER_NAME, DataLoaderFactory.newDataLoader(batchLoader, dataLoaderOptions));
+    return registry;
+  }
+}
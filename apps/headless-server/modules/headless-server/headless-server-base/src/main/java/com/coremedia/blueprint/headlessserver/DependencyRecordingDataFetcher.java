@@ -0,0 +1,107 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cap.content.Content;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import graphql.GraphQLContext;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the fields which are resolved while a query is executed for the
+ * response cache.
+ * <p>
+ * Such queries are executed while a {@link ResponseCacheKey} is evaluated, so
+ * that the CoreMedia cache records the dependencies of every field, no matter
+ * whether it reads contents directly or by an adapter.  This only works on the
+ * evaluating thread: fields which are resolved on other threads, e.g. after an
+ * asynchronous data loader, mark the {@link Dependencies} as incomplete, and
+ * the response is not cached.  Besides, the contents whose fields are resolved
+ * are recorded for their validity dates.
+ * <p>
+ * The dependencies are found in the GraphQL context under
+ * {@link #DEPENDENCIES_ATTRIBUTE}.  Queries without such an attribute are not
+ * affected.
+ *
+ * @see ResponseCachingGraphQLInvocation
+ */
+public class DependencyRecordingDataFetcher implements DataFetcher<Object> {
+
+  /**
+   * The name of the request attribute which is copied to the GraphQL context.
+   */
+  public static final String DEPENDENCIES_ATTRIBUTE = DependencyRecordingDataFetcher.class.getName() + ".dependencies";
+
+  private final DataFetcher<?> delegate;
+
+  public DependencyRecordingDataFetcher(@NonNull DataFetcher<?> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Object get(DataFetchingEnvironment environment) throws Exception {
+    Dependencies dependencies = dependencies(environment);
+    if (dependencies != null) {
+      if (Cache.currentCache() == null) {
+        dependencies.markIncomplete();
+      }
+      Object source = environment.getSource();
+      if (source instanceof Content) {
+        dependencies.add((Content) source);
+      }
+    }
+    return delegate.get(environment);
+  }
+
+  /**
+   * Returns the dependencies of the query, or null if it is not executed for the response cache.
+   */
+  @Nullable
+  static Dependencies dependencies(@NonNull DataFetchingEnvironment environment) {
+    GraphQLContext context = environment.getGraphQlContext();
+    Object dependencies = context != null ? context.get(DEPENDENCIES_ATTRIBUTE) : null;
+    return dependencies instanceof Dependencies ? (Dependencies) dependencies : null;
+  }
+
+  // --- inner classes ---
+
+  /**
+   * The contents whose fields have been resolved for a query result.
+   * Contents may be added concurrently.
+   */
+  public static final class Dependencies {
+
+    private final Set<Content> contents = ConcurrentHashMap.newKeySet();
+    private volatile boolean complete = true;
+
+    void add(@NonNull Content content) {
+      contents.add(content);
+    }
+
+    void markIncomplete() {
+      complete = false;
+    }
+
+    /**
+     * Whether all fields have been resolved while the response was evaluated by the cache.
+     */
+    public boolean isComplete() {
+      return complete;
+    }
+
+    @NonNull
+    public Collection<Content> getContents() {
+      return Collections.unmodifiableSet(contents);
+    }
+
+    public boolean isEmpty() {
+      return contents.isEmpty();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.cap.content.Content;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Caches the {@link ResponseCachingGraphQLInvocation.CachedResponse} of a persisted query.
+ * <p>
+ * The key is made of the hash of the query, the operation, the variables and
+ * the request context.  It does not hold the request: the query is executed by
+ * the execution which is passed to {@link #get(Cache, ResponseCacheKey, Function)}
+ * on the requesting thread.  The query is executed while the key is evaluated, so
+ * the CoreMedia cache records every dependency of the fields which are resolved
+ * on the evaluating thread, including the contents read by adapters, e.g. for
+ * settings, page grids and navigation: the response is invalidated as soon as
+ * one of them changes.  It is invalidated at the latest when the time to live or
+ * the validity period of a content whose fields have been resolved ends.
+ * <p>
+ * Responses with errors, without any content, or with fields which have been
+ * resolved outside of the evaluation, see {@link DependencyRecordingDataFetcher},
+ * are not cached.
+ */
+class ResponseCacheKey extends CacheKey<ResponseCachingGraphQLInvocation.CachedResponse> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
+
+  static final String CACHE_CLASS = ResponseCacheKey.class.getName();
+
+  private static final String VALID_FROM = "validFrom";
+  private static final String VALID_TO = "validTo";
+
+  private final String queryHash;
+  private final String operationName;
+  private final Map<String, Object> variables;
+  private final List<Object> requestContext;
+
+  // not part of the key
+  private final Duration timeToLive;
+
+  // the execution of the current thread, kept out of the key, since cached keys must not retain the request
+  private static final ThreadLocal<Function<DependencyRecordingDataFetcher.Dependencies, ResponseCachingGraphQLInvocation.CachedResponse>> EXECUTION = new ThreadLocal<>();
+
+  /**
+   * @param requestContext immutable values of the request which select the result
+   * @param timeToLive     the maximum time the response is cached
+   */
+  ResponseCacheKey(@NonNull String queryHash,
+                   @Nullable String operationName,
+                   @NonNull Map<String, Object> variables,
+                   @NonNull List<Object> requestContext,
+                   @NonNull Duration timeToLive) {
+    this.queryHash = queryHash;
+    this.operationName = operationName;
+    this.variables = variables;
+    this.requestContext = requestContext;
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Returns the cached response for the key, or evaluates it with the given execution.
+   *
+   * @param execution executes the query on the current thread, with its fields recorded in the given dependencies
+   */
+  static ResponseCachingGraphQLInvocation.CachedResponse get(@NonNull Cache cache,
+                                                             @NonNull ResponseCacheKey key,
+                                                             @NonNull Function<DependencyRecordingDataFetcher.Dependencies, ResponseCachingGraphQLInvocation.CachedResponse> execution) {
+    Function<DependencyRecordingDataFetcher.Dependencies, ResponseCachingGraphQLInvocation.CachedResponse> previous = EXECUTION.get();
+    EXECUTION.set(execution);
+    try {
+      return cache.get(key);
+    } finally {
+      if (previous != null) {
+        EXECUTION.set(previous);
+      } else {
+        EXECUTION.remove();
+      }
+    }
+  }
+
+  @Override
+  public ResponseCachingGraphQLInvocation.CachedResponse evaluate(Cache cache) {
+    Function<DependencyRecordingDataFetcher.Dependencies, ResponseCachingGraphQLInvocation.CachedResponse> execution = EXECUTION.get();
+    if (execution == null) {
+      throw new IllegalStateException("No query execution for " + this + ", use ResponseCacheKey#get.");
+    }
+    DependencyRecordingDataFetcher.Dependencies dependencies = new DependencyRecordingDataFetcher.Dependencies();
+    ResponseCachingGraphQLInvocation.CachedResponse response = execution.apply(dependencies);
+    if (response.getEtag() == null || dependencies.isEmpty() || !dependencies.isComplete()) {
+      LOG.debug("Response of query {} is not cacheable.", queryHash);
+      Cache.uncacheable();
+      return response;
+    }
+    long now = System.currentTimeMillis();
+    long cacheUntil = now + timeToLive.toMillis();
+    for (Content content : dependencies.getContents()) {
+      try {
+        cacheUntil = Math.min(cacheUntil, validityBoundary(content, now));
+      } catch (RuntimeException e) {
+        LOG.debug("Cannot read validity of content {}, response of query {} is not cached.", content.getId(), queryHash, e);
+        Cache.uncacheable();
+      }
+    }
+    Cache.cacheUntil(new Date(cacheUntil));
+    return response;
+  }
+
+  @Override
+  public String cacheClass(Cache cache, ResponseCachingGraphQLInvocation.CachedResponse value) {
+    return CACHE_CLASS;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ResponseCacheKey that = (ResponseCacheKey) o;
+    return queryHash.equals(that.queryHash)
+            && Objects.equals(operationName, that.operationName)
+            && variables.equals(that.variables)
+            && requestContext.equals(that.requestContext);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(queryHash, operationName, variables, requestContext);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[query=" + queryHash + ", operation=" + operationName + ']';
+  }
+
+  // --- internal ---
+
+  /**
+   * Returns the next time the content becomes valid or invalid, or {@link Long#MAX_VALUE}.
+   */
+  private static long validityBoundary(Content content, long now) {
+    long boundary = Long.MAX_VALUE;
+    for (String property : List.of(VALID_FROM, VALID_TO)) {
+      if (content.getType().getDescriptor(property) != null) {
+        Calendar date = content.getDate(property);
+        if (date != null && date.getTimeInMillis() > now) {
+          boundary = Math.min(boundary, date.getTimeInMillis());
+        }
+      }
+    }
+    return boundary;
+  }
+}
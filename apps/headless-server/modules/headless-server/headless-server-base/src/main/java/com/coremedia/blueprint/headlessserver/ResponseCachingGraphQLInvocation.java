@@ -0,0 +1,275 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cache.Cache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import graphql.ExecutionResult;
+import graphql.spring.web.servlet.GraphQLInvocation;
+import graphql.spring.web.servlet.GraphQLInvocationData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Caches the results of persisted queries.
+ * <p>
+ * Only queries which are defined by the persisted query resources are cached.
+ * A result is cached if it has no errors and depends on at least one content,
+ * see {@link ResponseCacheKey} for the invalidation.  Cached responses carry a
+ * strong ETag, so that conditional GET requests are answered with
+ * {@code 304 Not Modified}.
+ * <p>
+ * Besides the query, the operation and the variables, the result depends on
+ * the request: the path, which may contain a view, the query string, the
+ * configured headers, the request attributes which are copied into the
+ * GraphQL context, and, if there are copy-to-context parameters, the request
+ * attributes they read.  All of them are part of the cache key.  Queries whose
+ * request carries such an attribute with a value that is not an immutable
+ * value, e.g. a string, a number or a date, are not cached.
+ */
+public class ResponseCachingGraphQLInvocation implements GraphQLInvocation {
+
+  private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
+
+  private final GraphQLInvocation delegate;
+  private final Cache cache;
+  private final ObjectMapper objectMapper;
+  private final CaasResponseCacheConfigurationProperties configurationProperties;
+  private final Set<String> persistedQueryHashes;
+  private final Set<String> contextAttributeNames;
+  private final boolean copiesToContext;
+
+  /**
+   * @param delegate                executes the queries
+   * @param cache                   stores the results
+   * @param objectMapper            serializes results for the computation of ETags
+   * @param configurationProperties the configuration of the cache
+   * @param persistedQueries        the persisted queries by their ids
+   * @param contextAttributeNames   the names of the request attributes which are copied into the GraphQL context
+   * @param copyToContextParameters the parameters which copy values of the request into the GraphQL context
+   */
+  public ResponseCachingGraphQLInvocation(@NonNull GraphQLInvocation delegate,
+                                          @NonNull Cache cache,
+                                          @NonNull ObjectMapper objectMapper,
+                                          @NonNull CaasResponseCacheConfigurationProperties configurationProperties,
+                                          @NonNull Map<String, String> persistedQueries,
+                                          @NonNull Set<String> contextAttributeNames,
+                                          @NonNull Collection<?> copyToContextParameters) {
+    this.delegate = delegate;
+    this.cache = cache;
+    this.objectMapper = objectMapper;
+    this.configurationProperties = configurationProperties;
+    this.persistedQueryHashes = persistedQueries.values().stream()
+            .map(ResponseCachingGraphQLInvocation::hash)
+            .collect(Collectors.toUnmodifiableSet());
+    this.contextAttributeNames = new TreeSet<>(contextAttributeNames);
+    this.contextAttributeNames.remove(DependencyRecordingDataFetcher.DEPENDENCIES_ATTRIBUTE);
+    this.copiesToContext = !copyToContextParameters.isEmpty();
+  }
+
+  @Override
+  public CompletableFuture<ExecutionResult> invoke(GraphQLInvocationData invocationData, WebRequest webRequest) {
+    String query = invocationData.getQuery();
+    String queryHash = query != null ? hash(query) : null;
+    if (queryHash == null || !persistedQueryHashes.contains(queryHash) || !(webRequest instanceof NativeWebRequest)) {
+      return delegate.invoke(invocationData, webRequest);
+    }
+    NativeWebRequest nativeWebRequest = (NativeWebRequest) webRequest;
+    List<Object> requestContext = requestContext(nativeWebRequest);
+    if (requestContext == null) {
+      return delegate.invoke(invocationData, webRequest);
+    }
+    ResponseCacheKey key = new ResponseCacheKey(
+            queryHash,
+            invocationData.getOperationName(),
+            variables(invocationData),
+            requestContext,
+            configurationProperties.getTimeToLive());
+    try {
+      CachedResponse response = ResponseCacheKey.get(cache, key, dependencies -> execute(invocationData, nativeWebRequest, dependencies));
+      return CompletableFuture.completedFuture(respond(response, nativeWebRequest));
+    } catch (CompletionException e) {
+      return CompletableFuture.failedFuture(e.getCause());
+    }
+  }
+
+  // --- internal ---
+
+  /**
+   * Execute the query on the current thread, which evaluates the {@link ResponseCacheKey}.
+   */
+  @NonNull
+  private CachedResponse execute(@NonNull GraphQLInvocationData invocationData,
+                                 @NonNull NativeWebRequest webRequest,
+                                 @NonNull DependencyRecordingDataFetcher.Dependencies dependencies) {
+    webRequest.setAttribute(DependencyRecordingDataFetcher.DEPENDENCIES_ATTRIBUTE, dependencies, RequestAttributes.SCOPE_REQUEST);
+    try {
+      ExecutionResult result = delegate.invoke(invocationData, webRequest).join();
+      return new CachedResponse(result, result.getErrors().isEmpty() ? etag(result) : null);
+    } finally {
+      webRequest.removeAttribute(DependencyRecordingDataFetcher.DEPENDENCIES_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+  }
+
+  @NonNull
+  private static Map<String, Object> variables(@NonNull GraphQLInvocationData invocationData) {
+    Map<String, Object> variables = invocationData.getVariables();
+    return variables != null ? Collections.unmodifiableMap(new HashMap<>(variables)) : Map.of();
+  }
+
+  /**
+   * The parts of the request besides the query which select the result.
+   *
+   * @return the request context, or null if the result cannot be cached for the request
+   */
+  @Nullable
+  private List<Object> requestContext(@NonNull NativeWebRequest webRequest) {
+    HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+    if (request == null) {
+      return null;
+    }
+    List<Object> requestContext = new ArrayList<>();
+    requestContext.add(request.getRequestURI());
+    requestContext.add(request.getQueryString());
+    for (String header : configurationProperties.getVaryByHeaders()) {
+      requestContext.add(webRequest.getHeader(header));
+    }
+    Map<String, Object> attributes = new TreeMap<>();
+    Iterable<String> attributeNames = copiesToContext ? Collections.list(request.getAttributeNames()) : contextAttributeNames;
+    for (String name : attributeNames) {
+      Object value = request.getAttribute(name);
+      if (value == null || DependencyRecordingDataFetcher.DEPENDENCIES_ATTRIBUTE.equals(name)) {
+        continue;
+      }
+      if (isValue(value)) {
+        attributes.put(name, value instanceof Date ? ((Date) value).getTime() : value);
+      } else if (contextAttributeNames.contains(name)) {
+        LOG.debug("Request attribute {} is copied into the GraphQL context, but no value, query is not cached.", name);
+        return null;
+      }
+      // other attributes, e.g. of the servlet container or of Spring, are ignored
+    }
+    requestContext.add(attributes);
+    return Collections.unmodifiableList(requestContext);
+  }
+
+  /**
+   * Whether the object is an immutable value with a proper equals, which can be part of a cache key.
+   */
+  private static boolean isValue(@NonNull Object value) {
+    return value instanceof String
+            || value instanceof Number
+            || value instanceof Boolean
+            || value instanceof Character
+            || value instanceof Enum
+            || value instanceof TemporalAccessor
+            || value instanceof Date
+            || value instanceof Locale;
+  }
+
+  @NonNull
+  private static ExecutionResult respond(@NonNull CachedResponse response, @NonNull NativeWebRequest webRequest) {
+    HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+    HttpServletResponse servletResponse = webRequest.getNativeResponse(HttpServletResponse.class);
+    if (response.getEtag() != null && request != null && servletResponse != null && !servletResponse.isCommitted()) {
+      servletResponse.setHeader(HttpHeaders.ETAG, response.getEtag());
+      if (isGetOrHead(request) && matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), response.getEtag())) {
+        // the container does not send a body with a 304 response
+        servletResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      }
+    }
+    return response.getResult();
+  }
+
+  private static boolean isGetOrHead(@NonNull HttpServletRequest request) {
+    return HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+  }
+
+  private static boolean matches(@Nullable String ifNoneMatch, @NonNull String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String trimmed = candidate.trim();
+      if (trimmed.startsWith("W/")) {
+        trimmed = trimmed.substring(2);
+      }
+      if ("*".equals(trimmed) || etag.equals(trimmed)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  private String etag(@NonNull ExecutionResult result) {
+    try {
+      return "\"0" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(result.toSpecification())) + '"';
+    } catch (JsonProcessingException e) {
+      LOG.warn("Cannot serialize query result, result is not cached: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  @NonNull
+  private static String hash(@NonNull String query) {
+    return DigestUtils.md5DigestAsHex(query.getBytes(UTF_8));
+  }
+
+  // --- inner classes ---
+
+  /**
+   * A cached query result with its ETag.
+   */
+  public static final class CachedResponse {
+
+    private final ExecutionResult result;
+    private final String etag;
+
+    /**
+     * @param etag the ETag, or null if the result is not cacheable
+     */
+    CachedResponse(@NonNull ExecutionResult result, @Nullable String etag) {
+      this.result = result;
+      this.etag = etag;
+    }
+
+    @NonNull
+    public ExecutionResult getResult() {
+      return result;
+    }
+
+    @Nullable
+    public String getEtag() {
+      return etag;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cap.content.Content;
+import graphql.schema.DataFetchingEnvironment;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.DataLoaderRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Class under Test: {@link ContentPrefetchingDataFetcher}.
+ */
+class ContentPrefetchingDataFetcherTest {
+
+  private final List<List<Content>> batches = new ArrayList<>();
+  private final ContentPrefetchingGraphQLInvocation invocation = new ContentPrefetchingGraphQLInvocation(
+          registry -> null,
+          new DataLoaderRegistry(),
+          keys -> {
+            batches.add(List.copyOf(keys));
+            return CompletableFuture.completedFuture(keys);
+          },
+          DataLoaderOptions.newOptions().setCachingEnabled(false));
+  private final DataLoaderRegistry registry = invocation.createDataLoaderRegistry();
+  private final DataLoader<Content, Content> dataLoader = registry.getDataLoader(ContentPrefetchingDataFetcher.DATA_LOADER_NAME);
+
+  @Test
+  void contentsOfOneLevelAreLoadedInOneBatch() throws Exception {
+    Content content1 = mock(Content.class);
+    Content content2 = mock(Content.class);
+    Content content3 = mock(Content.class);
+
+    Object single = new ContentPrefetchingDataFetcher(environment -> content1).get(environment());
+    Object list = new ContentPrefetchingDataFetcher(environment -> List.of(content2, content3)).get(environment());
+    registry.dispatchAll();
+
+    assertThat(batches).containsExactly(List.of(content1, content2, content3));
+    assertThat(((CompletableFuture<?>) single).join()).isSameAs(content1);
+    assertThat(((CompletableFuture<?>) list).join()).isEqualTo(List.of(content2, content3));
+  }
+
+  @Test
+  void otherResultsAreReturnedUnchanged() throws Exception {
+    List<Object> mixed = List.of(mock(Content.class), "text");
+
+    assertThat(new ContentPrefetchingDataFetcher(environment -> "text").get(environment())).isEqualTo("text");
+    assertThat(new ContentPrefetchingDataFetcher(environment -> mixed).get(environment())).isSameAs(mixed);
+    assertThat(new ContentPrefetchingDataFetcher(environment -> List.of()).get(environment())).isEqualTo(List.of());
+    assertThat(dataLoader.dispatchDepth()).isZero();
+  }
+
+  @Test
+  void contentsAreReturnedUnchangedWithoutDataLoader() throws Exception {
+    Content content = mock(Content.class);
+
+    assertThat(new ContentPrefetchingDataFetcher(environment -> content).get(mock(DataFetchingEnvironment.class))).isSameAs(content);
+  }
+
+  @Test
+  void everyQueryHasItsOwnDataLoader() {
+    assertThat(invocation.createDataLoaderRegistry().getDataLoader(ContentPrefetchingDataFetcher.DATA_LOADER_NAME))
+            .isNotNull()
+            .isNotSameAs(dataLoader);
+  }
+
+  private DataFetchingEnvironment environment() {
+    DataFetchingEnvironment environment = mock(DataFetchingEnvironment.class);
+    when(environment.getDataLoader(ContentPrefetchingDataFetcher.DATA_LOADER_NAME)).thenReturn(dataLoader);
+    return environment;
+  }
+}
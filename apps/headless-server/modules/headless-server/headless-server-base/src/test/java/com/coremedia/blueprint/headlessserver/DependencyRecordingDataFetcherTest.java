@@ -0,0 +1,64 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.cap.content.Content;
+import graphql.GraphQLContext;
+import graphql.schema.DataFetchingEnvironment;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Class under Test: {@link DependencyRecordingDataFetcher}.
+ */
+class DependencyRecordingDataFetcherTest {
+
+  @Test
+  void contentSourcesAreRecorded() {
+    Content content = mock(Content.class);
+    DependencyRecordingDataFetcher.Dependencies dependencies = new DependencyRecordingDataFetcher.Dependencies();
+    DataFetchingEnvironment environment = environment(content, GraphQLContext.newContext()
+            .of(DependencyRecordingDataFetcher.DEPENDENCIES_ATTRIBUTE, dependencies)
+            .build());
+
+    Object result = new Cache("test").get(new CacheKey<Object>() {
+      @Override
+      public Object evaluate(Cache cache) throws Exception {
+        return new DependencyRecordingDataFetcher(env -> "title").get(environment);
+      }
+    });
+
+    assertThat(result).isEqualTo("title");
+    assertThat(dependencies.getContents()).containsExactly(content);
+    assertThat(dependencies.isComplete()).isTrue();
+  }
+
+  @Test
+  void fieldsResolvedOutsideOfTheCacheAreIncomplete() throws Exception {
+    DependencyRecordingDataFetcher.Dependencies dependencies = new DependencyRecordingDataFetcher.Dependencies();
+    DataFetchingEnvironment environment = environment("source", GraphQLContext.newContext()
+            .of(DependencyRecordingDataFetcher.DEPENDENCIES_ATTRIBUTE, dependencies)
+            .build());
+
+    new DependencyRecordingDataFetcher(env -> "title").get(environment);
+
+    assertThat(dependencies.isComplete()).isFalse();
+  }
+
+  @Test
+  void queriesWithoutDependenciesAreNotAffected() throws Exception {
+    DataFetchingEnvironment environment = environment(mock(Content.class), GraphQLContext.newContext().build());
+
+    assertThat(new DependencyRecordingDataFetcher(env -> "title").get(environment)).isEqualTo("title");
+  }
+
+  private static DataFetchingEnvironment environment(Object source, GraphQLContext context) {
+    DataFetchingEnvironment environment = mock(DataFetchingEnvironment.class);
+    when(environment.getSource()).thenReturn(source);
+    when(environment.getGraphQlContext()).thenReturn(context);
+    return environment;
+  }
+}
@@ -0,0 +1,113 @@
+package com.coremedia.blueprint.headlessserver;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cap.content.Content;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.spring.web.servlet.GraphQLInvocation;
+import graphql.spring.web.servlet.GraphQLInvocationData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Class under Test: {@link ResponseCachingGraphQLInvocation}.
+ */
+class ResponseCachingGraphQLInvocationTest {
+  private static final String QUERY = "query Article($id: String!) { content { article(id: $id) { title } } }";
+
+  private final AtomicInteger executions = new AtomicInteger();
+  private ResponseCachingGraphQLInvocation testling;
+
+  @BeforeEach
+  void setUp() {
+    Content content = mock(Content.class, RETURNS_DEEP_STUBS);
+    GraphQLInvocation delegate = (invocationData, webRequest) -> {
+      executions.incrementAndGet();
+      DependencyRecordingDataFetcher.Dependencies dependencies = (DependencyRecordingDataFetcher.Dependencies)
+              webRequest.getAttribute(DependencyRecordingDataFetcher.DEPENDENCIES_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+      if (dependencies != null) {
+        dependencies.add(content);
+      }
+      ExecutionResult result = new ExecutionResultImpl(Map.of("title", "Title " + webRequest.getParameter("v")), List.of());
+      return CompletableFuture.completedFuture(result);
+    };
+    Cache cache = new Cache("test");
+    cache.setCapacity(ResponseCacheKey.CACHE_CLASS, 100);
+    testling = new ResponseCachingGraphQLInvocation(delegate, cache, new ObjectMapper(),
+            new CaasResponseCacheConfigurationProperties(), Map.of("article", QUERY), Set.of("tenant"), List.of());
+  }
+
+  @Test
+  void conditionalRequestIsAnsweredWithNotModified() {
+    MockHttpServletResponse first = new MockHttpServletResponse();
+    testling.invoke(invocationData(), new ServletWebRequest(request(), first)).join();
+    String etag = first.getHeader(HttpHeaders.ETAG);
+    assertThat(etag).isNotNull();
+    assertThat(first.getStatus()).isEqualTo(200);
+
+    MockHttpServletRequest conditionalRequest = request();
+    conditionalRequest.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+    MockHttpServletResponse second = new MockHttpServletResponse();
+    testling.invoke(invocationData(), new ServletWebRequest(conditionalRequest, second)).join();
+
+    assertThat(second.getStatus()).isEqualTo(304);
+    assertThat(second.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+    assertThat(executions).hasValue(1);
+  }
+
+  @Test
+  void queryStringAndContextAttributesArePartOfTheKey() {
+    testling.invoke(invocationData(), new ServletWebRequest(request(), new MockHttpServletResponse())).join();
+
+    MockHttpServletRequest otherQueryString = request();
+    otherQueryString.setQueryString("v=2");
+    otherQueryString.setParameter("v", "2");
+    ExecutionResult result = testling.invoke(invocationData(), new ServletWebRequest(otherQueryString, new MockHttpServletResponse())).join();
+    assertThat(result.<Map<String, Object>>getData()).containsEntry("title", "Title 2");
+
+    MockHttpServletRequest otherTenant = request();
+    otherTenant.setAttribute("tenant", "other");
+    testling.invoke(invocationData(), new ServletWebRequest(otherTenant, new MockHttpServletResponse())).join();
+
+    assertThat(executions).hasValue(3);
+  }
+
+  @Test
+  void contextAttributesWithoutValueAreNotCached() {
+    for (int i = 0; i < 2; i++) {
+      MockHttpServletRequest request = request();
+      request.setAttribute("tenant", new Object());
+      testling.invoke(invocationData(), new ServletWebRequest(request, new MockHttpServletResponse())).join();
+    }
+
+    assertThat(executions).hasValue(2);
+  }
+
+  private static GraphQLInvocationData invocationData() {
+    return new GraphQLInvocationData(QUERY, "Article", Map.of("id", "42"));
+  }
+
+  private static MockHttpServletRequest request() {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/graphql");
+    request.setQueryString("v=1");
+    request.setParameter("v", "1");
+    request.setAttribute("tenant", "default");
+    return request;
+  }
+}
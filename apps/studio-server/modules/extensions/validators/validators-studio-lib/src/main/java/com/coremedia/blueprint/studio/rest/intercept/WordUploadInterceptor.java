@@ -20,39 +20,50 @@ import com.coremedia.rest.cap.intercept.ContentWriteInterceptorBase;
 import com.coremedia.rest.cap.intercept.ContentWriteRequest;
 import com.coremedia.rest.cap.intercept.impl.ContentWriteRequestImpl;
 import com.coremedia.rest.validation.impl.IssuesImpl;
-import org.apache.commons.io.IOUtils;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.hwpf.HWPFDocument;
-import org.apache.poi.hwpf.usermodel.Picture;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFPictureData;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.extractor.ParsingEmbeddedDocumentExtractor;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.Office;
+import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
-import org.apache.tika.sax.BodyContentHandler;
-import org.apache.tika.sax.ContentHandlerDecorator;
+import org.apache.tika.sax.TeeContentHandler;
 import org.apache.tika.sax.XHTMLContentHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
-import javax.activation.MimeType;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 import static java.util.Objects.requireNonNull;
@@ -66,10 +77,16 @@ import static java.util.Objects.requireNonNull;
  * converted to CoreMedia richtext.
  * <p>
  * If you want to tweak these conversions in detail, you have to modify the DocContentHandler class for this.
+ * <p>
+ * The number of uploads and failures, the extraction time and the maximum
+ * number of bytes allocated by a single extraction are provided as metrics
+ * {@value #METRIC_PREFIX}*.
  */
-public class WordUploadInterceptor extends ContentWriteInterceptorBase {
+public class WordUploadInterceptor extends ContentWriteInterceptorBase implements MeterBinder {
   private static final Logger LOG = LoggerFactory.getLogger(WordUploadInterceptor.class);
 
+  static final String METRIC_PREFIX = "studio.word.upload.";
+
   private static final String DOC_MIMETYPE = "application/msword";
   static final String DOCX_MIMETYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
   private static final String OFFICE_OPEN_XML_MIMETYPE = "application/x-tika-ooxml";
@@ -93,6 +110,11 @@ public class WordUploadInterceptor extends ContentWriteInterceptorBase {
   private final TaxonomyResolver taxonomyResolver;
   private final List<ContentWriteInterceptor> contentWriteInterceptors;
 
+  private final LongAdder uploads = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder extractionMillis = new LongAdder();
+  private final LongAccumulator maxAllocatedBytes = new LongAccumulator(Math::max, -1);
+
   public WordUploadInterceptor(ContentRepository repository, SitesService sitesService, TaxonomyResolver taxonomyResolver, List<ContentWriteInterceptor> contentWriteInterceptors) {
     super();
     this.repository = repository;
@@ -111,74 +133,140 @@ public class WordUploadInterceptor extends ContentWriteInterceptorBase {
       properties.remove(DATA_PROPERTY);
       if (value instanceof Blob) {
         Blob blob = (Blob) value;
+        uploads.increment();
+        long start = System.nanoTime();
         try {
-          extract(blob.getInputStream(), blob.getContentType(), request.getName(), request);
+          extract(blob, request.getName(), request);
         } catch (Exception e) {
+          failures.increment();
           LOG.error("Error while extracting word file", e);
+        } finally {
+          extractionMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         }
       }
     }
   }
 
-  private void extract(InputStream in, MimeType contentType, String defaultTitle, ContentWriteRequest request) throws IOException, TikaException, SAXException {
-    byte[] bytes = IOUtils.toByteArray(in);
+
+  // --- MeterBinder ------------------------------------------------
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(METRIC_PREFIX + "failures", failures, LongAdder::sum)
+            .description("The number of uploaded Word documents which could not be extracted")
+            .register(registry);
+    FunctionTimer.builder(METRIC_PREFIX + "extractions", this,
+                    WordUploadInterceptor::getUploads, WordUploadInterceptor::getExtractionMillis, TimeUnit.MILLISECONDS)
+            .description("The uploaded Word documents and the time of their extraction, including failed ones")
+            .register(registry);
+    Gauge.builder(METRIC_PREFIX + "max.allocated", maxAllocatedBytes, LongAccumulator::get)
+            .description("The maximum number of bytes allocated by the extraction of a single document, "
+                    + "or -1 if the JVM does not measure allocations")
+            .baseUnit("bytes")
+            .register(registry);
+  }
+
+  private long getUploads() {
+    return uploads.sum();
+  }
+
+  private long getExtractionMillis() {
+    return extractionMillis.sum();
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  /**
+   * Extracts title, pictures, detail text and metadata of the document in a
+   * single parse.
+   * <p>
+   * The upload is spooled to a temporary file, so that the parsers can read
+   * it randomly without holding it in memory, and the embedded images are
+   * spooled to temporary files, too, until the pictures are created.
+   */
+  private void extract(Blob upload, String defaultTitle, ContentWriteRequest request) throws IOException, TikaException, SAXException {
+    long start = System.nanoTime();
+    long allocatedBefore = allocatedBytes();
 
     Optional.of(sitesService.getContentSiteAspect(request.getParent()))
             .map(ContentObjectSiteAspect::getSite)
             .map(Site::getLocale)
             .ifPresent(value -> request.getProperties().put("locale", value.toLanguageTag()));
 
-    // extract title
-    DocTitleHandler titleExtractor = new DocTitleHandler(defaultTitle);
-    extractFromContentHandler(bytes, titleExtractor);
-    String title = titleExtractor.getTitle();
-    request.getProperties().put("title", title);
-
+    Path workDirectory = Files.createTempDirectory("word-upload-");
+    try {
+      Path document = workDirectory.resolve("document");
+      try (InputStream in = upload.getInputStream()) {
+        Files.copy(in, document);
+      }
+      long spooled = System.nanoTime();
+
+      Metadata metadata = new Metadata();
+      DocTitleHandler titleExtractor = new DocTitleHandler(defaultTitle);
+      Map<String, Content> createdImages = new LinkedHashMap<>();
+      // the pictures are created after parsing, the detail text resolves them lazily
+      DocContentHandler wordextractor = new DocContentHandler(repository, createdImages);
+      ParseContext context = new ParseContext();
+      EmbeddedImageExtractor images = new EmbeddedImageExtractor(context, workDirectory);
+      context.set(EmbeddedDocumentExtractor.class, images);
+      try (TikaInputStream in = TikaInputStream.get(document)) {
+        Parser parser = new AutoDetectParser(tikaConfig);
+        parser.parse(in, new XHTMLContentHandler(new TeeContentHandler(titleExtractor, wordextractor), metadata), metadata, context);
+      }
+      long parsed = System.nanoTime();
 
-    //extract pictures
-    Map<String, Blob> images = new HashMap<>();
-    if (contentType.getBaseType().equals(DOC_MIMETYPE)) {
-      images = extractDocImages(bytes);
-    } else if (contentType.getBaseType().equals(DOCX_MIMETYPE) || contentType.getBaseType().equals(OFFICE_OPEN_XML_MIMETYPE)) {
-      images = extractDocxImages(bytes);
-    }
+      String title = titleExtractor.getTitle();
+      request.getProperties().put("title", title);
 
-    Map<String, Content> createdImages = images.entrySet().stream()
-            .collect(Collectors.toMap(Map.Entry::getKey, pic -> createPicture(request.getParent(), title, pic.getKey(), pic.getValue())));
-
-    request.getProperties().put(PICTURES, createdImages.values().stream().collect(Collectors.toUnmodifiableList()));
-
-    // extract paragraphs
-    DocContentHandler wordextractor = new DocContentHandler(repository, createdImages);
-    extractFromContentHandler(bytes, wordextractor);
-    request.getProperties().put("detailText", wordextractor.getMarkup());
-
-
-    // extract metadata
-    Metadata metadata = extractMetadata(bytes);
-
-    // Add tags
-    Optional<String[]> extractedKeywords = Optional.ofNullable(metadata.get(Office.KEYWORDS)).map(s -> s.split(","));
-    if (extractedKeywords.isPresent() && taxonomyResolver != null) {
-      Collection<Taxonomy> rootTaxonomies = taxonomyResolver.getTaxonomies();
-      for (Taxonomy<Content> rootTaxonomy : rootTaxonomies) {
-        switch (rootTaxonomy.getTaxonomyId()) {
-          case SUBJECT_TAXONOMY_ID:
-            Collection<Content> subjectTags = findTagsMatchingKeywords(rootTaxonomy, extractedKeywords.get());
-            request.getProperties().put(SUBJECT_TAXONOMY, subjectTags);
-            break;
-          case LOCATION_TAXONOMY_ID:
-            Collection<Content> locationTags = findTagsMatchingKeywords(rootTaxonomy, extractedKeywords.get());
-            request.getProperties().put(LOCATION_TAXONOMY, locationTags);
-            break;
-          default:
-            break;
+      //create pictures
+      BlobService blobService = repository.getConnection().getBlobService();
+      for (Map.Entry<String, EmbeddedImage> image : images.getImages().entrySet()) {
+        Blob imageData;
+        try (InputStream in = Files.newInputStream(image.getValue().file)) {
+          imageData = blobService.fromInputStream(in, image.getValue().mimeType);
+        }
+        createdImages.put(image.getKey(), createPicture(request.getParent(), title, image.getKey(), imageData));
+      }
+      request.getProperties().put(PICTURES, List.copyOf(createdImages.values()));
+      long picturesCreated = System.nanoTime();
+
+      // extract paragraphs
+      request.getProperties().put("detailText", wordextractor.getMarkup());
+
+      // Add tags
+      Optional<String[]> extractedKeywords = Optional.ofNullable(metadata.get(Office.KEYWORDS)).map(s -> s.split(","));
+      if (extractedKeywords.isPresent() && taxonomyResolver != null) {
+        Collection<Taxonomy> rootTaxonomies = taxonomyResolver.getTaxonomies();
+        for (Taxonomy<Content> rootTaxonomy : rootTaxonomies) {
+          switch (rootTaxonomy.getTaxonomyId()) {
+            case SUBJECT_TAXONOMY_ID:
+              Collection<Content> subjectTags = findTagsMatchingKeywords(rootTaxonomy, extractedKeywords.get());
+              request.getProperties().put(SUBJECT_TAXONOMY, subjectTags);
+              break;
+            case LOCATION_TAXONOMY_ID:
+              Collection<Content> locationTags = findTagsMatchingKeywords(rootTaxonomy, extractedKeywords.get());
+              request.getProperties().put(LOCATION_TAXONOMY, locationTags);
+              break;
+            default:
+              break;
+          }
         }
       }
-    }
 
-    // Extract authors
-    request.getProperties().put(AUTHORS, findMatchingAuthors(metadata.getValues(Office.AUTHOR), request));
+      // Extract authors
+      request.getProperties().put(AUTHORS, findMatchingAuthors(metadata.getValues(Office.AUTHOR), request));
+
+      long end = System.nanoTime();
+      long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+      maxAllocatedBytes.accumulate(allocated);
+      LOG.info("Extracted word file {} ({} bytes, {} pictures) in {} ms: spooled in {} ms, parsed in {} ms, pictures created in {} ms, {} bytes allocated",
+              request.getName(), Files.size(document), createdImages.size(), TimeUnit.NANOSECONDS.toMillis(end - start),
+              TimeUnit.NANOSECONDS.toMillis(spooled - start), TimeUnit.NANOSECONDS.toMillis(parsed - spooled),
+              TimeUnit.NANOSECONDS.toMillis(picturesCreated - parsed), allocated);
+    } finally {
+      FileUtils.deleteQuietly(workDirectory.toFile());
+    }
   }
 
   private List<Content> findMatchingAuthors(String[] extractedAuthors, ContentWriteRequest context) {
@@ -242,89 +330,24 @@ public class WordUploadInterceptor extends ContentWriteInterceptorBase {
             .collect(Collectors.toUnmodifiableList());
   }
 
-  private void extractFromContentHandler(byte[] bytes, ContentHandlerDecorator resolver) throws IOException, SAXException, TikaException {
-    org.apache.tika.parser.Parser parser = new AutoDetectParser(tikaConfig);
-    Metadata metadata = new Metadata();
-    XHTMLContentHandler handler = new XHTMLContentHandler(resolver, metadata);
-    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-    ParseContext context = new ParseContext();
-    parser.parse(byteArrayInputStream, handler, metadata, context);
-  }
-
-  /**
-   * Extract metadata from byte array.
-   */
-  public static Metadata extractMetadata(byte[] bytes) throws IOException, SAXException, TikaException {
-    Parser parser = new AutoDetectParser();
-    ContentHandler handler = new BodyContentHandler();
-    Metadata metadata = new Metadata();
-    ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
-    ParseContext context = new ParseContext();
-    parser.parse(stream, handler, metadata, context);
-    return metadata;
-  }
-
-  private Map<String, Blob> extractDocxImages(byte[] bytes) {
-    Map<String, Blob> result = new HashMap<>();
-    try {
-      ByteArrayInputStream byteArrayInputStream;
-      byteArrayInputStream = new ByteArrayInputStream(bytes);
-      XWPFDocument doc = new XWPFDocument(byteArrayInputStream);
-      List<XWPFPictureData> allPictures = doc.getAllPictures();
-      BlobService blobService = repository.getConnection().getBlobService();
-      for (XWPFPictureData p : allPictures) {
-        String mimeType = p.getPackagePart().getContentType();
-        if (isValidMimeType(mimeType)) {
-          byte[] rawContent = p.getData();
-          Blob blob = blobService.fromBytes(rawContent, mimeType);
-          result.put(p.getFileName(), blob);
-        }
-      }
-    } catch (Exception e) {
-      LOG.warn("Failed to extract images: {}", e.getMessage());
-    }
-    return result;
-  }
-
-  private Map<String, Blob> extractDocImages(byte[] bytes) {
-    Map<String, Blob> result = new HashMap<>();
-    try {
-      ByteArrayInputStream byteArrayInputStream;
-      byteArrayInputStream = new ByteArrayInputStream(bytes);
-      HWPFDocument doc = new HWPFDocument(byteArrayInputStream);
-      List<Picture> allPictures = doc.getPicturesTable().getAllPictures();
-      BlobService blobService = repository.getConnection().getBlobService();
-      for (Picture p : allPictures) {
-        String mimeType = p.getMimeType();
-        if (isValidMimeType(mimeType)) {
-          byte[] rawContent = p.getRawContent();
-          Blob blob = blobService.fromBytes(rawContent, mimeType);
-
-          String name = null;
-          try {
-            name = p.getDescription();
-          } catch (Exception e) {
-            //ignore
-          }
-          result.put(name, blob);
-        }
-      }
-    } catch (Exception e) {
-      LOG.warn("Failed to extract images: {}", e.getMessage());
-    }
-    return result;
-  }
-
   /**
    * Not all image can be processed by the Studio, so filter them
    *
    * @param mimeType the mime type of the image
    * @return true if the image should be imported
    */
-  private boolean isValidMimeType(String mimeType) {
+  private static boolean isValidMimeType(String mimeType) {
     return !INVALID_IMAGE_MIME_TYPES.contains(mimeType);
   }
 
+  private static long allocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
 
   /**
    * Ensures that the file with the given name not exists yet.
@@ -348,4 +371,68 @@ public class WordUploadInterceptor extends ContentWriteInterceptorBase {
     return uniqueFilename;
   }
 
+
+  // --- inner classes ----------------------------------------------
+
+  /**
+   * Spools the images which are embedded in the document to temporary files,
+   * while the document is parsed.  Other embedded documents are parsed as
+   * before.
+   */
+  private class EmbeddedImageExtractor implements EmbeddedDocumentExtractor {
+    private final EmbeddedDocumentExtractor delegate;
+    private final Path directory;
+    private final Map<String, EmbeddedImage> images = new LinkedHashMap<>();
+
+    EmbeddedImageExtractor(ParseContext context, Path directory) {
+      this.delegate = new ParsingEmbeddedDocumentExtractor(context);
+      this.directory = directory;
+    }
+
+    Map<String, EmbeddedImage> getImages() {
+      return images;
+    }
+
+    @Override
+    public boolean shouldParseEmbedded(Metadata metadata) {
+      return true;
+    }
+
+    @Override
+    public void parseEmbedded(InputStream stream, ContentHandler handler, Metadata metadata, boolean outputHtml) throws SAXException, IOException {
+      String mimeType = metadata.get(Metadata.CONTENT_TYPE);
+      Path file = null;
+      if (mimeType == null || mimeType.startsWith("image/")) {
+        file = Files.createTempFile(directory, "image-", ".tmp");
+        Files.copy(stream, file, StandardCopyOption.REPLACE_EXISTING);
+        if (mimeType == null) {
+          try (TikaInputStream in = TikaInputStream.get(file)) {
+            mimeType = tikaConfig.getDetector().detect(in, metadata).toString();
+          }
+        }
+      }
+      if (file == null || !mimeType.startsWith("image/")) {
+        if (file == null) {
+          delegate.parseEmbedded(stream, handler, metadata, outputHtml);
+        } else {
+          try (TikaInputStream in = TikaInputStream.get(file)) {
+            delegate.parseEmbedded(in, handler, metadata, outputHtml);
+          }
+        }
+      } else if (isValidMimeType(mimeType)) {
+        String name = metadata.get(TikaCoreProperties.RESOURCE_NAME_KEY);
+        images.put(name != null ? name : "image" + (images.size() + 1), new EmbeddedImage(file, mimeType));
+      }
+    }
+  }
+
+  private static final class EmbeddedImage {
+    private final Path file;
+    private final String mimeType;
+
+    private EmbeddedImage(Path file, String mimeType) {
+      this.file = file;
+      this.mimeType = mimeType;
+    }
+  }
 }
@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Stack;
+import java.util.regex.Pattern;
 
 
 public class DocContentHandler extends ContentHandlerDecorator {
@@ -28,12 +29,31 @@ public class DocContentHandler extends ContentHandlerDecorator {
   private static final String RICHTEXT_START = "<div xmlns=\"http://www.coremedia.com/2003/richtext-1.0\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">";
   private static final String RICHTEXT_END = "</div>";
 
+  // Delimits the names of images in the markup until the images are resolved.
+  // The character is invalid in XML, so it is removed from the text.
+  private static final char IMAGE_DELIMITER = '\u0000';
+
+  // XML 1.0
+  // #x9 | #xA | #xD | [#x20-#xD7FF] | [#xE000-#xFFFD] | [#x10000-#x10FFFF]
+  private static final Pattern INVALID_XML_CHARS = Pattern.compile("[^"
+          + "\u0009\r\n"
+          + "\u0020-\uD7FF"
+          + "\uE000-\uFFFD"
+          + "\ud800\udc00-\udbff\udfff"
+          + "]");
+  private static final Pattern VERTICAL_TAB_OR_NEWLINE = Pattern.compile("[\u000B\n]");
+
   private final StringBuilder markup = new StringBuilder();
   private final Stack<String> openedTags = new Stack<>();
   private final Map<String, String> xhtmlToRichtext = new HashMap<>();
 
   private final List<String> ignoreTags = Arrays.asList("html", "head", "meta", "title", "body", "s");
 
+  /**
+   * @param images the pictures by the names of the embedded images, they are
+   *               resolved in {@link #getMarkup()}, so they may be added
+   *               after parsing
+   */
   public DocContentHandler(ContentRepository contentRepository, Map<String, Content> images) {
     // mapping of xhtml elements to Richtext elements
     // values are stored comma separated in the format: "tag-name,class-attribute"
@@ -69,7 +89,7 @@ public class DocContentHandler extends ContentHandlerDecorator {
   }
 
   public Markup getMarkup() {
-    return MarkupFactory.fromString(markup.toString());
+    return MarkupFactory.fromString(resolveImages(markup));
   }
 
   @Override
@@ -88,13 +108,11 @@ public class DocContentHandler extends ContentHandlerDecorator {
     }
 
     if (tagAndStyle.equals("img")) {
-      Optional<String> imgStartTag = generateImgStartTag(atts);
-      if (imgStartTag.isPresent()) {
-        markup.append(imgStartTag.get());
-        openedTags.push("img");
-      } else {
-        openedTags.push("");
+      Optional<String> imageName = imageName(atts);
+      if (imageName.isPresent()) {
+        markup.append(IMAGE_DELIMITER).append(imageName.get()).append(IMAGE_DELIMITER);
       }
+      openedTags.push("");
     } else if (tagAndStyle.equals("a")) {
       Optional<String> linkStartTag = generateLinkStartTag(atts);
       if (linkStartTag.isPresent()) {
@@ -143,14 +161,12 @@ public class DocContentHandler extends ContentHandlerDecorator {
 
   @Override
   public void characters(char[] ch, int start, int length) {
-    String s = new String(ch);
-
     //ignore text nodes until we start generating richtext elements
-    if (!markup.toString().equals(RICHTEXT_START)) {
-      String xml = cleanInvalidXmlChars(s, "");
-      xml = xml.replaceAll("&", "&amp;");
-      xml = xml.replaceAll("<", "&lt;");
-      xml = xml.replaceAll(">", "&gt;");
+    if (markup.length() != RICHTEXT_START.length()) {
+      String xml = cleanInvalidXmlChars(new String(ch, start, length), "");
+      xml = xml.replace("&", "&amp;");
+      xml = xml.replace("<", "&lt;");
+      xml = xml.replace(">", "&gt;");
 
       //there may be text from graphs on root level, even if this breaks the data, the XML remains valid
       if(openedTags.isEmpty()) {
@@ -197,20 +213,48 @@ public class DocContentHandler extends ContentHandlerDecorator {
     return Optional.empty();
   }
 
-  private Optional<String> generateImgStartTag(Attributes atts) {
+  private static Optional<String> imageName(Attributes atts) {
     if (StringUtils.isNotBlank(atts.getValue("src"))) {
       String image = atts.getValue("src");
       if (image.startsWith("embedded:")) {
         image = image.substring("embedded:".length());
       }
-      if (this.images.containsKey(image)) {
-        String imageBlobPropertyId = IdHelper.formatBlobId(this.images.get(image).getId(), "data");
-        return Optional.of("<img alt=\"\" xlink:actuate=\"onLoad\" xlink:show=\"embed\" xlink:type=\"simple\" xlink:href=\"" + imageBlobPropertyId + "\">");
-      }
+      return Optional.of(cleanInvalidXmlChars(image, ""));
     }
     return Optional.empty();
   }
 
+  /**
+   * Replace the image names in the markup with the images, or remove them if
+   * there is no such image.
+   */
+  private String resolveImages(CharSequence markupWithImageNames) {
+    StringBuilder result = new StringBuilder(markupWithImageNames.length());
+    int from = 0;
+    for (int start = indexOf(markupWithImageNames, from); start >= 0; start = indexOf(markupWithImageNames, from)) {
+      int end = indexOf(markupWithImageNames, start + 1);
+      result.append(markupWithImageNames, from, start);
+      Content image = images.get(markupWithImageNames.subSequence(start + 1, end).toString());
+      if (image != null) {
+        String imageBlobPropertyId = IdHelper.formatBlobId(image.getId(), "data");
+        result.append("<img alt=\"\" xlink:actuate=\"onLoad\" xlink:show=\"embed\" xlink:type=\"simple\" xlink:href=\"")
+                .append(imageBlobPropertyId)
+                .append("\"></img>");
+      }
+      from = end + 1;
+    }
+    return result.append(markupWithImageNames, from, markupWithImageNames.length()).toString();
+  }
+
+  private static int indexOf(CharSequence text, int from) {
+    for (int i = from; i < text.length(); i++) {
+      if (text.charAt(i) == IMAGE_DELIMITER) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   private String generateRichTextStartTag(String mappedTag) {
     if (mappedTag.length() > 0) {
       String[] split = mappedTag.split(",");
@@ -240,17 +284,8 @@ public class DocContentHandler extends ContentHandlerDecorator {
    * @param replacement the string to replace the invalid characters with
    */
   private static String cleanInvalidXmlChars(String text, String replacement) {
-    // XML 1.0
-    // #x9 | #xA | #xD | [#x20-#xD7FF] | [#xE000-#xFFFD] | [#x10000-#x10FFFF]
-    String xml10pattern = "[^"
-            + "\u0009\r\n"
-            + "\u0020-\uD7FF"
-            + "\uE000-\uFFFD"
-            + "\ud800\udc00-\udbff\udfff"
-            + "]";
-    text = text.replaceAll("\u000B", "");
-    text = text.replaceAll("\\n", "");
-    return text.replaceAll(xml10pattern, replacement);
+    text = VERTICAL_TAB_OR_NEWLINE.matcher(text).replaceAll("");
+    return INVALID_XML_CHARS.matcher(text).replaceAll(replacement);
   }
 
 }
@@ -42,7 +42,7 @@ public class DocTitleHandler extends ContentHandlerDecorator {
 
   @Override
   public void characters(char[] ch, int start, int length) {
-    String s = new String(ch);
+    String s = new String(ch, start, length);
 
     if (StringUtils.isEmpty(title) && titleMode && !StringUtils.isEmpty(s)) {
       title = s;
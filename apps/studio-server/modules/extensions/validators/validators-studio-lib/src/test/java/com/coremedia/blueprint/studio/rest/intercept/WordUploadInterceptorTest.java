@@ -11,6 +11,7 @@ import com.coremedia.rest.cap.intercept.ContentWriteRequest;
 import com.coremedia.rest.cap.intercept.impl.ContentWriteRequestImpl;
 import com.coremedia.springframework.xml.ResourceAwareXmlBeanDefinitionReader;
 import com.coremedia.xml.Markup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -59,6 +60,8 @@ public class WordUploadInterceptorTest {
   @Test
   public void test() throws Exception {
     WordUploadInterceptor testling = new WordUploadInterceptor(repository, sitesService, taxonomyResolver, Collections.emptyList());
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    testling.bindTo(meterRegistry);
 
     Map<String, Object> properties = new HashMap<>();
     properties.put(WordUploadInterceptor.DATA_PROPERTY, wordDocument);
@@ -77,6 +80,9 @@ public class WordUploadInterceptorTest {
     assertTrue(markup.contains("xlink:href=\"http://www.google.de/\""));
     assertTrue(markup.contains("<table>"));
     assertTrue(markup.contains("<img"));
+
+    assertEquals(1, meterRegistry.get(WordUploadInterceptor.METRIC_PREFIX + "extractions").functionTimer().count(), 0);
+    assertEquals(0, meterRegistry.get(WordUploadInterceptor.METRIC_PREFIX + "failures").functionCounter().count(), 0);
   }
 
 }
@@ -0,0 +1,153 @@
+package com.coremedia.blueprint.taxonomies.semantic.service.matching;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Finds all keywords which occur in a text with a single scan of the text.
+ * <p>
+ * The matcher is an Aho-Corasick automaton: the keywords form a trie whose
+ * nodes are linked to the node of their longest proper suffix.  When a
+ * character does not continue the current match, the scan follows these links
+ * instead of starting over, so a text is scanned in linear time regardless
+ * of the number of keywords.
+ * <p>
+ * Instances are immutable and can be used concurrently.
+ *
+ * @param <T> the type of the values which are mapped to the keywords
+ */
+public final class KeywordMatcher<T> {
+
+  private final State<T> root;
+  private final int size;
+
+  private KeywordMatcher(State<T> root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns a builder for a matcher.
+   */
+  @NonNull
+  public static <T> Builder<T> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Returns the values of all keywords which occur in the given text, in the
+   * order in which their keywords end in the text.  Keywords may overlap.
+   */
+  @NonNull
+  public Set<T> findMatches(@NonNull CharSequence text) {
+    Set<T> matches = new LinkedHashSet<>();
+    State<T> state = root;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      State<T> next = state.next(c);
+      while (next == null && state != root) {
+        state = state.failure;
+        next = state.next(c);
+      }
+      state = next != null ? next : root;
+      for (State<T> output = state.hasValue ? state : state.output; output != null; output = output.output) {
+        matches.add(output.value);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Returns the number of keywords.
+   */
+  public int size() {
+    return size;
+  }
+
+  // --- inner classes ---
+
+  /**
+   * Collects the keywords of a {@link KeywordMatcher}.
+   *
+   * @param <T> the type of the values which are mapped to the keywords
+   */
+  public static final class Builder<T> {
+
+    private final State<T> root = new State<>();
+    private int size;
+
+    private Builder() {
+    }
+
+    /**
+     * Maps the keyword to the given value.  A value which is already mapped
+     * to the keyword is replaced.  Empty keywords are ignored.
+     */
+    @NonNull
+    public Builder<T> put(@NonNull String keyword, @NonNull T value) {
+      if (keyword.isEmpty()) {
+        return this;
+      }
+      State<T> state = root;
+      for (int i = 0; i < keyword.length(); i++) {
+        state = state.children.computeIfAbsent(keyword.charAt(i), c -> new State<>());
+      }
+      if (!state.hasValue) {
+        size++;
+      }
+      state.value = value;
+      state.hasValue = true;
+      return this;
+    }
+
+    /**
+     * Links the states of the trie and returns the matcher.  The builder must not be used afterwards.
+     */
+    @NonNull
+    public KeywordMatcher<T> build() {
+      // breadth first, so that the failure states of shorter prefixes are known
+      Queue<State<T>> queue = new ArrayDeque<>();
+      for (State<T> child : root.children.values()) {
+        child.failure = root;
+        queue.add(child);
+      }
+      while (!queue.isEmpty()) {
+        State<T> state = queue.remove();
+        for (Map.Entry<Character, State<T>> entry : state.children.entrySet()) {
+          char c = entry.getKey();
+          State<T> child = entry.getValue();
+          State<T> failure = state.failure;
+          while (failure != root && failure.next(c) == null) {
+            failure = failure.failure;
+          }
+          State<T> target = failure.next(c);
+          child.failure = target != null && target != child ? target : root;
+          child.output = child.failure.hasValue ? child.failure : child.failure.output;
+          queue.add(child);
+        }
+      }
+      return new KeywordMatcher<>(root, size);
+    }
+  }
+
+  private static final class State<T> {
+    private final Map<Character, State<T>> children = new HashMap<>(4);
+    private State<T> failure;
+    /**
+     * The nearest state along the failure links which ends a keyword.
+     */
+    private State<T> output;
+    private T value;
+    private boolean hasValue;
+
+    private State<T> next(char c) {
+      return children.get(c);
+    }
+  }
+}
@@ -2,7 +2,6 @@ package com.coremedia.blueprint.taxonomies.semantic.service.matching;
 
 import com.coremedia.blueprint.base.taxonomies.TaxonomyLocalizationStrategy;
 import com.coremedia.blueprint.taxonomies.Taxonomy;
-import com.coremedia.blueprint.taxonomies.TaxonomyNode;
 import com.coremedia.blueprint.taxonomies.TaxonomyUtil;
 import com.coremedia.blueprint.taxonomies.semantic.SemanticStrategy;
 import com.coremedia.blueprint.taxonomies.semantic.Suggestions;
@@ -13,17 +12,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * The semantic service strategy using on of the semantic plugins.
+ * The semantic service strategy which suggests the taxonomy nodes whose names occur in the content.
+ * <p>
+ * The names of a taxonomy are matched with a cached {@link KeywordMatcher}, so
+ * a suggestion costs a single scan of the content text.
  */
 public class NameMatchingStrategy implements SemanticStrategy, InitializingBean {
   private static final Logger LOG = LoggerFactory.getLogger(NameMatchingStrategy.class);
 
+  private static final List<String> TAXONOMY_PROPERTIES = List.of("subjectTaxonomy", "locationTaxonomy", "queryTaxonomy");
+  private static final String SEPARATORS = ".,:;-'[]/!?\"";
+
   private ContentRepository contentRepository;
   private TaxonomyLocalizationStrategy taxonomyLocalizationStrategy;
   private String serviceId;
@@ -42,15 +48,10 @@ public class NameMatchingStrategy implements SemanticStrategy, InitializingBean
 
   @Override
   public Suggestions suggestions(Taxonomy<?> taxonomy, String capId) {
-    HashMap<String, TaxonomyNode> nameMapping = new HashMap<>();
-    for (TaxonomyNode node : taxonomy.getAllChildren()) {
-      Content content = contentRepository.getContent(TaxonomyUtil.asContentId(node.getRef()));
-      String name = taxonomyLocalizationStrategy.getDisplayName(content, null);
-      nameMapping.put(name.toLowerCase().trim(), node);    //NOSONAR
-    }
-
     Suggestions items = new Suggestions();
     try {
+      KeywordMatcher<String> keywordMatcher = getKeywordMatcher(taxonomy, null);
+
       //find semantics from service
       Content content = contentRepository.getContent(capId);
       StringBuilder buffer = new StringBuilder();
@@ -63,7 +64,7 @@ public class NameMatchingStrategy implements SemanticStrategy, InitializingBean
       addFieldValue("teaserText", buffer, content, descriptorsByName);
 
       String formattedText = formatBuffer(buffer);
-      findMatches(nameMapping, content, items, formattedText);
+      findMatches(keywordMatcher, content, items, formattedText);
 
     } catch (Exception e) {
       LOG.error("Resolving suggestions failed.", e);
@@ -71,24 +72,36 @@ public class NameMatchingStrategy implements SemanticStrategy, InitializingBean
     return items;
   }
 
+  /**
+   * Returns the matcher for the localized names of all nodes of the given taxonomy.
+   * The matcher is cached until the taxonomy changes.
+   *
+   * @param taxonomy The taxonomy to match the names of.
+   * @param locale   The locale of the names, null for the default names.
+   * @return The matcher which maps the lowercase names to the node refs.
+   */
+  KeywordMatcher<String> getKeywordMatcher(Taxonomy<?> taxonomy, Locale locale) {
+    return contentRepository.getConnection().getCache()
+            .get(new TaxonomyKeywordMatcherCacheKey(taxonomy, locale, contentRepository, taxonomyLocalizationStrategy));
+  }
+
   /**
    * Executes a name matching with all words of the content fields against
    * the taxonomy names.
    *
-   * @param nameMapping   The map that contains all keywords mapped to the corresponding node.
-   * @param content       The content to evaluate.
-   * @param items         The current suggestion list.
-   * @param formattedText The formatted content text to evaluate.
+   * @param keywordMatcher The matcher that maps all keywords to the corresponding node refs.
+   * @param content        The content to evaluate.
+   * @param items          The current suggestion list.
+   * @param formattedText  The formatted content text to evaluate.
    */
-  private void findMatches(Map<String, TaxonomyNode> nameMapping, Content content, Suggestions items, String formattedText) {
+  private void findMatches(KeywordMatcher<String> keywordMatcher, Content content, Suggestions items, String formattedText) {
     long l = System.currentTimeMillis();
-    for (Map.Entry<String, TaxonomyNode> taxonomy : nameMapping.entrySet()) {
-      if (formattedText.contains(taxonomy.getKey())) {
-        TaxonomyNode match = nameMapping.get(taxonomy.getKey());
-        if (!items.contains(match.getRef()) && !hasTaxonomy(content, match)) {
-          Content matchingContent = contentRepository.getContent(TaxonomyUtil.asContentId(match.getRef()));
-          items.addSuggestion(matchingContent, -1);
-        }
+    Set<String> assignedIds = getAssignedTaxonomyIds(content);
+    for (String ref : keywordMatcher.findMatches(formattedText)) {
+      String contentId = TaxonomyUtil.asContentId(ref);
+      if (!items.contains(ref) && !assignedIds.contains(contentId)) {
+        Content matchingContent = contentRepository.getContent(contentId);
+        items.addSuggestion(matchingContent, -1);
       }
     }
 
@@ -97,48 +110,34 @@ public class NameMatchingStrategy implements SemanticStrategy, InitializingBean
   }
 
   /**
-   * Checks if the given taxonomy content is already assigned to the content object.
+   * Returns the ids of the taxonomy contents which are already assigned to the content object.
    *
    * @param content The content object to check the taxonomy keywords for.
-   * @param node    The taxonomy that is used as suggestion when not found in the content.
-   * @return True if the taxonomy content is already applied to the content.
+   * @return The ids of the assigned taxonomy contents.
    */
-  private boolean hasTaxonomy(Content content, TaxonomyNode node) {
-    List<Object> children = new ArrayList<>();
-    children.addAll(content.getList("subjectTaxonomy"));
-    children.addAll(content.getList("locationTaxonomy"));
-    children.addAll(content.getList("queryTaxonomy"));
-
-    for (Object child : children) {
-      if (((Content) child).getId().equals(TaxonomyUtil.asContentId(node.getRef()))) {
-        return true;
+  private Set<String> getAssignedTaxonomyIds(Content content) {
+    Set<String> assignedIds = new HashSet<>();
+    for (String property : TAXONOMY_PROPERTIES) {
+      for (Object child : content.getList(property)) {
+        assignedIds.add(((Content) child).getId());
       }
     }
-    return false;
+    return assignedIds;
   }
 
   /**
-   * Formats the buffer to a string, removes all special characters.
+   * Formats the buffer to a string, replaces all special characters with blanks.
    *
    * @param buffer The buffer to format the string from.
    * @return A formatted lowercase string
    */
-  private String formatBuffer(StringBuilder buffer) {
-    String value = buffer.toString();
-    value = value.replaceAll("\\.", " ");
-    value = value.replaceAll(",", " ");
-    value = value.replaceAll(":", " ");
-    value = value.replaceAll(";", " ");
-    value = value.replaceAll("-", " ");
-    value = value.replaceAll("'", " ");
-    value = value.replaceAll("\\[", " ");
-    value = value.replaceAll("\\]", " ");
-    value = value.replaceAll("/", " ");
-    value = value.replaceAll("!", " ");
-    value = value.replaceAll("\\?", " ");
-    value = value.replaceAll("\"", " ");
-
-    return value.toLowerCase(); //NOSONAR
+  static String formatBuffer(CharSequence buffer) {
+    StringBuilder value = new StringBuilder(buffer.length());
+    for (int i = 0; i < buffer.length(); i++) {
+      char c = buffer.charAt(i);
+      value.append(SEPARATORS.indexOf(c) >= 0 ? ' ' : c);
+    }
+    return value.toString().toLowerCase(); //NOSONAR
   }
 
   /**
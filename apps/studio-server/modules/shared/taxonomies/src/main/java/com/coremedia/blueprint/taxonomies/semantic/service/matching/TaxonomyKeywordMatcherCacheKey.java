@@ -0,0 +1,87 @@
+package com.coremedia.blueprint.taxonomies.semantic.service.matching;
+
+import com.coremedia.blueprint.base.taxonomies.TaxonomyLocalizationStrategy;
+import com.coremedia.blueprint.taxonomies.Taxonomy;
+import com.coremedia.blueprint.taxonomies.TaxonomyNode;
+import com.coremedia.blueprint.taxonomies.TaxonomyUtil;
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.Locale;
+import java.util.Objects;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Caches a {@link KeywordMatcher} which maps the localized names of all nodes
+ * of a taxonomy to the node refs.
+ * <p>
+ * The matcher depends on the taxonomy folders and nodes which are read while
+ * it is built, so it is only rebuilt if the taxonomy changes.
+ */
+class TaxonomyKeywordMatcherCacheKey extends CacheKey<KeywordMatcher<String>> {
+  private static final Logger LOG = getLogger(lookup().lookupClass());
+
+  private final String taxonomyId;
+  private final String siteId;
+  private final Locale locale;
+
+  // not part of the key: taxonomies with equal id and site are equal
+  private final Taxonomy<?> taxonomy;
+  private final ContentRepository contentRepository;
+  private final TaxonomyLocalizationStrategy taxonomyLocalizationStrategy;
+
+  TaxonomyKeywordMatcherCacheKey(@NonNull Taxonomy<?> taxonomy,
+                                 @Nullable Locale locale,
+                                 @NonNull ContentRepository contentRepository,
+                                 @NonNull TaxonomyLocalizationStrategy taxonomyLocalizationStrategy) {
+    this.taxonomyId = taxonomy.getTaxonomyId();
+    this.siteId = taxonomy.getSiteId();
+    this.locale = locale;
+    this.taxonomy = taxonomy;
+    this.contentRepository = contentRepository;
+    this.taxonomyLocalizationStrategy = taxonomyLocalizationStrategy;
+  }
+
+  @Override
+  public KeywordMatcher<String> evaluate(Cache cache) {
+    long start = System.currentTimeMillis();
+    KeywordMatcher.Builder<String> builder = KeywordMatcher.builder();
+    for (TaxonomyNode node : taxonomy.getAllChildren()) {
+      Content content = contentRepository.getContent(TaxonomyUtil.asContentId(node.getRef()));
+      String name = taxonomyLocalizationStrategy.getDisplayName(content, locale);
+      builder.put(name.toLowerCase().trim(), node.getRef());    //NOSONAR
+    }
+    KeywordMatcher<String> matcher = builder.build();
+    LOG.debug("Built keyword matcher for taxonomy {} of site {} with {} names in {} ms",
+            taxonomyId, siteId, matcher.size(), System.currentTimeMillis() - start);
+    return matcher;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    TaxonomyKeywordMatcherCacheKey that = (TaxonomyKeywordMatcherCacheKey) o;
+    return taxonomyId.equals(that.taxonomyId)
+            && Objects.equals(siteId, that.siteId)
+            && Objects.equals(locale, that.locale)
+            && contentRepository.equals(that.contentRepository)
+            && taxonomyLocalizationStrategy == that.taxonomyLocalizationStrategy;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(taxonomyId, siteId, locale);
+  }
+}
@@ -7,6 +7,7 @@ import com.coremedia.blueprint.taxonomies.TaxonomyUtil;
 import com.coremedia.blueprint.taxonomies.cycleprevention.TaxonomyCycleValidator;
 import com.coremedia.cap.common.CapPropertyDescriptor;
 import com.coremedia.cap.common.CapPropertyDescriptorType;
+import com.coremedia.cap.common.IdHelper;
 import com.coremedia.cap.common.descriptors.LinkPropertyDescriptor;
 import com.coremedia.cap.content.Content;
 import com.coremedia.cap.content.ContentRepository;
@@ -27,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -141,7 +143,7 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
       return null;
     }
 
-    Content parent = getParent(nodeContent);
+    Content parent = getIndexedParent(nodeContent);
     if (parent == null) {
       return null;
     }
@@ -151,7 +153,7 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
   @Override
   @NonNull
   public TaxonomyNodeList getChildren(@NonNull TaxonomyNode node, int offset, int count) {
-    List<Content> children = getRoot().equals(node) ? getTopLevelNodes() : getChildren(asContent(node));
+    List<Content> children = getRoot().equals(node) ? getIndexedTopLevelNodes() : getIndexedChildren(asContent(node));
     long skip = Math.max(offset, 0);
     long limit = count == -1 ? children.size() : count;
 
@@ -167,7 +169,7 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
   @Override
   @NonNull
   public TaxonomyNode getPath(@NonNull TaxonomyNode node) {
-    List<Content> path = getPath(asContent(node));
+    List<Content> path = getIndexedPath(asContent(node));
     TaxonomyNodeList list = asNodeList(path, -1, -1, true);
     node.setPath(list);
     return node;
@@ -176,11 +178,11 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
   @Override
   @NonNull
   public List<Content> getLinks(@NonNull TaxonomyNode node, boolean recursive) {
-    List<Content> result = new ArrayList<>();
+    Set<Content> result = new LinkedHashSet<>();
     Content content = asContent(node);
 
     //search recursively
-    List<Content> allChildren = collectAllTaxonomiesBelow(content, recursive);
+    List<Content> allChildren = collectIndexedTaxonomiesBelow(content, recursive);
 
     for (Content child : allChildren) {
       for (Content ref : child.getReferrers()) {
@@ -194,7 +196,7 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
       }
     }
 
-    return result;
+    return new ArrayList<>(result);
   }
 
 
@@ -202,9 +204,9 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
   @NonNull
   public List<Content> getStrongLinks(@NonNull TaxonomyNode node, boolean recursive) {
     Content content = asContent(node);
-    List<Content> result = new ArrayList<>();
+    Set<Content> result = new LinkedHashSet<>();
 
-    List<Content> allChildren = collectAllTaxonomiesBelow(content, recursive);
+    List<Content> allChildren = collectIndexedTaxonomiesBelow(content, recursive);
 
     for (Content child : allChildren) {
       for (Content ref : child.getReferrers()) {
@@ -217,7 +219,7 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
       }
     }
 
-    return result;
+    return new ArrayList<>(result);
   }
 
   @Override
@@ -536,8 +538,7 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
   @NonNull
   public List<TaxonomyNode> getAllChildren() {
     List<TaxonomyNode> allChildren = new ArrayList<>();
-    List<Content> matches = new ArrayList<>();
-    findAll(rootFolder, matches);
+    List<Content> matches = asContents(getTreeIndex().getListed());
     for (Content child : matches) {
       allChildren.add(asNode(child, false));
     }
@@ -549,6 +550,112 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
     return taxonomyContentType.getName();
   }
 
+  // === TREE INDEX ====================================================================================================
+
+  /**
+   * Builds the tree index of this taxonomy from the taxonomy folders.
+   * Called by {@link TaxonomyTreeIndexCacheKey}, use {@link #getTreeIndex()} instead.
+   */
+  @NonNull
+  TaxonomyTreeIndex createTreeIndex() {
+    PublicationService publicationService = contentRepository.getPublicationService();
+    List<Content> nodes = new ArrayList<>();
+    findAllInProduction(rootFolder, nodes);
+
+    TaxonomyTreeIndex.Builder builder = TaxonomyTreeIndex.builder();
+    for (Content taxonomyNode : nodes) {
+      int id = IdHelper.parseContentId(taxonomyNode.getId());
+      builder.addNode(id, !publicationService.isToBeDeleted(taxonomyNode));
+      for (Content child : taxonomyNode.getLinks(CHILDREN)) {
+        builder.addChild(id, IdHelper.parseContentId(child.getId()));
+      }
+    }
+
+    List<Content> nodesFromSettings = getTopLevelNodesFromSettings();
+    if (!nodesFromSettings.isEmpty()) {
+      builder.topLevel(nodesFromSettings.stream().mapToInt(c -> IdHelper.parseContentId(c.getId())).toArray());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the cached tree index of this taxonomy.
+   * The read operations use the index, the write operations read the current state of the repository.
+   */
+  @NonNull
+  private TaxonomyTreeIndex getTreeIndex() {
+    return contentRepository.getConnection().getCache()
+            .get(new TaxonomyTreeIndexCacheKey(this, rootFolder, taxonomyContentType.getName()));
+  }
+
+  @NonNull
+  private List<Content> getIndexedTopLevelNodes() {
+    return asContents(getTreeIndex().getTopLevel());
+  }
+
+  @NonNull
+  private List<Content> getIndexedChildren(@NonNull Content taxonomy) {
+    TaxonomyTreeIndex index = getTreeIndex();
+    int id = IdHelper.parseContentId(taxonomy.getId());
+    return index.contains(id) ? asContents(index.getChildren(id)) : getChildren(taxonomy);
+  }
+
+  @Nullable
+  private Content getIndexedParent(@NonNull Content content) {
+    TaxonomyTreeIndex index = getTreeIndex();
+    int id = IdHelper.parseContentId(content.getId());
+    if (!index.contains(id)) {
+      return getParent(content);
+    }
+    int parentId = index.getParent(id);
+    return parentId == TaxonomyTreeIndex.NONE ? null : contentRepository.getContent(IdHelper.formatContentId(parentId));
+  }
+
+  @NonNull
+  private List<Content> getIndexedPath(@NonNull Content content) {
+    TaxonomyTreeIndex index = getTreeIndex();
+    int id = IdHelper.parseContentId(content.getId());
+    return index.contains(id) ? asContents(index.getPath(id)) : getPath(content);
+  }
+
+  @NonNull
+  private List<Content> collectIndexedTaxonomiesBelow(@NonNull Content node, boolean recursively) {
+    TaxonomyTreeIndex index = getTreeIndex();
+    int id = IdHelper.parseContentId(node.getId());
+    if (!recursively || !index.contains(id)) {
+      return collectAllTaxonomiesBelow(node, recursively);
+    }
+    return asContents(index.getSubtree(id));
+  }
+
+  @NonNull
+  private List<Content> asContents(@NonNull int[] ids) {
+    List<Content> contents = new ArrayList<>(ids.length);
+    for (int id : ids) {
+      Content content = contentRepository.getContent(IdHelper.formatContentId(id));
+      if (content != null) {
+        contents.add(content);
+      }
+    }
+    return contents;
+  }
+
+  /**
+   * Collects all nodes which are in production, including the ones which are marked to be deleted.
+   */
+  private void findAllInProduction(@NonNull Content folder, @NonNull List<Content> matches) {
+    Collection<Content> nodes = folder.getChildrenFulfilling("TYPE " + taxonomyContentType.getName());
+    for (Content taxonomyNode : nodes) {
+      if (taxonomyNode.isInProduction()) {
+        matches.add(taxonomyNode);
+      }
+    }
+
+    for (Content subFolder : folder.getSubfolders()) {
+      findAllInProduction(subFolder, matches);
+    }
+  }
+
   // === HELPER ========================================================================================================
 
   /**
@@ -885,8 +992,15 @@ public class DefaultTaxonomy extends TaxonomyBase { // NOSONAR  cyclomatic compl
     node.setType(taxonomyContentType.getName());
 
     if (buildPathInfo) {
-      node.setLeaf(!hasChildren(content));
-      node.setLevel(getPath(content).size());
+      TaxonomyTreeIndex index = getTreeIndex();
+      int id = IdHelper.parseContentId(content.getId());
+      if (index.contains(id)) {
+        node.setLeaf(!index.hasChildren(id));
+        node.setLevel(index.getPath(id).length);
+      } else {
+        node.setLeaf(!hasChildren(content));
+        node.setLevel(getPath(content).size());
+      }
     }
 
     return node;
@@ -0,0 +1,323 @@
+package com.coremedia.blueprint.taxonomies.strategy;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the tree structure of a taxonomy.
+ * <p>
+ * Nodes are identified by their numeric content ids and stored in arrays
+ * sorted by id, so a node is found by binary search and the structure needs
+ * no content objects.  For each node the index holds the parent, the
+ * children ordered by descending id, the level and whether the node is
+ * listed, i.e. not marked to be deleted.
+ * <p>
+ * Taxonomies may contain cycles.  A node which is its own ancestor has no
+ * level and its path ends before the cycle repeats.
+ */
+final class TaxonomyTreeIndex {
+
+  static final int NONE = -1;
+
+  private static final int[] EMPTY = new int[0];
+
+  private final int[] ids;
+  private final boolean[] listed;
+  private final int[] parents;
+  private final int[][] children;
+  private final int[] levels;
+  private final int[] topLevel;
+
+  private TaxonomyTreeIndex(int[] ids, boolean[] listed, int[] parents, int[][] children, int[] topLevel) {
+    this.ids = ids;
+    this.listed = listed;
+    this.parents = parents;
+    this.children = children;
+    this.topLevel = topLevel;
+    this.levels = computeLevels(parents);
+  }
+
+  @NonNull
+  static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns true if the node with the given id is part of the taxonomy.
+   */
+  boolean contains(int id) {
+    return indexOf(id) >= 0;
+  }
+
+  /**
+   * Returns the number of nodes.
+   */
+  int size() {
+    return ids.length;
+  }
+
+  /**
+   * Returns the ids of the top level nodes.
+   */
+  @NonNull
+  int[] getTopLevel() {
+    return topLevel.clone();
+  }
+
+  /**
+   * Returns the ids of the children of the given node, ordered by descending id.
+   */
+  @NonNull
+  int[] getChildren(int id) {
+    int index = indexOf(id);
+    return index < 0 ? EMPTY : toIds(children[index]);
+  }
+
+  boolean hasChildren(int id) {
+    int index = indexOf(id);
+    return index >= 0 && children[index].length > 0;
+  }
+
+  /**
+   * Returns the id of the parent of the given node or {@link #NONE}.
+   */
+  int getParent(int id) {
+    int index = indexOf(id);
+    return index < 0 || parents[index] == NONE ? NONE : ids[parents[index]];
+  }
+
+  /**
+   * Returns the number of nodes on the path from the top level to the given
+   * node, including the node, or {@link #NONE} if the node is unknown or
+   * part of a cycle.
+   */
+  int getLevel(int id) {
+    int index = indexOf(id);
+    return index < 0 ? NONE : levels[index];
+  }
+
+  /**
+   * Returns the ids of the nodes on the path from the top level to the given node, including the node.
+   */
+  @NonNull
+  int[] getPath(int id) {
+    int index = indexOf(id);
+    if (index < 0) {
+      return EMPTY;
+    }
+    if (levels[index] != NONE) {
+      int[] path = new int[levels[index]];
+      for (int i = path.length - 1, current = index; i >= 0; i--, current = parents[current]) {
+        path[i] = ids[current];
+      }
+      return path;
+    }
+    int[] path = new int[ids.length];
+    int length = 0;
+    boolean[] visited = new boolean[ids.length];
+    for (int current = index; current != NONE && !visited[current]; current = parents[current]) {
+      visited[current] = true;
+      path[length++] = ids[current];
+    }
+    int[] result = new int[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = path[length - 1 - i];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the ids of the given node and of all nodes below, each node once, in depth first order.
+   */
+  @NonNull
+  int[] getSubtree(int id) {
+    int index = indexOf(id);
+    if (index < 0) {
+      return EMPTY;
+    }
+    int[] subtree = new int[ids.length];
+    int length = 0;
+    boolean[] visited = new boolean[ids.length];
+    int[] stack = new int[ids.length];
+    int top = 0;
+    stack[top++] = index;
+    visited[index] = true;
+    while (top > 0) {
+      int current = stack[--top];
+      subtree[length++] = ids[current];
+      int[] currentChildren = children[current];
+      for (int i = currentChildren.length - 1; i >= 0; i--) {
+        int child = currentChildren[i];
+        if (!visited[child]) {
+          visited[child] = true;
+          stack[top++] = child;
+        }
+      }
+    }
+    return Arrays.copyOf(subtree, length);
+  }
+
+  /**
+   * Returns the ids of all nodes which are not marked to be deleted.
+   */
+  @NonNull
+  int[] getListed() {
+    int count = 0;
+    for (boolean isListed : listed) {
+      count += isListed ? 1 : 0;
+    }
+    int[] result = new int[count];
+    int i = 0;
+    for (int index = 0; index < ids.length; index++) {
+      if (listed[index]) {
+        result[i++] = ids[index];
+      }
+    }
+    return result;
+  }
+
+  // --- internal ---
+
+  private int indexOf(int id) {
+    return Arrays.binarySearch(ids, id);
+  }
+
+  @NonNull
+  private int[] toIds(@NonNull int[] indexes) {
+    int[] result = new int[indexes.length];
+    for (int i = 0; i < indexes.length; i++) {
+      result[i] = ids[indexes[i]];
+    }
+    return result;
+  }
+
+  @NonNull
+  private static int[] computeLevels(@NonNull int[] parents) {
+    int[] levels = new int[parents.length];
+    // 0: not computed yet, NONE: cyclic
+    int[] chain = new int[parents.length];
+    boolean[] onChain = new boolean[parents.length];
+    for (int start = 0; start < parents.length; start++) {
+      int length = 0;
+      int current = start;
+      while (current != NONE && levels[current] == 0 && !onChain[current]) {
+        onChain[current] = true;
+        chain[length++] = current;
+        current = parents[current];
+      }
+      int level;
+      if (current == NONE) {
+        level = 0;
+      } else if (onChain[current] || levels[current] == NONE) {
+        level = NONE;
+      } else {
+        level = levels[current];
+      }
+      for (int i = length - 1; i >= 0; i--) {
+        int node = chain[i];
+        level = level == NONE ? NONE : level + 1;
+        levels[node] = level;
+        onChain[node] = false;
+      }
+    }
+    return levels;
+  }
+
+  // --- inner classes ---
+
+  /**
+   * Collects nodes and child relations.  Child relations to unknown nodes are ignored.
+   */
+  static final class Builder {
+
+    private final Map<Integer, Boolean> nodes = new LinkedHashMap<>();
+    private final Map<Integer, List<Integer>> childRelations = new LinkedHashMap<>();
+    private int[] topLevel;
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a node.
+     *
+     * @param id     the numeric content id
+     * @param listed false if the node is marked to be deleted
+     */
+    @NonNull
+    Builder addNode(int id, boolean listed) {
+      nodes.put(id, listed);
+      return this;
+    }
+
+    /**
+     * Adds a child relation.  The first parent added for a child becomes its parent.
+     */
+    @NonNull
+    Builder addChild(int parentId, int childId) {
+      childRelations.computeIfAbsent(parentId, k -> new ArrayList<>()).add(childId);
+      return this;
+    }
+
+    /**
+     * Sets the top level nodes.  If not set, the listed nodes without parent are the top level nodes.
+     */
+    @NonNull
+    Builder topLevel(@NonNull int[] topLevelIds) {
+      this.topLevel = topLevelIds.clone();
+      return this;
+    }
+
+    @NonNull
+    TaxonomyTreeIndex build() {
+      int[] ids = nodes.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+      boolean[] listed = new boolean[ids.length];
+      int[] parents = new int[ids.length];
+      Arrays.fill(parents, NONE);
+      int[][] children = new int[ids.length][];
+      for (int index = 0; index < ids.length; index++) {
+        listed[index] = nodes.get(ids[index]);
+        children[index] = EMPTY;
+      }
+
+      for (int index = 0; index < ids.length; index++) {
+        List<Integer> childIds = childRelations.get(ids[index]);
+        if (childIds == null) {
+          continue;
+        }
+        // ids are sorted, so descending indexes are descending ids
+        children[index] = childIds.stream()
+                .mapToInt(childId -> Arrays.binarySearch(ids, childId))
+                .filter(childIndex -> childIndex >= 0)
+                .distinct()
+                .map(childIndex -> -childIndex)
+                .sorted()
+                .map(childIndex -> -childIndex)
+                .toArray();
+      }
+      for (int index = 0; index < ids.length; index++) {
+        for (int child : children[index]) {
+          if (parents[child] == NONE && child != index) {
+            parents[child] = index;
+          }
+        }
+      }
+
+      int[] topLevelIds = topLevel;
+      if (topLevelIds == null) {
+        List<Integer> roots = new ArrayList<>();
+        for (int index = ids.length - 1; index >= 0; index--) {
+          if (parents[index] == NONE && listed[index]) {
+            roots.add(ids[index]);
+          }
+        }
+        topLevelIds = roots.stream().mapToInt(Integer::intValue).toArray();
+      }
+      return new TaxonomyTreeIndex(ids, listed, parents, children, topLevelIds);
+    }
+  }
+}
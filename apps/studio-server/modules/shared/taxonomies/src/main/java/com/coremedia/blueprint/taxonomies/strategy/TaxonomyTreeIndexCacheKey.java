@@ -0,0 +1,66 @@
+package com.coremedia.blueprint.taxonomies.strategy;
+
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.cap.content.Content;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.slf4j.Logger;
+
+import java.util.Objects;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Caches the {@link TaxonomyTreeIndex} of a taxonomy.
+ * <p>
+ * The index depends on the taxonomy folders, nodes and root settings which
+ * are read while it is built.  The repository events for changes of these
+ * contents invalidate the index, so it is rebuilt on the next access after
+ * a node has been created, moved, deleted or published.
+ */
+class TaxonomyTreeIndexCacheKey extends CacheKey<TaxonomyTreeIndex> {
+  private static final Logger LOG = getLogger(lookup().lookupClass());
+
+  private final Content rootFolder;
+  private final String contentType;
+  private final Class<?> taxonomyClass;
+
+  // not part of the key: taxonomies with equal root folder and type are equal
+  private final DefaultTaxonomy taxonomy;
+
+  TaxonomyTreeIndexCacheKey(@NonNull DefaultTaxonomy taxonomy, @NonNull Content rootFolder, @NonNull String contentType) {
+    this.rootFolder = rootFolder;
+    this.contentType = contentType;
+    this.taxonomyClass = taxonomy.getClass();
+    this.taxonomy = taxonomy;
+  }
+
+  @Override
+  public TaxonomyTreeIndex evaluate(Cache cache) {
+    long start = System.currentTimeMillis();
+    TaxonomyTreeIndex index = taxonomy.createTreeIndex();
+    LOG.debug("Built tree index for taxonomy {} with {} nodes in {} ms",
+            rootFolder.getPath(), index.size(), System.currentTimeMillis() - start);
+    return index;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    TaxonomyTreeIndexCacheKey that = (TaxonomyTreeIndexCacheKey) o;
+    return rootFolder.equals(that.rootFolder)
+            && contentType.equals(that.contentType)
+            && taxonomyClass.equals(that.taxonomyClass);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(rootFolder, contentType);
+  }
+}
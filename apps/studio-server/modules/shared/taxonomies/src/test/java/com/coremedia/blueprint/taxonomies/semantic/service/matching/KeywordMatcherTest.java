@@ -0,0 +1,95 @@
+package com.coremedia.blueprint.taxonomies.semantic.service.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordMatcherTest {
+
+  @Test
+  void overlappingKeywordsAreFound() {
+    KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+            .put("he", "he")
+            .put("she", "she")
+            .put("his", "his")
+            .put("hers", "hers")
+            .build();
+
+    assertThat(matcher.findMatches("ushers")).containsExactly("she", "he", "hers");
+    assertThat(matcher.findMatches("ahishers")).containsExactly("his", "she", "he", "hers");
+  }
+
+  @Test
+  void keywordsAreMatchedAsSubstrings() {
+    KeywordMatcher<Integer> matcher = KeywordMatcher.<Integer>builder()
+            .put("new york", 1)
+            .put("york", 2)
+            .put("amsterdam", 3)
+            .build();
+
+    assertThat(matcher.findMatches("flights from new york to yorkshire")).containsExactly(1, 2);
+    assertThat(matcher.findMatches("new yor")).isEmpty();
+  }
+
+  @Test
+  void laterValuesReplaceEarlierOnesAndEmptyKeywordsAreIgnored() {
+    KeywordMatcher<Integer> matcher = KeywordMatcher.<Integer>builder()
+            .put("sports", 1)
+            .put("sports", 2)
+            .put("", 3)
+            .build();
+
+    assertThat(matcher.size()).isEqualTo(1);
+    assertThat(matcher.findMatches("winter sports")).containsExactly(2);
+    assertThat(matcher.findMatches("")).isEmpty();
+  }
+
+  @Test
+  void findsTheSameKeywordsAsContains() {
+    Random random = new Random(42);
+    Map<String, Integer> keywords = new HashMap<>();
+    for (int i = 0; i < 2_000; i++) {
+      keywords.put(randomWords(random, 1 + random.nextInt(3)), i);
+    }
+    StringBuilder text = new StringBuilder();
+    while (text.length() < 5_000) {
+      text.append(randomWords(random, 1)).append(' ');
+    }
+
+    KeywordMatcher.Builder<Integer> builder = KeywordMatcher.builder();
+    keywords.forEach(builder::put);
+    Set<Integer> expected = keywords.entrySet().stream()
+            .filter(entry -> text.indexOf(entry.getKey()) >= 0)
+            .map(Map.Entry::getValue)
+            .collect(Collectors.toSet());
+
+    assertThat(expected).isNotEmpty();
+    assertThat(builder.build().findMatches(text.toString())).containsExactlyInAnyOrderElementsOf(expected);
+  }
+
+  @Test
+  void textIsFormattedLikeBefore() {
+    assertThat(NameMatchingStrategy.formatBuffer(new StringBuilder("Rock'n'Roll: The \"Best\" [Live]/Tour!?")))
+            .isEqualTo("rock n roll  the  best   live  tour  ");
+  }
+
+  private static String randomWords(Random random, int count) {
+    StringBuilder words = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        words.append(' ');
+      }
+      int length = 3 + random.nextInt(6);
+      for (int j = 0; j < length; j++) {
+        words.append((char) ('a' + random.nextInt(12)));
+      }
+    }
+    return words.toString();
+  }
+}
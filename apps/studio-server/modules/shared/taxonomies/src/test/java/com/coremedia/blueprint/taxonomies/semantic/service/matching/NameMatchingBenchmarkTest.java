@@ -0,0 +1,98 @@
+package com.coremedia.blueprint.taxonomies.semantic.service.matching;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Compares the {@link KeywordMatcher} with the former matching of the
+ * {@link NameMatchingStrategy}, which checked each name of a large taxonomy
+ * with {@link String#contains(CharSequence)}.
+ * <p>
+ * Run with {@code -Dbenchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class NameMatchingBenchmarkTest {
+  private static final Logger LOG = getLogger(lookup().lookupClass());
+
+  private static final int KEYWORDS = 40_000;
+  private static final int TEXT_LENGTH = 20_000;
+  private static final int ITERATIONS = 50;
+
+  @Test
+  void compareWithContainsPerKeyword() {
+    Random random = new Random(42);
+    Map<String, String> nameMapping = new HashMap<>();
+    for (int i = 0; i < KEYWORDS; i++) {
+      nameMapping.put(randomWords(random, 1 + random.nextInt(3)), "ref" + i);
+    }
+    StringBuilder text = new StringBuilder();
+    while (text.length() < TEXT_LENGTH) {
+      text.append(randomWords(random, 1)).append(' ');
+    }
+    String formattedText = NameMatchingStrategy.formatBuffer(text);
+
+    long buildStart = System.nanoTime();
+    KeywordMatcher.Builder<String> builder = KeywordMatcher.builder();
+    nameMapping.forEach(builder::put);
+    KeywordMatcher<String> matcher = builder.build();
+    long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart);
+
+    Set<String> expected = containsPerKeyword(nameMapping, formattedText);
+    assertThat(matcher.findMatches(formattedText)).containsExactlyInAnyOrderElementsOf(expected);
+
+    long containsNanos = measure(() -> containsPerKeyword(nameMapping, formattedText));
+    long matcherNanos = measure(() -> matcher.findMatches(formattedText));
+    LOG.info("{} taxonomy names, {} chars: contains per name {} µs, keyword matcher {} µs (built once in {} ms)",
+            KEYWORDS, formattedText.length(), containsNanos / 1000, matcherNanos / 1000, buildMillis);
+  }
+
+  private static Set<String> containsPerKeyword(Map<String, String> nameMapping, String formattedText) {
+    Set<String> matches = new HashSet<>();
+    for (Map.Entry<String, String> entry : nameMapping.entrySet()) {
+      if (formattedText.contains(entry.getKey())) {
+        matches.add(entry.getValue());
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Returns the average time of one run in nanoseconds, after a warm up.
+   */
+  private static long measure(Runnable runnable) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    return (System.nanoTime() - start) / ITERATIONS;
+  }
+
+  private static String randomWords(Random random, int count) {
+    StringBuilder words = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        words.append(' ');
+      }
+      int length = 3 + random.nextInt(6);
+      for (int j = 0; j < length; j++) {
+        words.append((char) ('a' + random.nextInt(12)));
+      }
+    }
+    return words.toString();
+  }
+}
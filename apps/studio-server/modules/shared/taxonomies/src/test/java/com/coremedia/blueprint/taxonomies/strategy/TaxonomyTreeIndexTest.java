@@ -0,0 +1,78 @@
+package com.coremedia.blueprint.taxonomies.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link TaxonomyTreeIndex}.
+ */
+class TaxonomyTreeIndexTest {
+
+  @Test
+  void navigatesTree() {
+    TaxonomyTreeIndex index = TaxonomyTreeIndex.builder()
+            .addNode(10, true)
+            .addNode(12, true)
+            .addNode(14, true)
+            .addNode(16, true)
+            .addNode(18, false)
+            .addChild(10, 12)
+            .addChild(10, 14)
+            .addChild(14, 16)
+            .addChild(14, 99)
+            .build();
+
+    assertThat(index.size()).isEqualTo(5);
+    assertThat(index.getTopLevel()).containsExactly(10);
+    assertThat(index.getChildren(10)).containsExactly(14, 12);
+    assertThat(index.getChildren(14)).containsExactly(16);
+    assertThat(index.hasChildren(12)).isFalse();
+    assertThat(index.getParent(16)).isEqualTo(14);
+    assertThat(index.getParent(10)).isEqualTo(TaxonomyTreeIndex.NONE);
+    assertThat(index.getLevel(16)).isEqualTo(3);
+    assertThat(index.getPath(16)).containsExactly(10, 14, 16);
+    assertThat(index.getSubtree(10)).containsExactly(10, 14, 16, 12);
+    assertThat(index.getListed()).containsExactly(10, 12, 14, 16);
+    assertThat(index.contains(99)).isFalse();
+    assertThat(index.getPath(99)).isEmpty();
+  }
+
+  @Test
+  void usesTopLevelFromSettings() {
+    TaxonomyTreeIndex index = TaxonomyTreeIndex.builder()
+            .addNode(10, true)
+            .addNode(12, true)
+            .topLevel(new int[]{12, 10})
+            .build();
+
+    assertThat(index.getTopLevel()).containsExactly(12, 10);
+  }
+
+  @Test
+  void toleratesCycles() {
+    TaxonomyTreeIndex index = TaxonomyTreeIndex.builder()
+            .addNode(10, true)
+            .addNode(12, true)
+            .addNode(14, true)
+            .addChild(10, 12)
+            .addChild(12, 14)
+            .addChild(14, 12)
+            .build();
+
+    assertThat(index.getLevel(12)).isEqualTo(2);
+    assertThat(index.getPath(14)).containsExactly(10, 12, 14);
+    assertThat(index.getSubtree(12)).containsExactly(12, 14);
+
+    TaxonomyTreeIndex cyclic = TaxonomyTreeIndex.builder()
+            .addNode(20, true)
+            .addNode(22, true)
+            .addChild(20, 22)
+            .addChild(22, 20)
+            .build();
+
+    assertThat(cyclic.getLevel(20)).isEqualTo(TaxonomyTreeIndex.NONE);
+    assertThat(cyclic.getPath(22)).containsExactly(20, 22);
+    assertThat(cyclic.getSubtree(20)).containsExactly(20, 22);
+  }
+}
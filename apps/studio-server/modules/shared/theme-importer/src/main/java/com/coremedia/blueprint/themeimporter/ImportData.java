@@ -8,9 +8,11 @@ import com.coremedia.mimetype.MimeTypeService;
 import com.coremedia.xml.XmlUtil5;
 import com.google.common.annotations.VisibleForTesting;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
@@ -21,11 +23,17 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -41,6 +49,13 @@ class ImportData {
   private static final String[] WEBFONT_TYPES = new String[] {"fontobject", "ttf", "otf", "woff"};
   private static final String[] STATIC_RESOURCES_TYPES = new String[] {"wasm", "json"};
 
+  /**
+   * Binary files up to this size are kept in memory, larger ones are spooled
+   * to temporary files, so that the heap does not hold all of them at once.
+   * Blobs of spooled files read the file whenever they are read.
+   */
+  private static final int SPOOL_THRESHOLD = 64 * 1024;
+
   private final MimeTypeService mimeTypeService;
   private final CapConnection capConnection;
 
@@ -63,6 +78,11 @@ class ImportData {
 
   private final Map<String, byte[]> rawResourceBundles = new LinkedHashMap<>();
 
+  // SHA-256 digests of the collected blobs, only read after collecting
+  private final Map<Blob, byte[]> blobDigests = new IdentityHashMap<>();
+
+  private Path spoolDirectory;
+
 
   // --- construct and configure ------------------------------------
 
@@ -105,6 +125,23 @@ class ImportData {
     rawResourceBundles.clear();
   }
 
+  /**
+   * Delete the temporary files of spooled blobs.
+   * <p>
+   * Call this method when the import is finished.  The collected blobs must
+   * not be read afterwards.
+   */
+  void dispose() {
+    if (spoolDirectory != null) {
+      try {
+        FileSystemUtils.deleteRecursively(spoolDirectory);
+      } catch (IOException e) {
+        LOG.warn("Cannot delete temporary theme import files in {}", spoolDirectory, e);
+      }
+      spoolDirectory = null;
+    }
+  }
+
   private Charset resourceBundleEncoding() {
     try {
       return Charset.forName(themeDescriptors.values().stream()
@@ -161,6 +198,15 @@ class ImportData {
     return staticResources;
   }
 
+  /**
+   * Returns the SHA-256 digest of the data of a collected blob, which is
+   * computed while the blob is collected, or null for other blobs.
+   */
+  @Nullable
+  byte[] getDigest(Blob blob) {
+    return blobDigests.get(blob);
+  }
+
   Set<String> getAffectedThemes() {
     Set<String> result = new HashSet<>();
     for (Map<String, ?> fileMap : allFileMaps) {
@@ -216,8 +262,27 @@ class ImportData {
   }
 
   private void putBlob(InputStream stream, String path, String mimeType, Map<String, Blob> collection) throws MimeTypeParseException, IOException {
-    Blob data = capConnection.getBlobService().fromBytes(IOUtils.toByteArray(stream), mimeType);
-    collection.put(path, data);
+    MessageDigest digest = ThemeImporterContentHelper.sha256();
+    // not closed, the stream belongs to the caller
+    InputStream in = new DigestInputStream(stream, digest);
+    byte[] head = in.readNBytes(SPOOL_THRESHOLD);
+    Blob blob;
+    if (head.length < SPOOL_THRESHOLD) {
+      blob = capConnection.getBlobService().fromBytes(head, mimeType);
+    } else {
+      // Large file, do not buffer it in memory until all themes are imported.
+      if (spoolDirectory == null) {
+        spoolDirectory = Files.createTempDirectory("theme-import-");
+      }
+      Path file = Files.createTempFile(spoolDirectory, "blob-", ".tmp");
+      try (OutputStream out = Files.newOutputStream(file)) {
+        out.write(head);
+        in.transferTo(out);
+      }
+      blob = capConnection.getBlobService().fromFile(file.toFile(), mimeType);
+    }
+    blobDigests.put(blob, digest.digest());
+    collection.put(path, blob);
   }
 
   private String getMimeType(String path) {
@@ -8,6 +8,7 @@ import com.coremedia.cap.struct.StructService;
 import com.coremedia.cap.themeimporter.ThemeImporter;
 import com.coremedia.mimetype.MimeTypeService;
 import com.coremedia.mimetype.MimeTypeServiceConfiguration;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
@@ -24,8 +25,11 @@ public class ThemeImporterConfiguration {
                                      MimeTypeService mimeTypeService,
                                      LocalizationService localizationService,
                                      MapToStructAdapter mapToStructAdapter,
-                                     SettingsJsonToMapAdapter settingsJsonToMapAdapter) {
-    return new ThemeImporterImpl(capConnection, mimeTypeService, localizationService, mapToStructAdapter, settingsJsonToMapAdapter);
+                                     SettingsJsonToMapAdapter settingsJsonToMapAdapter,
+                                     @Value("${themeImporter.parallelism:4}") int parallelism) {
+    ThemeImporterImpl themeImporter = new ThemeImporterImpl(capConnection, mimeTypeService, localizationService, mapToStructAdapter, settingsJsonToMapAdapter);
+    themeImporter.setParallelism(parallelism);
+    return themeImporter;
   }
 
   @Bean
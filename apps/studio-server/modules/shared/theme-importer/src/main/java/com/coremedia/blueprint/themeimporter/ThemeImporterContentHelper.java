@@ -1,5 +1,6 @@
 package com.coremedia.blueprint.themeimporter;
 
+import com.coremedia.cap.common.Blob;
 import com.coremedia.cap.common.CapConnection;
 import com.coremedia.cap.common.IdHelper;
 import com.coremedia.cap.content.Content;
@@ -12,26 +13,40 @@ import com.coremedia.cap.struct.StructBuilder;
 import com.coremedia.cap.themeimporter.ThemeImporterResultImpl;
 import com.google.common.annotations.VisibleForTesting;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.activation.MimeType;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * Some theme importer related pure content utilities.
+ * <p>
+ * Contents may be updated concurrently, as long as their folders exist,
+ * see {@link #ensureFolders(String, Collection)}.
  */
 class ThemeImporterContentHelper {
   private static final Logger LOGGER = LoggerFactory.getLogger(ThemeImporterContentHelper.class);
   private CapConnection capConnection;
   private final ThemeImporterResultImpl result;
-  private Collection<Content> toBeCheckedIn = new HashSet<>();
+  private final Set<Content> toBeCheckedIn = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger unchangedCount = new AtomicInteger();
+  private Function<Blob, byte[]> blobDigests = blob -> null;
 
 
   // --- Construct and configure ------------------------------------
@@ -41,6 +56,15 @@ class ThemeImporterContentHelper {
     this.result = result;
   }
 
+  /**
+   * Known SHA-256 digests of new blobs, so that they need not be read in
+   * order to detect whether they have changed.  The function returns null
+   * for unknown blobs.
+   */
+  void setBlobDigests(@NonNull Function<Blob, byte[]> blobDigests) {
+    this.blobDigests = blobDigests;
+  }
+
 
   // --- Features ---------------------------------------------------
 
@@ -56,6 +80,20 @@ class ThemeImporterContentHelper {
     return modifiableContent(type, normalize(folder)+path);
   }
 
+  /**
+   * Create the folders of the given paths in advance, so that concurrent
+   * updates of their contents do not compete for creating them.
+   */
+  void ensureFolders(String folder, Collection<String> paths) {
+    ContentRepository repository = capConnection.getContentRepository();
+    paths.stream()
+            .map(path -> normalize(folder) + path)
+            .map(absolutePath -> absolutePath.substring(0, absolutePath.lastIndexOf('/')))
+            .filter(parent -> !parent.isEmpty())
+            .distinct()
+            .forEach(repository::createSubfolders);
+  }
+
   Content updateContent(String newType, String folder, String path, Map<String, ?> properties) {
     return updateContent(newType, normalize(folder)+path, properties);
   }
@@ -68,19 +106,28 @@ class ThemeImporterContentHelper {
         if (!changedProperties.isEmpty()) {
           checkOut(content);
           content.setProperties(properties);
-          result.addUpdate(absolutePath, content);
+          addUpdate(absolutePath, content);
+        } else {
+          unchangedCount.incrementAndGet();
         }
       } else {
-        result.addFailure(absolutePath);
+        addFailure(absolutePath);
       }
       return content;
     } catch (Exception e) {
       LOGGER.error("Error creating content {} ", absolutePath, e);
-      result.addFailure(absolutePath);
+      addFailure(absolutePath);
       return null;
     }
   }
 
+  /**
+   * The number of contents which needed no update so far.
+   */
+  int getUnchangedCount() {
+    return unchangedCount.get();
+  }
+
   Struct propertiesToStruct(String text) {
     StructBuilder structBuilder = capConnection.getStructService().createStructBuilder();
     propertiesToStructBuilder(text, structBuilder);
@@ -106,14 +153,14 @@ class ThemeImporterContentHelper {
         if (!content.delete().isSuccessful()) {
           LOGGER.warn("Cannot delete content {}, you should clean up manually afterwards.", content);
         } else {
-          result.addUpdate(absolutePath, content);
+          addUpdate(absolutePath, content);
           return true;
         }
       } catch (Exception e) {
         LOGGER.warn("Cannot delete content {}, you should clean up manually afterwards.", content, e);
       }
     }
-    result.addFailure(absolutePath);
+    addFailure(absolutePath);
     return false;
   }
 
@@ -145,7 +192,7 @@ class ThemeImporterContentHelper {
     for (Map.Entry<String, ?> entry : newProperties.entrySet()) {
       String key = entry.getKey();
       Object value = entry.getValue();
-      if (!equivalent(content.get(key), value)) {
+      if (!equivalent(content.get(key), value, blobDigests)) {
         changedProperties.put(key, value);
       }
     }
@@ -155,7 +202,16 @@ class ThemeImporterContentHelper {
   /**
    * equivalent is slightly more tolerant than equals, e.g. "" vs. null.
    */
-  private boolean equivalent(Object oldValue, Object newValue) {
+  @VisibleForTesting
+  static boolean equivalent(Object oldValue, Object newValue) {
+    return equivalent(oldValue, newValue, blob -> null);
+  }
+
+  @VisibleForTesting
+  static boolean equivalent(Object oldValue, Object newValue, Function<Blob, byte[]> blobDigests) {
+    if (oldValue instanceof Blob && newValue instanceof Blob) {
+      return sameData((Blob) oldValue, (Blob) newValue, blobDigests.apply((Blob) newValue));
+    }
     if (Objects.equals(newValue, oldValue)) {
       return true;
     }
@@ -165,7 +221,48 @@ class ThemeImporterContentHelper {
     return false;
   }
 
-  private boolean isEmptyString(Object o) {
+  /**
+   * Compare blobs by size, content type and a hash of their data, so that
+   * unchanged resources of a re-imported theme are not checked out.
+   *
+   * @param newDigest the known digest of the new blob, or null if it must be read
+   */
+  private static boolean sameData(Blob oldBlob, Blob newBlob, @Nullable byte[] newDigest) {
+    if (oldBlob.getSize() != newBlob.getSize() || !sameType(oldBlob.getContentType(), newBlob.getContentType())) {
+      return false;
+    }
+    try {
+      return Arrays.equals(digest(oldBlob), newDigest != null ? newDigest : digest(newBlob));
+    } catch (IOException e) {
+      LOGGER.debug("Cannot compare blobs, assume a change.", e);
+      return false;
+    }
+  }
+
+  private static boolean sameType(MimeType oldType, MimeType newType) {
+    return oldType == null ? newType == null : newType != null && oldType.match(newType);
+  }
+
+  private static byte[] digest(Blob blob) throws IOException {
+    try (InputStream in = blob.getInputStream()) {
+      MessageDigest digest = sha256();
+      byte[] buffer = new byte[8192];
+      for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+        digest.update(buffer, 0, count);
+      }
+      return digest.digest();
+    }
+  }
+
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Illegal JVM, MessageDigest is required to support SHA-256.", e);
+    }
+  }
+
+  private static boolean isEmptyString(Object o) {
     return o==null || o instanceof String && ((String)o).isEmpty();
   }
 
@@ -192,7 +289,7 @@ class ThemeImporterContentHelper {
       if (!content.getType().getName().equals(contentType)) {
         //Set to null, because the type is different
         LOGGER.warn("Cannot update document {} since it is of type {} even though it should be of type {}", absolutePath, content.getType().getName(), contentType);
-        result.addFailure(absolutePath);
+        addFailure(absolutePath);
         content = null;
       } else if (content.isCheckedOut() && !content.isCheckedOutByCurrentSession()) {
         // Maybe the document would need no update anyway, so we could return
@@ -200,7 +297,7 @@ class ThemeImporterContentHelper {
         // do not control this document, state and effects are unpredictable,
         // even if we do not touch it, so better warn early.
         LOGGER.warn("Cannot update document {} since it has been checkout out by somebody else.", absolutePath);
-        result.addFailure(absolutePath);
+        addFailure(absolutePath);
         content = null;
       }
     } else {
@@ -210,7 +307,7 @@ class ThemeImporterContentHelper {
         toBeCheckedIn.add(content);
       } else {
         LOGGER.warn("Cannot create document {} since there is no content type {}", absolutePath, contentType);
-        result.addFailure(absolutePath);
+        addFailure(absolutePath);
       }
     }
     return content;
@@ -225,6 +322,18 @@ class ThemeImporterContentHelper {
     }
   }
 
+  private void addUpdate(String absolutePath, Content content) {
+    synchronized (result) {
+      result.addUpdate(absolutePath, content);
+    }
+  }
+
+  private void addFailure(String absolutePath) {
+    synchronized (result) {
+      result.addFailure(absolutePath);
+    }
+  }
+
   private void revert(Content content) {
     if (content.getCheckedOutVersion() !=null) {
       content.revert();
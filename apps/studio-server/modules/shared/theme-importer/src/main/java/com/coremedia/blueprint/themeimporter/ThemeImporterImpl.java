@@ -10,6 +10,7 @@ import com.coremedia.blueprint.themeimporter.descriptors.Setting;
 import com.coremedia.blueprint.themeimporter.descriptors.ThemeDefinition;
 import com.coremedia.cap.common.Blob;
 import com.coremedia.cap.common.CapConnection;
+import com.coremedia.cap.common.CapSession;
 import com.coremedia.cap.common.XmlGrammar;
 import com.coremedia.cap.content.Content;
 import com.coremedia.cap.struct.Struct;
@@ -27,14 +28,11 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.StringUtils;
 import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
-import javax.activation.MimeTypeParseException;
 import javax.xml.bind.DatatypeConverter;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
@@ -47,6 +45,13 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -104,12 +109,19 @@ public class ThemeImporterImpl implements ThemeImporter {
 
   @VisibleForTesting static final Pattern URL_PATTERN = Pattern.compile(URL_REGEX);
 
+  /**
+   * The number of resources which are written by one task of the import pool.
+   */
+  private static final int BATCH_SIZE = 50;
+
   private final MimeTypeService mimeTypeService;
   private final CapConnection capConnection;
   private final LocalizationService localizationService;
   private final MapToStructAdapter mapToStructAdapter;
   private final SettingsJsonToMapAdapter settingsJsonToMapAdapter;
 
+  private int parallelism = 4;
+
   // --- construct and configure ------------------------------------
 
   public ThemeImporterImpl(@NonNull CapConnection capConnection,
@@ -124,30 +136,54 @@ public class ThemeImporterImpl implements ThemeImporter {
     this.settingsJsonToMapAdapter = settingsJsonToMapAdapter;
   }
 
+  /**
+   * The number of threads which write the contents of images, web fonts and
+   * other resources which do not link other contents.
+   * <p>
+   * Default is 4.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive, but is " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
 
   // --- features ---------------------------------------------------
 
   @Override
   public ThemeImporterResult importThemes(@NonNull String targetFolder, Collection<InputStream> zips, boolean checkInAfterImport, boolean cleanBeforeImport) {
-    ImportData importData;
+    ImportData importData = new ImportData(mimeTypeService, capConnection);
     try {
-      importData = extractImportDataFromStreams(zips);
-    } catch (Exception e) {
-      return fail(targetFolder, e);
+      try {
+        long start = System.nanoTime();
+        for (InputStream zip : zips) {
+          importData.collectFilesToImport(zip);
+        }
+        LOGGER.info("Theme import: read {} theme archive(s) in {} ms", zips.size(), millisSince(start));
+      } catch (Exception e) {
+        return fail(targetFolder, e);
+      }
+      return importAndCleanUp(targetFolder, importData, checkInAfterImport, cleanBeforeImport);
+    } finally {
+      importData.dispose();
     }
-    return importAndCleanUp(targetFolder, importData, checkInAfterImport, cleanBeforeImport);
   }
 
   @Override
   public ThemeImporterResult importCodeResource(@NonNull String targetFolder, @NonNull String path, InputStream inputStream, boolean checkInAfterImport) {
-    ImportData importData;
+    ImportData importData = new ImportData(mimeTypeService, capConnection);
     try {
-      importData = new ImportData(mimeTypeService, capConnection);
-      importData.addFileToImport(inputStream, path);
-    } catch (Exception e) {
-      return fail(targetFolder, e);
+      try {
+        importData.addFileToImport(inputStream, path);
+      } catch (Exception e) {
+        return fail(targetFolder, e);
+      }
+      return importAndCleanUp(targetFolder, importData, checkInAfterImport, false);
+    } finally {
+      importData.dispose();
     }
-    return importAndCleanUp(targetFolder, importData, checkInAfterImport, false);
   }
 
   @Override
@@ -173,14 +209,6 @@ public class ThemeImporterImpl implements ThemeImporter {
 
   // --- internal ---------------------------------------------------
 
-  private ImportData extractImportDataFromStreams(Collection<InputStream> zips) throws IOException, MimeTypeParseException, ParserConfigurationException, SAXException {
-    ImportData importData = new ImportData(mimeTypeService, capConnection);
-    for (InputStream zip : zips) {
-      importData.collectFilesToImport(zip);
-    }
-    return importData;
-  }
-
   private ThemeImporterResult fail(@NonNull String targetFolder, Exception e) {
     LOGGER.error("Theme import failed, no changes in content repository", e);
     ThemeImporterResultImpl failedResult = new ThemeImporterResultImpl();
@@ -191,6 +219,7 @@ public class ThemeImporterImpl implements ThemeImporter {
   private ThemeImporterResult importAndCleanUp(@NonNull String targetFolderPath, ImportData importData, boolean checkInAfterImport, boolean cleanBeforeImport) {
     ThemeImporterResultImpl result = new ThemeImporterResultImpl();
     ThemeImporterContentHelper contentHelper = new ThemeImporterContentHelper(capConnection, result);
+    contentHelper.setBlobDigests(importData::getDigest);
     String normalizedTargetFolder = normalize(targetFolderPath);
     try {
       if (cleanBeforeImport) {
@@ -200,7 +229,9 @@ public class ThemeImporterImpl implements ThemeImporter {
       }
       processAll(importData, normalizedTargetFolder, contentHelper, result);
       if (checkInAfterImport) {
+        long start = System.nanoTime();
         contentHelper.checkInAll();
+        LOGGER.info("Theme import: checked in all contents in {} ms", millisSince(start));
       }
     } catch (Exception e) {
       contentHelper.revertAll();
@@ -219,64 +250,121 @@ public class ThemeImporterImpl implements ThemeImporter {
   private void processAll(ImportData importData, String targetFolder, ThemeImporterContentHelper contentHelper, ThemeImporterResultImpl result) {
     // Linked content first, then linking content.
 
-    processImages(importData, targetFolder, contentHelper);
-    processResourceBundles(importData, targetFolder, contentHelper);
-    processWebFonts(importData, targetFolder, contentHelper);
-    processStaticResources(importData, targetFolder, contentHelper);
-    processInteractiveObjects(importData, targetFolder, contentHelper);
-    processTemplates(importData, targetFolder, contentHelper);
-    processJavaScripts(importData, targetFolder, contentHelper);
-    processStyleSheets(importData, targetFolder, contentHelper);
+    // Images, resource bundles, web fonts etc. do not link other contents,
+    // so they are written in parallel.
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("theme-import-"));
+    try {
+      processInParallel("images", importData.getImages(), targetFolder, contentHelper, executor,
+              (path, image) -> contentHelper.updateContent(CM_IMAGE_DOCTYPE, targetFolder, path, Map.of(DATA_PROPERTY, image)));
+      processInParallel("resource bundles", importData.getResourceBundles(), targetFolder, contentHelper, executor,
+              (path, propertyFile) -> processResourceBundle(path, propertyFile, targetFolder, contentHelper));
+      processInParallel("web fonts", importData.getWebFonts(), targetFolder, contentHelper, executor,
+              (path, webFont) -> contentHelper.updateContent(CM_IMAGE_DOCTYPE, targetFolder, path, Map.of(DATA_PROPERTY, webFont)));
+      processInParallel("static resources", importData.getStaticResources(), targetFolder, contentHelper, executor,
+              (path, staticResource) -> contentHelper.updateContent(CM_IMAGE_DOCTYPE, targetFolder, path, Map.of(DATA_PROPERTY, staticResource)));
+      processInParallel("interactive objects", importData.getInteractiveObjects(), targetFolder, contentHelper, executor,
+              (path, interactive) -> contentHelper.updateContent(CM_INTERACTIVE_DOCTYPE, targetFolder, path, Map.of(DATA_PROPERTY, interactive)));
+      processInParallel("templates", importData.getTemplateSets(), targetFolder, contentHelper, executor,
+              (path, templateSet) -> contentHelper.updateContent(CM_TEMPLATE_SET_DOCTYPE, targetFolder, path, Map.of(ARCHIVE_PROPERTY, templateSet)));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    timed("JavaScripts", importData.getJavaScripts().size(), contentHelper,
+            () -> processJavaScripts(importData, targetFolder, contentHelper));
+    timed("style sheets", importData.getStyleSheets().size(), contentHelper,
+            () -> processStyleSheets(importData, targetFolder, contentHelper));
     // settings may reference all kind of another resources, so they need to be processed last
-    processSettings(importData, targetFolder, contentHelper);
+    timed("settings", importData.getSettings().size(), contentHelper,
+            () -> processSettings(importData, targetFolder, contentHelper));
 
     // The theme descriptors are the last files to be processed.
     // processXmlFiles modifies the code resources contents again, assuming
     // that they exist meanwhile.
-    processXmlFiles(importData, targetFolder, contentHelper, result);
+    timed("theme descriptors", importData.getThemeDescriptors().size(), contentHelper,
+            () -> processXmlFiles(importData, targetFolder, contentHelper, result));
   }
 
-  private void processImages(ImportData importData, String targetFolder, ThemeImporterContentHelper contentHelper) {
-    for (Map.Entry<String, Blob> image : importData.getImages().entrySet()) {
-      contentHelper.updateContent(CM_IMAGE_DOCTYPE, targetFolder, image.getKey(), Map.of(DATA_PROPERTY, image.getValue()));
-    }
+  /**
+   * Process the resources in batches on the given executor, and wait until
+   * all of them are done.
+   * <p>
+   * The batches run in the session of the calling thread, so that the
+   * contents are written by the importing user.
+   */
+  private <T> void processInParallel(String phase,
+                                     Map<String, T> resources,
+                                     String targetFolder,
+                                     ThemeImporterContentHelper contentHelper,
+                                     ExecutorService executor,
+                                     BiConsumer<String, T> processor) {
+    timed(phase, resources.size(), contentHelper, () -> {
+      contentHelper.ensureFolders(targetFolder, resources.keySet());
+      List<Map.Entry<String, T>> entries = new ArrayList<>(resources.entrySet());
+      AtomicInteger done = new AtomicInteger();
+      CapSession session = capConnection.getSession();
+      List<Future<?>> batches = new ArrayList<>();
+      for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+        List<Map.Entry<String, T>> batch = entries.subList(from, Math.min(from + BATCH_SIZE, entries.size()));
+        batches.add(executor.submit(() -> {
+          CapSession previousSession = session.activate();
+          try {
+            batch.forEach(entry -> processor.accept(entry.getKey(), entry.getValue()));
+          } finally {
+            if (previousSession != null) {
+              previousSession.activate();
+            }
+          }
+          LOGGER.debug("Theme import: processed {} of {} {}", done.addAndGet(batch.size()), entries.size(), phase);
+        }));
+      }
+      awaitAll(batches);
+    });
   }
 
-  private void processResourceBundles(ImportData importData, String targetFolder, ThemeImporterContentHelper contentHelper) {
-    for (Map.Entry<String, String> propertyFile : importData.getResourceBundles().entrySet()) {
-      Struct localization = contentHelper.propertiesToStruct(propertyFile.getValue());
-      Map<String, Object> properties = new HashMap<>();
-      properties.put("localizations", localization);
-      contentHelper.updateContent(CM_RESOURCE_BUNDLE_DOCTYPE, targetFolder, propertyFile.getKey(), properties);
+  /**
+   * Wait for all tasks, also if some of them fail, so that no task is still
+   * running when the import is reverted.
+   */
+  private static void awaitAll(List<Future<?>> tasks) {
+    RuntimeException failure = null;
+    for (Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        tasks.forEach(pending -> pending.cancel(true));
+        throw new IllegalStateException("Interrupted while importing theme resources", e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+      }
     }
-  }
-
-  private void processWebFonts(ImportData importData, String targetFolder, ThemeImporterContentHelper contentHelper) {
-    for (Map.Entry<String, Blob> webFont : importData.getWebFonts().entrySet()) {
-      Map<String, Blob> properties = Map.of(DATA_PROPERTY, webFont.getValue());
-      contentHelper.updateContent(CM_IMAGE_DOCTYPE, targetFolder, webFont.getKey(), properties);
+    if (failure != null) {
+      throw failure;
     }
   }
 
-  private void processStaticResources(ImportData importData, String targetFolder, ThemeImporterContentHelper contentHelper) {
-    for (Map.Entry<String, Blob> staticResource : importData.getStaticResources().entrySet()) {
-      Map<String, Blob> properties = Map.of(DATA_PROPERTY, staticResource.getValue());
-      contentHelper.updateContent(CM_IMAGE_DOCTYPE, targetFolder, staticResource.getKey(), properties);
+  private static void timed(String phase, int count, ThemeImporterContentHelper contentHelper, Runnable step) {
+    long start = System.nanoTime();
+    int unchangedBefore = contentHelper.getUnchangedCount();
+    step.run();
+    if (count > 0) {
+        LOGGER.info("Theme import: processed {} {} in {} ms, {} unchanged", count, phase, millisSince(start),
+              contentHelper.getUnchangedCount() - unchangedBefore);
     }
   }
 
-  private void processInteractiveObjects(ImportData importData, String targetFolder, ThemeImporterContentHelper contentHelper) {
-    for (Map.Entry<String, Blob> interactive : importData.getInteractiveObjects().entrySet()) {
-      Map<String, Blob> properties = Map.of(DATA_PROPERTY, interactive.getValue());
-      contentHelper.updateContent(CM_INTERACTIVE_DOCTYPE, targetFolder, interactive.getKey(), properties);
-    }
+  private static long millisSince(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
   }
 
-  private void processTemplates(ImportData importData, String targetFolder, ThemeImporterContentHelper contentHelper) {
-    for (Map.Entry<String, Blob> templateSet : importData.getTemplateSets().entrySet()) {
-      Map<String, Blob> properties = Map.of(ARCHIVE_PROPERTY, templateSet.getValue());
-      contentHelper.updateContent(CM_TEMPLATE_SET_DOCTYPE, targetFolder, templateSet.getKey(), properties);
-    }
+  private void processResourceBundle(String path, String propertyFile, String targetFolder, ThemeImporterContentHelper contentHelper) {
+    Struct localization = contentHelper.propertiesToStruct(propertyFile);
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("localizations", localization);
+    contentHelper.updateContent(CM_RESOURCE_BUNDLE_DOCTYPE, targetFolder, path, properties);
   }
 
   private void processJavaScripts(ImportData importData, String targetFolder, ThemeImporterContentHelper contentHelper) {
@@ -1,16 +1,26 @@
 package com.coremedia.blueprint.themeimporter;
 
+import com.coremedia.cap.common.Blob;
 import com.coremedia.cap.struct.StructBuilder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import javax.activation.MimeType;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ThemeImporterContentHelperTest {
@@ -86,8 +96,60 @@ public class ThemeImporterContentHelperTest {
   }
 
 
+  // --- change detection -------------------------------------------
+
+  @Test
+  public void testEquivalentBlobs() throws Exception {
+    assertTrue(ThemeImporterContentHelper.equivalent(blob("image/png", "data"), blob("image/png", "data")));
+  }
+
+  @Test
+  public void testChangedBlobData() throws Exception {
+    assertFalse(ThemeImporterContentHelper.equivalent(blob("image/png", "data"), blob("image/png", "atad")));
+  }
+
+  @Test
+  public void testChangedBlobType() throws Exception {
+    Blob oldBlob = blob("image/png", "data");
+    assertFalse(ThemeImporterContentHelper.equivalent(oldBlob, blob("image/gif", "data")));
+    verify(oldBlob, never()).getInputStream();
+  }
+
+  @Test
+  public void testChangedBlobSize() throws Exception {
+    Blob oldBlob = blob("image/png", "data");
+    assertFalse(ThemeImporterContentHelper.equivalent(oldBlob, blob("image/png", "more data")));
+    verify(oldBlob, never()).getInputStream();
+  }
+
+  @Test
+  public void testKnownDigestOfNewBlob() throws Exception {
+    Blob newBlob = blob("image/png", "data");
+    byte[] digest = ThemeImporterContentHelper.sha256().digest("data".getBytes(StandardCharsets.UTF_8));
+
+    assertTrue(ThemeImporterContentHelper.equivalent(blob("image/png", "data"), newBlob, blob -> digest));
+    verify(newBlob, never()).getInputStream();
+  }
+
+  @Test
+  public void testEmptyStrings() {
+    assertTrue(ThemeImporterContentHelper.equivalent(null, ""));
+    assertFalse(ThemeImporterContentHelper.equivalent(null, "x"));
+  }
+
+
   // --- internal ---------------------------------------------------
 
+  private static Blob blob(String contentType, String data) throws Exception {
+    byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+    // not every test reads every property
+    Blob blob = mock(Blob.class, withSettings().lenient());
+    when(blob.getSize()).thenReturn(bytes.length);
+    when(blob.getContentType()).thenReturn(new MimeType(contentType));
+    when(blob.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+    return blob;
+  }
+
   private void checkProperty(ThemeImporterContentHelper.KeyValue actual, String expectedKey, String expectedValue) {
     assertEquals("wrong key", expectedKey, actual.key);
     assertEquals("wrong value", expectedValue, actual.value);
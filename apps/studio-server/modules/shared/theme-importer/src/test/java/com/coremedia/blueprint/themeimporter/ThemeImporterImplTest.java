@@ -116,6 +116,19 @@ public class ThemeImporterImplTest {
     assertThat(themeImporterResult.isSuccessful()).isTrue();
   }
 
+  @Test
+  public void extractFromZipSequentially() {
+    themeImporter.setParallelism(1);
+
+    ThemeImporterResult themeImporterResult = themeImporter.importThemes(THEMES, singletonList(corporateTheme), true, true);
+
+    assertThat(themeImporterResult.isSuccessful()).isTrue();
+    Content corporateTheme = capConnection.getContentRepository().getChild(THEMES + "/corporate/Corporate Theme");
+    assertThat(corporateTheme).isNotNull();
+    checkLinkList(corporateTheme, "templateSets", 2);
+    checkLinkList(corporateTheme, "resourceBundles", 4);
+  }
+
   @Test
   public void writeOnlyChanges() throws IOException {
     assertTrue(themeImporter.importThemes(THEMES, singletonList(corporateTheme), true, true).isSuccessful());
@@ -11,10 +11,16 @@
     <#-- Iterate over each row -->
     <#list self.rows![] as row>
       <div class="cm-grid__row">
-        <#-- Iterate over each placement -->
-        <#list row.placements![] as placement>
-          <@cm.include self=placement />
-        </#list>
+        <#-- Placements are rendered in parallel if enabled, and included one after another otherwise -->
+        <#assign renderedPlacements=bp.renderPlacements(row.placements![]) />
+        <#if renderedPlacements?has_content>
+          <#list renderedPlacements as renderedPlacement>${renderedPlacement?no_esc}</#list>
+        <#else>
+          <#-- Iterate over each placement -->
+          <#list row.placements![] as placement>
+            <@cm.include self=placement />
+          </#list>
+        </#if>
       </div>
     </#list>
   </div>
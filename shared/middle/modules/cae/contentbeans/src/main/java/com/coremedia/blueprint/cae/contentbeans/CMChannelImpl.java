@@ -17,6 +17,7 @@ import com.coremedia.blueprint.common.layout.PageGrid;
 import com.coremedia.blueprint.common.layout.PageGridService;
 import com.coremedia.blueprint.common.navigation.Linkable;
 import com.coremedia.blueprint.common.navigation.Navigation;
+import com.coremedia.blueprint.common.util.FlatteningMemo;
 import com.coremedia.cache.Cache;
 import com.coremedia.cache.util.ObjectCacheKey;
 import com.coremedia.cap.content.Content;
@@ -32,7 +33,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
@@ -47,7 +50,6 @@ public class CMChannelImpl extends CMChannelBase {
 
   private PageGridService pageGridService;
   private ThemeService themeService;
-  private Cache cache;
 
   /**
    * If the header is empty, fallback to parent channel.
@@ -179,6 +181,7 @@ public class CMChannelImpl extends CMChannelBase {
   @Override
   public VanityUrlMapper getVanityUrlMapper() {
     if (isRoot()) {
+      Cache cache = getCache();
       return cache==null ? createVanityUrlMapper() : cache.get(new VanityUrlMapperCacheKey());
     } else {
       // optimization, assume vanity URLs are only managed on the root channel
@@ -231,10 +234,6 @@ public class CMChannelImpl extends CMChannelBase {
     this.themeService = themeService;
   }
 
-  public void setCache(Cache cache) {
-    this.cache = cache;
-  }
-
   @Override
   protected void initialize() {
     super.initialize();
@@ -253,9 +252,11 @@ public class CMChannelImpl extends CMChannelBase {
 
   @Override
   public List<? extends CMLinkable> getItemsFlattened() {
-    List<CMLinkable> result = new ArrayList<>();
-    flatten(result, getItems());
-    return result;
+    return FlatteningMemo.memoize(CMChannelImpl.class.getName(), this, CMLinkable.class, () -> {
+      Set<CMLinkable> result = new LinkedHashSet<>();
+      flatten(result, getItems());
+      return new ArrayList<>(result);
+    });
   }
 
   private List<? extends CMLinkable> getItems() {
@@ -270,10 +271,10 @@ public class CMChannelImpl extends CMChannelBase {
 
   /**
    * Recursive search for items that can be displayed as navigation items.
-   * @param result The filtered result list that contains the items to display in the navigation.
+   * @param result The filtered result set that contains the items to display in the navigation.
    * @param items The items of the current content bean.
    */
-  private void flatten(List<CMLinkable> result, List<?> items) {
+  private void flatten(Set<CMLinkable> result, List<?> items) {
     for (Object item : items) {
       if (item instanceof CMCollection<?>) {
         //enter child
@@ -282,7 +283,7 @@ public class CMChannelImpl extends CMChannelBase {
       } else if (item instanceof CMLinkable) {
         final CMLinkable linkable = (CMLinkable) item;
         //filter item for valid types and exclude duplicates
-        if (!result.contains(item) && isValidNavigationType(linkable)) {
+        if (!result.contains(linkable) && isValidNavigationType(linkable)) {
           result.add(linkable);
         }
       }
@@ -21,6 +21,7 @@ import com.coremedia.blueprint.common.teaserOverlay.TeaserOverlaySettings;
 import com.coremedia.blueprint.common.teaserOverlay.TeaserOverlayStyle;
 import com.coremedia.blueprint.common.util.ContentBeanSolrSearchFormatHelper;
 import com.coremedia.blueprint.common.util.ParagraphHelper;
+import com.coremedia.cache.Cache;
 import com.coremedia.cap.content.Content;
 import com.coremedia.xml.Markup;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -50,6 +51,7 @@ public class CMTeasableImpl extends CMTeasableBase {
   static final String LEGACY_STRUCT_CTA_CUSTOM_TEXT_PROPERTY_NAME = "callToActionCustomText";
 
   private SearchResultFactory resultFactory;
+  private Cache cache;
 
   public SearchResultFactory getResultFactory() {
     return resultFactory;
@@ -59,6 +61,17 @@ public class CMTeasableImpl extends CMTeasableBase {
     this.resultFactory = resultFactory;
   }
 
+  /**
+   * Optional cache for values derived from the content, like the paragraphs of the detail text.
+   */
+  public void setCache(Cache cache) {
+    this.cache = cache;
+  }
+
+  protected Cache getCache() {
+    return cache;
+  }
+
   @Override
   protected void initialize() {
     super.initialize();
@@ -237,7 +250,8 @@ public class CMTeasableImpl extends CMTeasableBase {
 
   @Override
   public List<Markup> getTextAsParagraphs() {
-    return ParagraphHelper.createParagraphs(getDetailText());
+    // splitting parses the complete detail text, so share the paragraphs between requests
+    return cache == null ? ParagraphHelper.createParagraphs(getDetailText()) : cache.get(new TextAsParagraphsCacheKey(this));
   }
 
   public Map<String, Object> getTeaserSettingsMap() {
@@ -0,0 +1,48 @@
+package com.coremedia.blueprint.cae.contentbeans;
+
+import com.coremedia.blueprint.common.util.ParagraphHelper;
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.xml.Markup;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Caches the paragraphs of the detail text of a {@link CMTeasableImpl}.
+ * <p>
+ * The detail text is read and split while the key is evaluated, so the
+ * paragraphs depend on the content and are invalidated when the detail text
+ * changes.  Since bean classes may post-process the detail text, the key is
+ * identified by the content and the class of the bean.
+ */
+class TextAsParagraphsCacheKey extends CacheKey<List<Markup>> {
+
+  private final CMTeasableImpl teasable;
+
+  TextAsParagraphsCacheKey(CMTeasableImpl teasable) {
+    this.teasable = teasable;
+  }
+
+  @Override
+  public List<Markup> evaluate(Cache cache) {
+    return List.copyOf(ParagraphHelper.createParagraphs(teasable.getDetailText()));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    TextAsParagraphsCacheKey that = (TextAsParagraphsCacheKey) o;
+    return teasable.getContent().equals(that.teasable.getContent()) && teasable.getClass() == that.teasable.getClass();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(teasable.getContent(), teasable.getClass());
+  }
+}
@@ -17,9 +17,7 @@ import com.coremedia.blueprint.common.navigation.Linkable;
 import com.coremedia.blueprint.common.services.validation.ValidationService;
 import com.coremedia.blueprint.common.util.ContainerFlattener;
 import com.coremedia.blueprint.viewtype.ViewtypeService;
-import com.coremedia.cap.common.CapStructHelper;
 import com.coremedia.cap.content.Content;
-import com.coremedia.cap.struct.Struct;
 import com.coremedia.objectserver.beans.ContentBeanFactory;
 import com.coremedia.objectserver.dataviews.AssumesIdentity;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -226,10 +224,9 @@ public class ContentBeanBackedPageGridPlacement implements PageGridPlacement, As
    * Retrieves the items of this PageGridPlacement
    */
   public List<AnnotatedLinkWrapper> getItemsUnfiltered() {
-    return getDelegate().getExtendedItems().stream()
+    PageGridSnapshot snapshot = PageGridSnapshot.of(bean, contentBackedPageGridService);
+    return snapshot.getLinks(snapshot.getSection(row, colIndex)).stream()
             .map(AnnotatedLinkWrapper::new)
-            .filter(al -> al.getTarget() != null)
-            .filter(al -> al.getTarget().isInProduction())
             .collect(Collectors.toList());
   }
 
@@ -263,45 +260,34 @@ public class ContentBeanBackedPageGridPlacement implements PageGridPlacement, As
 
   private class AnnotatedLinkWrapper implements ValidityPeriod {
 
-    @Nullable
-    private Content target;
-
-    @Nullable
-    private Linkable targetBean;
-
-    @Nullable
-    private final Calendar visibleFrom;
-
-    @Nullable
-    private final Calendar visibleTo;
+    @NonNull
+    private final PageGridSnapshot.Link link;
 
-    AnnotatedLinkWrapper(@NonNull Struct annotatedLink) {
-      target = CapStructHelper.getLink(annotatedLink, PageGridContentKeywords.ANNOTATED_LINK_LIST_TARGET_PROPERTY_NAME);
-      targetBean = getContentBeanFactory().createBeanFor(target, Linkable.class);
-      visibleFrom = CapStructHelper.getDate(annotatedLink, PageGridContentKeywords.ANNOTATED_LINK_LIST_VISIBLE_FROM_PROPERTY_NAME);
-      visibleTo = CapStructHelper.getDate(annotatedLink, PageGridContentKeywords.ANNOTATED_LINK_LIST_VISIBLE_TO_PROPERTY_NAME);
+    AnnotatedLinkWrapper(@NonNull PageGridSnapshot.Link link) {
+      this.link = link;
     }
 
-    @Nullable
+    @NonNull
     Content getTarget() {
-      return target;
+      return link.getTarget();
     }
 
     @Nullable
     Linkable getTargetBean() {
-      return targetBean;
+      // created at read time, content beans are not shared across requests
+      return getContentBeanFactory().createBeanFor(link.getTarget(), Linkable.class);
     }
 
     @Nullable
     @Override
     public Calendar getValidFrom() {
-      return visibleFrom;
+      return link.getValidFrom();
     }
 
     @Nullable
     @Override
     public Calendar getValidTo() {
-      return visibleTo;
+      return link.getValidTo();
     }
   }
 }
@@ -1,9 +1,7 @@
 package com.coremedia.blueprint.cae.layout;
 
 import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGrid;
-import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGridPlacement;
 import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGridService;
-import com.coremedia.blueprint.base.pagegrid.PageGridConstants;
 import com.coremedia.blueprint.common.datevalidation.ValidityPeriodValidator;
 import com.coremedia.blueprint.common.layout.HasPageGrid;
 import com.coremedia.blueprint.common.layout.PageGrid;
@@ -17,7 +15,6 @@ import com.coremedia.cap.content.Content;
 import com.coremedia.objectserver.dataviews.AssumesIdentity;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class PageGridImpl implements PageGrid, AssumesIdentity {
@@ -55,7 +52,7 @@ public class PageGridImpl implements PageGrid, AssumesIdentity {
   @Override
   public List<PageGridRow> getRows() {
     List<PageGridRow> result = new ArrayList<>();
-    int numRows = getContentBackedPageGrid().getStyleGrid().getNumRows();
+    int numRows = getSnapshot().getNumRows();
     for (int row = 0; row < numRows; ++row) {
       result.add(new PageGridRowImpl(bean, row, contentBackedPageGridService, validationService, visibilityValidator, viewtypeService));
     }
@@ -78,12 +75,12 @@ public class PageGridImpl implements PageGrid, AssumesIdentity {
 
   @Override
   public int getNumcols() {
-    return getContentBackedPageGrid().getStyleGrid().getNumColumns();
+    return getSnapshot().getNumColumns();
   }
 
   @Override
   public String getCssClassName() {
-    return getContentBackedPageGrid().getCssClassName();
+    return getSnapshot().getCssClassName();
   }
 
 
@@ -96,8 +93,7 @@ public class PageGridImpl implements PageGrid, AssumesIdentity {
    */
   @Override
   public List getMainItems() {
-    ContentBackedPageGridPlacement placement = getContentBackedPageGrid().getPlacements().get(PageGridConstants.MAIN_PLACEMENT_NAME);
-    return placement == null ? Collections.emptyList() : placement.getItems();
+    return getSnapshot().getMainItems();
   }
 
   @Override
@@ -155,4 +151,8 @@ public class PageGridImpl implements PageGrid, AssumesIdentity {
   protected ContentBackedPageGrid getContentBackedPageGrid() {
     return contentBackedPageGridService.getContentBackedPageGrid(bean.getContent());
   }
+
+  private PageGridSnapshot getSnapshot() {
+    return PageGridSnapshot.of(bean, contentBackedPageGridService);
+  }
 }
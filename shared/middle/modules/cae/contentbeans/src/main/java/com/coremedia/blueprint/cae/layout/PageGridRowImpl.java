@@ -1,9 +1,6 @@
 package com.coremedia.blueprint.cae.layout;
 
-import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGrid;
 import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGridService;
-import com.coremedia.blueprint.base.pagegrid.ContentBackedStyle;
-import com.coremedia.blueprint.base.pagegrid.ContentBackedStyleGrid;
 import com.coremedia.blueprint.common.datevalidation.ValidityPeriodValidator;
 import com.coremedia.blueprint.common.layout.HasPageGrid;
 import com.coremedia.blueprint.common.layout.PageGridPlacement;
@@ -73,11 +70,10 @@ public class PageGridRowImpl implements PageGridRow, AssumesIdentity {
   @Override
   public List<PageGridPlacement> getPlacements() {
     List<PageGridPlacement> placements = new ArrayList<>();
-    ContentBackedStyleGrid styleGrid = getContentBackedPageGrid().getStyleGrid();
-    List<ContentBackedStyle> styleRow = styleGrid.getRow(row);
-    for (int colIndex = 0; colIndex < styleRow.size(); ++colIndex) {
+    int rowSize = PageGridSnapshot.of(bean, contentBackedPageGridService).getRowSize(row);
+    for (int colIndex = 0; colIndex < rowSize; ++colIndex) {
       placements.add(new ContentBeanBackedPageGridPlacement(bean,
-              row, styleRow.size(), colIndex,
+              row, rowSize, colIndex,
               contentBackedPageGridService,
               validationService,
               visibilityValidator,
@@ -149,11 +145,4 @@ public class PageGridRowImpl implements PageGridRow, AssumesIdentity {
     bean = other.bean;
     row = other.row;
   }
-
-
-  // --- internal ---------------------------------------------------
-
-  private ContentBackedPageGrid getContentBackedPageGrid() {
-    return contentBackedPageGridService.getContentBackedPageGrid(bean.getContent());
-  }
 }
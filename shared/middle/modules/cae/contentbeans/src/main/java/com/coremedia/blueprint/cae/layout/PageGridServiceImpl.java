@@ -12,6 +12,13 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 
 import javax.annotation.PostConstruct;
 
+/**
+ * Creates the page grids of content beans.
+ * <p>
+ * The page grids share a cached {@link PageGridSnapshot} per content, so the
+ * structure of a page grid is only evaluated again if it is changed.  The
+ * visibility of the items is checked when they are read.
+ */
 public class PageGridServiceImpl implements PageGridService {
 
   private ContentBackedPageGridService contentBackedPageGridService;
@@ -0,0 +1,200 @@
+package com.coremedia.blueprint.cae.layout;
+
+import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGrid;
+import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGridPlacement;
+import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGridService;
+import com.coremedia.blueprint.base.pagegrid.ContentBackedStyle;
+import com.coremedia.blueprint.base.pagegrid.ContentBackedStyleGrid;
+import com.coremedia.blueprint.base.pagegrid.PageGridConstants;
+import com.coremedia.blueprint.base.pagegrid.PageGridContentKeywords;
+import com.coremedia.blueprint.common.datevalidation.ValidityPeriod;
+import com.coremedia.blueprint.common.layout.HasPageGrid;
+import com.coremedia.cap.common.CapStructHelper;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.struct.Struct;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the parts of a {@link ContentBackedPageGrid} which
+ * are needed to render a page grid: the dimensions of the grid, the sections
+ * of the placements and their links.
+ * <p>
+ * The snapshot is cached by {@link PageGridSnapshotCacheKey} and thus only
+ * recomputed if the page grid or one of its placements is changed.  It
+ * contains the links of a placement including those which are not visible
+ * at the moment.  Visibility and validation are checked when the items are
+ * read, so the snapshot remains valid across validity boundaries.
+ */
+final class PageGridSnapshot {
+
+  private final int numColumns;
+  private final String cssClassName;
+  private final List<List<String>> sectionsByRow;
+  private final Map<String, List<Link>> linksBySection;
+  private final List<?> mainItems;
+
+  private PageGridSnapshot(int numColumns,
+                           String cssClassName,
+                           List<List<String>> sectionsByRow,
+                           Map<String, List<Link>> linksBySection,
+                           List<?> mainItems) {
+    this.numColumns = numColumns;
+    this.cssClassName = cssClassName;
+    this.sectionsByRow = sectionsByRow;
+    this.linksBySection = linksBySection;
+    this.mainItems = mainItems;
+  }
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Get the cached snapshot of the page grid of the given bean.
+   */
+  @NonNull
+  static PageGridSnapshot of(@NonNull HasPageGrid bean, @NonNull ContentBackedPageGridService contentBackedPageGridService) {
+    Content content = bean.getContent();
+    return content.getRepository().getConnection().getCache()
+            .get(new PageGridSnapshotCacheKey(content, contentBackedPageGridService));
+  }
+
+  int getNumRows() {
+    return sectionsByRow.size();
+  }
+
+  int getNumColumns() {
+    return numColumns;
+  }
+
+  /**
+   * The number of placements in the given row.
+   */
+  int getRowSize(int row) {
+    return sectionsByRow.get(row).size();
+  }
+
+  /**
+   * The section name of the placement in the given row and column index.
+   */
+  @NonNull
+  String getSection(int row, int colIndex) {
+    return sectionsByRow.get(row).get(colIndex);
+  }
+
+  String getCssClassName() {
+    return cssClassName;
+  }
+
+  /**
+   * The links of the placement with the given section name, whose targets are in production.
+   */
+  @NonNull
+  List<Link> getLinks(@NonNull String section) {
+    return linksBySection.getOrDefault(section, Collections.emptyList());
+  }
+
+  /**
+   * The plain items of the "main" placement.
+   */
+  @NonNull
+  List<?> getMainItems() {
+    return mainItems;
+  }
+
+
+  // --- creation ---------------------------------------------------
+
+  /**
+   * Create a snapshot of the page grid.
+   * <p>
+   * Invoked by {@link PageGridSnapshotCacheKey#evaluate}, so that the accessed
+   * contents become dependencies of the cached snapshot.
+   */
+  @NonNull
+  static PageGridSnapshot create(@NonNull ContentBackedPageGrid pageGrid) {
+    ContentBackedStyleGrid styleGrid = pageGrid.getStyleGrid();
+    Map<String, ContentBackedPageGridPlacement> placements = pageGrid.getPlacements();
+
+    List<List<String>> sectionsByRow = new ArrayList<>();
+    Map<String, List<Link>> linksBySection = new HashMap<>();
+    for (int row = 0; row < styleGrid.getNumRows(); ++row) {
+      List<String> sections = new ArrayList<>();
+      for (ContentBackedStyle style : styleGrid.getRow(row)) {
+        String section = style.getSection().getName();
+        sections.add(section);
+        linksBySection.computeIfAbsent(section, s -> createLinks(placements.get(s)));
+      }
+      sectionsByRow.add(Collections.unmodifiableList(sections));
+    }
+
+    ContentBackedPageGridPlacement mainPlacement = placements.get(PageGridConstants.MAIN_PLACEMENT_NAME);
+    List<?> mainItems = mainPlacement == null ? Collections.emptyList() : List.copyOf(mainPlacement.getItems());
+
+    return new PageGridSnapshot(
+            styleGrid.getNumColumns(),
+            pageGrid.getCssClassName(),
+            Collections.unmodifiableList(sectionsByRow),
+            Collections.unmodifiableMap(linksBySection),
+            mainItems);
+  }
+
+  @NonNull
+  private static List<Link> createLinks(@Nullable ContentBackedPageGridPlacement placement) {
+    if (placement == null) {
+      return Collections.emptyList();
+    }
+    List<Link> links = new ArrayList<>();
+    for (Struct annotatedLink : placement.getExtendedItems()) {
+      Content target = CapStructHelper.getLink(annotatedLink, PageGridContentKeywords.ANNOTATED_LINK_LIST_TARGET_PROPERTY_NAME);
+      if (target != null && target.isInProduction()) {
+        links.add(new Link(target,
+                CapStructHelper.getDate(annotatedLink, PageGridContentKeywords.ANNOTATED_LINK_LIST_VISIBLE_FROM_PROPERTY_NAME),
+                CapStructHelper.getDate(annotatedLink, PageGridContentKeywords.ANNOTATED_LINK_LIST_VISIBLE_TO_PROPERTY_NAME)));
+      }
+    }
+    return Collections.unmodifiableList(links);
+  }
+
+
+  // --- inner classes ----------------------------------------------
+
+  /**
+   * A link of a placement with its visibility period.
+   */
+  static final class Link implements ValidityPeriod {
+    private final Content target;
+    private final Calendar visibleFrom;
+    private final Calendar visibleTo;
+
+    private Link(@NonNull Content target, @Nullable Calendar visibleFrom, @Nullable Calendar visibleTo) {
+      this.target = target;
+      this.visibleFrom = visibleFrom;
+      this.visibleTo = visibleTo;
+    }
+
+    @NonNull
+    Content getTarget() {
+      return target;
+    }
+
+    @Nullable
+    @Override
+    public Calendar getValidFrom() {
+      return visibleFrom == null ? null : (Calendar) visibleFrom.clone();
+    }
+
+    @Nullable
+    @Override
+    public Calendar getValidTo() {
+      return visibleTo == null ? null : (Calendar) visibleTo.clone();
+    }
+  }
+}
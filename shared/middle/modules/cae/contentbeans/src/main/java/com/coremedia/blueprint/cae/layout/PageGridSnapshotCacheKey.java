@@ -0,0 +1,49 @@
+package com.coremedia.blueprint.cae.layout;
+
+import com.coremedia.blueprint.base.pagegrid.ContentBackedPageGridService;
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.cap.content.Content;
+
+import java.util.Objects;
+
+/**
+ * Caches the {@link PageGridSnapshot} of a content with a page grid.
+ * <p>
+ * The snapshot depends on the contents which are read while it is created,
+ * i.e. the page grid, its layout and the placements, and is invalidated if
+ * one of them changes.
+ */
+class PageGridSnapshotCacheKey extends CacheKey<PageGridSnapshot> {
+
+  private final Content content;
+  private final ContentBackedPageGridService contentBackedPageGridService;
+
+  PageGridSnapshotCacheKey(Content content, ContentBackedPageGridService contentBackedPageGridService) {
+    this.content = content;
+    this.contentBackedPageGridService = contentBackedPageGridService;
+  }
+
+  @Override
+  public PageGridSnapshot evaluate(Cache cache) {
+    return PageGridSnapshot.create(contentBackedPageGridService.getContentBackedPageGrid(content));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PageGridSnapshotCacheKey that = (PageGridSnapshotCacheKey) o;
+    // different page grid services use different struct properties
+    return content.equals(that.content) && contentBackedPageGridService == that.contentBackedPageGridService;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(content, System.identityHashCode(contentBackedPageGridService));
+  }
+}
@@ -0,0 +1,73 @@
+package com.coremedia.blueprint.cae.settings;
+
+import com.coremedia.blueprint.base.settings.SettingsService;
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
+import com.coremedia.cap.content.Content;
+import com.coremedia.objectserver.beans.ContentBean;
+import com.coremedia.objectserver.dataviews.DataViewHelper;
+
+import java.util.Objects;
+
+/**
+ * Caches a setting of a content bean, converted back into the content bean
+ * or dataview layer by the {@link ContentBeanSettingsFinder}.
+ * <p>
+ * The key is identified by the content, the setting name and whether the
+ * setting is requested for a dataview.  The setting is resolved while the key
+ * is evaluated, so the value depends on all contents which were read, e.g.
+ * linked settings, and is invalidated when one of them changes.
+ */
+class ContentBeanSettingCacheKey extends CacheKey<Object> {
+
+  private final ContentBean bean;
+  private final Content content;
+  private final String name;
+  private final boolean dataview;
+  private final SettingsService settingsService;
+  private final ContentBeanSettingsFinder settingsFinder;
+
+  ContentBeanSettingCacheKey(ContentBean bean,
+                             String name,
+                             SettingsService settingsService,
+                             ContentBeanSettingsFinder settingsFinder) {
+    this.bean = bean;
+    this.content = bean.getContent();
+    this.name = name;
+    this.dataview = DataViewHelper.isDataView(bean);
+    this.settingsService = settingsService;
+    this.settingsFinder = settingsFinder;
+  }
+
+  @Override
+  public Object evaluate(Cache cache) {
+    return settingsFinder.resolveSetting(bean, name, settingsService);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ContentBeanSettingCacheKey that = (ContentBeanSettingCacheKey) o;
+    // different settings services may use different settings finders
+    return dataview == that.dataview &&
+            content.equals(that.content) &&
+            name.equals(that.name) &&
+            settingsService == that.settingsService &&
+            settingsFinder == that.settingsFinder;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(content, name, dataview, System.identityHashCode(settingsService));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[content=" + content + ", name=" + name + ", dataview=" + dataview + ']';
+  }
+}
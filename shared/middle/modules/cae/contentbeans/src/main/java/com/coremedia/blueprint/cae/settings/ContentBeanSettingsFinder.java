@@ -3,6 +3,7 @@ package com.coremedia.blueprint.cae.settings;
 import com.coremedia.blueprint.base.settings.SettingsFinder;
 import com.coremedia.blueprint.base.settings.SettingsService;
 import com.coremedia.blueprint.cae.contentbeans.BlobFromContentBeanSetting;
+import com.coremedia.cache.Cache;
 import com.coremedia.cap.common.Blob;
 import com.coremedia.cap.content.Content;
 import com.coremedia.cap.struct.Struct;
@@ -12,10 +13,18 @@ import com.coremedia.objectserver.beans.ContentIdRewriter;
 import com.coremedia.objectserver.dataviews.DataViewCollections;
 import com.coremedia.objectserver.dataviews.DataViewHelper;
 import com.coremedia.xml.Markup;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Supports settings access on contentbeans and dataviews.
@@ -27,10 +36,38 @@ import java.util.List;
  * content.  By Blueprint default, localSettings and linkedSettings are
  * supported for any document type, esp. for CMLinkable, which this concept
  * originates from.
+ * <p>
+ * If a {@link #setCache(Cache) cache} is set, the converted settings are
+ * cached per content, setting name and dataview flag, and depend on the
+ * contents which were read while the setting was resolved.  Each lookup of a
+ * cached list or struct returns a deep copy of its lists and maps, so callers
+ * may still modify it.
+ * <p>
+ * The number of cached lookups and resolutions are provided as metrics
+ * {@value #METRIC_LOOKUPS} and {@value #METRIC_RESOLUTIONS}.  The lookups are
+ * also counted per setting name, but only for the first
+ * {@value #MAX_TRACKED_NAMES} distinct names which are looked up after the
+ * start, which are not necessarily the most requested ones.
  */
-public class ContentBeanSettingsFinder implements SettingsFinder {
+public class ContentBeanSettingsFinder implements SettingsFinder, MeterBinder {
+  static final String METRIC_LOOKUPS = "cae.settings.lookups";
+  static final String METRIC_RESOLUTIONS = "cae.settings.resolutions";
+  private static final String TAG_SETTING = "setting";
+
+  /**
+   * Bounds the number of distinct setting names which are counted, and thus the number of meters.
+   * Names are counted in the order of their first lookup, later names are not counted.
+   */
+  private static final int MAX_TRACKED_NAMES = 200;
+
   private ContentBeanFactory contentBeanFactory;
   private DataViewCollections dataViewCollections;
+  private Cache cache;
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder resolutions = new LongAdder();
+  private final ConcurrentMap<String, LongAdder> lookupsByName = new ConcurrentHashMap<>();
+  private volatile MeterRegistry meterRegistry;
 
 
   // --- construct and configure ------------------------------------
@@ -43,6 +80,14 @@ public class ContentBeanSettingsFinder implements SettingsFinder {
     this.dataViewCollections = dataViewCollections;
   }
 
+  /**
+   * Optional cache for resolved settings.  Without a cache, each lookup is
+   * delegated to the UAPI level.
+   */
+  public void setCache(Cache cache) {
+    this.cache = cache;
+  }
+
   @PostConstruct
   void initialize() {
     if (contentBeanFactory == null) {
@@ -60,8 +105,61 @@ public class ContentBeanSettingsFinder implements SettingsFinder {
     if (!(bean instanceof ContentBean)) {
       return null;
     }
-    // Delegate down to UAPI level
     ContentBean contentBean = (ContentBean) bean;
+    if (cache == null) {
+      return resolveSetting(contentBean, name, settingsService);
+    }
+    lookups.increment();
+    countLookup(name);
+    Object setting = cache.get(new ContentBeanSettingCacheKey(contentBean, name, settingsService, this));
+    // the cached lists and maps are shared by all callers
+    return deepCopy(setting);
+  }
+
+
+  // --- MeterBinder ------------------------------------------------
+
+  /**
+   * Provides the number of cached lookups and resolutions, and the number of
+   * cached lookups per setting name for the first {@value #MAX_TRACKED_NAMES} distinct names.
+   */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(METRIC_LOOKUPS, lookups, LongAdder::sum)
+            .description("The number of cached content bean setting lookups")
+            .register(registry);
+    FunctionCounter.builder(METRIC_RESOLUTIONS, resolutions, LongAdder::sum)
+            .description("The number of cached content bean setting lookups which had to be resolved")
+            .register(registry);
+    meterRegistry = registry;
+    lookupsByName.forEach((name, counter) -> registerLookupsByName(registry, name, counter));
+  }
+
+  /**
+   * The number of cached setting lookups.
+   */
+  long getLookups() {
+    return lookups.sum();
+  }
+
+  /**
+   * The number of cached setting lookups which had to be resolved.
+   */
+  long getResolutions() {
+    return resolutions.sum();
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  /**
+   * Resolves the setting on the UAPI level and converts it back into the layer of the given bean.
+   */
+  Object resolveSetting(ContentBean contentBean, String name, SettingsService settingsService) {
+    if (cache != null) {
+      resolutions.increment();
+    }
+    // Delegate down to UAPI level
     Object setting = settingsService.setting(name, Object.class, contentBean.getContent());
     // Back to beans
     Object contentBeanedResult = toContentBeans(contentBean, setting, name);
@@ -69,8 +167,50 @@ public class ContentBeanSettingsFinder implements SettingsFinder {
     return DataViewHelper.isDataView(contentBean) ? dataViewCollections.nestedDataview(contentBeanedResult) : contentBeanedResult;
   }
 
+  /**
+   * Copies the lists and maps of a setting, recursively.
+   */
+  private static Object deepCopy(Object value) {
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      List<Object> result = new ArrayList<>(list.size());
+      for (Object item : list) {
+        result.add(deepCopy(item));
+      }
+      return result;
+    }
+    if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      Map<Object, Object> result = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+      map.forEach((key, item) -> result.put(key, deepCopy(item)));
+      return result;
+    }
+    return value;
+  }
 
-  // --- internal ---------------------------------------------------
+  private void countLookup(String name) {
+    LongAdder counter = lookupsByName.get(name);
+    if (counter == null && lookupsByName.size() < MAX_TRACKED_NAMES) {
+      counter = lookupsByName.computeIfAbsent(name, key -> {
+        LongAdder newCounter = new LongAdder();
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+          registerLookupsByName(registry, key, newCounter);
+        }
+        return newCounter;
+      });
+    }
+    if (counter != null) {
+      counter.increment();
+    }
+  }
+
+  private static void registerLookupsByName(MeterRegistry registry, String name, LongAdder counter) {
+    FunctionCounter.builder(METRIC_LOOKUPS + ".by.name", counter, LongAdder::sum)
+            .description("The number of cached content bean setting lookups per setting name")
+            .tag(TAG_SETTING, name)
+            .register(registry);
+  }
 
   /**
    * Cast any Content results back into the ContentBean domain.
@@ -5,7 +5,9 @@ import com.coremedia.blueprint.common.layout.Container;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public final class ContainerFlattener {
   // static utility class
@@ -18,35 +20,40 @@ public final class ContainerFlattener {
    * Flattens nested containers.
    * <p>
    * Breaks cycles, drops duplicates, drops wrong-typed entries.
+   * <p>
+   * Within a request, the result is memoised per container and expected type,
+   * see {@link FlatteningMemo}.
    */
   public static <T> List<T> flatten(Container container, Class<T> expectedType) {
-    ArrayList<T> result = new ArrayList<>();
-    recFlatten(container, result, new HashSet<>(), expectedType, false, false);
-    return result;
+    return FlatteningMemo.memoize(ContainerFlattener.class.getName(), container, expectedType,
+            () -> flattenUncached(container, expectedType));
   }
 
 
   // --- internal ---------------------------------------------------
 
+  static <T> List<T> flattenUncached(Container container, Class<T> expectedType) {
+    // a LinkedHashSet drops duplicates in constant time and keeps the order
+    Set<T> result = new LinkedHashSet<>();
+    recFlatten(container, result, new HashSet<>(), expectedType, false);
+    return new ArrayList<>(result);
+  }
+
   private static <T> void recFlatten(Container container,
                                      Collection<T> result,
-                                     Collection<Container> visited,
+                                     Set<Container> visited,
                                      Class<T> expectedType,
-                                     boolean allowDuplicates,
                                      boolean failOnError) {
-    if (!visited.contains(container)) {
-      visited.add(container);
+    if (visited.add(container)) {
       List<?> items = container.getItems();
       for (Object item : items) {
         //Only flatten item where the marker interface Flatless has not been set
         if (item instanceof Container && !(item instanceof Flatless)) {
-          recFlatten(((Container)item), result, visited, expectedType, allowDuplicates, failOnError);
+          recFlatten(((Container)item), result, visited, expectedType, failOnError);
         } else {
           T typedItem = expectedType.isAssignableFrom(item.getClass()) ? expectedType.cast(item) : null;
           if (typedItem!=null) {
-            if (allowDuplicates || !result.contains(typedItem)) {
-              result.add(typedItem);
-            }
+            result.add(typedItem);
           } else {
             if (failOnError) {
               throw new IllegalArgumentException(item.getClass().getName() + " is not a " + expectedType.getName());
@@ -0,0 +1,137 @@
+package com.coremedia.blueprint.common.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Request scoped memo for flattened container items.
+ * <p>
+ * The same containers are usually flattened several times while a page is
+ * rendered, e.g. for the placement and again for each teaser view.  Within a
+ * request the result does not change, so it is computed only once per
+ * container and expected type.  Outside of a request nothing is memoised.
+ * <p>
+ * The memo relies on {@link Object#equals(Object)} of the containers.
+ * Containers with equal identities must have equal items within a request,
+ * which holds for content beans and page grid placements.
+ * <p>
+ * The memo is stored in the original request, so that it is shared by
+ * placements which are rendered concurrently with wrapped requests.
+ * <p>
+ * Hits and misses are counted and exposed as metrics by
+ * {@link FlatteningMemoMetrics}.
+ */
+public final class FlatteningMemo {
+
+  static final String REQUEST_ATTRIBUTE = FlatteningMemo.class.getName();
+
+  static final LongAdder HITS = new LongAdder();
+  static final LongAdder MISSES = new LongAdder();
+
+  // static utility class
+  private FlatteningMemo() {}
+
+
+  // --- features ---------------------------------------------------
+
+  /**
+   * Return the memoised flattened items of the container, or compute them.
+   *
+   * @param flattening distinguishes different flattening algorithms for the same container
+   * @return a modifiable copy of the flattened items
+   */
+  @NonNull
+  public static <T> List<T> memoize(@NonNull String flattening,
+                                    @NonNull Object container,
+                                    @NonNull Class<T> expectedType,
+                                    @NonNull Supplier<List<T>> flatten) {
+    Optional<Map<Key, List<?>>> memo = findMemo();
+    if (memo.isEmpty()) {
+      return flatten.get();
+    }
+
+    Key key = new Key(flattening, container, expectedType);
+    List<?> cached = memo.get().get(key);
+    if (cached != null) {
+      HITS.increment();
+      //noinspection unchecked
+      return new ArrayList<>((List<T>) cached);
+    }
+
+    MISSES.increment();
+    // no computeIfAbsent, flattening may recursively flatten other containers,
+    // so concurrent placements may flatten the same container twice
+    List<T> result = flatten.get();
+    memo.get().put(key, List.copyOf(result));
+    return result;
+  }
+
+
+  // --- internal ---------------------------------------------------
+
+  private static Optional<Map<Key, List<?>>> findMemo() {
+    return ContextAttributes.findRequest().map(FlatteningMemo::memoOf);
+  }
+
+  /**
+   * Return the memo of the request, create it if necessary.
+   * <p>
+   * Placements may be rendered concurrently, so the memo is a concurrent
+   * map, and it is created under the lock of the original request.
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<Key, List<?>> memoOf(HttpServletRequest request) {
+    ServletRequest original = request;
+    while (original instanceof ServletRequestWrapper) {
+      original = ((ServletRequestWrapper) original).getRequest();
+    }
+    synchronized (original) {
+      Object memo = original.getAttribute(REQUEST_ATTRIBUTE);
+      if (!(memo instanceof ConcurrentHashMap)) {
+        memo = new ConcurrentHashMap<Key, List<?>>();
+        original.setAttribute(REQUEST_ATTRIBUTE, memo);
+      }
+      return (Map<Key, List<?>>) memo;
+    }
+  }
+
+  private static final class Key {
+    private final String flattening;
+    private final Object container;
+    private final Class<?> expectedType;
+
+    private Key(String flattening, Object container, Class<?> expectedType) {
+      this.flattening = flattening;
+      this.container = container;
+      this.expectedType = expectedType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return flattening.equals(key.flattening) && container.equals(key.container) && expectedType.equals(key.expectedType);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(flattening, container, expectedType);
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.coremedia.blueprint.common.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides the hits and misses of the {@link FlatteningMemo} as metrics
+ * {@value #METRIC_HITS} and {@value #METRIC_MISSES}.
+ */
+public class FlatteningMemoMetrics implements MeterBinder {
+
+  static final String METRIC_HITS = "cae.flattening.memo.hits";
+  static final String METRIC_MISSES = "cae.flattening.memo.misses";
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(METRIC_HITS, FlatteningMemo.HITS, LongAdder::sum)
+            .description("The number of container flattenings which have been served from the request memo")
+            .register(registry);
+    FunctionCounter.builder(METRIC_MISSES, FlatteningMemo.MISSES, LongAdder::sum)
+            .description("The number of container flattenings which have been computed within a request")
+            .register(registry);
+  }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = CMTeasableImplTest.TestConfiguration.class)
@@ -83,4 +84,11 @@ public class CMTeasableImplTest {
     List<Markup> paragraphs = article.getTextAsParagraphs();
     assertEquals(2, paragraphs.size());
   }
+
+  @Test
+  public void testTextAsParagraphsAreCached() {
+    assertNotNull(article);
+    CMArticle sameArticle = getContentBean(ARTICLE_ID);
+    assertSame(article.getTextAsParagraphs(), sameArticle.getTextAsParagraphs());
+  }
 }
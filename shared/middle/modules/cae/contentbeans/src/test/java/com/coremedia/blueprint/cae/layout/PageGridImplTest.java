@@ -48,6 +48,7 @@ import java.util.stream.IntStream;
 import static com.coremedia.blueprint.common.datevalidation.ValidityPeriodValidator.REQUEST_ATTRIBUTE_PREVIEW_DATE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -222,6 +223,17 @@ public class PageGridImplTest {
     when(request.getAttribute(REQUEST_ATTRIBUTE_PREVIEW_DATE)).thenReturn(calendar);
   }
 
+  @Test
+  public void testSnapshotIsCached() {
+    Content content = contentRepository.getContent(IdHelper.formatContentId(888));
+    CMChannel channel = contentBeanFactory.createBeanFor(content, CMChannel.class);
+    PageGridSnapshot snapshot = PageGridSnapshot.of(channel, contentBackedPageGridService);
+
+    assertSame("snapshot not cached", snapshot, PageGridSnapshot.of(channel, contentBackedPageGridService));
+    // the snapshot contains all links, visibility is checked at read time
+    assertEquals("wrong number of links", 6, snapshot.getLinks("west").size());
+  }
+
   @Test
   public void testGetCssClass() {
     assertEquals("wrong cssClassName", "test-setting", pageGrid.getCssClassName());
@@ -15,6 +15,7 @@ import com.coremedia.objectserver.beans.ContentIdRewriter;
 import com.coremedia.objectserver.dataviews.DataViewFactory;
 import com.coremedia.objectserver.dataviews.DataViewHelper;
 import com.coremedia.xml.Markup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -35,6 +36,7 @@ import java.util.Map;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -72,6 +74,8 @@ public class ContentBeanSettingsFinderTest {
   private ContentBeanFactory contentBeanFactory;
   @Inject
   private DataViewFactory dataViewFactory;
+  @Inject
+  private ContentBeanSettingsFinder contentBeanSettingsFinder;
 
   private CMLinkable linkable;
 
@@ -124,6 +128,45 @@ public class ContentBeanSettingsFinderTest {
     assertEquals(originalMarkup.transform(new ContentIdRewriter()), transformedMarkup);
   }
 
+  @Test
+  public void testCachedSettings() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    contentBeanSettingsFinder.bindTo(meterRegistry);
+
+    List<? extends CMLinkable> first = settingsService.settingAsList("linkListProperty", CMLinkable.class, linkable);
+    long resolutions = contentBeanSettingsFinder.getResolutions();
+
+    List<? extends CMLinkable> second = settingsService.settingAsList("linkListProperty", CMLinkable.class, linkable);
+    assertEquals("setting resolved again", resolutions, contentBeanSettingsFinder.getResolutions());
+    assertEquals(first, second);
+    assertTrue("no lookups counted", meterRegistry.get(ContentBeanSettingsFinder.METRIC_LOOKUPS + ".by.name")
+            .tag("setting", "linkListProperty").functionCounter().count() >= 1);
+  }
+
+  @Test
+  public void testCachedListsAreCopied() {
+    Object first = contentBeanSettingsFinder.setting(linkable, "linkListProperty", settingsService);
+    Object second = contentBeanSettingsFinder.setting(linkable, "linkListProperty", settingsService);
+
+    assertTrue(first instanceof List);
+    assertNotSame(first, second);
+    ((List<?>) first).clear();
+    assertFalse(((List<?>) second).isEmpty());
+  }
+
+  @Test
+  public void testCachedStructsAreCopiedDeeply() {
+    CMLinkable contentBean = contentbeanFor(2);
+    Object first = contentBeanSettingsFinder.setting(contentBean, "struct", settingsService);
+    Object second = contentBeanSettingsFinder.setting(contentBean, "struct", settingsService);
+
+    assertTrue(first instanceof Map);
+    assertNotSame(first, second);
+    ((List<?>) ((Map<?, ?>) first).get("linkList")).clear();
+    ((Map<?, ?>) first).clear();
+    assertEquals(2, ((List<?>) ((Map<?, ?>) second).get("linkList")).size());
+  }
+
   @Test
   public void testStructAsMap() {
     Map<String, Object> value = settingsService.settingAsMap("structProperty", String.class, Object.class, linkable);
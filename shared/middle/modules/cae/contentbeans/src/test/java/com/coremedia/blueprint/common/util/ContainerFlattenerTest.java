@@ -2,16 +2,24 @@ package com.coremedia.blueprint.common.util;
 
 import com.coremedia.blueprint.common.contentbeans.CMGallery;
 import com.coremedia.blueprint.common.layout.Container;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.servlet.http.HttpServletRequestWrapper;
 import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -26,6 +34,11 @@ public class ContainerFlattenerTest {
   @Mock
   private CMGallery gallery;
 
+  @After
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
   @Test
   public void testEmptyCollection() {
     when(outerCollection.getItems()).thenReturn(Collections.emptyList());
@@ -80,4 +93,53 @@ public class ContainerFlattenerTest {
     List<String> result = ContainerFlattener.flatten(outerCollection, String.class);
     assertEquals(List.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"), result);
   }
+
+  @Test
+  public void testMemoWithinRequest() {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    when(outerCollection.getItems()).thenReturn(List.of("foo", innerCollection, "bar"));
+    when(innerCollection.getItems()).thenReturn(List.of("inner1", "foo"));
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    new FlatteningMemoMetrics().bindTo(registry);
+    double hits = registry.get(FlatteningMemoMetrics.METRIC_HITS).functionCounter().count();
+    double misses = registry.get(FlatteningMemoMetrics.METRIC_MISSES).functionCounter().count();
+
+    List<String> first = ContainerFlattener.flatten(outerCollection, String.class);
+    first.add("modified");
+    List<String> second = ContainerFlattener.flatten(outerCollection, String.class);
+
+    assertEquals(List.of("foo", "inner1", "bar"), second);
+    verify(outerCollection, times(1)).getItems();
+    assertEquals(hits + 1, registry.get(FlatteningMemoMetrics.METRIC_HITS).functionCounter().count(), 0);
+    assertEquals(misses + 1, registry.get(FlatteningMemoMetrics.METRIC_MISSES).functionCounter().count(), 0);
+  }
+
+  @Test
+  public void testMemoSharedByWrappedRequests() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    when(outerCollection.getItems()).thenReturn(List.of("foo"));
+
+    // wrappers which isolate their attributes, like those of concurrently rendered placements
+    for (int i = 0; i < 2; i++) {
+      RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new HttpServletRequestWrapper(request) {
+        @Override
+        public void setAttribute(String name, Object o) {
+          // isolated
+        }
+      }));
+      ContainerFlattener.flatten(outerCollection, String.class);
+    }
+
+    verify(outerCollection, times(1)).getItems();
+  }
+
+  @Test
+  public void testNoMemoOutsideRequest() {
+    when(outerCollection.getItems()).thenReturn(List.of("foo"));
+
+    ContainerFlattener.flatten(outerCollection, String.class);
+    ContainerFlattener.flatten(outerCollection, String.class);
+
+    verify(outerCollection, times(2)).getItems();
+  }
 }
@@ -7,7 +7,7 @@ import com.coremedia.cap.content.events.ContentRepositoryListenerBase;
 
 /**
  * A {@link com.coremedia.cap.content.events.ContentRepositoryListener} that reacts on changes
- * of CMPicture documents and stores them in {@link AssetChanges}
+ * of CMPicture documents and stores them in {@link AssetChanges} and {@link AssetIndex}
  */
 class AssetChangesRepositoryListener extends ContentRepositoryListenerBase {
 
@@ -16,10 +16,12 @@ class AssetChangesRepositoryListener extends ContentRepositoryListenerBase {
 
   private final ContentRepository repository;
   private final AssetChanges assetChanges;
+  private final AssetIndex assetIndex;
 
-  AssetChangesRepositoryListener(ContentRepository repository, AssetChanges assetChanges) {
+  AssetChangesRepositoryListener(ContentRepository repository, AssetChanges assetChanges, AssetIndex assetIndex) {
     this.repository = repository;
     this.assetChanges = assetChanges;
+    this.assetIndex = assetIndex;
   }
 
   @Override
@@ -29,6 +31,7 @@ class AssetChangesRepositoryListener extends ContentRepositoryListenerBase {
             (content.getType().isSubtypeOf(CMVISUAL_TYPE) ||
                     content.getType().isSubtypeOf(CMDOWNLOAD_TYPE))) {
       assetChanges.update(content);
+      assetIndex.update(content);
     }
   }
 
@@ -5,13 +5,18 @@ import com.coremedia.cap.common.infos.CapLicenseInfo;
 import com.coremedia.cap.content.ContentRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import javax.annotation.PostConstruct;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.lang.invoke.MethodHandles.lookup;
@@ -26,17 +31,24 @@ class AssetConfiguration implements SmartLifecycle {
   private final AtomicBoolean running = new AtomicBoolean(false);
 
   private final AssetChanges assetChanges = new AssetChanges();
+  private final AssetIndex assetIndex = new AssetIndex();
   private final AssetChangesRepositoryListener assetChangesRepositoryListener;
   private final CapLicenseInfo capLicenseInfo;
   private final ContentRepository contentRepository;
 
+  private final long indexRetryDelayInSeconds;
+
   private boolean licensed = false;
   private boolean preview = false;
+  private ScheduledExecutorService indexBuilder;
 
-  public AssetConfiguration(CapLicenseInfo capLicenseInfo, ContentRepository contentRepository) {
+  public AssetConfiguration(CapLicenseInfo capLicenseInfo,
+                            ContentRepository contentRepository,
+                            @Value("${livecontext.assetService.index.retryDelayInSeconds}") long indexRetryDelayInSeconds) {
     this.capLicenseInfo = capLicenseInfo;
     this.contentRepository = contentRepository;
-    assetChangesRepositoryListener = new AssetChangesRepositoryListener(contentRepository, assetChanges);
+    this.indexRetryDelayInSeconds = indexRetryDelayInSeconds;
+    assetChangesRepositoryListener = new AssetChangesRepositoryListener(contentRepository, assetChanges, assetIndex);
   }
 
   @Bean
@@ -60,6 +72,16 @@ class AssetConfiguration implements SmartLifecycle {
     return assetChanges;
   }
 
+  @Bean
+  AssetIndex assetIndex() {
+    return assetIndex;
+  }
+
+  @Bean
+  AssetIndexHealthIndicator assetIndexHealthIndicator() {
+    return new AssetIndexHealthIndicator(assetIndex);
+  }
+
   @Override
   public boolean isAutoStartup() {
     return true;
@@ -77,6 +99,12 @@ class AssetConfiguration implements SmartLifecycle {
       if(isFeatureActive()) {
         LOG.info("activating repository event listener for asset changes");
         assetChangesRepositoryListener.start();
+        // the listener is active, so no change gets lost while the index is built
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("asset-index-builder-");
+        threadFactory.setDaemon(true);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        executor.execute(() -> buildIndex(executor));
+        indexBuilder = executor;
       } else {
         LOG.warn("asset management is not active: disabling asset change events");
       }
@@ -87,6 +115,11 @@ class AssetConfiguration implements SmartLifecycle {
   public void stop() {
     if(running.getAndSet(false)) {
       assetChangesRepositoryListener.stop();
+      assetIndex.stop();
+      if (indexBuilder != null) {
+        indexBuilder.shutdownNow();
+        indexBuilder = null;
+      }
       LOG.info("disabled repository event listener for asset changes");
     }
   }
@@ -107,6 +140,16 @@ class AssetConfiguration implements SmartLifecycle {
     this.preview = contentRepository.isContentManagementServer();
   }
 
+  /**
+   * Builds the asset index and schedules a retry if that fails.
+   */
+  private void buildIndex(ScheduledExecutorService executor) {
+    if (!assetIndex.build(contentRepository) && !executor.isShutdown()) {
+      LOG.info("Retrying to build the asset index in {} seconds", indexRetryDelayInSeconds);
+      executor.schedule(() -> buildIndex(executor), indexRetryDelayInSeconds, TimeUnit.SECONDS);
+    }
+  }
+
   boolean isFeatureActive() {
     return licensed || preview;
   }
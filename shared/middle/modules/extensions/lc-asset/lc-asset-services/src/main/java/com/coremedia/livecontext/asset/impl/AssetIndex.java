@@ -0,0 +1,265 @@
+package com.coremedia.livecontext.asset.impl;
+
+import com.coremedia.blueprint.base.livecontext.util.CommerceReferenceHelper;
+import com.coremedia.cache.Cache;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.content.query.QueryService;
+import com.coremedia.cap.multisite.Site;
+import com.coremedia.cap.multisite.SitesService;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.util.Collections.emptyList;
+
+/**
+ * In-memory inverted index from external commerce ids to the assets which reference them, per site.
+ * <p>
+ * The index is built once from all visuals and downloads in production and
+ * is then kept up to date by the same repository events which feed
+ * {@link AssetChanges}.  Unlike {@link AssetChanges}, the index is complete
+ * once it is {@link #isReady() ready}, so asset lookups need no search.
+ * Until then, and if building the index has {@link State#FAILED failed},
+ * callers have to fall back to the search.
+ * <p>
+ * Lookups record no dependencies.  Like the search results, they are cached
+ * for {@code livecontext.assetService.searchCacheDurationInSeconds} when they
+ * are made during a cache key evaluation.
+ */
+class AssetIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(lookup().lookupClass());
+
+  static final String CMVISUAL_TYPE = "CMVisual";
+  static final String CMDOWNLOAD_TYPE = "CMDownload";
+
+  private final ReadWriteLock rwl = new ReentrantReadWriteLock();
+  private final Lock r = rwl.readLock();
+  private final Lock w = rwl.writeLock();
+
+  /**
+   * The external ids of every indexed asset, empty for assets without references.
+   */
+  private final Map<Content, IndexEntry> entries = new HashMap<>();
+  private final Map<Site, SetMultimap<String, Content>> siteToInverseMultimap = new HashMap<>();
+
+  private volatile State state = State.PENDING;
+  private volatile RuntimeException failure;
+  private volatile boolean stopped = false;
+
+  private SitesService sitesService;
+  private boolean enabled = false;
+  private long cacheForSeconds = 300;
+
+  /**
+   * Indexes the given asset, replacing a previous entry.
+   */
+  public void update(@NonNull Content content) {
+    IndexEntry entry = createEntry(content);
+    w.lock();
+    try {
+      put(content, entry);
+    } finally {
+      w.unlock();
+    }
+  }
+
+  /**
+   * Indexes all visuals and downloads in production.  Assets which have been
+   * updated by events in the meantime are not overwritten.
+   *
+   * @return false if the index could not be built and the build should be retried
+   */
+  public boolean build(@NonNull ContentRepository contentRepository) {
+    if (!enabled) {
+      return true;
+    }
+    state = State.BUILDING;
+    long start = System.currentTimeMillis();
+    int count = 0;
+    try {
+      QueryService queryService = contentRepository.getQueryService();
+      for (String type : List.of(CMVISUAL_TYPE, CMDOWNLOAD_TYPE)) {
+        for (Content content : queryService.poseContentQuery("TYPE " + type + ": isInProduction")) {
+          if (stopped) {
+            LOG.info("Stopped building the asset index after {} assets", count);
+            state = State.PENDING;
+            return true;
+          }
+          try {
+            IndexEntry entry = createEntry(content);
+            w.lock();
+            try {
+              if (!entries.containsKey(content)) {
+                put(content, entry);
+              }
+            } finally {
+              w.unlock();
+            }
+            count++;
+          } catch (RuntimeException e) {
+            LOG.debug("Cannot index asset {}", content, e);
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Cannot build the asset index after {} assets, assets are searched instead", count, e);
+      failure = e;
+      state = State.FAILED;
+      return false;
+    }
+    failure = null;
+    state = State.READY;
+    LOG.info("Built asset index with {} assets in {} ms", count, System.currentTimeMillis() - start);
+    return true;
+  }
+
+  /**
+   * Stops a running {@link #build(ContentRepository)}.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Returns true if the index is complete and can replace the search.
+   */
+  public boolean isReady() {
+    return getState() == State.READY;
+  }
+
+  /**
+   * Returns the state of the index.
+   */
+  @NonNull
+  public State getState() {
+    return enabled ? state : State.DISABLED;
+  }
+
+  /**
+   * Returns the cause of the last failed {@link #build(ContentRepository)}
+   * while the index is in state {@link State#FAILED}.
+   */
+  @Nullable
+  public RuntimeException getFailure() {
+    return failure;
+  }
+
+  /**
+   * Returns the assets of the given content type in the given site which reference the given external id.
+   */
+  @NonNull
+  public List<Content> get(@NonNull String contentType, @NonNull String externalId, @Nullable Site site) {
+    if (site == null) {
+      return emptyList();
+    }
+    // updates do not invalidate dependent cache entries, so limit their lifetime like the search does
+    Cache.cacheFor(cacheForSeconds, TimeUnit.SECONDS);
+    List<Content> assets = new ArrayList<>();
+    r.lock();
+    try {
+      SetMultimap<String, Content> inverseMultimap = siteToInverseMultimap.get(site);
+      if (inverseMultimap != null) {
+        assets.addAll(inverseMultimap.get(externalId));
+      }
+    } finally {
+      r.unlock();
+    }
+    assets.removeIf(asset -> asset.isDestroyed() || !asset.getType().isSubtypeOf(contentType));
+    return assets;
+  }
+
+  @VisibleForTesting
+  List<String> getExternalIds(Content content) {
+    return CommerceReferenceHelper.getExternalIds(content);
+  }
+
+  @Autowired
+  public void setSitesService(SitesService sitesService) {
+    this.sitesService = sitesService;
+  }
+
+  @Value("${livecontext.assetService.index.enabled}")
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Value("${livecontext.assetService.searchCacheDurationInSeconds}")
+  public void setCacheForSeconds(long cacheForSeconds) {
+    this.cacheForSeconds = cacheForSeconds;
+  }
+
+  // --- internal ---
+
+  /**
+   * Reads the site and the external ids of the asset, outside of the lock.
+   */
+  @NonNull
+  private IndexEntry createEntry(@NonNull Content content) {
+    if (content.isDestroyed() || !content.isInProduction()) {
+      return new IndexEntry(null, emptyList());
+    }
+    Site site = sitesService.getContentSiteAspect(content).getSite();
+    List<String> externalIds = site != null ? getExternalIds(content) : null;
+    return new IndexEntry(site, externalIds != null ? externalIds : emptyList());
+  }
+
+  private void put(@NonNull Content content, @NonNull IndexEntry entry) {
+    IndexEntry previous = entries.put(content, entry);
+    if (previous != null && previous.site != null) {
+      SetMultimap<String, Content> inverseMultimap = siteToInverseMultimap.get(previous.site);
+      for (String externalId : previous.externalIds) {
+        inverseMultimap.remove(externalId, content);
+      }
+    }
+    if (entry.site != null) {
+      SetMultimap<String, Content> inverseMultimap = siteToInverseMultimap.computeIfAbsent(entry.site, site -> HashMultimap.create());
+      for (String externalId : entry.externalIds) {
+        inverseMultimap.put(externalId, content);
+      }
+    }
+  }
+
+  // --- inner classes ---
+
+  enum State {
+    /** The index is disabled by configuration, assets are always searched. */
+    DISABLED,
+    /** The index has not been built yet. */
+    PENDING,
+    /** The index is being built. */
+    BUILDING,
+    /** Building the index failed, it is built again later. */
+    FAILED,
+    /** The index is complete. */
+    READY
+  }
+
+  private static final class IndexEntry {
+    private final Site site;
+    private final Collection<String> externalIds;
+
+    private IndexEntry(@Nullable Site site, @NonNull Collection<String> externalIds) {
+      this.site = site;
+      this.externalIds = externalIds;
+    }
+  }
+}
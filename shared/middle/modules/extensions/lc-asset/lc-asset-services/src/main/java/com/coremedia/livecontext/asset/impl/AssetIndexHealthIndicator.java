@@ -0,0 +1,40 @@
+package com.coremedia.livecontext.asset.impl;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * Reports the state of the {@link AssetIndex}.
+ * <p>
+ * Assets are searched while the index is not ready, so an index which is
+ * still being built or has failed to build is reported as unknown rather
+ * than down.
+ */
+class AssetIndexHealthIndicator implements HealthIndicator {
+
+  private final AssetIndex assetIndex;
+
+  AssetIndexHealthIndicator(AssetIndex assetIndex) {
+    this.assetIndex = assetIndex;
+  }
+
+  @Override
+  public Health health() {
+    AssetIndex.State state = assetIndex.getState();
+    Health.Builder builder;
+    switch (state) {
+      case READY:
+      case DISABLED:
+        builder = Health.up();
+        break;
+      default:
+        builder = Health.unknown();
+    }
+    builder.withDetail("state", state);
+    RuntimeException failure = assetIndex.getFailure();
+    if (state == AssetIndex.State.FAILED && failure != null) {
+      builder.withException(failure);
+    }
+    return builder.build();
+  }
+}
@@ -34,6 +34,7 @@ public class AssetResolvingStrategyImpl implements AssetResolvingStrategy {
   private CommerceConnectionSupplier commerceConnectionSupplier;
 
   private AssetChanges assetChanges;
+  private AssetIndex assetIndex;
   private AssetSearchService assetSearchService;
   private AssetValidationService assetValidationService;
 
@@ -77,7 +78,10 @@ public class AssetResolvingStrategyImpl implements AssetResolvingStrategy {
   private Set<Content> resolveCachedAndIndexedAssets(@NonNull String contentType, @NonNull String externalId,
                                                      @NonNull Site site) {
     Collection<Content> cachedAssets = assetChanges.get(externalId, site);
-    List<Content> indexedAssets = assetSearchService.searchAssets(contentType, externalId, site);
+    // the search is only needed until the local index is complete
+    List<Content> indexedAssets = assetIndex != null && assetIndex.isReady()
+            ? assetIndex.get(contentType, externalId, site)
+            : assetSearchService.searchAssets(contentType, externalId, site);
 
     List<Content> filteredCachedAssets = filterCachedAssets(contentType, cachedAssets);
 
@@ -183,6 +187,11 @@ public class AssetResolvingStrategyImpl implements AssetResolvingStrategy {
     this.assetChanges = assetChanges;
   }
 
+  @Autowired(required = false)
+  public void setAssetIndex(AssetIndex assetIndex) {
+    this.assetIndex = assetIndex;
+  }
+
   @Autowired(required = false)
   public void setAssetValidationService(AssetValidationService assetValidationService) {
     this.assetValidationService = assetValidationService;
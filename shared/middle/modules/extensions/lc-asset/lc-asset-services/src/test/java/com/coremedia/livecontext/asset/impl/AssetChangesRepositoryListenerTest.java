@@ -27,6 +27,8 @@ public class AssetChangesRepositoryListenerTest {
   @Mock
   private AssetChanges assetChanges;
   @Mock
+  private AssetIndex assetIndex;
+  @Mock
   private ContentEvent event;
   @Mock
   private Content content;
@@ -45,5 +47,6 @@ public class AssetChangesRepositoryListenerTest {
   public void testHandleContentEvent() throws Exception {
     testling.handleContentEvent(event);
     verify(assetChanges).update(content);
+    verify(assetIndex).update(content);
   }
 }
@@ -0,0 +1,115 @@
+package com.coremedia.livecontext.asset.impl;
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.content.ContentType;
+import com.coremedia.cap.content.query.QueryService;
+import com.coremedia.cap.multisite.ContentSiteAspect;
+import com.coremedia.cap.multisite.Site;
+import com.coremedia.cap.multisite.SitesService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AssetIndexTest {
+
+  private static final String CMPICTURE_DOCTYPE_NAME = "CMPicture";
+
+  @Spy
+  private AssetIndex assetIndex;
+
+  @Mock
+  private SitesService sitesService;
+  @Mock
+  private ContentRepository contentRepository;
+  @Mock
+  private QueryService queryService;
+  @Mock
+  private Content content;
+  @Mock
+  private ContentType contentType;
+  @Mock
+  private ContentSiteAspect contentSiteAspect;
+  @Mock
+  private Site site;
+
+  @Before
+  public void setup() {
+    assetIndex.setSitesService(sitesService);
+    assetIndex.setEnabled(true);
+    when(sitesService.getContentSiteAspect(content)).thenReturn(contentSiteAspect);
+    when(contentSiteAspect.getSite()).thenReturn(site);
+    when(content.isInProduction()).thenReturn(true);
+    when(content.getType()).thenReturn(contentType);
+    when(contentType.isSubtypeOf(CMPICTURE_DOCTYPE_NAME)).thenReturn(true);
+  }
+
+  @Test
+  public void buildAndUpdate() {
+    when(contentRepository.getQueryService()).thenReturn(queryService);
+    when(queryService.poseContentQuery("TYPE " + AssetIndex.CMVISUAL_TYPE + ": isInProduction")).thenReturn(List.of(content));
+    doReturn(List.of("a", "b")).when(assetIndex).getExternalIds(content);
+
+    assertFalse(assetIndex.isReady());
+    assetIndex.build(contentRepository);
+    assertTrue(assetIndex.isReady());
+    assertEquals(List.of(content), assetIndex.get(CMPICTURE_DOCTYPE_NAME, "a", site));
+    assertEquals(List.of(content), assetIndex.get(CMPICTURE_DOCTYPE_NAME, "b", site));
+
+    doReturn(List.of("b")).when(assetIndex).getExternalIds(content);
+    assetIndex.update(content);
+    assertTrue(assetIndex.get(CMPICTURE_DOCTYPE_NAME, "a", site).isEmpty());
+    assertEquals(List.of(content), assetIndex.get(CMPICTURE_DOCTYPE_NAME, "b", site));
+
+    when(content.isInProduction()).thenReturn(false);
+    assetIndex.update(content);
+    assertTrue(assetIndex.get(CMPICTURE_DOCTYPE_NAME, "b", site).isEmpty());
+  }
+
+  @Test
+  public void buildKeepsUpdatesFromEvents() {
+    when(contentRepository.getQueryService()).thenReturn(queryService);
+    when(queryService.poseContentQuery("TYPE " + AssetIndex.CMVISUAL_TYPE + ": isInProduction")).thenReturn(List.of(content));
+    doReturn(List.of("a")).when(assetIndex).getExternalIds(content);
+    assetIndex.update(content);
+
+    doReturn(List.of("b")).when(assetIndex).getExternalIds(content);
+    assetIndex.build(contentRepository);
+
+    assertEquals(List.of(content), assetIndex.get(CMPICTURE_DOCTYPE_NAME, "a", site));
+    assertTrue(assetIndex.get(CMPICTURE_DOCTYPE_NAME, "b", site).isEmpty());
+  }
+
+  @Test
+  public void failedBuildCanBeRetried() {
+    IllegalStateException failure = new IllegalStateException("content server unavailable");
+    when(contentRepository.getQueryService()).thenThrow(failure).thenReturn(queryService);
+    when(queryService.poseContentQuery("TYPE " + AssetIndex.CMVISUAL_TYPE + ": isInProduction")).thenReturn(List.of(content));
+    doReturn(List.of("a")).when(assetIndex).getExternalIds(content);
+
+    assertEquals(AssetIndex.State.PENDING, assetIndex.getState());
+    assertFalse(assetIndex.build(contentRepository));
+    assertEquals(AssetIndex.State.FAILED, assetIndex.getState());
+    assertSame(failure, assetIndex.getFailure());
+    assertFalse(assetIndex.isReady());
+
+    assertTrue(assetIndex.build(contentRepository));
+    assertEquals(AssetIndex.State.READY, assetIndex.getState());
+    assertNull(assetIndex.getFailure());
+    assertEquals(List.of(content), assetIndex.get(CMPICTURE_DOCTYPE_NAME, "a", site));
+  }
+}
@@ -30,6 +30,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -54,6 +56,9 @@ public class AssetResolvingStrategyImplTest {
   @Mock
   private AssetChanges assetChanges;
 
+  @Mock
+  private AssetIndex assetIndex;
+
   @Mock
   private Site site;
 
@@ -176,6 +181,21 @@ public class AssetResolvingStrategyImplTest {
     assertEquals(1, pictures.size());
   }
 
+  @Test
+  public void findProductAssetsInReadyAssetIndex() {
+    Content picture = createPictureMock("picture");
+
+    when(assetIndex.isReady()).thenReturn(true);
+    when(assetIndex.get(CMPICTURE_DOCTYPE_NAME, EXTERNAL_ID, site)).thenReturn(List.of(picture));
+    returnCachedAssets(EXTERNAL_ID, site, List.of(picture));
+    isUpToDateInCache(picture, EXTERNAL_ID, site, true);
+    isReferencedInContent(picture, List.of(EXTERNAL_ID));
+
+    Collection<?> pictures = testling.findAssets(CMPICTURE_DOCTYPE_NAME, COMMERCE_ID, site);
+    assertEquals(1, pictures.size());
+    verify(assetSearchService, never()).searchAssets(any(), any(), any());
+  }
+
   @Test
   public void findProductAssetsNonInCacheOrIndexed() {
     List<Content> indexedAssets = List.of();
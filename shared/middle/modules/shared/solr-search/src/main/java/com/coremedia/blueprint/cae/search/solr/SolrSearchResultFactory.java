@@ -33,6 +33,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -94,10 +95,12 @@ public class SolrSearchResultFactory implements SearchResultFactory, Initializin
 
   protected SearchResultBean createResultBean(SearchQueryBean searchInput, QueryResponse q) {
     SearchResultBean searchResultBean = createEmptyResultBean(searchInput);
+    // resolve the beans of all hits and highlighted results once per id
+    Map<String, Object> beansById = resolveBeans(q);
     // translate hits
-    searchResultBean.setHits(translateHits(q));
+    searchResultBean.setHits(translateHits(q, beansById));
     // translate highlighted results
-    searchResultBean.setHighlightingResults(translateHighlightResults(q));
+    searchResultBean.setHighlightingResults(translateHighlightResults(q, beansById));
     searchResultBean.setNumHits(q.getResults().getNumFound());
     Map<String, String> facetFieldsMap = searchInput.getFacetFieldsMap();
     if (!facetFieldsMap.isEmpty()) {
@@ -115,18 +118,73 @@ public class SolrSearchResultFactory implements SearchResultFactory, Initializin
   }
 
   protected List<Object> translateHits(QueryResponse q) {
+    return translateHits(q, representationMapper.fromIDs(getHitIds(q)));
+  }
+
+  /**
+   * Returns the valid beans of the hits in the given response, in the order of the Solr result.
+   *
+   * @param q Solr query response
+   * @param beansById the valid beans of the response as returned by {@link #resolveBeans(QueryResponse)}
+   * @return list of hits
+   * @since 2107
+   */
+  protected List<Object> translateHits(QueryResponse q, Map<String, Object> beansById) {
     SolrDocumentList documentList = q.getResults();
-    List<Object> hits = new ArrayList<>();
+    List<Object> hits = new ArrayList<>(documentList.size());
     for (SolrDocument solrDocument : documentList) {
-      String id = (String) solrDocument.getFieldValue(SearchConstants.FIELDS.ID.toString());
-      Object hit = representationMapper.fromID(id);
-      if (representationMapper.isValid(hit)) {
+      Object hit = beansById.get(getId(solrDocument));
+      if (hit != null) {
         hits.add(hit);
       }
     }
     return hits;
   }
 
+  /**
+   * Collects the ids of all hits and highlighted results of the given response and resolves them
+   * with {@link Representation#fromIDs(Collection)}, so that an id which is both a hit and a
+   * highlighted result is parsed and validated only once.
+   *
+   * @param q Solr query response
+   * @return map from id to valid bean
+   * @since 2107
+   */
+  protected Map<String, Object> resolveBeans(QueryResponse q) {
+    Collection<String> ids = new LinkedHashSet<>(getHitIds(q));
+    ids.addAll(getHighlightIds(q));
+    return representationMapper.fromIDs(ids);
+  }
+
+  private static Collection<String> getHitIds(QueryResponse q) {
+    SolrDocumentList documentList = q.getResults();
+    Collection<String> ids = new LinkedHashSet<>(documentList.size());
+    for (SolrDocument solrDocument : documentList) {
+      ids.add(getId(solrDocument));
+    }
+    return ids;
+  }
+
+  private static Collection<String> getHighlightIds(QueryResponse q) {
+    Map<String, Map<String, List<String>>> highlightSnippets = q.getHighlighting();
+    if (highlightSnippets == null) {
+      return Collections.emptySet();
+    }
+    Collection<String> ids = new LinkedHashSet<>(highlightSnippets.size());
+    for (String key : highlightSnippets.keySet()) {
+      ids.add(getHighlightId(key));
+    }
+    return ids;
+  }
+
+  private static String getId(SolrDocument solrDocument) {
+    return (String) solrDocument.getFieldValue(SearchConstants.FIELDS.ID.toString());
+  }
+
+  private static String getHighlightId(String key) {
+    return key.substring(key.indexOf("#") + 1);
+  }
+
   protected FacetResult translateFacets(SearchQueryBean searchInput, QueryResponse response) {
     Map<String, Collection<FacetValue>> map = new LinkedHashMap<>();
     for (FacetField facetField : response.getFacetFields()) {
@@ -338,14 +396,18 @@ public class SolrSearchResultFactory implements SearchResultFactory, Initializin
 
   // contentbean : property : property value with search term highlighted
   protected Map<Object, Map<String, List<String>>> translateHighlightResults(QueryResponse q) {
+    return translateHighlightResults(q, representationMapper.fromIDs(getHighlightIds(q)));
+  }
+
+  // contentbean : property : property value with search term highlighted
+  protected Map<Object, Map<String, List<String>>> translateHighlightResults(QueryResponse q, Map<String, Object> beansById) {
     Map<Object, Map<String, List<String>>> highlightResults = new HashMap<>();
 
     Map<String, Map<String, List<String>>> highlightSnippets = q.getHighlighting();
     if (highlightSnippets != null) {
       for (Map.Entry<String, Map<String, List<String>>> entry : highlightSnippets.entrySet()) {
-        String id = entry.getKey().substring(entry.getKey().indexOf("#") + 1);
-        Object result = representationMapper.fromID(id);
-        if (representationMapper.isValid(result)) {
+        Object result = beansById.get(getHighlightId(entry.getKey()));
+        if (result != null) {
           highlightResults.put(result, entry.getValue());
         }
       }
@@ -1,9 +1,37 @@
 package com.coremedia.blueprint.id;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 public interface Representation<T> {
   String toID(T bean);
 
   T fromID(String id);
 
   boolean isValid(T bean);
+
+  /**
+   * Resolves the given ids with {@link #fromID(String)} and returns the valid beans only.
+   * <p>
+   * Duplicate ids are resolved once.
+   *
+   * @param ids the ids to resolve
+   * @return map from id to valid bean, in the iteration order of the given ids
+   */
+  default Map<String, T> fromIDs(Collection<String> ids) {
+    Map<String, T> result = new LinkedHashMap<>();
+    Set<String> resolved = new HashSet<>();
+    for (String id : ids) {
+      if (id != null && resolved.add(id)) {
+        T bean = fromID(id);
+        if (isValid(bean)) {
+          result.put(id, bean);
+        }
+      }
+    }
+    return result;
+  }
 }
@@ -0,0 +1,47 @@
+package com.coremedia.blueprint.id;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class RepresentationTest {
+
+  private final List<String> resolvedIds = new ArrayList<>();
+
+  private final Representation<String> representation = new Representation<String>() {
+    @Override
+    public String toID(String bean) {
+      return bean;
+    }
+
+    @Override
+    public String fromID(String id) {
+      resolvedIds.add(id);
+      return id.startsWith("invalid") ? null : "bean-" + id;
+    }
+
+    @Override
+    public boolean isValid(String bean) {
+      return bean != null;
+    }
+  };
+
+  @Test
+  public void testFromIDsKeepsOrderAndDropsInvalid() {
+    Map<String, String> beans = representation.fromIDs(Arrays.asList("2", "invalid", "1"));
+    assertEquals(Arrays.asList("2", "1"), new ArrayList<>(beans.keySet()));
+    assertEquals("bean-2", beans.get("2"));
+    assertEquals("bean-1", beans.get("1"));
+  }
+
+  @Test
+  public void testFromIDsResolvesDuplicatesOnce() {
+    representation.fromIDs(Arrays.asList("1", "invalid", "1", "invalid", null));
+    assertEquals(Arrays.asList("1", "invalid"), resolvedIds);
+  }
+}